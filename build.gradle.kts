@@ -3,8 +3,12 @@ plugins {
 	id("org.springframework.boot") version "3.4.5"
 	id("io.spring.dependency-management") version "1.1.7"
 	id("org.asciidoctor.jvm.convert") version "3.3.2"
+	id("me.champeau.jmh") version "0.7.2"
 }
 
+// Ships with the Spring Boot plugin but has no plugin marker, so it cannot go in the plugins block
+apply(plugin = "org.springframework.boot.aot")
+
 group = "com.github.ajharry69"
 version = "0.0.1-SNAPSHOT"
 
@@ -62,6 +66,56 @@ dependencies {
 	testImplementation("org.keycloak:keycloak-admin-client:24.0.4")
 }
 
+jmh {
+	jmhVersion = "1.37"
+	warmupIterations = 3
+	iterations = 5
+	fork = 1
+	profilers = listOf("gc")
+	includeTests = false
+	zip64 = true
+}
+
+// AOT bean definitions are generated for the profile the container runs with (see Dockerfile); they are only used when
+// the application is started with -Dspring.aot.enabled=true.
+tasks.named<JavaExec>("processAot") {
+	args("--spring.profiles.active=fast-startup")
+}
+
+// Compares start-up of the plain jar with the fast-startup profile on AOT bean definitions:
+//   ./gradlew startupBenchmark [-PstartupRuns=5]
+tasks.register("startupBenchmark") {
+	group = "verification"
+	description = "Measures application start-up time with and without the fast-startup profile."
+	dependsOn(tasks.bootJar)
+	doLast {
+		val jar = tasks.bootJar.get().archiveFile.get().asFile
+		val java = javaToolchains.launcherFor(java.toolchain).get().executablePath.asFile
+		val runs = (findProperty("startupRuns") as String?)?.toInt() ?: 5
+		val variants = mapOf(
+			"default" to listOf<String>(),
+			"fast-startup + AOT" to listOf("-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-startup"),
+		)
+		val started = Regex("""Started \S+ in ([\d.]+) seconds \(process running for ([\d.]+)\)""")
+		variants.forEach { (name, jvmArgs) ->
+			val timings = (1..runs).map {
+				val command = listOf(java.path) + jvmArgs + listOf("-jar", jar.path, "--server.port=0")
+				val process = ProcessBuilder(command).redirectErrorStream(true).start()
+				try {
+					process.inputStream.bufferedReader().lineSequence()
+						.firstNotNullOfOrNull { started.find(it) }
+						?.let { it.groupValues[2].toDouble() }
+						?: throw GradleException("$name: application exited before it started")
+				} finally {
+					process.destroy()
+					process.waitFor()
+				}
+			}
+			println("%-20s median %.2f s (runs: %s)".format(name, timings.sorted()[timings.size / 2], timings))
+		}
+	}
+}
+
 tasks.withType<Test> {
 	useJUnitPlatform()
 	systemProperty("spring.profiles.active", "test")
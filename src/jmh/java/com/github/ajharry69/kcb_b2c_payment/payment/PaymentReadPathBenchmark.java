@@ -0,0 +1,91 @@
+package com.github.ajharry69.kcb_b2c_payment.payment;
+
+import com.github.ajharry69.kcb_b2c_payment.KcbB2cPaymentApplication;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.utils.PaymentMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the status read path before and after the switch to constructor-expression projections.
+ * Run with {@code ./gradlew jmh}; the GC profiler reports allocation per read ({@code gc.alloc.rate.norm}).
+ * <p>
+ * No results are kept in the repository. The projections only count as an improvement once a run on the build's
+ * toolchain shows {@code service} ahead of {@code entityAndMapper}; until then that is unverified.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentReadPathBenchmark {
+    private ConfigurableApplicationContext context;
+    private PaymentRepository paymentRepository;
+    private PaymentMapper paymentMapper;
+    private PaymentService paymentService;
+    private TransactionTemplate readOnlyTransaction;
+    private UUID paymentId;
+
+    @Setup
+    public void setUp() {
+        context = SpringApplication.run(KcbB2cPaymentApplication.class,
+                "--server.port=0",
+                "--logging.level.root=WARN");
+        paymentRepository = context.getBean(PaymentRepository.class);
+        paymentMapper = context.getBean(PaymentMapper.class);
+        paymentService = context.getBean(PaymentService.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+        PaymentKeyRepository paymentKeyRepository = context.getBean(PaymentKeyRepository.class);
+        paymentId = new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).execute(status -> {
+            Payment payment = paymentRepository.saveAndFlush(Payment.builder()
+                    .transactionId("BENCH-" + UUID.randomUUID())
+                    .recipientPhoneNumber("+254712345678")
+                    .amount(new BigDecimal("150.75"))
+                    .currency("KES")
+                    .status(PaymentStatus.SUCCESSFUL)
+                    .mnoReference("MNO_REF_BENCH")
+                    .build());
+            paymentKeyRepository.insert(payment.getTransactionId(), payment.getId(), payment.getCreatedAt());
+            return payment.getId();
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * The previous read path: hydrate a managed entity, then copy it through the mapper.
+     */
+    @Benchmark
+    public PaymentResponse entityAndMapper() {
+        return paymentRepository.findById(paymentId)
+                .map(paymentMapper::toResponse)
+                .orElseThrow();
+    }
+
+    /**
+     * The new read path as {@link PaymentService#getPaymentById} runs it, without the service proxy.
+     */
+    @Benchmark
+    public PaymentResponse projectionInReadOnlyTransaction() {
+        return readOnlyTransaction.execute(status -> paymentRepository.findResponseById(paymentId).orElseThrow());
+    }
+
+    /**
+     * End to end through the service proxy (method validation and transaction interceptors included).
+     */
+    @Benchmark
+    public PaymentResponse service() {
+        return paymentService.getPaymentById(paymentId);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.json;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a request body into a {@link PaymentRequest} and a {@link PaymentResponse} into a response body:
+ * the Jackson converter (configured as Spring Boot configures it) versus {@link PaymentJsonHttpMessageConverter}.
+ * Whether the hand-written codec is still worth keeping is decided by running this on the pinned toolchain; no
+ * numbers are checked in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PaymentJsonBenchmark {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+    private final HttpOutputMessage outputMessage = new HttpOutputMessage() {
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    };
+    private MappingJackson2HttpMessageConverter jackson;
+    private PaymentJsonHttpMessageConverter codec;
+    private PaymentResponse response;
+    private byte[] requestBody;
+
+    @Setup
+    public void setUp() {
+        jackson = new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+        codec = new PaymentJsonHttpMessageConverter();
+        LocalDateTime now = LocalDateTime.now();
+        response = new PaymentResponse(UUID.randomUUID(), "TXN-BENCH-0001", "+254711223344", new BigDecimal("550.00"),
+                "KES", PaymentStatus.SUCCESSFUL, "MOCK_MNO_1a2b3c4d5e6f", null, now.minusSeconds(3), now);
+        requestBody = """
+                {"transactionId":"TXN-BENCH-0001","recipientPhoneNumber":"+254711223344","amount":550.00,"currency":"KES"}"""
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int writeResponseJackson() throws IOException {
+        return write(jackson);
+    }
+
+    @Benchmark
+    public int writeResponseCodec() throws IOException {
+        return write(codec);
+    }
+
+    @Benchmark
+    public Object readRequestJackson() throws IOException {
+        return jackson.read(PaymentRequest.class, inputMessage());
+    }
+
+    @Benchmark
+    public Object readRequestCodec() throws IOException {
+        return codec.read(PaymentRequest.class, inputMessage());
+    }
+
+    private int write(HttpMessageConverter<Object> converter) throws IOException {
+        body.reset();
+        outputMessage.getHeaders().clear();
+        converter.write(response, MediaType.APPLICATION_JSON, outputMessage);
+        return body.size();
+    }
+
+    private HttpInputMessage inputMessage() {
+        return new HttpInputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(requestBody);
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the rate limiter, for one hot client shared by all benchmark threads (worst-case CAS contention
+ * on a single bucket) and for requests spread over many clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class ClientRateLimiterBenchmark {
+    private static final int CLIENTS = 10_000;
+
+    private ClientRateLimiter rateLimiter;
+    private String[] principals;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new ClientRateLimiter(1_000_000, 1_000_000, 1_000_000, 1_000_000, CLIENTS);
+        principals = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            principals[i] = "merchant-" + i;
+            rateLimiter.tryAcquire(principals[i], RateLimitScope.READ);
+        }
+    }
+
+    @Benchmark
+    public RateLimitDecision hotClient() {
+        return rateLimiter.tryAcquire(principals[0], RateLimitScope.INITIATE);
+    }
+
+    @Benchmark
+    public RateLimitDecision manyClients() {
+        String principal = principals[ThreadLocalRandom.current().nextInt(CLIENTS)];
+        return rateLimiter.tryAcquire(principal, RateLimitScope.INITIATE);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.ajharry69.kcb_b2c_payment.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request authentication cost for a client that reuses one access token: full RS256 verification plus authority
+ * extraction on every call versus the {@link CachingJwtDecoder} hit path.
+ * <p>
+ * Measure on the build's toolchain with {@code ./gradlew jmh}; figures from other JDKs say little about this one, and
+ * none are kept here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtAuthenticationBenchmark {
+    private String token;
+    private JwtDecoder verifyingDecoder;
+    private JWTAuthConverter uncachedConverter;
+    private JwtDecoder cachingDecoder;
+    private JWTAuthConverter cachingConverter;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException, JOSEException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        SignedJWT signedJwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("bench").build(),
+                new JWTClaimsSet.Builder()
+                        .subject("testuser")
+                        .issuer("http://localhost:8180/realms/test-realm")
+                        .issueTime(new Date())
+                        .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+                        .claim("scope", "openid payment.initiate payment.read")
+                        .claim("realm_access", Map.of("roles", List.of("user", "offline_access", "uma_authorization")))
+                        .build());
+        signedJwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        token = signedJwt.serialize();
+
+        verifyingDecoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+        // An empty cache makes the converter extract authorities on every call, as it did before caching
+        uncachedConverter = new JWTAuthConverter(new VerifiedTokenCache(0));
+
+        VerifiedTokenCache tokenCache = new VerifiedTokenCache(10_000);
+        cachingDecoder = new CachingJwtDecoder(verifyingDecoder, tokenCache);
+        cachingConverter = new JWTAuthConverter(tokenCache);
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken verifyEveryRequest() {
+        return uncachedConverter.convert(verifyingDecoder.decode(token));
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken cachedToken() {
+        return cachingConverter.convert(cachingDecoder.decode(token));
+    }
+}
@@ -1,13 +1,17 @@
 package com.github.ajharry69.kcb_b2c_payment;
 
 
+import com.github.ajharry69.kcb_b2c_payment.concurrent.WeightedFairExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.concurrent.Executor;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 @EnableAsync
@@ -15,15 +19,51 @@ import java.util.concurrent.Executor;
 public class AsyncConfig {
     public static final String MNO_TASK_EXECUTOR = "mnoTaskExecutor";
 
-    @Bean(name = MNO_TASK_EXECUTOR)
-    public Executor taskExecutor() {
-        log.info("Creating Async Task Executor for MNO processing");
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(25);
-        executor.setThreadNamePrefix("MnoAsync-");
-        executor.initialize();
-        return executor;
+    /**
+     * MNO work is queued per client (the JWT subject of the merchant that initiated the payment) and drained by
+     * deficit round-robin, so one merchant's bulk run cannot hold up everyone else's payouts. Clients listed in
+     * {@code payment.dispatch.weights} ({@code client=weight}) get that many turns per round; all others get
+     * {@code payment.dispatch.default-weight}.
+     * <p>
+     * {@code HIGH} priority payments go through their own lane: shared workers serve it first, and
+     * {@code payment.dispatch.high-lane.reserved-threads} extra workers serve nothing else. Normal payments that have
+     * waited longer than {@code payment.dispatch.normal-lane.max-wait-ms} are served ahead of high-priority ones, so a
+     * steady stream of urgent payouts cannot starve bulk runs.
+     * <p>
+     * At most {@code payment.dispatch.queue-capacity} payments, and {@code payment.dispatch.client-queue-capacity} per
+     * client, wait for a worker; {@link com.github.ajharry69.kcb_b2c_payment.payment.PaymentDispatcher} defers the
+     * rest to the retry index rather than holding them in memory.
+     */
+    @Bean(name = MNO_TASK_EXECUTOR, destroyMethod = "close")
+    public WeightedFairExecutor taskExecutor(
+            @Value("${payment.dispatch.threads:10}") int threads,
+            @Value("${payment.dispatch.weights:}") String[] weights,
+            @Value("${payment.dispatch.default-weight:1}") int defaultWeight,
+            @Value("${payment.dispatch.high-lane.reserved-threads:2}") int reservedHighThreads,
+            @Value("${payment.dispatch.normal-lane.max-wait-ms:5000}") long normalLaneMaxWaitMillis,
+            @Value("${payment.dispatch.queue-capacity:10000}") int capacity,
+            @Value("${payment.dispatch.client-queue-capacity:1000}") int clientCapacity,
+            MeterRegistry meterRegistry) {
+        Map<String, Integer> clientWeights = parseWeights(weights);
+        log.info("Creating fair MNO task executor with {} shared and {} high-lane threads and {} weighted clients",
+                threads, reservedHighThreads, clientWeights.size());
+        return new WeightedFairExecutor("MnoAsync", threads, reservedHighThreads,
+                Duration.ofMillis(normalLaneMaxWaitMillis), capacity, clientCapacity,
+                client -> clientWeights.getOrDefault(client, defaultWeight), meterRegistry);
+    }
+
+    private static Map<String, Integer> parseWeights(String[] weights) {
+        Map<String, Integer> clientWeights = new HashMap<>();
+        for (String entry : weights) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("payment.dispatch.weights entries must look like client=weight: " + entry);
+            }
+            clientWeights.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return clientWeights;
     }
 }
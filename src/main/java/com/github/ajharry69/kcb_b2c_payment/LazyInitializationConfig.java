@@ -0,0 +1,20 @@
+package com.github.ajharry69.kcb_b2c_payment;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentController;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * With {@code spring.main.lazy-initialization} (the fast-startup profile) beans are created on first use. The payment
+ * endpoints and everything they depend on are still created at boot so the first request does not pay for them.
+ * Beans with {@code @Scheduled} methods are kept eager by Spring Boot itself.
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerPaymentEndpoints() {
+        return LazyInitializationExcludeFilter.forBeanTypes(PaymentController.class);
+    }
+}
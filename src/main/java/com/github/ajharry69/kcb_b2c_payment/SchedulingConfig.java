@@ -0,0 +1,24 @@
+package com.github.ajharry69.kcb_b2c_payment;
+
+import com.github.ajharry69.kcb_b2c_payment.scheduling.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Duration;
+
+@Configuration
+@EnableScheduling
+@Slf4j
+public class SchedulingConfig {
+
+    @Bean(destroyMethod = "close")
+    public HashedTimingWheel timingWheel(
+            @Value("${payment.timing-wheel.tick-ms:100}") long tickMillis,
+            @Value("${payment.timing-wheel.ticks-per-wheel:512}") int ticksPerWheel) {
+        log.info("Creating timing wheel with {} ms ticks and {} buckets", tickMillis, ticksPerWheel);
+        return new HashedTimingWheel("TimingWheel", Duration.ofMillis(tickMillis), ticksPerWheel);
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.ajharry69.kcb_b2c_payment.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.ToIntFunction;
+
+/**
+ * A queue made of one FIFO sub-queue per key, drained by deficit round-robin. Keys with queued items take turns; on
+ * its turn a key is credited with its weight and may hand out that many items before the next key is served. A key
+ * with a deep backlog therefore cannot delay a key that has only a few items queued by more than one round.
+ * <p>
+ * All items cost one unit, so the deficit counter never carries fractions over between rounds. Sub-queues are dropped
+ * as soon as they are empty, which keeps memory proportional to the keys that actually have work queued.
+ * <p>
+ * Not thread-safe: callers synchronise access (see {@link WeightedFairExecutor}).
+ */
+public class DeficitRoundRobinQueue<T> {
+    private final Map<String, SubQueue<T>> queues = new HashMap<>();
+    private final Queue<SubQueue<T>> active = new ArrayDeque<>();
+    private final ToIntFunction<String> weights;
+    private int size;
+
+    /**
+     * @param weights the weight of each key, at least 1. Looked up whenever a key gets a new sub-queue.
+     */
+    public DeficitRoundRobinQueue(ToIntFunction<String> weights) {
+        this.weights = weights;
+    }
+
+    public void add(String key, T item) {
+        SubQueue<T> queue = queues.get(key);
+        if (queue == null) {
+            int weight = weights.applyAsInt(key);
+            if (weight < 1) {
+                throw new IllegalArgumentException("Weight of " + key + " must be at least 1: " + weight);
+            }
+            queue = new SubQueue<>(key, weight);
+            queues.put(key, queue);
+            active.add(queue);
+        }
+        queue.items.add(item);
+        size++;
+    }
+
+    /**
+     * @return the next item in deficit round-robin order, or {@code null} if the queue is empty.
+     */
+    public T poll() {
+        SubQueue<T> queue = active.peek();
+        if (queue == null) {
+            return null;
+        }
+        if (queue.deficit == 0) {
+            queue.deficit = queue.weight;
+        }
+        T item = queue.items.poll();
+        queue.deficit--;
+        size--;
+        if (queue.items.isEmpty()) {
+            active.poll();
+            queues.remove(queue.key);
+        } else if (queue.deficit == 0) {
+            active.add(active.poll());
+        }
+        return item;
+    }
+
+    /**
+     * @return the item {@link #poll()} would return next, or {@code null} if the queue is empty.
+     */
+    public T peek() {
+        SubQueue<T> queue = active.peek();
+        return queue == null ? null : queue.items.peek();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int size(String key) {
+        SubQueue<T> queue = queues.get(key);
+        return queue == null ? 0 : queue.items.size();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static final class SubQueue<T> {
+        private final String key;
+        private final int weight;
+        private final Queue<T> items = new ArrayDeque<>();
+        private int deficit;
+
+        private SubQueue(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+}
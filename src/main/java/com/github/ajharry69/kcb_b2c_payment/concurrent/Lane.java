@@ -0,0 +1,10 @@
+package com.github.ajharry69.kcb_b2c_payment.concurrent;
+
+/**
+ * The dispatch lanes of a {@link WeightedFairExecutor}. {@link #HIGH} work is always picked before {@link #NORMAL}
+ * work and also has workers reserved for it; {@link #NORMAL} work is aged so that it is never starved.
+ */
+public enum Lane {
+    HIGH,
+    NORMAL
+}
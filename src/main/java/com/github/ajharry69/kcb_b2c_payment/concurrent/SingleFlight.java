@@ -0,0 +1,87 @@
+package com.github.ajharry69.kcb_b2c_payment.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into one execution. The first caller (the leader) runs the supplier;
+ * callers arriving while it is in flight wait for and share its result, or its exception. The key is released as soon
+ * as the leader finishes, so later calls execute afresh: this deduplicates bursts, it does not cache.
+ * <p>
+ * A flight can carry the request it answers ({@link #execute(Object, Object, Supplier, Supplier)}); only callers with
+ * an equal request share it, so a different request that happens to reuse the key never receives another's result.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public V execute(K key, Supplier<V> call) {
+        return execute(key, null, call, null);
+    }
+
+    /**
+     * Like {@link #execute(Object, Supplier)}, but a caller only shares the flight in progress if it was started for an
+     * equal {@code request}.
+     *
+     * @param conflict the exception thrown to a caller whose {@code request} differs from the one in flight.
+     */
+    public V execute(K key, Object request, Supplier<V> call, Supplier<? extends RuntimeException> conflict) {
+        Flight<V> flight = new Flight<>(request, new CompletableFuture<>());
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            if (!Objects.equals(existing.request(), request)) {
+                throw conflict.get();
+            }
+            return await(existing.result());
+        }
+        try {
+            V result = call.get();
+            flight.result().complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return number of keys with an execution currently in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return number of callers currently waiting for another caller's execution.
+     */
+    public int waiting() {
+        return waiting.get();
+    }
+
+    private V await(CompletableFuture<V> result) {
+        waiting.incrementAndGet();
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private record Flight<V>(Object request, CompletableFuture<V> result) {
+    }
+}
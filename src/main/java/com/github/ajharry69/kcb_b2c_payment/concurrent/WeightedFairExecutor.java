@@ -0,0 +1,360 @@
+package com.github.ajharry69.kcb_b2c_payment.concurrent;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A fixed pool of worker threads fed by a {@link DeficitRoundRobinQueue} with one sub-queue per tenant, so a tenant
+ * that submits a large batch shares the workers with everyone else instead of queueing them behind it.
+ * <p>
+ * Tasks are further split into {@link Lane lanes}, each with its own fair queue. Shared workers take {@link Lane#HIGH}
+ * work first, unless the {@link Lane#NORMAL} task at the head of its queue has waited longer than
+ * {@code normalLaneMaxWait}, in which case it is aged ahead so a steady stream of urgent work cannot starve it.
+ * {@code reservedHighThreads} further workers only ever take high-lane work, so urgent tasks still find a free worker
+ * when every shared one is busy with a long normal-lane backlog.
+ * <p>
+ * The tenant and lane of a task are given explicitly ({@link #execute(String, Lane, Runnable)}) or, for callers that
+ * only see an {@link Executor} such as {@code @Async} proxies, bound to the submitting thread with
+ * {@link #withTenant(String, Lane, Runnable)}. Tasks submitted without a tenant go to {@link #DEFAULT_TENANT} on the
+ * normal lane.
+ * <p>
+ * At most {@code capacity} tasks, and {@code tenantCapacity} per tenant, wait for a worker (0 for no limit); further
+ * tasks are rejected with a {@link RejectedExecutionException}, so an overloaded executor pushes back on its callers
+ * instead of queueing without bound. The per-tenant cap keeps one tenant's batch from taking the whole queue.
+ * <p>
+ * Publishes {@code dispatch.queue.depth} and {@code dispatch.queue.wait}, tagged with the executor name and the
+ * tenant's {@code weight} rather than the tenant itself, so the number of meters stays bounded by the configured
+ * weights however many tenants submit work. Per lane it publishes {@code dispatch.lane.depth},
+ * {@code dispatch.lane.wait} and {@code dispatch.lane.duration}, tagged with the executor name and the {@code lane}.
+ */
+@Slf4j
+public class WeightedFairExecutor implements Executor, AutoCloseable {
+    public static final String DEFAULT_TENANT = "default";
+
+    private final String name;
+    private final MeterRegistry meterRegistry;
+    private final long normalLaneMaxWaitNanos;
+    private final int capacity;
+    private final int tenantCapacity;
+    private final ToIntFunction<String> weights;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition highWorkAvailable = lock.newCondition();
+    private final Map<Lane, DeficitRoundRobinQueue<QueuedTask>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, LaneTimers> laneTimers = new EnumMap<>(Lane.class);
+    private final ThreadLocal<Submission> submitting = new ThreadLocal<>();
+    private final Map<Integer, WeightClass> weightClasses = new ConcurrentHashMap<>();
+    private final List<Thread> workers;
+    private volatile boolean running = true;
+
+    public WeightedFairExecutor(String name, int threads, ToIntFunction<String> weights, MeterRegistry meterRegistry) {
+        this(name, threads, 0, Duration.ofSeconds(2), weights, meterRegistry);
+    }
+
+    /**
+     * @param threads             the number of shared workers, which serve both lanes.
+     * @param reservedHighThreads the number of extra workers that only serve the high lane.
+     * @param normalLaneMaxWait   how long the head of the normal lane may wait before it is served ahead of
+     *                            high-lane work.
+     */
+    public WeightedFairExecutor(String name, int threads, int reservedHighThreads, Duration normalLaneMaxWait,
+                                ToIntFunction<String> weights, MeterRegistry meterRegistry) {
+        this(name, threads, reservedHighThreads, normalLaneMaxWait, 0, 0, weights, meterRegistry);
+    }
+
+    /**
+     * @param threads             the number of shared workers, which serve both lanes.
+     * @param reservedHighThreads the number of extra workers that only serve the high lane.
+     * @param normalLaneMaxWait   how long the head of the normal lane may wait before it is served ahead of
+     *                            high-lane work.
+     * @param capacity            the most tasks that may be queued, 0 for no limit.
+     * @param tenantCapacity      the most tasks that may be queued for one tenant, 0 for no limit.
+     */
+    public WeightedFairExecutor(String name, int threads, int reservedHighThreads, Duration normalLaneMaxWait,
+                                int capacity, int tenantCapacity, ToIntFunction<String> weights,
+                                MeterRegistry meterRegistry) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        if (reservedHighThreads < 0) {
+            throw new IllegalArgumentException("reservedHighThreads must not be negative: " + reservedHighThreads);
+        }
+        if (capacity < 0 || tenantCapacity < 0) {
+            throw new IllegalArgumentException("capacity and tenantCapacity must not be negative");
+        }
+        this.name = name;
+        this.meterRegistry = meterRegistry;
+        this.normalLaneMaxWaitNanos = normalLaneMaxWait.toNanos();
+        this.capacity = capacity;
+        this.tenantCapacity = tenantCapacity;
+        this.weights = weights;
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new DeficitRoundRobinQueue<>(weights));
+            laneTimers.put(lane, registerLaneMeters(lane));
+        }
+        this.workers = new ArrayList<>(threads + reservedHighThreads);
+        for (int i = 1; i <= threads; i++) {
+            startWorker(name + "-" + i, false);
+        }
+        for (int i = 1; i <= reservedHighThreads; i++) {
+            startWorker(name + "-high-" + i, true);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Submission submission = submitting.get();
+        if (submission == null) {
+            execute(DEFAULT_TENANT, Lane.NORMAL, task);
+        } else {
+            execute(submission.tenant(), submission.lane(), task);
+        }
+    }
+
+    public void execute(String tenant, Runnable task) {
+        execute(tenant, Lane.NORMAL, task);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the executor has been stopped, or {@code capacity} tasks, or
+     *                                    {@code tenantCapacity} for {@code tenant}, are already queued.
+     */
+    public void execute(String tenant, Lane lane, Runnable task) {
+        WeightClass weightClass = weightClasses.computeIfAbsent(weights.applyAsInt(tenant), this::registerMeters);
+        lock.lock();
+        try {
+            if (!running) {
+                throw new RejectedExecutionException("Executor " + name + " has been stopped");
+            }
+            if (capacity > 0 && queuedTasksLocked() >= capacity) {
+                throw new RejectedExecutionException("Executor " + name + " already has " + capacity + " queued tasks");
+            }
+            if (tenantCapacity > 0 && queuedTasksLocked(tenant) >= tenantCapacity) {
+                throw new RejectedExecutionException(
+                        "Executor " + name + " already has " + tenantCapacity + " queued tasks for " + tenant);
+            }
+            queues.get(lane).add(tenant, new QueuedTask(tenant, lane, task, weightClass, System.nanoTime()));
+            weightClass.depth().incrementAndGet();
+            workAvailable.signal();
+            if (lane == Lane.HIGH) {
+                highWorkAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code submission} on the calling thread with {@code tenant} bound, so that tasks it hands to
+     * {@link #execute(Runnable)} are queued for that tenant on the normal lane.
+     */
+    public void withTenant(String tenant, Runnable submission) {
+        withTenant(tenant, Lane.NORMAL, submission);
+    }
+
+    /**
+     * Runs {@code submission} on the calling thread with {@code tenant} and {@code lane} bound, so that tasks it hands
+     * to {@link #execute(Runnable)} are queued for that tenant on that lane.
+     */
+    public void withTenant(String tenant, Lane lane, Runnable submission) {
+        Submission previous = submitting.get();
+        submitting.set(new Submission(tenant == null ? DEFAULT_TENANT : tenant, lane));
+        try {
+            submission.run();
+        } finally {
+            if (previous == null) {
+                submitting.remove();
+            } else {
+                submitting.set(previous);
+            }
+        }
+    }
+
+    public int queuedTasks() {
+        lock.lock();
+        try {
+            return queuedTasksLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queuedTasks(String tenant) {
+        lock.lock();
+        try {
+            return queuedTasksLocked(tenant);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queuedTasks(Lane lane) {
+        lock.lock();
+        try {
+            return queues.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            workAvailable.signalAll();
+            highWorkAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int queuedTasksLocked() {
+        int size = 0;
+        for (DeficitRoundRobinQueue<QueuedTask> queue : queues.values()) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    private int queuedTasksLocked(String tenant) {
+        int size = 0;
+        for (DeficitRoundRobinQueue<QueuedTask> queue : queues.values()) {
+            size += queue.size(tenant);
+        }
+        return size;
+    }
+
+    private void startWorker(String threadName, boolean highOnly) {
+        Thread worker = new Thread(() -> run(highOnly), threadName);
+        worker.setDaemon(true);
+        worker.start();
+        workers.add(worker);
+    }
+
+    private void run(boolean highOnly) {
+        DeficitRoundRobinQueue<QueuedTask> high = queues.get(Lane.HIGH);
+        DeficitRoundRobinQueue<QueuedTask> normal = queues.get(Lane.NORMAL);
+        while (true) {
+            QueuedTask next;
+            lock.lock();
+            try {
+                if (highOnly) {
+                    while (running && high.isEmpty()) {
+                        highWorkAvailable.awaitUninterruptibly();
+                    }
+                } else {
+                    while (running && high.isEmpty() && normal.isEmpty()) {
+                        workAvailable.awaitUninterruptibly();
+                    }
+                }
+                if (!running) {
+                    log.debug("Executor {} stopped with {} high and {} normal queued tasks", name, high.size(), normal.size());
+                    return;
+                }
+                next = highOnly || !takeNormal(high, normal) ? high.poll() : normal.poll();
+                next.weightClass().depth().decrementAndGet();
+            } finally {
+                lock.unlock();
+            }
+            long startedNanos = System.nanoTime();
+            long waitNanos = startedNanos - next.enqueuedNanos();
+            LaneTimers timers = laneTimers.get(next.lane());
+            next.weightClass().wait().record(waitNanos, TimeUnit.NANOSECONDS);
+            timers.wait().record(waitNanos, TimeUnit.NANOSECONDS);
+            try {
+                next.task().run();
+            } catch (Throwable t) {
+                log.error("Task for tenant {} on executor {} threw an exception", next.tenant(), name, t);
+            } finally {
+                timers.duration().record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private boolean takeNormal(DeficitRoundRobinQueue<QueuedTask> high, DeficitRoundRobinQueue<QueuedTask> normal) {
+        QueuedTask oldestNormal = normal.peek();
+        if (oldestNormal == null) {
+            return false;
+        }
+        return high.isEmpty() || System.nanoTime() - oldestNormal.enqueuedNanos() >= normalLaneMaxWaitNanos;
+    }
+
+    private WeightClass registerMeters(int weight) {
+        AtomicInteger depth = new AtomicInteger();
+        Gauge.builder("dispatch.queue.depth", depth, AtomicInteger::get)
+                .description("Tasks of tenants with this weight waiting for a worker")
+                .tag("executor", name)
+                .tag("weight", Integer.toString(weight))
+                .register(meterRegistry);
+        Timer wait = Timer.builder("dispatch.queue.wait")
+                .description("Time tasks of tenants with this weight spend queued before a worker picks them up")
+                .tag("executor", name)
+                .tag("weight", Integer.toString(weight))
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        return new WeightClass(depth, wait);
+    }
+
+    private LaneTimers registerLaneMeters(Lane lane) {
+        String tag = lane.name().toLowerCase(Locale.ROOT);
+        Gauge.builder("dispatch.lane.depth", this, executor -> executor.queuedTasks(lane))
+                .description("Tasks waiting for a worker in the lane")
+                .tag("executor", name)
+                .tag("lane", tag)
+                .register(meterRegistry);
+        Timer wait = Timer.builder("dispatch.lane.wait")
+                .description("Time tasks in the lane spend queued before a worker picks them up")
+                .tag("executor", name)
+                .tag("lane", tag)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Timer duration = Timer.builder("dispatch.lane.duration")
+                .description("Time workers spend running tasks from the lane")
+                .tag("executor", name)
+                .tag("lane", tag)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        return new LaneTimers(wait, duration);
+    }
+
+    private record Submission(String tenant, Lane lane) {
+    }
+
+    private record LaneTimers(Timer wait, Timer duration) {
+    }
+
+    /**
+     * The meters shared by every tenant with the same weight. {@code depth} is only changed under the lock.
+     */
+    private record WeightClass(AtomicInteger depth, Timer wait) {
+    }
+
+    private record QueuedTask(String tenant, Lane lane, Runnable task, WeightClass weightClass, long enqueuedNanos) {
+    }
+}
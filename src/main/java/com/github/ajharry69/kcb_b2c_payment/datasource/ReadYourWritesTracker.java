@@ -0,0 +1,60 @@
+package com.github.ajharry69.kcb_b2c_payment.datasource;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentInitiatedEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.schedule.PaymentScheduledEvent;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers when each client last wrote, so that its reads can stay on the primary until replicas have had time to
+ * catch up with that write. Only writes made through this node are seen.
+ */
+public class ReadYourWritesTracker {
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(Duration window) {
+        this(window, System::currentTimeMillis);
+    }
+
+    ReadYourWritesTracker(Duration window, LongSupplier clock) {
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentInitiated(PaymentInitiatedEvent event) {
+        recordWrite(event.clientId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentScheduled(PaymentScheduledEvent event) {
+        recordWrite(event.clientId());
+    }
+
+    public void recordWrite(String clientId) {
+        if (clientId != null && windowMillis > 0) {
+            lastWrites.put(clientId, clock.getAsLong());
+        }
+    }
+
+    public boolean wroteRecently(String clientId) {
+        if (clientId == null) {
+            return false;
+        }
+        Long writtenAt = lastWrites.get(clientId);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (clock.getAsLong() - writtenAt < windowMillis) {
+            return true;
+        }
+        lastWrites.remove(clientId, writtenAt);
+        return false;
+    }
+}
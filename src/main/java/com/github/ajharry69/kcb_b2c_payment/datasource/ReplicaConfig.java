@@ -0,0 +1,128 @@
+package com.github.ajharry69.kcb_b2c_payment.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Active when {@code payment.replicas.urls} lists at least one read replica of {@code spring.datasource.url}.
+ */
+@Configuration
+@Conditional(ReplicaConfig.OnReplicas.class)
+@Slf4j
+public class ReplicaConfig {
+    /**
+     * Zero once a streaming replica has replayed everything it received; otherwise the age of the last replayed
+     * transaction.
+     */
+    private static final String POSTGRESQL_LAG_QUERY = """
+            select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                        else extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000 end
+            """;
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+            @Value("${payment.replicas.stick-to-primary-after-write-ms:5000}") long stickToPrimaryMillis) {
+        return new ReadYourWritesTracker(Duration.ofMillis(stickToPrimaryMillis));
+    }
+
+    /**
+     * The primary and each replica get their own Hikari pool ({@code payments-primary}, {@code payments-replica-N}),
+     * published under the {@code hikaricp.connections} metrics with a {@code pool} tag.
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties,
+            ReadYourWritesTracker readYourWritesTracker,
+            MeterRegistry meterRegistry,
+            @Value("${payment.replicas.urls}") String[] urls,
+            @Value("${payment.replicas.max-lag-ms:1000}") long maxLagMillis,
+            @Value("${payment.replicas.lag-query:}") String lagQuery) {
+        HikariDataSource primary = pool(properties, properties.determineUrl(), "payments-primary", meterRegistry);
+        List<DataSource> replicas = new ArrayList<>(urls.length);
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource replica = pool(properties, urls[i].trim(), "payments-replica-" + i, meterRegistry);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        if (lagQuery.isBlank() && DatabaseDriver.fromJdbcUrl(urls[0].trim()) == DatabaseDriver.POSTGRESQL) {
+            lagQuery = POSTGRESQL_LAG_QUERY;
+        }
+        log.info("Routing read-only transactions over {} replicas ({})", replicas.size(),
+                lagQuery.isBlank() ? "lag not measured" : "max lag " + maxLagMillis + " ms");
+        return new ReplicaRoutingDataSource(primary, replicas, lagQuery, Duration.ofMillis(maxLagMillis),
+                readYourWritesTracker, ReplicaConfig::currentClient, meterRegistry);
+    }
+
+    /**
+     * Connections are only taken from the routing data source on a transaction's first statement, by which time the
+     * transaction's read-only flag is known.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String url, String name,
+                                         MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        dataSource.setPoolName(name);
+        dataSource.setMetricRegistry(meterRegistry);
+        return dataSource;
+    }
+
+    /**
+     * The JWT subject, as passed to {@code PaymentService.initiatePayment} by the controller.
+     */
+    private static String currentClient() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+
+    /**
+     * @throws IllegalStateException if replicas are combined with sharding: each shard would need its own replicas, so
+     *                               fail rather than silently ignore one of the two.
+     */
+    static boolean replicasConfigured(Environment environment) {
+        if (environment.getProperty("payment.replicas.urls", "").isBlank()) {
+            return false;
+        }
+        if (!environment.getProperty("payment.sharding.urls", "").isBlank()) {
+            throw new IllegalStateException("payment.replicas.urls cannot be combined with payment.sharding.urls");
+        }
+        return true;
+    }
+
+    static class OnReplicas extends SpringBootCondition {
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return replicasConfigured(context.getEnvironment())
+                    ? ConditionOutcome.match("payment.replicas.urls is set")
+                    : ConditionOutcome.noMatch("payment.replicas.urls is not set");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.ajharry69.kcb_b2c_payment.datasource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Re-evaluates {@link ReplicaConfig}'s condition against the run-time environment. On AOT-processed bean definitions
+ * ({@code -Dspring.aot.enabled=true}) the condition was evaluated at build time, so {@code payment.replicas.urls} set
+ * (or cleared) at run time would otherwise be ignored without a word, and the check that replicas are not combined
+ * with sharding would never run. Runs once the context is refreshed, since lazy initialisation would never create a
+ * bean that nothing depends on.
+ */
+@Component
+class ReplicaConfigCheck implements ApplicationListener<ContextRefreshedEvent> {
+    private final Environment environment;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource;
+
+    ReplicaConfigCheck(Environment environment, ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource) {
+        this.environment = environment;
+        this.replicaRoutingDataSource = replicaRoutingDataSource;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        boolean configured = ReplicaConfig.replicasConfigured(environment);
+        boolean routing = replicaRoutingDataSource.getIfAvailable() != null;
+        if (configured != routing) {
+            throw new IllegalStateException("payment.replicas.urls is " + (configured ? "set" : "not set")
+                    + " but replica routing is " + (routing ? "on" : "off") + "; AOT-processed bean definitions fix it "
+                    + "at build time, so process them with the same payment.replicas.urls");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.ajharry69.kcb_b2c_payment.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary.
+ * <p>
+ * A read-only transaction still goes to the primary when the calling client wrote within the
+ * {@link ReadYourWritesTracker} window, or when every replica is lagging: replicas are probed every
+ * {@code payment.replicas.lag-check-interval-ms} with the lag query and dropped from rotation while their lag exceeds
+ * the maximum or cannot be measured. Without a lag query replicas are assumed to be current.
+ * <p>
+ * The decision is made when a connection is opened, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} for the transaction's read-only flag to be
+ * known by then.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final ReadYourWritesTracker readYourWrites;
+    private final Supplier<String> currentClient;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Counter> routed = new HashMap<>();
+
+    /**
+     * @param lagQuery      returns a replica's replication lag in milliseconds, or blank if lag cannot be measured.
+     * @param currentClient the client the calling thread is serving, or {@code null}.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, String lagQuery, Duration maxLag,
+                                    ReadYourWritesTracker readYourWrites, Supplier<String> currentClient,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        this.maxLagMillis = maxLag.toMillis();
+        this.readYourWrites = readYourWrites;
+        this.currentClient = currentClient;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        List<Replica> replicaList = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicas.get(i));
+            replicaList.add(replica);
+            targets.put(replica.name, replica.dataSource);
+            Gauge.builder("payment.datasource.replica.lag", replica, r -> r.lagMillis)
+                    .description("Replication lag measured by the last probe, in milliseconds (NaN if unknown)")
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+            routedCounter(meterRegistry, replica.name, "replica");
+        }
+        this.replicas = List.copyOf(replicaList);
+        routedCounter(meterRegistry, PRIMARY, "write");
+        routedCounter(meterRegistry, PRIMARY, "read-your-writes");
+        routedCounter(meterRegistry, PRIMARY, "replicas-lagging");
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return route(PRIMARY, "write");
+        }
+        if (readYourWrites.wroteRecently(currentClient.get())) {
+            return route(PRIMARY, "read-your-writes");
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (replica.inRotation) {
+                return route(replica.name, "replica");
+            }
+        }
+        return route(PRIMARY, "replicas-lagging");
+    }
+
+    /**
+     * Measures each replica's lag and takes replicas in or out of rotation.
+     */
+    @Scheduled(fixedDelayString = "${payment.replicas.lag-check-interval-ms:1000}")
+    public void checkLag() {
+        if (lagQuery == null) {
+            return;
+        }
+        for (Replica replica : replicas) {
+            boolean wasInRotation = replica.inRotation;
+            try {
+                Number lag = new JdbcTemplate(replica.dataSource).queryForObject(lagQuery, Number.class);
+                replica.lagMillis = lag == null ? 0 : lag.doubleValue();
+                replica.inRotation = replica.lagMillis <= maxLagMillis;
+            } catch (DataAccessException e) {
+                log.debug("Failed to measure the lag of {}", replica.name, e);
+                replica.lagMillis = Double.NaN;
+                replica.inRotation = false;
+            }
+            if (wasInRotation != replica.inRotation) {
+                if (replica.inRotation) {
+                    log.info("{} caught up ({} ms behind); reads resume on it", replica.name, replica.lagMillis);
+                } else {
+                    log.warn("{} is {} ms behind (max {} ms); reads fall back to the primary",
+                            replica.name, replica.lagMillis, maxLagMillis);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(primary);
+        replicas.forEach(replica -> closeQuietly(replica.dataSource));
+    }
+
+    private String route(String target, String reason) {
+        routed.get(target + "/" + reason).increment();
+        return target;
+    }
+
+    private void routedCounter(MeterRegistry meterRegistry, String target, String reason) {
+        routed.put(target + "/" + reason, Counter.builder("payment.datasource.routed")
+                .description("Connections opened per target data source, by why it was chosen")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry));
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Failed to close data source {}", dataSource, e);
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean inRotation = true;
+        private volatile double lagMillis;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
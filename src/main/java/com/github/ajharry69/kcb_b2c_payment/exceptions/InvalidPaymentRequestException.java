@@ -0,0 +1,21 @@
+package com.github.ajharry69.kcb_b2c_payment.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@Getter
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPaymentRequestException extends RuntimeException {
+    /**
+     * One entry per violated rule, formatted as {@code 'field': message}.
+     */
+    private final List<String> errors;
+
+    public InvalidPaymentRequestException(List<String> errors) {
+        super("Invalid payment request: " + String.join("; ", errors));
+        this.errors = List.copyOf(errors);
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.ajharry69.kcb_b2c_payment.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+@Getter
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class MnoTimeoutException extends RuntimeException {
+    private final Duration deadline;
+
+    public MnoTimeoutException(Duration deadline) {
+        super("MNO did not respond within " + deadline.toMillis() + " ms");
+        this.deadline = deadline;
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.ajharry69.kcb_b2c_payment.exceptions.handlers;
 
 import com.github.ajharry69.kcb_b2c_payment.exceptions.DuplicateTransactionException;
+import com.github.ajharry69.kcb_b2c_payment.exceptions.InvalidPaymentRequestException;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.MMOServiceException;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.PaymentNotFoundException;
 import lombok.extern.slf4j.Slf4j;
@@ -51,6 +52,20 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(InvalidPaymentRequestException.class)
+    public ResponseEntity<Object> handleInvalidPaymentRequestException(InvalidPaymentRequestException ex, WebRequest request) {
+        log.warn("Validation failed for request {}: {}", request.getDescription(false), ex.getMessage());
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.BAD_REQUEST.value(),
+                "Validation Failed",
+                "Request contains invalid data. See details.",
+                request.getDescription(false),
+                ex.getErrors()
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(MMOServiceException.class)
     public ResponseEntity<Object> handleMnoServiceException(MMOServiceException ex, WebRequest request) {
         log.error("MNO Service Exception: {}", ex.getMessage(), ex.getCause()); // Log underlying cause if present
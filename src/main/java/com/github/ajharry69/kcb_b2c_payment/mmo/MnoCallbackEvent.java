@@ -0,0 +1,12 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+
+/**
+ * Result notification pushed by an MNO independently of the call that submitted the payment. Gateways may deliver
+ * these more than once and long after the submitting call gave up, so consumers must be idempotent.
+ *
+ * @param result detached copy of the payment carrying the MNO's verdict (status, reference or failure reason).
+ */
+public record MnoCallbackEvent(Payment result) {
+}
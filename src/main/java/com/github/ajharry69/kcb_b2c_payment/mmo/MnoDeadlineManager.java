@@ -0,0 +1,88 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo;
+
+import com.github.ajharry69.kcb_b2c_payment.exceptions.MnoTimeoutException;
+import com.github.ajharry69.kcb_b2c_payment.scheduling.HashedTimingWheel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Puts a deadline on every MNO call. All deadlines share the application's {@link HashedTimingWheel}, so thousands of
+ * in-flight calls cost one ticker thread instead of one scheduled task each.
+ * <p>
+ * The deadline follows the MNO: it is the rolling p99 of recent call latencies times
+ * {@code payment.mno.deadline.p99-multiplier}, clamped to {@code [min-ms, max-ms]}. Until enough calls have completed
+ * the {@code initial-ms} deadline applies.
+ */
+@Component
+@Slf4j
+public class MnoDeadlineManager {
+    private final HashedTimingWheel timingWheel;
+    private final MnoLatencyTracker latencyTracker;
+    private final long initialDeadlineMillis;
+    private final long minDeadlineMillis;
+    private final long maxDeadlineMillis;
+    private final double p99Multiplier;
+
+    public MnoDeadlineManager(
+            HashedTimingWheel timingWheel,
+            MeterRegistry meterRegistry,
+            @Value("${payment.mno.deadline.initial-ms:30000}") long initialDeadlineMillis,
+            @Value("${payment.mno.deadline.min-ms:5000}") long minDeadlineMillis,
+            @Value("${payment.mno.deadline.max-ms:60000}") long maxDeadlineMillis,
+            @Value("${payment.mno.deadline.p99-multiplier:1.5}") double p99Multiplier,
+            @Value("${payment.mno.deadline.window-size:1024}") int windowSize,
+            @Value("${payment.mno.deadline.min-samples:100}") int minSamples) {
+        this.timingWheel = timingWheel;
+        this.latencyTracker = new MnoLatencyTracker(windowSize, minSamples);
+        this.initialDeadlineMillis = initialDeadlineMillis;
+        this.minDeadlineMillis = minDeadlineMillis;
+        this.maxDeadlineMillis = maxDeadlineMillis;
+        this.p99Multiplier = p99Multiplier;
+        Gauge.builder("payment.mno.deadline", this, manager -> manager.currentDeadline().toMillis())
+                .description("Deadline currently applied to MNO calls")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public Duration currentDeadline() {
+        long p99Nanos = latencyTracker.p99Nanos();
+        if (p99Nanos < 0) {
+            return Duration.ofMillis(initialDeadlineMillis);
+        }
+        long adaptive = Math.round(p99Nanos / 1_000_000d * p99Multiplier);
+        return Duration.ofMillis(Math.clamp(adaptive, minDeadlineMillis, maxDeadlineMillis));
+    }
+
+    /**
+     * @return a future that mirrors {@code mnoCall} but completes exceptionally with {@link MnoTimeoutException} if
+     * the call has not finished by the current deadline. {@code mnoCall} is failed with the same exception, so that
+     * whoever tracks it (such as a route's in-flight limit) lets go of it; the MNO itself is not told, and a late
+     * result is simply ignored.
+     */
+    public <T> CompletableFuture<T> withDeadline(CompletableFuture<T> mnoCall) {
+        Duration deadline = currentDeadline();
+        long startNanos = System.nanoTime();
+        CompletableFuture<T> guarded = new CompletableFuture<>();
+        HashedTimingWheel.Timeout timeout = timingWheel.schedule(() -> {
+            MnoTimeoutException timedOut = new MnoTimeoutException(deadline);
+            mnoCall.completeExceptionally(timedOut);
+            guarded.completeExceptionally(timedOut);
+        }, deadline);
+        mnoCall.whenComplete((result, error) -> {
+            timeout.cancel();
+            if (error != null) {
+                guarded.completeExceptionally(error);
+                return;
+            }
+            latencyTracker.record(System.nanoTime() - startNanos);
+            guarded.complete(result);
+        });
+        return guarded;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent MNO call latencies in a fixed ring and periodically derives their 99th percentile.
+ * Recording is a single atomic increment plus an array store; the sort only happens every {@code recomputeEvery}
+ * samples, off the hot path of the other callers.
+ */
+class MnoLatencyTracker {
+    private final AtomicLongArray samples;
+    private final AtomicLong recorded = new AtomicLong();
+    private final int recomputeEvery;
+    private final int minSamples;
+    private volatile long p99Nanos = -1;
+
+    MnoLatencyTracker(int windowSize, int minSamples) {
+        this.samples = new AtomicLongArray(windowSize);
+        this.minSamples = Math.min(minSamples, windowSize);
+        this.recomputeEvery = Math.max(1, windowSize / 16);
+    }
+
+    void record(long latencyNanos) {
+        long n = recorded.getAndIncrement();
+        samples.set((int) (n % samples.length()), latencyNanos);
+        long count = n + 1;
+        if (count >= minSamples && (count == minSamples || count % recomputeEvery == 0)) {
+            recompute(count);
+        }
+    }
+
+    /**
+     * @return the 99th percentile of the recorded window, or {@code -1} until enough samples have been seen.
+     */
+    long p99Nanos() {
+        return p99Nanos;
+    }
+
+    private synchronized void recompute(long count) {
+        int size = (int) Math.min(count, samples.length());
+        long[] window = new long[size];
+        for (int i = 0; i < size; i++) {
+            window[i] = samples.get(i);
+        }
+        Arrays.sort(window);
+        int index = (int) Math.ceil(size * 0.99) - 1;
+        p99Nanos = window[Math.max(0, index)];
+    }
+}
@@ -2,6 +2,7 @@ package com.github.ajharry69.kcb_b2c_payment.mmo;
 
 import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
 
+import java.math.BigDecimal;
 import java.util.concurrent.CompletableFuture;
 
 
@@ -17,4 +18,12 @@ public interface MobileMoneyService {
      * or completes exceptionally if the initial request submission fails catastrophically.
      */
     CompletableFuture<Payment> processB2CPayment(Payment payment);
+
+    /**
+     * Asks the MNO for the balance of the B2C float (the account payouts are paid from).
+     *
+     * @param currency ISO 4217 code of the float to query.
+     * @return A CompletableFuture completing with the balance available for payouts.
+     */
+    CompletableFuture<BigDecimal> queryFloatBalance(String currency);
 }
\ No newline at end of file
@@ -1,70 +1,258 @@
 package com.github.ajharry69.kcb_b2c_payment.mmo;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ajharry69.kcb_b2c_payment.mmo.simulator.ErrorBurst;
+import com.github.ajharry69.kcb_b2c_payment.mmo.simulator.LatencyDistribution;
+import com.github.ajharry69.kcb_b2c_payment.mmo.simulator.OutageMode;
+import com.github.ajharry69.kcb_b2c_payment.mmo.simulator.SimulatorPhase;
+import com.github.ajharry69.kcb_b2c_payment.mmo.simulator.SimulatorScenario;
+import com.github.ajharry69.kcb_b2c_payment.mmo.simulator.ThroughputGate;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.scheduling.HashedTimingWheel;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-
+/**
+ * Simulated MNO gateway for development and capacity testing.
+ * <p>
+ * Responses are delivered by the shared {@link HashedTimingWheel} rather than by sleeping threads, so tens of
+ * thousands of in-flight transactions cost a timeout entry each. Latency distribution, throughput cap, error bursts,
+ * outages and extra callbacks are configured through {@code mock.mno.*} and can be varied over time with a scripted
+ * {@link SimulatorScenario} ({@code mock.mno.scenario}).
+ * <p>
+ * Each currency has a simulated B2C float of {@code mock.mno.float.initial-balance}, debited by successful payouts;
+ * payouts it cannot cover fail with "Insufficient funds".
+ */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class MobileMoneyServiceImpl implements MobileMoneyService {
+    private static final String SYSTEM_UNAVAILABLE = "System unavailable";
+    private static final String INSUFFICIENT_FUNDS = "Insufficient funds";
+    /**
+     * Random failures. "Insufficient funds" is not among them: it is only given when the simulated float runs out.
+     */
+    private static final String[] FAILURE_REASONS = {
+            "Recipient account invalid",
+            "Transaction limit exceeded",
+            "Temporary network error",
+            SYSTEM_UNAVAILABLE,
+            "Duplicate transaction"
+    };
+
+    private final HashedTimingWheel timingWheel;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final ThroughputGate throughputGate = new ThroughputGate();
+    private final AtomicBoolean inErrorBurst = new AtomicBoolean();
+    private final long startNanos = System.nanoTime();
+    /**
+     * Simulated float per currency, in minor units.
+     */
+    private final Map<String, AtomicLong> floats = new ConcurrentHashMap<>();
 
     @Value("${mock.mno.success-rate:0.9}") // Default 90% success rate
     private double successRate;
+    @Value("${mock.mno.latency.distribution:UNIFORM}")
+    private LatencyDistribution.Kind latencyDistribution;
+    @Value("${mock.mno.latency.min-ms:500}")
+    private long latencyMinMs;
+    @Value("${mock.mno.latency.max-ms:3000}")
+    private long latencyMaxMs;
+    @Value("${mock.mno.latency.median-ms:1000}")
+    private long latencyMedianMs;
+    @Value("${mock.mno.latency.sigma:0.5}")
+    private double latencySigma;
+    @Value("${mock.mno.throughput-per-second:0}") // 0 = unlimited
+    private double throughputPerSecond;
+    @Value("${mock.mno.max-queue-ms:5000}")
+    private long maxQueueMs;
+    @Value("${mock.mno.error-burst.enter-probability:0}")
+    private double burstEnterProbability;
+    @Value("${mock.mno.error-burst.exit-probability:0.2}")
+    private double burstExitProbability;
+    @Value("${mock.mno.error-burst.failure-rate:0.9}")
+    private double burstFailureRate;
+    @Value("${mock.mno.outage:NONE}")
+    private OutageMode outage;
+    @Value("${mock.mno.callbacks.duplicate-rate:0}")
+    private double duplicateCallbackRate;
+    @Value("${mock.mno.callbacks.duplicate-delay-ms:2000}")
+    private long duplicateCallbackDelayMs;
+    @Value("${mock.mno.callbacks.late-rate:0}")
+    private double lateCallbackRate;
+    @Value("${mock.mno.callbacks.late-delay-ms:120000}")
+    private long lateCallbackDelayMs;
+    @Value("${mock.mno.scenario:}")
+    private String scenarioLocation;
+    @Value("${mock.mno.float.initial-balance:1000000000}")
+    private BigDecimal initialFloatBalance;
+
+    private SimulatorPhase baseConditions;
+    private SimulatorScenario scenario;
+
+    @PostConstruct
+    void init() {
+        baseConditions = new SimulatorPhase(
+                "base",
+                0,
+                successRate,
+                new LatencyDistribution(latencyDistribution, latencyMinMs, latencyMaxMs, latencyMedianMs, latencySigma),
+                throughputPerSecond,
+                new ErrorBurst(burstEnterProbability, burstExitProbability, burstFailureRate),
+                outage,
+                duplicateCallbackRate,
+                lateCallbackRate
+        );
+        if (!scenarioLocation.isBlank()) {
+            scenario = SimulatorScenario.load(resourceLoader.getResource(scenarioLocation), objectMapper);
+            log.info("MOCK MNO: Loaded scenario '{}' with {} phases from {}",
+                    scenario.name(), scenario.phases().size(), scenarioLocation);
+        }
+    }
 
     @Override
     public CompletableFuture<Payment> processB2CPayment(Payment payment) {
-        log.info("MOCK MNO: Received payment request for transactionId: {}", payment.getTransactionId());
-
-        // Simulate network delay and processing time
-        long delayMillis = ThreadLocalRandom.current().nextLong(500, 3000); // 0.5 to 3 seconds delay
-
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                log.debug("MOCK MNO: Simulating processing delay of {} ms for transactionId: {}", delayMillis, payment.getTransactionId());
-                TimeUnit.MILLISECONDS.sleep(delayMillis);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("MOCK MNO: Simulation interrupted for transactionId: {}", payment.getTransactionId(), e);
-                payment.setStatus(PaymentStatus.FAILED);
-                payment.setFailureReason("Processing interrupted");
-                return payment;
+        SimulatorPhase conditions = currentConditions();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        log.info("MOCK MNO: Received payment request for transactionId: {} (phase: {})",
+                payment.getTransactionId(), conditions.name());
+
+        CompletableFuture<Payment> response = new CompletableFuture<>();
+        switch (conditions.outage()) {
+            case HANG -> {
+                log.warn("MOCK MNO: Outage, request for transactionId: {} will not be answered", payment.getTransactionId());
+                if (random.nextDouble() < conditions.lateCallbackRate()) {
+                    Payment outcome = decideOutcome(payment, conditions, random);
+                    publishCallback(outcome, lateCallbackDelayMs);
+                }
+                return response;
+            }
+            case FAIL_FAST -> {
+                respond(response, failed(payment, SYSTEM_UNAVAILABLE), conditions.latency().minMs(), conditions);
+                return response;
+            }
+            case NONE -> {
+            }
+        }
+
+        long queueNanos = throughputGate.admit(conditions.throughputPerSecond(), TimeUnit.MILLISECONDS.toNanos(maxQueueMs));
+        if (queueNanos < 0) {
+            log.warn("MOCK MNO: Throughput cap reached, rejecting transactionId: {}", payment.getTransactionId());
+            respond(response, failed(payment, SYSTEM_UNAVAILABLE), conditions.latency().minMs(), conditions);
+            return response;
+        }
+
+        long delayMillis = conditions.latency().sampleMillis(random) + TimeUnit.NANOSECONDS.toMillis(queueNanos);
+        log.debug("MOCK MNO: Simulating processing delay of {} ms for transactionId: {}", delayMillis, payment.getTransactionId());
+        respond(response, decideOutcome(payment, conditions, random), delayMillis, conditions);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> queryFloatBalance(String currency) {
+        CompletableFuture<BigDecimal> response = new CompletableFuture<>();
+        timingWheel.schedule(() -> response.complete(BigDecimal.valueOf(floatOf(currency).get(), 2)),
+                Duration.ofMillis(currentConditions().latency().minMs()));
+        return response;
+    }
+
+    private AtomicLong floatOf(String currency) {
+        return floats.computeIfAbsent(currency,
+                c -> new AtomicLong(initialFloatBalance.movePointRight(2).longValue()));
+    }
+
+    private SimulatorPhase currentConditions() {
+        if (scenario == null) {
+            return baseConditions;
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return baseConditions.overriddenBy(scenario.phaseAt(elapsedMs));
+    }
+
+    private void respond(CompletableFuture<Payment> response, Payment outcome, long delayMillis, SimulatorPhase conditions) {
+        timingWheel.schedule(() -> {
+            response.complete(outcome);
+            if (ThreadLocalRandom.current().nextDouble() < conditions.duplicateCallbackRate()) {
+                publishCallback(outcome, duplicateCallbackDelayMs);
             }
+        }, Duration.ofMillis(delayMillis));
+    }
+
+    private void publishCallback(Payment outcome, long delayMillis) {
+        timingWheel.schedule(() -> {
+            log.info("MOCK MNO: Sending {} callback for transactionId: {}", outcome.getStatus(), outcome.getTransactionId());
+            eventPublisher.publishEvent(new MnoCallbackEvent(outcome));
+        }, Duration.ofMillis(delayMillis));
+    }
 
-            // Simulate success or failure based on successRate
-            boolean success = ThreadLocalRandom.current().nextDouble(0, 1) < successRate;
-
-            if (success) {
-                log.info("MOCK MNO: Simulating SUCCESS for transactionId: {}", payment.getTransactionId());
-                payment.setStatus(PaymentStatus.SUCCESSFUL);
-                payment.setMnoReference("MOCK_MNO_" + UUID.randomUUID().toString().substring(0, 12)); // Generate mock reference
-                payment.setFailureReason(null);
-            } else {
-                log.warn("MOCK MNO: Simulating FAILURE for transactionId: {}", payment.getTransactionId());
-                payment.setStatus(PaymentStatus.FAILED);
-                payment.setFailureReason(generateRandomFailureReason());
-                payment.setMnoReference(null);
+    private Payment decideOutcome(Payment payment, SimulatorPhase conditions, ThreadLocalRandom random) {
+        ErrorBurst errorBurst = conditions.errorBurst();
+        boolean burst = inErrorBurst.get();
+        if (burst && random.nextDouble() < errorBurst.exitProbability()) {
+            inErrorBurst.set(false);
+            log.info("MOCK MNO: Error burst ended");
+        } else if (!burst && random.nextDouble() < errorBurst.enterProbability()) {
+            inErrorBurst.set(true);
+            burst = true;
+            log.info("MOCK MNO: Error burst started");
+        }
+
+        double failureChance = burst ? errorBurst.failureRate() : 1 - conditions.successRate();
+        if (random.nextDouble() >= failureChance) {
+            long amount = payment.getAmount().movePointRight(2).longValue();
+            long before = floatOf(payment.getCurrency())
+                    .getAndUpdate(balance -> balance < amount ? balance : balance - amount);
+            if (before < amount) {
+                log.warn("MOCK MNO: Float cannot cover transactionId: {}", payment.getTransactionId());
+                return failed(payment, INSUFFICIENT_FUNDS);
             }
-            return payment;
-        });
+            log.info("MOCK MNO: Simulating SUCCESS for transactionId: {}", payment.getTransactionId());
+            Payment outcome = copyOf(payment, PaymentStatus.SUCCESSFUL);
+            outcome.setMnoReference("MOCK_MNO_" + UUID.randomUUID().toString().substring(0, 12)); // Generate mock reference
+            return outcome;
+        }
+        String reason = burst ? SYSTEM_UNAVAILABLE : FAILURE_REASONS[random.nextInt(FAILURE_REASONS.length)];
+        log.warn("MOCK MNO: Simulating FAILURE ({}) for transactionId: {}", reason, payment.getTransactionId());
+        return failed(payment, reason);
+    }
+
+    private static Payment failed(Payment payment, String reason) {
+        Payment outcome = copyOf(payment, PaymentStatus.FAILED);
+        outcome.setFailureReason(reason);
+        return outcome;
     }
 
-    private String generateRandomFailureReason() {
-        String[] reasons = {
-                "Insufficient funds",
-                "Recipient account invalid",
-                "Transaction limit exceeded",
-                "Temporary network error",
-                "System unavailable",
-                "Duplicate transaction"
-        };
-        return reasons[ThreadLocalRandom.current().nextInt(reasons.length)];
+    /**
+     * The response is built on a detached copy: it is completed on the timing wheel's thread, long after the caller's
+     * persistence context may have moved on.
+     */
+    private static Payment copyOf(Payment payment, PaymentStatus status) {
+        return Payment.builder()
+                .id(payment.getId())
+                .transactionId(payment.getTransactionId())
+                .recipientPhoneNumber(payment.getRecipientPhoneNumber())
+                .amount(payment.getAmount())
+                .currency(payment.getCurrency())
+                .status(status)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,176 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.routing;
+
+import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * One operator behind the {@link MnoRouter}: its {@link MobileMoneyService}, a small executor that submits calls to it
+ * and a limit on how many calls may be in flight at once, so a slow operator can only ever tie up its own share of the
+ * dispatch workers.
+ * <p>
+ * A route is considered down after {@code downAfterFailures} consecutive calls that failed with an error, hit the
+ * deadline or were reported as unavailable, and stays down for {@code downFor}. It is then tried again; the first
+ * success closes it, another failure takes it straight back down.
+ * <p>
+ * Publishes {@code mno.route.in-flight}, {@code mno.route.up}, {@code mno.route.calls} (by {@code outcome}) and
+ * {@code mno.route.rejected} (by {@code reason}), tagged with the {@code route} name.
+ */
+class MnoRoute implements AutoCloseable {
+    private final String name;
+    private final MobileMoneyService service;
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final int downAfterFailures;
+    private final long downForNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final Map<Outcome, Timer> callTimers = new EnumMap<>(Outcome.class);
+    private final Counter saturated;
+    private final Counter down;
+    private volatile long downUntilNanos;
+    private volatile boolean isDown;
+    private MnoRoute failover;
+
+    MnoRoute(String name, MobileMoneyService service, int maxConcurrency, int threads, int downAfterFailures,
+             Duration downFor, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        if (maxConcurrency < 1 || threads < 1 || downAfterFailures < 1) {
+            throw new IllegalArgumentException(
+                    "Route " + name + " needs a positive concurrency, thread count and failure threshold");
+        }
+        this.name = name;
+        this.service = service;
+        this.executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("Mno-" + name + "-", 1).daemon().factory());
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.downAfterFailures = downAfterFailures;
+        this.downForNanos = downFor.toNanos();
+        this.nanoClock = nanoClock;
+        Gauge.builder("mno.route.in-flight", this, MnoRoute::inFlight)
+                .description("MNO calls currently in flight on the route")
+                .tag("route", name)
+                .register(meterRegistry);
+        Gauge.builder("mno.route.up", this, route -> route.isUp() ? 1 : 0)
+                .description("Whether the route is taking traffic (1) or considered down (0)")
+                .tag("route", name)
+                .register(meterRegistry);
+        for (Outcome outcome : Outcome.values()) {
+            callTimers.put(outcome, Timer.builder("mno.route.calls")
+                    .description("MNO calls made through the route, by how they ended")
+                    .tag("route", name)
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+        this.saturated = rejectedCounter(meterRegistry, "saturated");
+        this.down = rejectedCounter(meterRegistry, "down");
+    }
+
+    String name() {
+        return name;
+    }
+
+    MobileMoneyService service() {
+        return service;
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    MnoRoute failover() {
+        return failover;
+    }
+
+    void setFailover(MnoRoute failover) {
+        this.failover = failover;
+    }
+
+    int inFlight() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    boolean isUp() {
+        return !isDown || nanoClock.getAsLong() - downUntilNanos >= 0;
+    }
+
+    /**
+     * Takes one of the route's in-flight slots if the route is up and has one free, counting the rejection otherwise.
+     * A successful call must be paired with {@link #release}.
+     */
+    boolean tryAcquire() {
+        if (!isUp()) {
+            down.increment();
+            return false;
+        }
+        if (!permits.tryAcquire()) {
+            saturated.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Frees the slot taken by {@link #tryAcquire} and feeds the call's outcome into the route's health.
+     */
+    void release(long startNanos, Outcome outcome) {
+        permits.release();
+        callTimers.get(outcome).record(nanoClock.getAsLong() - startNanos, TimeUnit.NANOSECONDS);
+        if (outcome == Outcome.ANSWERED) {
+            consecutiveFailures.set(0);
+            isDown = false;
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= downAfterFailures) {
+            downUntilNanos = nanoClock.getAsLong() + downForNanos;
+            isDown = true;
+        }
+    }
+
+    long now() {
+        return nanoClock.getAsLong();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("mno.route.rejected")
+                .description("Payments the route turned away without calling the MNO")
+                .tag("route", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    enum Outcome {
+        /**
+         * The operator processed the call, whether or not the payment went through.
+         */
+        ANSWERED,
+        /**
+         * The operator reported itself unavailable.
+         */
+        UNAVAILABLE,
+        /**
+         * The call failed or missed its deadline.
+         */
+        ERROR
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.routing;
+
+import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Sends each payment to the operator that serves its recipient, looked up by the longest matching phone number prefix
+ * in a {@link PrefixTrie}, falling back to a default route for numbers no prefix covers.
+ * <p>
+ * Every route has its own executor and in-flight limit (see {@link MnoRoute}). When a route is down or already at its
+ * limit, the payment goes to the route's failover, if one is configured and can take it; otherwise it fails straight
+ * away with {@link #ROUTE_UNAVAILABLE}, which the retry policy treats as transient, instead of queueing behind the
+ * slow operator.
+ */
+@Slf4j
+public class MnoRouter implements MobileMoneyService, AutoCloseable {
+    public static final String ROUTE_UNAVAILABLE = "System unavailable";
+    public static final String NO_ROUTE = "No MNO route for recipient";
+
+    private final PrefixTrie<MnoRoute> prefixes;
+    private final MnoRoute defaultRoute;
+    private final Collection<MnoRoute> routes;
+    private final Set<String> unavailableReasons;
+
+    /**
+     * @param defaultRoute       the route for numbers no prefix matches, or {@code null} to fail them with
+     *                           {@link #NO_ROUTE}.
+     * @param unavailableReasons failure reasons with which an operator says it is unavailable rather than declining the
+     *                           payment. They count towards taking the route down.
+     */
+    MnoRouter(PrefixTrie<MnoRoute> prefixes, MnoRoute defaultRoute, Collection<MnoRoute> routes,
+              String[] unavailableReasons) {
+        this.prefixes = prefixes;
+        this.defaultRoute = defaultRoute;
+        this.routes = List.copyOf(routes);
+        this.unavailableReasons = Arrays.stream(unavailableReasons)
+                .map(MnoRouter::normalize)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public CompletableFuture<Payment> processB2CPayment(Payment payment) {
+        MnoRoute primary = routeFor(payment.getRecipientPhoneNumber());
+        if (primary == null) {
+            log.warn("No MNO route for the recipient of transactionId: {}", payment.getTransactionId());
+            return CompletableFuture.completedFuture(failed(payment, NO_ROUTE));
+        }
+
+        MnoRoute route = primary;
+        if (!route.tryAcquire()) {
+            route = primary.failover();
+            if (route == null || !route.tryAcquire()) {
+                log.debug("MNO route {} cannot take transactionId: {} (in flight: {})",
+                        primary.name(), payment.getTransactionId(), primary.inFlight());
+                return CompletableFuture.completedFuture(failed(payment, ROUTE_UNAVAILABLE));
+            }
+            log.info("MNO route {} is down or saturated; failing transactionId: {} over to {}",
+                    primary.name(), payment.getTransactionId(), route.name());
+        }
+        return call(route, payment);
+    }
+
+    /**
+     * Sums the float balances of the distinct operators behind the routes. Each operator pays from its own float, so
+     * the total can overstate what one operator can cover; it never understates it, so no payment is held that the
+     * operators together could pay.
+     */
+    @Override
+    public CompletableFuture<BigDecimal> queryFloatBalance(String currency) {
+        Set<MobileMoneyService> services = Collections.newSetFromMap(new IdentityHashMap<>());
+        routes.forEach(route -> services.add(route.service()));
+        List<CompletableFuture<BigDecimal>> balances = services.stream()
+                .map(service -> service.queryFloatBalance(currency))
+                .toList();
+        return CompletableFuture.allOf(balances.toArray(CompletableFuture[]::new))
+                .thenApply(done -> balances.stream()
+                        .map(CompletableFuture::join)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add));
+    }
+
+    /**
+     * @return the route payments to {@code phoneNumber} take before any failover, or {@code null} if there is none.
+     */
+    MnoRoute routeFor(String phoneNumber) {
+        MnoRoute route = phoneNumber == null ? null : prefixes.longestMatch(phoneNumber);
+        return route == null ? defaultRoute : route;
+    }
+
+    @Override
+    public void close() {
+        routes.forEach(MnoRoute::close);
+    }
+
+    private CompletableFuture<Payment> call(MnoRoute route, Payment payment) {
+        long startNanos = route.now();
+        // Completed by the MNO, or exceptionally by the caller's deadline; either way the slot is handed back
+        CompletableFuture<Payment> routed = new CompletableFuture<>();
+        routed.whenComplete((result, error) -> route.release(startNanos, outcomeOf(result, error)));
+        try {
+            route.executor().execute(() -> {
+                try {
+                    route.service().processB2CPayment(payment).whenComplete((result, error) -> {
+                        if (error != null) {
+                            routed.completeExceptionally(error);
+                        } else {
+                            routed.complete(result);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    routed.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            routed.completeExceptionally(e);
+        }
+        return routed;
+    }
+
+    private MnoRoute.Outcome outcomeOf(Payment result, Throwable error) {
+        if (error != null) {
+            return MnoRoute.Outcome.ERROR;
+        }
+        if (result.getStatus() == PaymentStatus.FAILED && result.getFailureReason() != null
+                && unavailableReasons.contains(normalize(result.getFailureReason()))) {
+            return MnoRoute.Outcome.UNAVAILABLE;
+        }
+        return MnoRoute.Outcome.ANSWERED;
+    }
+
+    private static Payment failed(Payment payment, String reason) {
+        return Payment.builder()
+                .id(payment.getId())
+                .transactionId(payment.getTransactionId())
+                .recipientPhoneNumber(payment.getRecipientPhoneNumber())
+                .amount(payment.getAmount())
+                .currency(payment.getCurrency())
+                .status(PaymentStatus.FAILED)
+                .failureReason(reason)
+                .build();
+    }
+
+    private static String normalize(String reason) {
+        return reason.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.routing;
+
+import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+@Slf4j
+public class MnoRoutingConfig {
+
+    /**
+     * Routes are declared as {@code route=bean} pairs in {@code payment.mno.routing.routes}, naming the
+     * {@link MobileMoneyService} bean each operator is reached through, and recipients are matched to them by
+     * {@code prefix=route} pairs in {@code payment.mno.routing.prefixes}. With no routes declared, every payment goes
+     * through a single {@code default} route to the only {@link MobileMoneyService} bean.
+     * <p>
+     * {@code payment.mno.routing.max-concurrency} ({@code route=limit}) caps a route's in-flight calls; keep the caps
+     * below the dispatch worker count so a slow operator cannot occupy every worker.
+     * {@code payment.mno.routing.failover} ({@code route=secondary}) names where a route's payments go while it is
+     * down or saturated.
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    public MnoRouter mnoRouter(
+            Map<String, MobileMoneyService> services,
+            MeterRegistry meterRegistry,
+            @Value("${payment.mno.routing.routes:}") String[] routes,
+            @Value("${payment.mno.routing.prefixes:}") String[] prefixes,
+            @Value("${payment.mno.routing.default-route:}") String defaultRoute,
+            @Value("${payment.mno.routing.max-concurrency:}") String[] maxConcurrency,
+            @Value("${payment.mno.routing.default-max-concurrency:8}") int defaultMaxConcurrency,
+            @Value("${payment.mno.routing.threads-per-route:2}") int threadsPerRoute,
+            @Value("${payment.mno.routing.failover:}") String[] failover,
+            @Value("${payment.mno.routing.unavailable-reasons:System unavailable}") String[] unavailableReasons,
+            @Value("${payment.mno.routing.down-after-failures:5}") int downAfterFailures,
+            @Value("${payment.mno.routing.down-for-ms:30000}") long downForMillis) {
+        Map<String, String> routeServices = parsePairs("payment.mno.routing.routes", routes);
+        if (routeServices.isEmpty()) {
+            if (services.size() != 1) {
+                throw new IllegalStateException("payment.mno.routing.routes must name one of " + services.keySet());
+            }
+            routeServices.put("default", services.keySet().iterator().next());
+            defaultRoute = "default";
+        }
+        Map<String, Integer> limits = new HashMap<>();
+        parsePairs("payment.mno.routing.max-concurrency", maxConcurrency)
+                .forEach((route, limit) -> limits.put(route, Integer.parseInt(limit)));
+
+        Map<String, MnoRoute> byName = new LinkedHashMap<>();
+        routeServices.forEach((route, bean) -> {
+            MobileMoneyService service = services.get(bean);
+            if (service == null) {
+                throw new IllegalStateException(
+                        "MNO route " + route + " names unknown bean " + bean + "; expected one of " + services.keySet());
+            }
+            byName.put(route, new MnoRoute(route, service, limits.getOrDefault(route, defaultMaxConcurrency),
+                    threadsPerRoute, downAfterFailures, Duration.ofMillis(downForMillis), meterRegistry, System::nanoTime));
+        });
+        parsePairs("payment.mno.routing.failover", failover)
+                .forEach((route, secondary) -> route(byName, route).setFailover(route(byName, secondary)));
+
+        Map<String, MnoRoute> routesByPrefix = new HashMap<>();
+        parsePairs("payment.mno.routing.prefixes", prefixes)
+                .forEach((prefix, route) -> routesByPrefix.put(prefix, route(byName, route)));
+        PrefixTrie<MnoRoute> trie = PrefixTrie.compile(routesByPrefix);
+        log.info("Routing MNO calls over {} routes with {} prefixes ({} trie nodes)",
+                byName.size(), routesByPrefix.size(), trie.nodeCount());
+        return new MnoRouter(trie, defaultRoute.isBlank() ? null : route(byName, defaultRoute), byName.values(),
+                unavailableReasons);
+    }
+
+    private static MnoRoute route(Map<String, MnoRoute> routes, String name) {
+        MnoRoute route = routes.get(name);
+        if (route == null) {
+            throw new IllegalStateException("Unknown MNO route " + name + "; declared routes are " + routes.keySet());
+        }
+        return route;
+    }
+
+    private static Map<String, String> parsePairs(String property, String[] entries) {
+        Map<String, String> pairs = new LinkedHashMap<>();
+        for (String entry : entries) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException(property + " entries must look like key=value: " + entry);
+            }
+            String key = entry.substring(0, separator).trim();
+            if (pairs.put(key, entry.substring(separator + 1).trim()) != null) {
+                throw new IllegalArgumentException(property + " lists " + key + " more than once");
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.routing;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Longest-prefix lookup over phone number digits, compiled once into flat arrays: node {@code n}'s child for digit
+ * {@code d} is {@code children[n * 10 + d]}, {@code 0} meaning none (the root is never a child). A lookup is one array
+ * read per digit with no allocation, however many prefixes are configured.
+ * <p>
+ * Prefixes and numbers may start with {@code +}, which is ignored; lookups stop at the first other non-digit.
+ */
+public final class PrefixTrie<V> {
+    private static final int RADIX = 10;
+
+    private final int[] children;
+    private final Object[] values;
+
+    private PrefixTrie(int[] children, Object[] values) {
+        this.children = children;
+        this.values = values;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a prefix is empty or contains anything but digits after an optional
+     *                                  {@code +}.
+     */
+    public static <V> PrefixTrie<V> compile(Map<String, V> prefixes) {
+        int[] children = new int[RADIX * 16];
+        Object[] values = new Object[16];
+        int nodes = 1;
+        for (Map.Entry<String, V> entry : prefixes.entrySet()) {
+            String prefix = entry.getKey();
+            int start = prefix.startsWith("+") ? 1 : 0;
+            if (prefix.length() == start) {
+                throw new IllegalArgumentException("Prefix must contain at least one digit: '" + prefix + "'");
+            }
+            int node = 0;
+            for (int i = start; i < prefix.length(); i++) {
+                int digit = prefix.charAt(i) - '0';
+                if (digit < 0 || digit >= RADIX) {
+                    throw new IllegalArgumentException("Prefix must only contain digits: '" + prefix + "'");
+                }
+                int slot = node * RADIX + digit;
+                if (children[slot] == 0) {
+                    if (nodes == values.length) {
+                        values = Arrays.copyOf(values, nodes * 2);
+                        children = Arrays.copyOf(children, nodes * 2 * RADIX);
+                    }
+                    children[slot] = nodes++;
+                }
+                node = children[slot];
+            }
+            values[node] = entry.getValue();
+        }
+        return new PrefixTrie<>(Arrays.copyOf(children, nodes * RADIX), Arrays.copyOf(values, nodes));
+    }
+
+    /**
+     * @return the value of the longest configured prefix of {@code number}, or {@code null} if none matches.
+     */
+    @SuppressWarnings("unchecked")
+    public V longestMatch(CharSequence number) {
+        Object match = null;
+        int node = 0;
+        int i = number.length() > 0 && number.charAt(0) == '+' ? 1 : 0;
+        for (; i < number.length(); i++) {
+            int digit = number.charAt(i) - '0';
+            if (digit < 0 || digit >= RADIX) {
+                break;
+            }
+            node = children[node * RADIX + digit];
+            if (node == 0) {
+                break;
+            }
+            if (values[node] != null) {
+                match = values[node];
+            }
+        }
+        return (V) match;
+    }
+
+    public int nodeCount() {
+        return values.length;
+    }
+}
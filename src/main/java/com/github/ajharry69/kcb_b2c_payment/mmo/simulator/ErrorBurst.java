@@ -0,0 +1,13 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.simulator;
+
+/**
+ * Two-state (Gilbert-Elliott) error model: each call may tip a healthy gateway into a burst, during which most calls
+ * fail, and each call during a burst may end it.
+ *
+ * @param enterProbability chance per call of a healthy gateway entering a burst.
+ * @param exitProbability  chance per call of a burst ending.
+ * @param failureRate      share of calls that fail while in a burst.
+ */
+public record ErrorBurst(double enterProbability, double exitProbability, double failureRate) {
+    public static final ErrorBurst NONE = new ErrorBurst(0, 1, 0);
+}
@@ -0,0 +1,29 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.simulator;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Shape of simulated MNO response times.
+ *
+ * @param kind     sampling strategy.
+ * @param minMs    lower bound for {@link Kind#UNIFORM}; floor for the other kinds.
+ * @param maxMs    upper bound for {@link Kind#UNIFORM}; cap on the long tail for {@link Kind#LOG_NORMAL}.
+ * @param medianMs median of {@link Kind#LOG_NORMAL}; constant value of {@link Kind#FIXED}.
+ * @param sigma    shape of {@link Kind#LOG_NORMAL}; larger values give a longer tail.
+ */
+public record LatencyDistribution(Kind kind, long minMs, long maxMs, long medianMs, double sigma) {
+    public enum Kind {
+        FIXED,
+        UNIFORM,
+        LOG_NORMAL
+    }
+
+    public long sampleMillis(RandomGenerator random) {
+        long sample = switch (kind) {
+            case FIXED -> medianMs;
+            case UNIFORM -> maxMs > minMs ? random.nextLong(minMs, maxMs) : minMs;
+            case LOG_NORMAL -> Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+        };
+        return Math.clamp(sample, minMs, Math.max(minMs, maxMs));
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.simulator;
+
+public enum OutageMode {
+    NONE,
+    /**
+     * Calls are rejected quickly with "System unavailable".
+     */
+    FAIL_FAST,
+    /**
+     * Calls are accepted but never answered, as when the gateway's backend is down behind a healthy load balancer.
+     */
+    HANG
+}
@@ -0,0 +1,40 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.simulator;
+
+import static java.util.Objects.requireNonNullElse;
+
+/**
+ * One step of a {@link SimulatorScenario}. Every field except {@code durationMs} is optional; {@code null} keeps the
+ * value configured through {@code mock.mno.*}.
+ */
+public record SimulatorPhase(
+        String name,
+        long durationMs,
+        Double successRate,
+        LatencyDistribution latency,
+        Double throughputPerSecond,
+        ErrorBurst errorBurst,
+        OutageMode outage,
+        Double duplicateCallbackRate,
+        Double lateCallbackRate
+) {
+
+    /**
+     * @return these settings with every non-null field of {@code phase} applied on top.
+     */
+    public SimulatorPhase overriddenBy(SimulatorPhase phase) {
+        if (phase == null) {
+            return this;
+        }
+        return new SimulatorPhase(
+                phase.name(),
+                phase.durationMs(),
+                requireNonNullElse(phase.successRate(), successRate),
+                requireNonNullElse(phase.latency(), latency),
+                requireNonNullElse(phase.throughputPerSecond(), throughputPerSecond),
+                requireNonNullElse(phase.errorBurst(), errorBurst),
+                requireNonNullElse(phase.outage(), outage),
+                requireNonNullElse(phase.duplicateCallbackRate(), duplicateCallbackRate),
+                requireNonNullElse(phase.lateCallbackRate(), lateCallbackRate)
+        );
+    }
+}
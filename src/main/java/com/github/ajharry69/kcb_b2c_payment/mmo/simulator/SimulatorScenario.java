@@ -0,0 +1,48 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * A scripted timeline of gateway behaviour, e.g. "steady for a minute, then an error burst, then a 15 s outage".
+ *
+ * @param repeat whether the timeline restarts after its last phase; otherwise the base configuration applies again.
+ */
+public record SimulatorScenario(String name, boolean repeat, List<SimulatorPhase> phases) {
+
+    public static SimulatorScenario load(Resource resource, ObjectMapper objectMapper) {
+        try (InputStream in = resource.getInputStream()) {
+            SimulatorScenario scenario = objectMapper.readValue(in, SimulatorScenario.class);
+            if (scenario.phases() == null || scenario.phases().isEmpty()) {
+                throw new IllegalArgumentException("MNO simulator scenario " + resource + " has no phases");
+            }
+            return scenario;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load MNO simulator scenario " + resource, e);
+        }
+    }
+
+    /**
+     * @return the phase active {@code elapsedMs} after the simulator started, or {@code null} if the scenario has
+     * finished.
+     */
+    public SimulatorPhase phaseAt(long elapsedMs) {
+        long total = phases.stream().mapToLong(SimulatorPhase::durationMs).sum();
+        if (total <= 0 || (!repeat && elapsedMs >= total)) {
+            return null;
+        }
+        long offset = elapsedMs % total;
+        for (SimulatorPhase phase : phases) {
+            if (offset < phase.durationMs()) {
+                return phase;
+            }
+            offset -= phase.durationMs();
+        }
+        return null;
+    }
+}
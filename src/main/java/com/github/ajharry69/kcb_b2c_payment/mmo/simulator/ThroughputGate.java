@@ -0,0 +1,34 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Models a gateway that accepts at most {@code permitsPerSecond} requests and queues the excess. Each request is
+ * handed the next free slot; a request whose slot lies further ahead than the queue allows is rejected. Lock-free: a
+ * single CAS on the next free slot.
+ */
+public class ThroughputGate {
+    private final AtomicLong nextFreeSlotNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * @return nanoseconds the request must wait in the gateway's queue, or {@code -1} if the queue is full.
+     */
+    public long admit(double permitsPerSecond, long maxQueueNanos) {
+        if (permitsPerSecond <= 0) {
+            return 0;
+        }
+        long intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        while (true) {
+            long now = System.nanoTime();
+            long next = nextFreeSlotNanos.get();
+            long slot = Math.max(now, next);
+            long wait = slot - now;
+            if (wait > maxQueueNanos) {
+                return -1;
+            }
+            if (nextFreeSlotNanos.compareAndSet(next, slot + intervalNanos)) {
+                return wait;
+            }
+        }
+    }
+}
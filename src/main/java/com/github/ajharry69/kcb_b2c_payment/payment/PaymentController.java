@@ -1,16 +1,36 @@
 package com.github.ajharry69.kcb_b2c_payment.payment;
 
+import com.github.ajharry69.kcb_b2c_payment.concurrent.SingleFlight;
+import com.github.ajharry69.kcb_b2c_payment.exceptions.DuplicateTransactionException;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupResult;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentReport;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRollupRebuild;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentStats;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentVersion;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import com.github.ajharry69.kcb_b2c_payment.payment.rollup.PaymentReports;
+import com.github.ajharry69.kcb_b2c_payment.payment.rollup.ReportPeriod;
+import com.github.ajharry69.kcb_b2c_payment.payment.stats.PaymentStatistics;
+import com.github.ajharry69.kcb_b2c_payment.payment.validation.PaymentRequestValidator;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -18,13 +38,37 @@ import java.util.UUID;
 @Slf4j
 @RequestMapping("/api/v1/payments")
 public class PaymentController {
+    /**
+     * Scope a client needs for its {@code HIGH} payments to go through the high-priority lane. Without it they are sent
+     * as {@code NORMAL}, so a bulk client cannot jump the queue and take the reserved workers by marking everything
+     * urgent.
+     */
+    static final String PRIORITY_SCOPE = "SCOPE_payment.priority";
+
     private final PaymentService paymentService;
+    private final PaymentRequestValidator paymentRequestValidator;
+    private final PaymentStatistics paymentStatistics;
+    private final PaymentReports paymentReports;
+    /**
+     * Client retry storms send the same initiation several times within milliseconds. Concurrent identical requests
+     * from one client share a single execution (and its response) instead of racing on the insert; a different request
+     * reusing the client's {@code transactionId} meanwhile is a duplicate and gets a 409.
+     */
+    private final SingleFlight<Initiation, PaymentResponse> initiations = new SingleFlight<>();
 
     @PostMapping
     @PreAuthorize("hasAuthority('SCOPE_payment.initiate')")
-    public ResponseEntity<PaymentResponse> initiatePayment(@Valid @RequestBody PaymentRequest paymentRequest) {
+    public ResponseEntity<PaymentResponse> initiatePayment(@RequestBody PaymentRequest paymentRequest, Principal principal) {
         log.info("Received payment initiation request for transactionId: {}", paymentRequest.transactionId());
-        PaymentResponse response = paymentService.initiatePayment(paymentRequest);
+        PaymentRequest canonicalRequest =
+                withPermittedPriority(paymentRequestValidator.validate(paymentRequest), principal);
+        // The JWT subject; MNO work is queued fairly between clients
+        String clientId = principal == null ? null : principal.getName();
+        PaymentResponse response = initiations.execute(
+                new Initiation(clientId, canonicalRequest.transactionId()),
+                canonicalRequest,
+                () -> paymentService.initiatePayment(canonicalRequest, clientId),
+                () -> new DuplicateTransactionException(canonicalRequest.transactionId()));
 
         URI location = ServletUriComponentsBuilder
                 .fromCurrentRequest()
@@ -36,19 +80,135 @@ public class PaymentController {
         return ResponseEntity.accepted().location(location).body(response);
     }
 
+    @PostMapping("/lookup")
+    @PreAuthorize("hasAuthority('SCOPE_payment.read')")
+    public ResponseEntity<List<PaymentLookupResult>> lookupPayments(@Valid @RequestBody PaymentLookupRequest lookupRequest) {
+        log.info("Received request to look up {} payments by {}", lookupRequest.keys().size(), lookupRequest.lookupBy());
+        List<PaymentLookupResult> results = paymentService.lookupPayments(lookupRequest);
+        return ResponseEntity.ok(results);
+    }
+
+    /**
+     * Served from in-memory counters; never touches the database.
+     */
+    @GetMapping("/stats")
+    @PreAuthorize("hasAuthority('SCOPE_payment.read')")
+    public ResponseEntity<PaymentStats> getPaymentStats(@RequestParam(defaultValue = "5") int windowMinutes) {
+        return ResponseEntity.ok(paymentStatistics.snapshot(windowMinutes));
+    }
+
+    /**
+     * Served from the hourly {@code payment_rollups}; never scans the {@code payments} table.
+     */
+    @GetMapping("/reports")
+    @PreAuthorize("hasAuthority('SCOPE_payment.read')")
+    public ResponseEntity<PaymentReport> getPaymentReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "DAY") ReportPeriod period) {
+        return ResponseEntity.ok(paymentReports.report(from, to, period));
+    }
+
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasAuthority('SCOPE_payment.admin')")
+    public ResponseEntity<PaymentRollupRebuild> rebuildPaymentRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Received request to rebuild payment rollups from {} to {}", from, to);
+        return ResponseEntity.ok(paymentReports.rebuild(from, to));
+    }
+
+    /**
+     * Sends a payment held as a near-duplicate on to the MNO.
+     */
+    @PostMapping("/{id}/release")
+    @PreAuthorize("hasAuthority('SCOPE_payment.admin')")
+    public ResponseEntity<PaymentResponse> releaseHeldPayment(@PathVariable UUID id) {
+        log.info("Received request to release held payment ID: {}", id);
+        return ResponseEntity.ok(paymentService.releaseHeldPayment(id));
+    }
+
+    @PostMapping("/{id}/reject")
+    @PreAuthorize("hasAuthority('SCOPE_payment.admin')")
+    public ResponseEntity<PaymentResponse> rejectHeldPayment(@PathVariable UUID id) {
+        log.info("Received request to reject held payment ID: {}", id);
+        return ResponseEntity.ok(paymentService.rejectHeldPayment(id));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAuthority('SCOPE_payment.read')")
-    public ResponseEntity<PaymentResponse> getPaymentById(@PathVariable UUID id) {
+    public ResponseEntity<PaymentResponse> getPaymentById(@PathVariable UUID id, WebRequest webRequest) {
         log.info("Received request to get payment by ID: {}", id);
+        if (isConditional(webRequest) && isNotModified(paymentService.getPaymentVersionById(id), webRequest)) {
+            log.debug("Payment ID: {} not modified", id);
+            return null;
+        }
         PaymentResponse response = paymentService.getPaymentById(id);
-        return ResponseEntity.ok(response);
+        return withValidators(response);
     }
 
     @GetMapping(params = "transactionId")
     @PreAuthorize("hasAuthority('SCOPE_payment.read')")
-    public ResponseEntity<PaymentResponse> getPaymentByTransactionId(@RequestParam String transactionId) {
+    public ResponseEntity<PaymentResponse> getPaymentByTransactionId(@RequestParam String transactionId, WebRequest webRequest) {
         log.info("Received request to get payment by transactionId: {}", transactionId);
+        if (isConditional(webRequest) && isNotModified(paymentService.getPaymentVersionByTransactionId(transactionId), webRequest)) {
+            log.debug("Payment transactionId: {} not modified", transactionId);
+            return null;
+        }
         PaymentResponse response = paymentService.getPaymentByTransactionId(transactionId);
-        return ResponseEntity.ok(response);
+        return withValidators(response);
+    }
+
+    private static PaymentRequest withPermittedPriority(PaymentRequest request, Principal principal) {
+        if (!PaymentPriority.HIGH.name().equals(request.priority()) || hasScope(principal, PRIORITY_SCOPE)) {
+            return request;
+        }
+        log.info("Sending HIGH priority transactionId: {} as NORMAL; the client lacks {}",
+                request.transactionId(), PRIORITY_SCOPE);
+        return new PaymentRequest(request.transactionId(), request.recipientPhoneNumber(), request.amount(),
+                request.currency(), PaymentPriority.NORMAL.name(), request.executeAt());
+    }
+
+    private static boolean hasScope(Principal principal, String scope) {
+        return principal instanceof Authentication authentication
+                && authentication.getAuthorities().stream()
+                .anyMatch(authority -> scope.equals(authority.getAuthority()));
+    }
+
+    /**
+     * Status polls usually find the payment unchanged. When the client sends validators, answer from the
+     * (id, status, updatedAt) projection first and only load the full payment if it has changed.
+     */
+    private static boolean isConditional(WebRequest webRequest) {
+        return webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * {@code If-Modified-Since} is only consulted without {@code If-None-Match} and for a payment that is
+     * {@link PaymentVersion#isFinal() final}; otherwise a status change within the same second would be missed.
+     *
+     * @return {@code true} if the response has been turned into a 304 Not Modified.
+     */
+    private static boolean isNotModified(PaymentVersion version, WebRequest webRequest) {
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null || !version.isFinal()) {
+            return webRequest.checkNotModified(version.eTag());
+        }
+        return webRequest.checkNotModified(version.eTag(), version.lastModifiedMillis());
+    }
+
+    /**
+     * {@code Last-Modified} is only sent for a final payment, so clients polling one in flight revalidate by ETag.
+     */
+    private static ResponseEntity<PaymentResponse> withValidators(PaymentResponse response) {
+        PaymentVersion version = PaymentVersion.of(response);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().eTag(version.eTag());
+        if (version.isFinal()) {
+            builder.lastModified(version.lastModifiedMillis());
+        }
+        return builder.body(response);
+    }
+
+    private record Initiation(String clientId, String transactionId) {
     }
 }
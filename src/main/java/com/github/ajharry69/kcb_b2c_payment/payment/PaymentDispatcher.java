@@ -0,0 +1,73 @@
+package com.github.ajharry69.kcb_b2c_payment.payment;
+
+import com.github.ajharry69.kcb_b2c_payment.concurrent.Lane;
+import com.github.ajharry69.kcb_b2c_payment.concurrent.WeightedFairExecutor;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Hands payments over to the MNO executor, queued under the client that initiated them and in the lane matching their
+ * {@link PaymentPriority} (see {@link com.github.ajharry69.kcb_b2c_payment.AsyncConfig}). New payments are dispatched
+ * once the transaction that created them has committed, so the worker always finds the row. A new payment the
+ * executor has no room for is deferred to the retry index, which dispatches it again once it falls due.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PaymentDispatcher {
+    private static final Duration REJECTED_DISPATCH_DELAY = Duration.ofSeconds(1);
+
+    private final PaymentService paymentService;
+    private final WeightedFairExecutor mnoTaskExecutor;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentInitiated(PaymentInitiatedEvent event) {
+        try {
+            dispatch(event.paymentId(), event.clientId(), event.priority());
+            log.debug("Queued MNO processing for payment ID: {} (client: {}, priority: {})",
+                    event.paymentId(), event.clientId(), event.priority());
+        } catch (TaskRejectedException e) {
+            log.warn("MNO executor rejected payment ID: {}; deferring it", event.paymentId(), e);
+            paymentService.deferDispatch(event.paymentId(), REJECTED_DISPATCH_DELAY);
+        }
+    }
+
+    /**
+     * @throws TaskRejectedException if the MNO executor has been stopped or is full.
+     */
+    public void dispatch(UUID paymentId, String clientId, PaymentPriority priority) {
+        mnoTaskExecutor.withTenant(clientId, laneOf(priority),
+                () -> paymentService.processPaymentAsynchronously(paymentId));
+    }
+
+    /**
+     * Dispatches a payment whose retry has fallen due. The worker claims the retry before sending it, so a retry armed
+     * on several nodes is sent once.
+     *
+     * @throws TaskRejectedException if the MNO executor has been stopped or is full.
+     */
+    public void retry(UUID paymentId, String clientId, PaymentPriority priority) {
+        mnoTaskExecutor.withTenant(clientId, laneOf(priority), () -> paymentService.processRetry(paymentId));
+    }
+
+    /**
+     * Dispatches a {@link com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus#SCHEDULED} payment that has
+     * fallen due.
+     *
+     * @throws TaskRejectedException if the MNO executor has been stopped or is full.
+     */
+    public void release(UUID paymentId, String clientId, PaymentPriority priority) {
+        mnoTaskExecutor.withTenant(clientId, laneOf(priority), () -> paymentService.processScheduledPayment(paymentId));
+    }
+
+    private static Lane laneOf(PaymentPriority priority) {
+        return priority == PaymentPriority.HIGH ? Lane.HIGH : Lane.NORMAL;
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.ajharry69.kcb_b2c_payment.payment;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+
+import java.util.UUID;
+
+public record PaymentInitiatedEvent(UUID paymentId, String clientId, PaymentPriority priority) {
+}
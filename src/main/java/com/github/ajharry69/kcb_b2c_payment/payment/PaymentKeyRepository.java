@@ -0,0 +1,24 @@
+package com.github.ajharry69.kcb_b2c_payment.payment;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface PaymentKeyRepository extends JpaRepository<PaymentKey, String> {
+    /**
+     * A plain insert, so a {@code transactionId} that is already taken fails on the primary key instead of being
+     * merged into the existing row.
+     */
+    @Modifying
+    @Query(value = """
+            insert into payment_keys (transaction_id, payment_id, created_at)
+            values (:transactionId, :paymentId, :createdAt)
+            """, nativeQuery = true)
+    void insert(String transactionId, UUID paymentId, LocalDateTime createdAt);
+}
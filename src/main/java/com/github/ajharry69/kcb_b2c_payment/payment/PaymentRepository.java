@@ -1,13 +1,195 @@
 package com.github.ajharry69.kcb_b2c_payment.payment;
 
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentVersion;
+import com.github.ajharry69.kcb_b2c_payment.payment.limit.PaymentUsage;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.retry.PendingRetry;
+import com.github.ajharry69.kcb_b2c_payment.payment.schedule.ScheduledPayment;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Lookups by id or {@code transactionId} go through {@link com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentKey}
+ * and join on {@code createdAt} as well as id, so that on a {@code payments} table partitioned by {@code created_at}
+ * they read a single partition. Payments without a key row (none are written outside
+ * {@link PaymentService#initiatePayment}) are not found by them.
+ */
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+    @Query("""
+            select p
+            from PaymentKey k
+                join Payment p on p.id = k.paymentId and p.createdAt = k.createdAt
+            where k.transactionId = :transactionId
+            """)
     Optional<Payment> findByTransactionId(String transactionId);
+
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse(
+                p.id, p.transactionId, p.recipientPhoneNumber, p.amount, p.currency, p.status,
+                p.mnoReference, p.failureReason, p.createdAt, p.updatedAt)
+            from PaymentKey k
+                join Payment p on p.id = k.paymentId and p.createdAt = k.createdAt
+            where k.paymentId = :id
+            """)
+    Optional<PaymentResponse> findResponseById(UUID id);
+
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse(
+                p.id, p.transactionId, p.recipientPhoneNumber, p.amount, p.currency, p.status,
+                p.mnoReference, p.failureReason, p.createdAt, p.updatedAt)
+            from PaymentKey k
+                join Payment p on p.id = k.paymentId and p.createdAt = k.createdAt
+            where k.transactionId = :transactionId
+            """)
+    Optional<PaymentResponse> findResponseByTransactionId(String transactionId);
+
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentVersion(p.id, p.status, p.updatedAt)
+            from PaymentKey k
+                join Payment p on p.id = k.paymentId and p.createdAt = k.createdAt
+            where k.paymentId = :id
+            """)
+    Optional<PaymentVersion> findVersionById(UUID id);
+
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentVersion(p.id, p.status, p.updatedAt)
+            from PaymentKey k
+                join Payment p on p.id = k.paymentId and p.createdAt = k.createdAt
+            where k.transactionId = :transactionId
+            """)
+    Optional<PaymentVersion> findVersionByTransactionId(String transactionId);
+
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse(
+                p.id, p.transactionId, p.recipientPhoneNumber, p.amount, p.currency, p.status,
+                p.mnoReference, p.failureReason, p.createdAt, p.updatedAt)
+            from PaymentKey k
+                join Payment p on p.id = k.paymentId and p.createdAt = k.createdAt
+            where k.paymentId in :ids
+            """)
+    List<PaymentResponse> findResponsesByIdIn(Collection<UUID> ids);
+
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse(
+                p.id, p.transactionId, p.recipientPhoneNumber, p.amount, p.currency, p.status,
+                p.mnoReference, p.failureReason, p.createdAt, p.updatedAt)
+            from PaymentKey k
+                join Payment p on p.id = k.paymentId and p.createdAt = k.createdAt
+            where k.transactionId in :transactionIds
+            """)
+    List<PaymentResponse> findResponsesByTransactionIdIn(Collection<String> transactionIds);
+
+    /**
+     * Keyset page of payments in {@code status} due by {@code until}, ordered by {@code (nextAttemptAt, id)} and
+     * starting after {@code (after, afterId)}, or after every payment due at {@code after} if {@code afterId} is
+     * {@code null}.
+     */
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.retry.PendingRetry(p.id, p.clientId, p.priority, p.nextAttemptAt)
+            from Payment p
+            where p.status = :status and p.nextAttemptAt <= :until
+              and (p.nextAttemptAt > :after or (p.nextAttemptAt = :after and :afterId is not null and p.id > :afterId))
+            order by p.nextAttemptAt, p.id
+            """)
+    List<PendingRetry> findPendingRetries(PaymentStatus status, LocalDateTime after, UUID afterId, LocalDateTime until,
+                                          Limit limit);
+
+    /**
+     * Keyset page of payments in {@code status} due in {@code [from, to)}, ordered by {@code (executeAt, id)} and
+     * starting after {@code (afterExecuteAt, afterId)}.
+     */
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.schedule.ScheduledPayment(p.id, p.clientId, p.priority, p.executeAt)
+            from Payment p
+            where p.status = :status and p.executeAt >= :from and p.executeAt < :to
+              and (p.executeAt > :afterExecuteAt or (p.executeAt = :afterExecuteAt and p.id > :afterId))
+            order by p.executeAt, p.id
+            """)
+    List<ScheduledPayment> findScheduled(PaymentStatus status, LocalDateTime from, LocalDateTime to,
+                                         LocalDateTime afterExecuteAt, UUID afterId, Limit limit);
+
+    /**
+     * Moves the payment to {@code to} only if it is still in {@code from}, so that of several concurrent callers
+     * exactly one succeeds.
+     *
+     * @return {@code 1} if the payment was moved, otherwise {@code 0}.
+     */
+    @Modifying
+    @Query("""
+            update Payment p
+            set p.status = :to, p.updatedAt = :now
+            where p.id = :id and p.status = :from
+              and p.createdAt = (select k.createdAt from PaymentKey k where k.paymentId = :id)
+            """)
+    int updateStatus(UUID id, PaymentStatus from, PaymentStatus to, LocalDateTime now);
+
+    /**
+     * Takes a retry that has fallen due by {@code now} off the {@code nextAttemptAt} index, only if the payment is
+     * still in {@code status}. Commits in a transaction of its own, so other nodes stop seeing the retry as due
+     * before the caller goes on to the MNO.
+     *
+     * @return {@code 1} if this caller claimed the retry, otherwise {@code 0}.
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("""
+            update Payment p
+            set p.nextAttemptAt = null
+            where p.id = :id and p.status = :status and p.nextAttemptAt <= :now
+              and p.createdAt = (select k.createdAt from PaymentKey k where k.paymentId = :id)
+            """)
+    int claimRetry(UUID id, PaymentStatus status, LocalDateTime now);
+
+    /**
+     * Keyset page of payments created since {@code since} and not in {@code excluded}, ordered by
+     * {@code (createdAt, id)} and starting after {@code (afterCreatedAt, afterId)}.
+     */
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.limit.PaymentUsage(
+                p.id, p.recipientPhoneNumber, p.clientId, p.currency, p.amount, p.createdAt)
+            from Payment p
+            where p.createdAt >= :since and p.status <> :excluded
+              and (p.createdAt > :afterCreatedAt or (p.createdAt = :afterCreatedAt and p.id > :afterId))
+            order by p.createdAt, p.id
+            """)
+    List<PaymentUsage> findUsageSince(LocalDateTime since, PaymentStatus excluded, LocalDateTime afterCreatedAt,
+                                      UUID afterId, Limit limit);
+
+    @Query("""
+            select new com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate(
+                p.status, p.currency, count(p), sum(p.amount))
+            from Payment p
+            group by p.status, p.currency
+            """)
+    List<PaymentAggregate> aggregateByStatusAndCurrency();
+
+    /**
+     * Keyset page of payments in {@code statuses} last updated before {@code before}, ordered by
+     * {@code (updatedAt, id)} and starting after {@code (afterUpdatedAt, afterId)}. A payment is never updated before
+     * it is created, so the {@code createdAt} bound only lets the database skip partitions that are too new.
+     */
+    @Query("""
+            select p
+            from Payment p
+            where p.status in :statuses and p.updatedAt < :before and p.createdAt < :before
+              and (p.updatedAt > :afterUpdatedAt or (p.updatedAt = :afterUpdatedAt and p.id > :afterId))
+            order by p.updatedAt, p.id
+            """)
+    List<Payment> findArchivable(Collection<PaymentStatus> statuses, LocalDateTime before,
+                                 LocalDateTime afterUpdatedAt, UUID afterId, Limit limit);
 }
@@ -2,47 +2,114 @@ package com.github.ajharry69.kcb_b2c_payment.payment;
 
 import com.github.ajharry69.kcb_b2c_payment.AsyncConfig;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.DuplicateTransactionException;
-import com.github.ajharry69.kcb_b2c_payment.exceptions.MMOServiceException;
+import com.github.ajharry69.kcb_b2c_payment.exceptions.MnoTimeoutException;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.PaymentNotFoundException;
+import com.github.ajharry69.kcb_b2c_payment.mmo.MnoCallbackEvent;
+import com.github.ajharry69.kcb_b2c_payment.mmo.MnoDeadlineManager;
 import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
 import com.github.ajharry69.kcb_b2c_payment.notification.SmsService;
+import com.github.ajharry69.kcb_b2c_payment.payment.archive.PaymentArchive;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupResult;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentVersion;
+import com.github.ajharry69.kcb_b2c_payment.payment.duplicate.NearDuplicateDetector;
+import com.github.ajharry69.kcb_b2c_payment.payment.limit.PaymentLimits;
+import com.github.ajharry69.kcb_b2c_payment.payment.liquidity.FloatLedger;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.retry.PaymentRetryPolicy;
+import com.github.ajharry69.kcb_b2c_payment.payment.retry.PaymentRetryScheduledEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.schedule.PaymentScheduledEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
 import com.github.ajharry69.kcb_b2c_payment.payment.utils.PaymentMapper;
-import jakarta.transaction.Transactional;
-import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.validation.annotation.Validated;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 
 @Service
-@Validated
 @Slf4j
 @RequiredArgsConstructor
 public class PaymentService {
+    /**
+     * Upper bound on the parameters bound into one {@code IN (...)} clause by {@link #lookupPayments}.
+     */
+    static final int LOOKUP_CHUNK_SIZE = 500;
+
     private final PaymentRepository paymentRepository;
     private final MobileMoneyService mobileMoneyService;
+    private final MnoDeadlineManager mnoDeadlineManager;
     private final SmsService smsService;
     private final PaymentMapper paymentMapper;
+    private final PaymentRetryPolicy retryPolicy;
+    private final ApplicationEventPublisher eventPublisher;
+    /**
+     * Terminal payments old enough to have been moved out of the {@code payments} table. Every read by id or
+     * {@code transactionId} falls back to it, so archiving is invisible to clients.
+     */
+    private final PaymentArchive paymentArchive;
+    /**
+     * Claims each {@code transactionId} across all {@code payments} partitions.
+     */
+    private final PaymentKeyRepository paymentKeyRepository;
+    /**
+     * Every transaction here touches one payment, so it is bound to that payment's shard before its first query.
+     */
+    private final PaymentShards paymentShards;
+    /**
+     * Recipient and client limits, checked before a payment is dispatched.
+     */
+    private final PaymentLimits paymentLimits;
+    /**
+     * The same payout sent twice under different {@code transactionId}s, seconds apart.
+     */
+    private final NearDuplicateDetector nearDuplicateDetector;
+    /**
+     * Reserves each payment's amount from the B2C float before it is sent, so a dry float holds payments locally.
+     */
+    private final FloatLedger floatLedger;
 
+    /**
+     * @param paymentRequest a request already checked and canonicalised by
+     *                       {@link com.github.ajharry69.kcb_b2c_payment.payment.validation.PaymentRequestValidator}.
+     * @param clientId       the authenticated client (JWT subject) initiating the payment, if known.
+     */
     @Transactional
-    public PaymentResponse initiatePayment(@Valid PaymentRequest paymentRequest) {
+    public PaymentResponse initiatePayment(PaymentRequest paymentRequest, String clientId) {
         log.info("Initiating payment for transactionId: {}", paymentRequest.transactionId());
+        paymentShards.bind(paymentShards.shardFor(paymentRequest.transactionId()));
 
-        Optional<Payment> existingPayment = paymentRepository.findByTransactionId(paymentRequest.transactionId());
+        Optional<Payment> existingPayment = paymentRepository.findByTransactionId(paymentRequest.transactionId())
+                .or(() -> paymentArchive.findByTransactionId(paymentRequest.transactionId()));
         if (existingPayment.isPresent()) {
             Payment current = existingPayment.get();
-            if (current.getStatus() == PaymentStatus.PENDING || current.getStatus() == PaymentStatus.PROCESSING) {
-                log.warn("Duplicate transaction attempt for existing PENDING/PROCESSING payment: {}", paymentRequest.transactionId());
+            if (current.getStatus() == PaymentStatus.SCHEDULED
+                    || current.getStatus() == PaymentStatus.ON_HOLD
+                    || current.getStatus() == PaymentStatus.PENDING
+                    || current.getStatus() == PaymentStatus.PROCESSING) {
+                log.warn("Duplicate transaction attempt for existing SCHEDULED/ON_HOLD/PENDING/PROCESSING payment: {}", paymentRequest.transactionId());
                 throw new DuplicateTransactionException(paymentRequest.transactionId());
             } else {
                 log.info("Returning status for already completed transactionId: {}", paymentRequest.transactionId());
@@ -51,35 +118,219 @@ public class PaymentService {
         }
 
         Payment newPayment = paymentMapper.toEntity(paymentRequest);
+        newPayment.setClientId(clientId);
+        if (newPayment.getExecuteAt() != null) {
+            if (newPayment.getExecuteAt().isAfter(LocalDateTime.now())) {
+                newPayment.setStatus(PaymentStatus.SCHEDULED);
+            } else {
+                // Already due: dispatched straight away like any other payment
+                newPayment.setExecuteAt(null);
+            }
+        }
+        nearDuplicateDetector.find(newPayment).ifPresent(duplicate -> {
+            String reason = "Near-duplicate of transactionId " + duplicate.transactionId();
+            switch (duplicate.action()) {
+                case WARN -> log.warn("Payment for transactionId: {} has the same recipient, amount and currency as {}",
+                        newPayment.getTransactionId(), duplicate.transactionId());
+                case HOLD -> {
+                    newPayment.setStatus(PaymentStatus.ON_HOLD);
+                    newPayment.setFailureReason(reason);
+                }
+                case REJECT -> {
+                    newPayment.setStatus(PaymentStatus.REJECTED);
+                    newPayment.setExecuteAt(null);
+                    newPayment.setFailureReason(reason);
+                }
+            }
+        });
+        if (newPayment.getStatus() != PaymentStatus.REJECTED) {
+            paymentLimits.tryReserve(newPayment).ifPresent(violation -> {
+                // Kept, like any other payment, so that a retry with the same transactionId gets the same answer
+                newPayment.setStatus(PaymentStatus.REJECTED);
+                newPayment.setExecuteAt(null);
+                newPayment.setFailureReason(violation);
+            });
+        }
+        if (newPayment.getStatus() != PaymentStatus.REJECTED && newPayment.getStatus() != PaymentStatus.ON_HOLD) {
+            // Only payments going out are matched against; held ones are recorded if they are released
+            nearDuplicateDetector.record(newPayment);
+        }
 
-        Payment savedPayment = paymentRepository.saveAndFlush(newPayment);
+        Payment savedPayment;
+        try {
+            savedPayment = paymentRepository.saveAndFlush(newPayment);
+            paymentKeyRepository.insert(
+                    savedPayment.getTransactionId(), savedPayment.getId(), savedPayment.getCreatedAt());
+        } catch (DataIntegrityViolationException e) {
+            // Lost the insert race to a request on another node (same-node duplicates are coalesced by the controller)
+            log.warn("Concurrent insert for transactionId: {} lost the race on the payment_keys primary key", paymentRequest.transactionId());
+            throw new DuplicateTransactionException(paymentRequest.transactionId());
+        }
         log.debug("Saved initial payment record with ID: {} and status: {}", savedPayment.getId(), savedPayment.getStatus());
 
+        if (savedPayment.getStatus() == PaymentStatus.REJECTED || savedPayment.getStatus() == PaymentStatus.ON_HOLD) {
+            publishStatusChange(null, savedPayment);
+            log.warn("Payment for transactionId: {} is {} without being dispatched: {}",
+                    savedPayment.getTransactionId(), savedPayment.getStatus(), savedPayment.getFailureReason());
+            return paymentMapper.toResponse(savedPayment);
+        }
+
+        if (savedPayment.getStatus() == PaymentStatus.SCHEDULED) {
+            publishStatusChange(null, savedPayment);
+            // Released by ScheduledPaymentTrigger once executeAt comes
+            eventPublisher.publishEvent(new PaymentScheduledEvent(
+                    savedPayment.getId(), clientId, savedPayment.getPriority(), savedPayment.getExecuteAt()));
+            log.info("Scheduled payment for transactionId: {} to execute at {}",
+                    savedPayment.getTransactionId(), savedPayment.getExecuteAt());
+            return paymentMapper.toResponse(savedPayment);
+        }
+
         savedPayment.setStatus(PaymentStatus.PROCESSING);
         Payment processingPayment = paymentRepository.save(savedPayment);
         log.info("Payment status updated to PROCESSING for ID: {}", processingPayment.getId());
+        publishStatusChange(null, processingPayment);
 
-        try {
-            processPaymentAsynchronously(processingPayment.getId());
-            log.info("Successfully triggered async MNO processing for payment ID: {}", processingPayment.getId());
-        } catch (Exception e) {
-            log.error("Failed to submit MNO processing task for paymentId: {}. Rolling back status to FAILED.", processingPayment.getId(), e);
-            processingPayment.setStatus(PaymentStatus.FAILED);
-            processingPayment.setFailureReason("Failed to initiate async MNO task: " + e.getMessage());
-            paymentRepository.save(processingPayment);
-            throw new MMOServiceException("Failed to submit payment processing task: " + e.getMessage(), e);
-        }
+        // Dispatched by PaymentDispatcher once this transaction commits
+        eventPublisher.publishEvent(
+                new PaymentInitiatedEvent(processingPayment.getId(), clientId, processingPayment.getPriority()));
 
         log.info("Successfully initiated payment processing for transactionId: {}. Current status: {}",
                 processingPayment.getTransactionId(), processingPayment.getStatus());
         return paymentMapper.toResponse(processingPayment);
     }
 
+    /**
+     * Sends an {@link PaymentStatus#ON_HOLD} payment on its way: to the MNO, or back to {@code SCHEDULED} if its
+     * {@code executeAt} is still ahead. A payment that is no longer on hold is returned as it is.
+     */
+    @Transactional
+    public PaymentResponse releaseHeldPayment(UUID paymentId) {
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+        Payment payment = paymentRepository.findById(paymentId)
+                .orElseThrow(() -> new PaymentNotFoundException(paymentId));
+        PaymentStatus next = payment.getExecuteAt() != null && payment.getExecuteAt().isAfter(LocalDateTime.now())
+                ? PaymentStatus.SCHEDULED
+                : PaymentStatus.PROCESSING;
+        if (!claimHeld(payment, next)) {
+            return paymentMapper.toResponse(payment);
+        }
+        payment.setFailureReason(null);
+        Payment released = paymentRepository.save(payment);
+        log.info("Held payment ID: {} released as {}", paymentId, released.getStatus());
+        nearDuplicateDetector.record(released);
+        publishStatusChange(PaymentStatus.ON_HOLD, released);
+
+        if (released.getStatus() == PaymentStatus.SCHEDULED) {
+            eventPublisher.publishEvent(new PaymentScheduledEvent(
+                    released.getId(), released.getClientId(), released.getPriority(), released.getExecuteAt()));
+        } else {
+            eventPublisher.publishEvent(
+                    new PaymentInitiatedEvent(released.getId(), released.getClientId(), released.getPriority()));
+        }
+        return paymentMapper.toResponse(released);
+    }
+
+    /**
+     * Rejects an {@link PaymentStatus#ON_HOLD} payment without sending it. A payment that is no longer on hold is
+     * returned as it is.
+     */
+    @Transactional
+    public PaymentResponse rejectHeldPayment(UUID paymentId) {
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+        Payment payment = paymentRepository.findById(paymentId)
+                .orElseThrow(() -> new PaymentNotFoundException(paymentId));
+        if (!claimHeld(payment, PaymentStatus.REJECTED)) {
+            return paymentMapper.toResponse(payment);
+        }
+        payment.setFailureReason(payment.getFailureReason() + "; rejected on review");
+        Payment rejected = paymentRepository.save(payment);
+        // It counted towards its recipient's and client's limits while held; a rejected payment does not
+        paymentLimits.release(rejected);
+        log.info("Held payment ID: {} rejected on review", paymentId);
+        publishStatusChange(PaymentStatus.ON_HOLD, rejected);
+        return paymentMapper.toResponse(rejected);
+    }
+
+    /**
+     * Moves {@code payment} off hold with a conditional update, so that of two concurrent reviews only one applies.
+     */
+    private boolean claimHeld(Payment payment, PaymentStatus next) {
+        if (payment.getStatus() != PaymentStatus.ON_HOLD || paymentRepository.updateStatus(
+                payment.getId(), PaymentStatus.ON_HOLD, next, LocalDateTime.now()) == 0) {
+            log.warn("Payment ID {} is no longer ON_HOLD; leaving it as it is.", payment.getId());
+            return false;
+        }
+        payment.setStatus(next);
+        return true;
+    }
+
+    /**
+     * Hands a {@code PROCESSING} payment the MNO executor had no room for to the retry scheduler, without counting an
+     * attempt. Runs in its own transaction since it is called after the initiating one has committed.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void deferDispatch(UUID paymentId, Duration delay) {
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+        Payment payment = paymentRepository.findById(paymentId).orElse(null);
+        if (payment == null || payment.getStatus() != PaymentStatus.PROCESSING) {
+            return;
+        }
+        payment.setNextAttemptAt(LocalDateTime.now().plus(delay));
+        Payment deferred = paymentRepository.save(payment);
+        log.info("Deferred dispatch of payment ID: {} by {} ms; the MNO executor is full.",
+                deferred.getId(), delay.toMillis());
+        eventPublisher.publishEvent(new PaymentRetryScheduledEvent(
+                deferred.getId(), deferred.getClientId(), deferred.getPriority(), deferred.getNextAttemptAt()));
+    }
+
     @Async(AsyncConfig.MNO_TASK_EXECUTOR)
     @Transactional
     public void processPaymentAsynchronously(UUID paymentId) {
         log.info("Starting async MNO processing for payment ID: {} [Thread: {}]", paymentId, Thread.currentThread().getName());
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+        process(paymentId);
+    }
 
+    /**
+     * Sends a {@code PROCESSING} payment whose retry has fallen due. Every node sweeps the same {@code next_attempt_at}
+     * index, so several may arm one retry; it is claimed first with a conditional update that commits before the MNO
+     * call, and only the caller that claims it sends the payment.
+     */
+    @Async(AsyncConfig.MNO_TASK_EXECUTOR)
+    @Transactional
+    public void processRetry(UUID paymentId) {
+        log.info("Retrying payment ID: {} [Thread: {}]", paymentId, Thread.currentThread().getName());
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+
+        if (paymentRepository.claimRetry(paymentId, PaymentStatus.PROCESSING, LocalDateTime.now()) == 0) {
+            log.info("Retry of payment ID {} skipped: it was claimed by another node or is no longer due.", paymentId);
+            return;
+        }
+        process(paymentId);
+    }
+
+    /**
+     * Moves a due {@link PaymentStatus#SCHEDULED} payment to {@code PROCESSING} and submits it to the MNO. The move is
+     * a conditional update, so a payment released twice (by two nodes, or again after a restart) is only sent once.
+     */
+    @Async(AsyncConfig.MNO_TASK_EXECUTOR)
+    @Transactional
+    public void processScheduledPayment(UUID paymentId) {
+        log.info("Releasing scheduled payment ID: {} [Thread: {}]", paymentId, Thread.currentThread().getName());
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+
+        int released = paymentRepository.updateStatus(
+                paymentId, PaymentStatus.SCHEDULED, PaymentStatus.PROCESSING, LocalDateTime.now());
+        if (released == 0) {
+            log.warn("Scheduled payment ID {} skipped: it is no longer SCHEDULED.", paymentId);
+            return;
+        }
+        paymentRepository.findById(paymentId)
+                .ifPresent(payment -> publishStatusChange(PaymentStatus.SCHEDULED, payment));
+        process(paymentId);
+    }
+
+    private void process(UUID paymentId) {
         Payment paymentToProcess = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> {
                     // This case should be rare if called correctly after initial save
@@ -92,8 +343,21 @@ public class PaymentService {
             return;
         }
 
+        if (!floatLedger.tryReserve(paymentToProcess)) {
+            if (floatLedger.holdsExhausted(paymentId)) {
+                paymentToProcess.setNextAttemptAt(null);
+                handleMnoProcessingFailure(paymentId, "Insufficient float");
+            } else {
+                holdForFloat(paymentToProcess);
+            }
+            return;
+        }
+
+        paymentToProcess.setNextAttemptAt(null);
+        paymentToProcess.setAttemptCount(paymentToProcess.getAttemptCount() + 1);
+
         try {
-            CompletableFuture<Payment> mnoFuture = mobileMoneyService.processB2CPayment(paymentToProcess);
+            CompletableFuture<Payment> mnoFuture = mnoDeadlineManager.withDeadline(mobileMoneyService.processB2CPayment(paymentToProcess));
             Payment updatedPaymentResult = mnoFuture.join();
 
             log.info(
@@ -102,6 +366,12 @@ public class PaymentService {
                     updatedPaymentResult.getStatus());
             handleMnoProcessingCompletion(updatedPaymentResult);
         } catch (Exception ex) {
+            if (ex.getCause() instanceof MnoTimeoutException timeout) {
+                log.warn("MNO call for paymentId: {} exceeded its {} ms deadline. Outcome is unknown.",
+                        paymentId, timeout.getDeadline().toMillis());
+                handleMnoTimeout(paymentId, timeout);
+                return;
+            }
             log.error(
                     "MNO processing failed exceptionally during async task for paymentId: {}. Cause: {}",
                     paymentId,
@@ -111,23 +381,187 @@ public class PaymentService {
         }
     }
 
+    /**
+     * Applies an out-of-band MNO result. Only payments whose outcome is still unknown ({@link PaymentStatus#TIMED_OUT})
+     * are resolved; anything else is a duplicate or a callback for a payment already settled by the synchronous
+     * response, and is ignored.
+     */
+    @Async(AsyncConfig.MNO_TASK_EXECUTOR)
+    @EventListener
+    @Transactional
+    public void handleMnoCallback(MnoCallbackEvent event) {
+        Payment result = event.result();
+        paymentShards.bind(paymentShards.shardOf(result.getId()));
+        Payment paymentToUpdate = paymentRepository.findById(result.getId())
+                .orElse(null);
+
+        if (paymentToUpdate == null) {
+            log.error("Payment record not found for ID {} during MNO callback handling.", result.getId());
+            return;
+        }
+
+        if (paymentToUpdate.getStatus() != PaymentStatus.TIMED_OUT) {
+            log.info("Ignoring {} MNO callback for payment ID {}: status is already {}.",
+                    result.getStatus(), paymentToUpdate.getId(), paymentToUpdate.getStatus());
+            return;
+        }
+        settleFloat(result);
+
+        paymentToUpdate.setStatus(result.getStatus());
+        paymentToUpdate.setMnoReference(result.getMnoReference());
+        paymentToUpdate.setFailureReason(result.getFailureReason());
+        Payment finalPayment = paymentRepository.save(paymentToUpdate);
+        log.info("Timed-out payment ID: {} resolved to {} by MNO callback", finalPayment.getId(), finalPayment.getStatus());
+        publishStatusChange(PaymentStatus.TIMED_OUT, finalPayment);
+
+        if (finalPayment.getStatus() == PaymentStatus.SUCCESSFUL) {
+            smsService.sendSuccessNotification(finalPayment);
+        } else if (finalPayment.getStatus() == PaymentStatus.FAILED) {
+            smsService.sendFailureNotification(finalPayment);
+        }
+    }
+
+    /**
+     * Status reads project straight into {@link PaymentResponse}: no managed entity, dirty-checking snapshot or mapper
+     * copy. Read-only transactions also switch the Hibernate session to {@code FlushMode.MANUAL}.
+     */
+    @Transactional(readOnly = true)
     public PaymentResponse getPaymentById(UUID paymentId) {
         log.debug("Fetching payment by ID: {}", paymentId);
-        Payment payment = paymentRepository.findById(paymentId)
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+        PaymentResponse response = paymentRepository.findResponseById(paymentId)
+                .or(() -> paymentArchive.findById(paymentId).map(paymentMapper::toResponse))
                 .orElseThrow(() -> new PaymentNotFoundException(paymentId));
-        log.info("Found payment ID: {} with status: {}", paymentId, payment.getStatus());
-        return paymentMapper.toResponse(payment);
+        log.info("Found payment ID: {} with status: {}", paymentId, response.status());
+        return response;
     }
 
+    @Transactional(readOnly = true)
     public PaymentResponse getPaymentByTransactionId(String transactionId) {
         log.debug("Fetching payment by transactionId: {}", transactionId);
-        Payment payment = paymentRepository.findByTransactionId(transactionId)
+        paymentShards.bind(paymentShards.shardFor(transactionId));
+        PaymentResponse response = paymentRepository.findResponseByTransactionId(transactionId)
+                .or(() -> paymentArchive.findByTransactionId(transactionId).map(paymentMapper::toResponse))
                 .orElseThrow(() -> new PaymentNotFoundException(transactionId));
-        log.info("Found payment transactionId: {} (ID: {}) with status: {}", transactionId, payment.getId(), payment.getStatus());
-        return paymentMapper.toResponse(payment);
+        log.info("Found payment transactionId: {} (ID: {}) with status: {}", transactionId, response.paymentId(), response.status());
+        return response;
+    }
+
+    @Transactional(readOnly = true)
+    public PaymentVersion getPaymentVersionById(UUID paymentId) {
+        paymentShards.bind(paymentShards.shardOf(paymentId));
+        return paymentRepository.findVersionById(paymentId)
+                .or(() -> paymentArchive.findById(paymentId).map(PaymentService::versionOf))
+                .orElseThrow(() -> new PaymentNotFoundException(paymentId));
+    }
+
+    @Transactional(readOnly = true)
+    public PaymentVersion getPaymentVersionByTransactionId(String transactionId) {
+        paymentShards.bind(paymentShards.shardFor(transactionId));
+        return paymentRepository.findVersionByTransactionId(transactionId)
+                .or(() -> paymentArchive.findByTransactionId(transactionId).map(PaymentService::versionOf))
+                .orElseThrow(() -> new PaymentNotFoundException(transactionId));
+    }
+
+    /**
+     * Resolves a batch of payment IDs or transaction IDs with chunked {@code IN (...)} queries that project straight
+     * into {@link PaymentResponse}. Keys missing from the table are looked up in the {@link PaymentArchive}. Results
+     * follow the order of the requested keys; unknown keys (including malformed payment IDs) are reported as not found
+     * rather than failing the batch.
+     * <p>
+     * Keys are grouped by the shard they belong to and the shards are queried in parallel, each in its own read-only
+     * transaction, so this method does not run in one itself.
+     */
+    public List<PaymentLookupResult> lookupPayments(PaymentLookupRequest lookupRequest) {
+        List<String> keys = lookupRequest.keys();
+        log.debug("Looking up {} payments by {}", keys.size(), lookupRequest.lookupBy());
+
+        Map<String, PaymentResponse> resolved = switch (lookupRequest.lookupBy()) {
+            case PAYMENT_ID -> {
+                Map<Integer, Set<UUID>> idsByShard = new TreeMap<>();
+                for (String key : keys) {
+                    parsePaymentId(key).ifPresent(id -> idsByShard
+                            .computeIfAbsent(paymentShards.shardOf(id), shard -> new LinkedHashSet<>())
+                            .add(id));
+                }
+                Map<String, PaymentResponse> byId = new HashMap<>();
+                paymentShards.read(idsByShard.keySet(), shard -> {
+                    List<PaymentResponse> found = new ArrayList<>();
+                    for (List<UUID> chunk : chunks(idsByShard.get(shard))) {
+                        found.addAll(paymentRepository.findResponsesByIdIn(chunk));
+                    }
+                    return found;
+                }).forEach(found -> found.forEach(response -> byId.put(response.paymentId().toString(), response)));
+                yield byId;
+            }
+            case TRANSACTION_ID -> {
+                Map<Integer, Set<String>> transactionIdsByShard = new TreeMap<>();
+                for (String key : keys) {
+                    transactionIdsByShard
+                            .computeIfAbsent(paymentShards.shardFor(key), shard -> new LinkedHashSet<>())
+                            .add(key);
+                }
+                Map<String, PaymentResponse> byTransactionId = new HashMap<>();
+                paymentShards.read(transactionIdsByShard.keySet(), shard -> {
+                    List<PaymentResponse> found = new ArrayList<>();
+                    for (List<String> chunk : chunks(transactionIdsByShard.get(shard))) {
+                        found.addAll(paymentRepository.findResponsesByTransactionIdIn(chunk));
+                    }
+                    return found;
+                }).forEach(found -> found.forEach(response -> byTransactionId.put(response.transactionId(), response)));
+                yield byTransactionId;
+            }
+        };
+
+        List<PaymentLookupResult> results = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            String normalizedKey = lookupRequest.lookupBy() == PaymentLookupRequest.LookupBy.PAYMENT_ID
+                    ? parsePaymentId(key).map(UUID::toString).orElse(key)
+                    : key;
+            PaymentResponse response = resolved.get(normalizedKey);
+            if (response == null) {
+                response = findArchived(lookupRequest.lookupBy(), key);
+                if (response != null) {
+                    resolved.put(normalizedKey, response);
+                }
+            }
+            results.add(response == null ? PaymentLookupResult.notFound(key) : PaymentLookupResult.found(key, response));
+        }
+        log.info("Resolved {} of {} requested payments by {}", resolved.size(), keys.size(), lookupRequest.lookupBy());
+        return results;
+    }
+
+    private PaymentResponse findArchived(PaymentLookupRequest.LookupBy lookupBy, String key) {
+        Optional<Payment> archived = switch (lookupBy) {
+            case PAYMENT_ID -> parsePaymentId(key).flatMap(paymentArchive::findById);
+            case TRANSACTION_ID -> paymentArchive.findByTransactionId(key);
+        };
+        return archived.map(paymentMapper::toResponse).orElse(null);
+    }
+
+    private static PaymentVersion versionOf(Payment payment) {
+        return new PaymentVersion(payment.getId(), payment.getStatus(), payment.getUpdatedAt());
+    }
+
+    private static Optional<UUID> parsePaymentId(String key) {
+        try {
+            return Optional.of(UUID.fromString(key));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> list = List.copyOf(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += LOOKUP_CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, list.size())));
+        }
+        return chunks;
     }
 
     protected void handleMnoProcessingCompletion(Payment payment) {
+        settleFloat(payment);
         Payment paymentToUpdate = paymentRepository.findById(payment.getId())
                 .orElse(null);
 
@@ -142,12 +576,20 @@ public class PaymentService {
             return;
         }
 
+        if (payment.getStatus() == PaymentStatus.FAILED
+                && retryPolicy.isRetryable(payment.getFailureReason())
+                && retryPolicy.canRetry(paymentToUpdate.getAttemptCount())) {
+            scheduleRetry(paymentToUpdate, payment.getFailureReason());
+            return;
+        }
+
         paymentToUpdate.setStatus(payment.getStatus());
         paymentToUpdate.setMnoReference(payment.getMnoReference());
         paymentToUpdate.setFailureReason(payment.getFailureReason());
 
         Payment finalPayment = paymentRepository.save(paymentToUpdate);
         log.info("Final payment status updated to {} for ID: {}", finalPayment.getStatus(), finalPayment.getId());
+        publishStatusChange(PaymentStatus.PROCESSING, finalPayment);
 
         if (finalPayment.getStatus() == PaymentStatus.SUCCESSFUL) {
             smsService.sendSuccessNotification(finalPayment);
@@ -156,7 +598,73 @@ public class PaymentService {
         }
     }
 
+    /**
+     * Puts a payment the float cannot cover back in the retry queue without sending it or counting an attempt.
+     */
+    private void holdForFloat(Payment payment) {
+        payment.setNextAttemptAt(LocalDateTime.now().plus(floatLedger.holdFor()));
+        payment.setFailureReason("Awaiting float");
+        Payment heldPayment = paymentRepository.save(payment);
+        log.info("Holding payment ID: {} for {} ms until the {} float can cover it.",
+                heldPayment.getId(), floatLedger.holdFor().toMillis(), heldPayment.getCurrency());
+        eventPublisher.publishEvent(new PaymentRetryScheduledEvent(
+                heldPayment.getId(), heldPayment.getClientId(), heldPayment.getPriority(),
+                heldPayment.getNextAttemptAt()));
+    }
+
+    private void settleFloat(Payment result) {
+        if (result.getStatus() == PaymentStatus.FAILED) {
+            floatLedger.settleFailed(result.getId(), result.getCurrency(), result.getFailureReason());
+        } else {
+            floatLedger.settle(result.getId(), result.getStatus() == PaymentStatus.SUCCESSFUL);
+        }
+    }
+
+    private void scheduleRetry(Payment payment, String failureReason) {
+        Duration backoff = retryPolicy.backoff(payment.getAttemptCount());
+        payment.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+        payment.setFailureReason(failureReason);
+        Payment retryingPayment = paymentRepository.save(payment);
+        log.info("Transient MNO failure '{}' for payment ID: {} after {} attempt(s). Retrying in {} ms.",
+                failureReason, retryingPayment.getId(), retryingPayment.getAttemptCount(), backoff.toMillis());
+        eventPublisher.publishEvent(new PaymentRetryScheduledEvent(
+                retryingPayment.getId(), retryingPayment.getClientId(), retryingPayment.getPriority(),
+                retryingPayment.getNextAttemptAt()));
+    }
+
+    /**
+     * Feeds {@link com.github.ajharry69.kcb_b2c_payment.payment.stats.PaymentStatistics} once the transaction commits.
+     */
+    private void publishStatusChange(PaymentStatus from, Payment payment) {
+        eventPublisher.publishEvent(
+                new PaymentStatusChangedEvent(from, payment.getStatus(), payment.getCurrency(), payment.getAmount()));
+    }
+
+    protected void handleMnoTimeout(UUID paymentId, MnoTimeoutException timeout) {
+        Payment paymentToUpdate = paymentRepository.findById(paymentId)
+                .orElse(null);
+
+        if (paymentToUpdate == null) {
+            log.error("Payment record not found for ID {} during MNO timeout handling.", paymentId);
+            return;
+        }
+
+        if (paymentToUpdate.getStatus() != PaymentStatus.PROCESSING) {
+            log.warn("Attempted to flag payment ID {} as TIMED_OUT, but status was already {}. Ignoring update.",
+                    paymentToUpdate.getId(), paymentToUpdate.getStatus());
+            return;
+        }
+
+        // No SMS: the MNO may still complete the transfer, so the customer is only told once the outcome is known.
+        paymentToUpdate.setStatus(PaymentStatus.TIMED_OUT);
+        paymentToUpdate.setFailureReason(timeout.getMessage() + "; outcome unknown");
+        Payment finalPayment = paymentRepository.save(paymentToUpdate);
+        log.info("Payment status updated to TIMED_OUT for ID: {}", finalPayment.getId());
+        publishStatusChange(PaymentStatus.PROCESSING, finalPayment);
+    }
+
     protected void handleMnoProcessingFailure(UUID paymentId, String reason) {
+        floatLedger.settle(paymentId, false);
         Payment paymentToUpdate = paymentRepository.findById(paymentId)
                 .orElse(null);
 
@@ -175,6 +683,7 @@ public class PaymentService {
         paymentToUpdate.setFailureReason(reason);
         Payment finalPayment = paymentRepository.save(paymentToUpdate);
         log.info("Payment status updated to FAILED due to processing error for ID: {}", finalPayment.getId());
+        publishStatusChange(PaymentStatus.PROCESSING, finalPayment);
         smsService.sendFailureNotification(finalPayment);
     }
 }
@@ -0,0 +1,11 @@
+package com.github.ajharry69.kcb_b2c_payment.payment;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * @param from the status the payment left, or {@code null} for a payment that has just been created.
+ */
+public record PaymentStatusChangedEvent(PaymentStatus from, PaymentStatus to, String currency, BigDecimal amount) {
+}
@@ -0,0 +1,450 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.archive;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable, memory-mapped file of archived payments.
+ * <p>
+ * Payments are sorted by id and written in deflate-compressed blocks of {@value #BLOCK_RECORDS}. After the blocks come
+ * a sparse id index (the first id and file offset of every block), a sorted table of {@code transactionId} hashes to
+ * block numbers, and a Bloom filter over both keys, so a lookup for a payment the segment does not hold usually costs
+ * a few probes into the mapped file and one that it does hold inflates a single block:
+ * <pre>
+ * header     magic (8) version (4)
+ * blocks     deflated records
+ * id index   per block: first id (16) offset (8) compressed length (4) records (4)
+ * txn index  per payment, by hash: transactionId hash (8) block (4)
+ * bloom      words (8 each)
+ * footer     id index offset (8) blocks (4) txn index offset (8) payments (4) bloom offset (8) bloom words (4)
+ *            bloom hashes (4) latest updatedAt, epoch millis (8) magic (8)
+ * </pre>
+ * Segments are written to a temporary file, forced to disk and then renamed, so a segment that exists is complete.
+ * <p>
+ * The header's version covers the record layout as well as the file layout; a segment in any other version than
+ * {@value #VERSION} is refused rather than misread.
+ */
+final class ArchiveSegment implements AutoCloseable {
+    static final int BLOCK_RECORDS = 64;
+    private static final long MAGIC = 0x4b43425041524348L; // "KCBPARCH"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 12;
+    private static final int FOOTER_BYTES = 56;
+    private static final int ID_ENTRY_BYTES = 32;
+    private static final int TXN_ENTRY_BYTES = 12;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long idIndexOffset;
+    private final int blocks;
+    private final long txnIndexOffset;
+    private final int payments;
+    private final long bloomOffset;
+    private final int bloomWords;
+    private final int bloomHashes;
+    private final LocalDateTime latestUpdatedAt;
+
+    private ArchiveSegment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        int footer = buffer.capacity() - FOOTER_BYTES;
+        if (buffer.capacity() < HEADER_BYTES + FOOTER_BYTES
+                || buffer.getLong(0) != MAGIC
+                || buffer.getInt(8) != VERSION
+                || buffer.getLong(footer + 48) != MAGIC) {
+            throw new IllegalStateException("Not a version " + VERSION + " payment archive segment: " + file);
+        }
+        this.idIndexOffset = buffer.getLong(footer);
+        this.blocks = buffer.getInt(footer + 8);
+        this.txnIndexOffset = buffer.getLong(footer + 12);
+        this.payments = buffer.getInt(footer + 20);
+        this.bloomOffset = buffer.getLong(footer + 24);
+        this.bloomWords = buffer.getInt(footer + 32);
+        this.bloomHashes = buffer.getInt(footer + 36);
+        this.latestUpdatedAt = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(buffer.getLong(footer + 40)), ZoneOffset.UTC);
+    }
+
+    static ArchiveSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ArchiveSegment(file, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes {@code payments} to a new segment at {@code file}.
+     */
+    static void write(Path file, List<Payment> payments) throws IOException {
+        List<Payment> sorted = new ArrayList<>(payments);
+        sorted.sort(Comparator.comparing(Payment::getId));
+        int blockCount = (sorted.size() + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        long[] bloom = new long[Math.max(1, (sorted.size() * 2 * BLOOM_BITS_PER_KEY + 63) / 64)];
+        long[][] txnEntries = new long[sorted.size()][];
+        LocalDateTime latestUpdatedAt = LocalDateTime.MIN;
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC).putInt(VERSION);
+            long position = writeFully(out, header.flip(), 0);
+
+            ByteBuffer idIndex = ByteBuffer.allocate(blockCount * ID_ENTRY_BYTES);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                for (int block = 0; block < blockCount; block++) {
+                    List<Payment> records = sorted.subList(block * BLOCK_RECORDS,
+                            Math.min((block + 1) * BLOCK_RECORDS, sorted.size()));
+                    ByteArrayOutputStream raw = new ByteArrayOutputStream(records.size() * 256);
+                    DataOutputStream data = new DataOutputStream(raw);
+                    for (int i = 0; i < records.size(); i++) {
+                        Payment payment = records.get(i);
+                        writeRecord(data, payment);
+                        addToBloom(bloom, idHash(payment.getId()));
+                        addToBloom(bloom, transactionIdHash(payment.getTransactionId()));
+                        txnEntries[block * BLOCK_RECORDS + i] =
+                                new long[]{transactionIdHash(payment.getTransactionId()), block};
+                        if (payment.getUpdatedAt() != null && payment.getUpdatedAt().isAfter(latestUpdatedAt)) {
+                            latestUpdatedAt = payment.getUpdatedAt();
+                        }
+                    }
+                    byte[] compressed = deflate(deflater, raw.toByteArray());
+                    UUID first = records.getFirst().getId();
+                    idIndex.putLong(first.getMostSignificantBits())
+                            .putLong(first.getLeastSignificantBits())
+                            .putLong(position)
+                            .putInt(compressed.length)
+                            .putInt(records.size());
+                    position = writeFully(out, ByteBuffer.wrap(compressed), position);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            long idIndexOffset = position;
+            position = writeFully(out, idIndex.flip(), position);
+
+            Arrays.sort(txnEntries, Comparator.comparingLong((long[] entry) -> entry[0])
+                    .thenComparingLong(entry -> entry[1]));
+            ByteBuffer txnIndex = ByteBuffer.allocate(txnEntries.length * TXN_ENTRY_BYTES);
+            for (long[] entry : txnEntries) {
+                txnIndex.putLong(entry[0]).putInt((int) entry[1]);
+            }
+            long txnIndexOffset = position;
+            position = writeFully(out, txnIndex.flip(), position);
+
+            ByteBuffer bloomBytes = ByteBuffer.allocate(bloom.length * Long.BYTES);
+            bloomBytes.asLongBuffer().put(bloom);
+            long bloomOffset = position;
+            position = writeFully(out, bloomBytes, position);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES)
+                    .putLong(idIndexOffset)
+                    .putInt(blockCount)
+                    .putLong(txnIndexOffset)
+                    .putInt(sorted.size())
+                    .putLong(bloomOffset)
+                    .putInt(bloom.length)
+                    .putInt(BLOOM_HASHES)
+                    .putLong(latestUpdatedAt.equals(LocalDateTime.MIN)
+                            ? 0 : latestUpdatedAt.toInstant(ZoneOffset.UTC).toEpochMilli())
+                    .putLong(MAGIC);
+            writeFully(out, footer.flip(), position);
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int payments() {
+        return payments;
+    }
+
+    /**
+     * @return the latest {@code updatedAt} of the payments in the segment, to the millisecond.
+     */
+    LocalDateTime latestUpdatedAt() {
+        return latestUpdatedAt;
+    }
+
+    /**
+     * @return every payment in the segment, in id order. Used by compaction, which merges whole segments.
+     */
+    List<Payment> readAll() {
+        List<Payment> all = new ArrayList<>(payments);
+        for (int block = 0; block < blocks; block++) {
+            find(block, payment -> {
+                all.add(payment);
+                return false;
+            });
+        }
+        return all;
+    }
+
+    Optional<Payment> findById(UUID id) {
+        if (!mightContain(idHash(id))) {
+            return Optional.empty();
+        }
+        // The last block whose first id is not after the one we want
+        int low = 0;
+        int high = blocks - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long entry = idIndexOffset + (long) mid * ID_ENTRY_BYTES;
+            UUID first = new UUID(buffer.getLong((int) entry), buffer.getLong((int) entry + 8));
+            if (first.compareTo(id) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return block < 0 ? Optional.empty() : find(block, payment -> payment.getId().equals(id));
+    }
+
+    Optional<Payment> findByTransactionId(String transactionId) {
+        long hash = transactionIdHash(transactionId);
+        if (!mightContain(hash)) {
+            return Optional.empty();
+        }
+        int low = 0;
+        int high = payments;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(txnEntry(mid)) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < payments && buffer.getLong(txnEntry(i)) == hash; i++) {
+            Optional<Payment> payment = find(buffer.getInt(txnEntry(i) + 8),
+                    candidate -> candidate.getTransactionId().equals(transactionId));
+            if (payment.isPresent()) {
+                return payment;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released when the buffer is garbage collected
+        channel.close();
+    }
+
+    private int txnEntry(int index) {
+        return (int) (txnIndexOffset + (long) index * TXN_ENTRY_BYTES);
+    }
+
+    private Optional<Payment> find(int block, Predicate<Payment> matches) {
+        int entry = (int) (idIndexOffset + (long) block * ID_ENTRY_BYTES);
+        int offset = (int) buffer.getLong(entry + 16);
+        int length = buffer.getInt(entry + 24);
+        int records = buffer.getInt(entry + 28);
+        byte[] compressed = new byte[length];
+        buffer.get(offset, compressed);
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(inflate(compressed)))) {
+            for (int i = 0; i < records; i++) {
+                Payment payment = readRecord(data);
+                if (matches.test(payment)) {
+                    return Optional.of(payment);
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt block " + block + " in payment archive segment " + file, e);
+        }
+    }
+
+    private boolean mightContain(long hash) {
+        long bits = (long) bloomWords * 64;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            long word = buffer.getLong((int) (bloomOffset + (bit >>> 6) * Long.BYTES));
+            if ((word & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addToBloom(long[] bloom, long hash) {
+        long bits = (long) bloom.length * 64;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static long idHash(UUID id) {
+        return mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+    }
+
+    private static long transactionIdHash(String transactionId) {
+        // FNV-1a over the UTF-16 code units, then mixed so both halves are usable as Bloom hashes
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < transactionId.length(); i++) {
+            hash ^= transactionId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private static long writeFully(FileChannel out, ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += out.write(bytes, position);
+        }
+        return position;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new IOException("Truncated block");
+                }
+                raw.write(chunk, 0, inflated);
+            }
+            return raw.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream data, Payment payment) throws IOException {
+        data.writeLong(payment.getId().getMostSignificantBits());
+        data.writeLong(payment.getId().getLeastSignificantBits());
+        data.writeUTF(payment.getTransactionId());
+        data.writeUTF(payment.getRecipientPhoneNumber());
+        data.writeUTF(payment.getAmount().toPlainString());
+        data.writeUTF(payment.getCurrency());
+        writeNullable(data, payment.getClientId());
+        writeNullable(data, payment.getPriority() == null ? null : payment.getPriority().name());
+        data.writeUTF(payment.getStatus().name());
+        writeNullable(data, payment.getFailureReason());
+        writeNullable(data, payment.getMnoReference());
+        data.writeInt(payment.getAttemptCount());
+        writeNullable(data, payment.getNextAttemptAt());
+        writeNullable(data, payment.getCreatedAt());
+        writeNullable(data, payment.getUpdatedAt());
+        writeNullable(data, payment.getExecuteAt());
+    }
+
+    private static Payment readRecord(DataInputStream data) throws IOException {
+        UUID id = new UUID(data.readLong(), data.readLong());
+        Payment.PaymentBuilder payment = Payment.builder()
+                .id(id)
+                .transactionId(data.readUTF())
+                .recipientPhoneNumber(data.readUTF())
+                .amount(new BigDecimal(data.readUTF()))
+                .currency(data.readUTF())
+                .clientId(readNullableString(data));
+        String priority = readNullableString(data);
+        payment.priority(priority == null ? null : PaymentPriority.valueOf(priority))
+                .status(PaymentStatus.valueOf(data.readUTF()))
+                .failureReason(readNullableString(data))
+                .mnoReference(readNullableString(data))
+                .attemptCount(data.readInt())
+                .nextAttemptAt(readNullableDateTime(data))
+                .createdAt(readNullableDateTime(data))
+                .updatedAt(readNullableDateTime(data))
+                .executeAt(readNullableDateTime(data));
+        return payment.build();
+    }
+
+    private static void writeNullable(DataOutputStream data, String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeUTF(value);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream data, LocalDateTime value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            data.writeInt(value.getNano());
+        }
+    }
+
+    private static String readNullableString(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readUTF() : null;
+    }
+
+    private static LocalDateTime readNullableDateTime(DataInputStream data) throws IOException {
+        return data.readBoolean() ? LocalDateTime.ofEpochSecond(data.readLong(), data.readInt(), ZoneOffset.UTC) : null;
+    }
+}
@@ -0,0 +1,283 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.archive;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Cold storage for payments moved out of the {@code payments} table by {@link PaymentArchiver}.
+ * <p>
+ * Each archive run appends one {@link ArchiveSegment} to {@code payment.archive.directory}; segments are never
+ * modified afterwards. Lookups probe the segments newest first. The directory is local to the node, so in a
+ * multi-node deployment it must be shared storage or the archiver must only run on the node that serves it.
+ * <p>
+ * So that lookups do not probe one segment per archive run forever, {@link #compact()} merges
+ * {@code payment.archive.compaction.fan-in} adjacent segments of the same level into one segment of the next level:
+ * with hourly runs and the default of 24, a day of segments becomes one, and 24 of those become one again. A merged
+ * segment is named after the range of append sequences it covers ({@code payments-<first>-<last>.seg}). It is
+ * written before its inputs are deleted, so after a crash in between {@link #load()} deletes the inputs, whose ranges
+ * lie inside the merged one.
+ */
+@Component
+@Slf4j
+public class PaymentArchive {
+    private static final String SEGMENT_PREFIX = "payments-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int fanIn;
+    private final int maxCompactionPayments;
+    /**
+     * Newest first. Replaced rather than modified, so lookups iterate a consistent snapshot.
+     */
+    private volatile List<Segment> segments = List.of();
+    private long nextSequence = 1;
+
+    @Autowired
+    public PaymentArchive(
+            @Value("${payment.archive.directory:data/archive}") String directory,
+            @Value("${payment.archive.compaction.fan-in:24}") int fanIn,
+            @Value("${payment.archive.compaction.max-payments:500000}") int maxCompactionPayments) {
+        if (fanIn == 1 || fanIn < 0 || maxCompactionPayments < 0) {
+            throw new IllegalArgumentException(
+                    "payment.archive.compaction.fan-in must be 0 or at least 2 and max-payments must not be negative");
+        }
+        this.directory = Path.of(directory);
+        this.fanIn = fanIn;
+        this.maxCompactionPayments = maxCompactionPayments;
+    }
+
+    PaymentArchive(String directory) {
+        this(directory, 0, 0);
+    }
+
+    @PostConstruct
+    synchronized void load() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            log.info("No payment archive at {}", directory.toAbsolutePath());
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(PaymentArchive::isSegment).toList();
+        }
+        List<Path> live = new ArrayList<>(files.size());
+        for (Path file : files) {
+            if (files.stream().anyMatch(other -> other != file && covers(other, file))) {
+                log.info("Deleting payment archive segment {}, already merged by an interrupted compaction", file);
+                Files.delete(file);
+            } else {
+                live.add(file);
+            }
+        }
+        List<Segment> opened = new ArrayList<>(live.size());
+        for (Path file : live) {
+            opened.add(new Segment(firstSequenceOf(file), lastSequenceOf(file), ArchiveSegment.open(file)));
+        }
+        opened.sort(Comparator.comparingLong(Segment::last).reversed());
+        segments = List.copyOf(opened);
+        if (!opened.isEmpty()) {
+            nextSequence = opened.getFirst().last() + 1;
+        }
+        log.info("Opened {} payment archive segments holding {} payments at {}", opened.size(),
+                opened.stream().mapToLong(segment -> segment.segment().payments()).sum(), directory.toAbsolutePath());
+    }
+
+    /**
+     * Writes {@code payments} to a new segment. Once this returns the payments are durable and can be looked up, so
+     * they may be deleted from the {@code payments} table.
+     */
+    public synchronized void append(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return;
+        }
+        Path file = directory.resolve("%s%020d%s".formatted(SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        try {
+            Files.createDirectories(directory);
+            ArchiveSegment.write(file, payments);
+            List<Segment> updated = new ArrayList<>(segments.size() + 1);
+            updated.add(new Segment(nextSequence, nextSequence, ArchiveSegment.open(file)));
+            updated.addAll(segments);
+            segments = List.copyOf(updated);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write payment archive segment " + file, e);
+        }
+        nextSequence++;
+        log.info("Archived {} payments to {}", payments.size(), file);
+    }
+
+    /**
+     * Merges runs of {@code fan-in} adjacent segments of the same level, oldest first, until none is left. A run that
+     * would hold more than {@code payment.archive.compaction.max-payments} payments is left as it is, since a merge
+     * reads its whole run into memory.
+     *
+     * @return the number of segments merged away.
+     */
+    public synchronized int compact() {
+        if (fanIn == 0) {
+            return 0;
+        }
+        int merged = 0;
+        for (List<Segment> run = nextRun(); run != null; run = nextRun()) {
+            merge(run);
+            merged += run.size() - 1;
+        }
+        return merged;
+    }
+
+    public Optional<Payment> findById(UUID id) {
+        for (Segment segment : segments) {
+            Optional<Payment> payment = segment.segment().findById(id);
+            if (payment.isPresent()) {
+                return payment;
+            }
+        }
+        return Optional.empty();
+    }
+
+    public Optional<Payment> findByTransactionId(String transactionId) {
+        for (Segment segment : segments) {
+            Optional<Payment> payment = segment.segment().findByTransactionId(transactionId);
+            if (payment.isPresent()) {
+                return payment;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the latest {@code updatedAt} of any archived payment, or empty if nothing has been archived.
+     */
+    public Optional<LocalDateTime> archivedThrough() {
+        return segments.stream()
+                .map(segment -> segment.segment().latestUpdatedAt())
+                .max(Comparator.naturalOrder());
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        for (Segment segment : segments) {
+            closeQuietly(segment);
+        }
+        segments = List.of();
+    }
+
+    /**
+     * @return the oldest run of {@code fan-in} adjacent segments of the same level small enough to merge, or
+     * {@code null} if there is none.
+     */
+    private List<Segment> nextRun() {
+        List<Segment> oldestFirst = segments.reversed();
+        for (int from = 0; from + fanIn <= oldestFirst.size(); from++) {
+            List<Segment> run = oldestFirst.subList(from, from + fanIn);
+            int level = levelOf(run.getFirst());
+            long payments = run.stream().mapToLong(segment -> segment.segment().payments()).sum();
+            if (run.stream().allMatch(segment -> levelOf(segment) == level)
+                    && (maxCompactionPayments == 0 || payments <= maxCompactionPayments)) {
+                return List.copyOf(run);
+            }
+        }
+        return null;
+    }
+
+    private void merge(List<Segment> run) {
+        long first = run.getFirst().first();
+        long last = run.getLast().last();
+        Path file = directory.resolve("%s%020d-%020d%s".formatted(SEGMENT_PREFIX, first, last, SEGMENT_SUFFIX));
+        // A payment archived twice (see PaymentArchiver) is kept once; both copies are identical
+        Map<UUID, Payment> payments = new LinkedHashMap<>();
+        for (Segment segment : run.reversed()) {
+            for (Payment payment : segment.segment().readAll()) {
+                payments.putIfAbsent(payment.getId(), payment);
+            }
+        }
+        try {
+            ArchiveSegment.write(file, List.copyOf(payments.values()));
+            Segment compacted = new Segment(first, last, ArchiveSegment.open(file));
+            List<Segment> updated = new ArrayList<>(segments);
+            int at = updated.indexOf(run.getLast());
+            updated.removeAll(run);
+            updated.add(at, compacted);
+            segments = List.copyOf(updated);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write payment archive segment " + file, e);
+        }
+        // Lookups still iterating the previous list keep working: the mappings outlive the channel and the file
+        for (Segment segment : run) {
+            closeQuietly(segment);
+            try {
+                Files.delete(segment.segment().file());
+            } catch (IOException e) {
+                log.warn("Failed to delete merged payment archive segment {}; it is deleted on the next start",
+                        segment.segment().file(), e);
+            }
+        }
+        log.info("Compacted {} payment archive segments holding {} payments into {}", run.size(), payments.size(),
+                file);
+    }
+
+    private int levelOf(Segment segment) {
+        long width = segment.last() - segment.first() + 1;
+        int level = 0;
+        while (width >= fanIn) {
+            width /= fanIn;
+            level++;
+        }
+        return level;
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.segment().close();
+        } catch (IOException e) {
+            log.warn("Failed to close payment archive segment {}", segment.segment().file(), e);
+        }
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static boolean covers(Path outer, Path inner) {
+        return firstSequenceOf(outer) <= firstSequenceOf(inner) && lastSequenceOf(inner) <= lastSequenceOf(outer);
+    }
+
+    private static long firstSequenceOf(Path file) {
+        return Long.parseLong(sequencesOf(file)[0]);
+    }
+
+    private static long lastSequenceOf(Path file) {
+        String[] sequences = sequencesOf(file);
+        return Long.parseLong(sequences[sequences.length - 1]);
+    }
+
+    private static String[] sequencesOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()).split("-");
+    }
+
+    /**
+     * A segment and the range of append sequences it covers: a single one until it is compacted.
+     */
+    private record Segment(long first, long last, ArchiveSegment segment) {
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.archive;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves terminal payments that have not changed for {@code payment.archive.max-age-days} out of the {@code payments}
+ * table and into the {@link PaymentArchive}, so the hot table (and its {@code transactionId} unique index) only holds
+ * recent payments.
+ * <p>
+ * Each run reads up to {@code payment.archive.max-payments-per-run} payments in keyset-paged batches of
+ * {@code payment.archive.batch-size}, writes them to one segment and only then deletes them, batch by batch. If the
+ * process dies between the two steps the payments are archived again by the next run; lookups return whichever copy
+ * they find first, and both are identical.
+ * <p>
+ * Each deleted batch is published as a {@link PaymentsArchivedEvent}, so that
+ * {@link com.github.ajharry69.kcb_b2c_payment.payment.stats.PaymentStatistics} stops counting those payments just as
+ * its startup query would.
+ * <p>
+ * With several payment shards, each run archives every shard in turn, up to the per-run cap each, and then
+ * {@linkplain PaymentArchive#compact() compacts} the archive.
+ */
+@Component
+@Slf4j
+public class PaymentArchiver {
+    static final List<PaymentStatus> ARCHIVABLE_STATUSES =
+            List.of(PaymentStatus.SUCCESSFUL, PaymentStatus.FAILED, PaymentStatus.REJECTED);
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentArchive paymentArchive;
+    private final PaymentShards paymentShards;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final int maxPaymentsPerRun;
+    private final Clock clock;
+
+    @Autowired
+    public PaymentArchiver(
+            PaymentRepository paymentRepository,
+            PaymentArchive paymentArchive,
+            PaymentShards paymentShards,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${payment.archive.enabled:true}") boolean enabled,
+            @Value("${payment.archive.max-age-days:90}") int maxAgeDays,
+            @Value("${payment.archive.batch-size:1000}") int batchSize,
+            @Value("${payment.archive.max-payments-per-run:100000}") int maxPaymentsPerRun) {
+        this(paymentRepository, paymentArchive, paymentShards, eventPublisher, enabled, Duration.ofDays(maxAgeDays),
+                batchSize, maxPaymentsPerRun, Clock.systemDefaultZone());
+    }
+
+    PaymentArchiver(PaymentRepository paymentRepository, PaymentArchive paymentArchive, PaymentShards paymentShards,
+                    ApplicationEventPublisher eventPublisher, boolean enabled, Duration maxAge, int batchSize,
+                    int maxPaymentsPerRun, Clock clock) {
+        if (batchSize < 1 || maxPaymentsPerRun < 1) {
+            throw new IllegalArgumentException(
+                    "payment.archive.batch-size and max-payments-per-run must be at least 1");
+        }
+        this.paymentRepository = paymentRepository;
+        this.paymentArchive = paymentArchive;
+        this.paymentShards = paymentShards;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.maxPaymentsPerRun = maxPaymentsPerRun;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the number of payments archived.
+     */
+    @Scheduled(fixedDelayString = "${payment.archive.interval-ms:3600000}",
+            initialDelayString = "${payment.archive.initial-delay-ms:60000}")
+    public int archive() {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDateTime before = LocalDateTime.now(clock).minus(maxAge);
+        int archived = 0;
+        for (int shard = 0; shard < paymentShards.count(); shard++) {
+            archived += paymentShards.onShard(shard, () -> archive(before));
+        }
+        paymentArchive.compact();
+        return archived;
+    }
+
+    private int archive(LocalDateTime before) {
+        List<Payment> archivable = new ArrayList<>();
+        LocalDateTime afterUpdatedAt = EPOCH;
+        UUID afterId = MIN_ID;
+        while (archivable.size() < maxPaymentsPerRun) {
+            int limit = Math.min(batchSize, maxPaymentsPerRun - archivable.size());
+            List<Payment> batch = paymentRepository.findArchivable(
+                    ARCHIVABLE_STATUSES, before, afterUpdatedAt, afterId, Limit.of(limit));
+            archivable.addAll(batch);
+            if (batch.size() < limit) {
+                break;
+            }
+            afterUpdatedAt = batch.getLast().getUpdatedAt();
+            afterId = batch.getLast().getId();
+        }
+        if (archivable.isEmpty()) {
+            return 0;
+        }
+
+        paymentArchive.append(archivable);
+        for (int from = 0; from < archivable.size(); from += batchSize) {
+            List<Payment> batch = archivable.subList(from, Math.min(from + batchSize, archivable.size()));
+            paymentRepository.deleteAllByIdInBatch(batch.stream().map(Payment::getId).toList());
+            eventPublisher.publishEvent(new PaymentsArchivedEvent(aggregate(batch)));
+        }
+        log.info("Archived {} terminal payments last updated before {}", archivable.size(), before);
+        return archivable.size();
+    }
+
+    private static List<PaymentAggregate> aggregate(List<Payment> payments) {
+        Map<Group, PaymentAggregate> groups = new LinkedHashMap<>();
+        for (Payment payment : payments) {
+            BigDecimal amount = payment.getAmount() == null ? BigDecimal.ZERO : payment.getAmount();
+            groups.merge(new Group(payment.getStatus(), payment.getCurrency()),
+                    new PaymentAggregate(payment.getStatus(), payment.getCurrency(), 1, amount),
+                    (sum, one) -> new PaymentAggregate(
+                            sum.status(), sum.currency(), sum.count() + 1, sum.amount().add(one.amount())));
+        }
+        return List.copyOf(groups.values());
+    }
+
+    private record Group(PaymentStatus status, String currency) {
+    }
+}
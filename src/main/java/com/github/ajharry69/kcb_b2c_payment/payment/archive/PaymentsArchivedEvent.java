@@ -0,0 +1,13 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.archive;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+
+import java.util.List;
+
+/**
+ * Published by {@link PaymentArchiver} after it has deleted archived payments from the {@code payments} table.
+ *
+ * @param removed the deleted payments, per status and currency.
+ */
+public record PaymentsArchivedEvent(List<PaymentAggregate> removed) {
+}
@@ -0,0 +1,8 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+
+import java.math.BigDecimal;
+
+public record PaymentAggregate(PaymentStatus status, String currency, long count, BigDecimal amount) {
+}
@@ -0,0 +1,22 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record PaymentLookupRequest(
+        @NotNull(message = "Lookup key type cannot be null")
+        LookupBy lookupBy,
+
+        @NotEmpty(message = "At least one key is required")
+        @Size(max = 1000, message = "At most 1000 keys can be looked up at once")
+        List<@NotBlank(message = "Keys cannot be blank") String> keys
+) {
+    public enum LookupBy {
+        PAYMENT_ID,
+        TRANSACTION_ID
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+/**
+ * Outcome for one requested key, in the position the key was requested.
+ *
+ * @param payment {@code null} when {@code found} is {@code false}.
+ */
+public record PaymentLookupResult(
+        String key,
+        boolean found,
+        PaymentResponse payment
+) {
+    public static PaymentLookupResult found(String key, PaymentResponse payment) {
+        return new PaymentLookupResult(key, true, payment);
+    }
+
+    public static PaymentLookupResult notFound(String key) {
+        return new PaymentLookupResult(key, false, null);
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.rollup.ReportPeriod;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @param from    start of the first hour covered.
+ * @param to      end (exclusive) of the last hour covered.
+ * @param totals  payments that reached each terminal status in the range, per currency.
+ * @param periods the same, per period, oldest first. Periods without payments are omitted.
+ */
+public record PaymentReport(
+        LocalDateTime from,
+        LocalDateTime to,
+        ReportPeriod period,
+        List<PaymentAggregate> totals,
+        List<Period> periods
+) {
+    public record Period(LocalDateTime start, List<PaymentAggregate> totals) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * @param rollups the number of rollup rows written for the range.
+ */
+public record PaymentRollupRebuild(LocalDateTime from, LocalDateTime to, int rollups) {
+}
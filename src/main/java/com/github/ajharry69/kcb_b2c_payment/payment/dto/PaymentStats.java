@@ -0,0 +1,22 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * @param current       payments currently in each status, per currency.
+ * @param windowMinutes how many minutes, up to and including the current one, {@code window} and {@code minutes}
+ *                      cover.
+ * @param window        payments that moved into each status during the window, per currency.
+ * @param minutes       the same, minute by minute, oldest first. Minutes without transitions are omitted.
+ */
+public record PaymentStats(
+        Instant generatedAt,
+        List<PaymentAggregate> current,
+        int windowMinutes,
+        List<PaymentAggregate> window,
+        List<Minute> minutes
+) {
+    public record Minute(Instant start, List<PaymentAggregate> transitions) {
+    }
+}
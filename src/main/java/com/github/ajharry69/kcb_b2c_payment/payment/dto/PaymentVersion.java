@@ -0,0 +1,56 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The few columns that decide whether a payment has changed since a client last saw it. Used to answer conditional
+ * GETs without loading, mapping or serialising the full payment.
+ */
+public record PaymentVersion(
+        UUID paymentId,
+        PaymentStatus status,
+        LocalDateTime updatedAt
+) {
+    private static final Set<PaymentStatus> FINAL_STATUSES =
+            EnumSet.of(PaymentStatus.SUCCESSFUL, PaymentStatus.FAILED, PaymentStatus.REJECTED);
+
+    public static PaymentVersion of(PaymentResponse response) {
+        return new PaymentVersion(response.paymentId(), response.status(), response.updatedAt());
+    }
+
+    /**
+     * @return a strong entity tag (without quotes) that changes whenever the payment does.
+     */
+    public String eTag() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest((paymentId + "|" + status + "|" + updatedAt).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is required on every Java platform", e);
+        }
+    }
+
+    /**
+     * @return {@code true} if the payment will not change again. Only then is {@link #lastModifiedMillis()} a safe
+     * validator: HTTP dates have one-second precision, so a change within the second a client last saw would be
+     * answered with a 304.
+     */
+    public boolean isFinal() {
+        return FINAL_STATUSES.contains(status);
+    }
+
+    public long lastModifiedMillis() {
+        return updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
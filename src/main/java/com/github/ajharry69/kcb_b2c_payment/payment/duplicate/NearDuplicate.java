@@ -0,0 +1,8 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.duplicate;
+
+/**
+ * @param transactionId the earlier payment this one duplicates.
+ * @param action        what to do with this one.
+ */
+public record NearDuplicate(String transactionId, NearDuplicateAction action) {
+}
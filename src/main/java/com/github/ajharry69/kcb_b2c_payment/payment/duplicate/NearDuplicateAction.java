@@ -0,0 +1,19 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.duplicate;
+
+/**
+ * What {@code PaymentService} does with a payment that looks like one it accepted moments ago.
+ */
+public enum NearDuplicateAction {
+    /**
+     * Log and count it, then dispatch it as usual.
+     */
+    WARN,
+    /**
+     * Store it as {@code ON_HOLD} until an operator releases or rejects it.
+     */
+    HOLD,
+    /**
+     * Store it as {@code REJECTED} without dispatching it.
+     */
+    REJECT
+}
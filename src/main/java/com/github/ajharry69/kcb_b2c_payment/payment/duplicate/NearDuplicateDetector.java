@@ -0,0 +1,176 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.duplicate;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Spots a payment to the same recipient, of the same amount and currency, as one accepted within the last
+ * {@code payment.near-duplicates.window-ms} under a different {@code transactionId}: typically a merchant sending one
+ * payout twice. The {@code transactionId} constraint cannot catch these.
+ * <p>
+ * Payments accepted recently are kept in memory in a ring of concurrent hash maps, one per
+ * {@code payment.near-duplicates.bucket-ms} of arrival time, so a check is a lookup in each of a fixed number of
+ * buckets and never queries the database or takes a lock. A bucket is replaced by an empty one when its turn comes
+ * round again, which bounds memory by the payments accepted within one window. The index is per node and starts empty
+ * after a restart.
+ * <p>
+ * Looking a payment up ({@link #find}) and recording it ({@link #record}) are separate steps, so that only payments
+ * that are actually going out are matched against: a payment rejected or held is never recorded.
+ */
+@Component
+public class NearDuplicateDetector {
+    private final boolean enabled;
+    private final NearDuplicateAction action;
+    private final long windowMillis;
+    private final long bucketMillis;
+    private final LongSupplier clock;
+    private final Counter detected;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    @Autowired
+    public NearDuplicateDetector(
+            @Value("${payment.near-duplicates.enabled:true}") boolean enabled,
+            @Value("${payment.near-duplicates.action:WARN}") NearDuplicateAction action,
+            @Value("${payment.near-duplicates.window-ms:60000}") long windowMillis,
+            @Value("${payment.near-duplicates.bucket-ms:10000}") long bucketMillis,
+            MeterRegistry meterRegistry) {
+        this(enabled, action, windowMillis, bucketMillis, meterRegistry, System::currentTimeMillis);
+    }
+
+    NearDuplicateDetector(boolean enabled, NearDuplicateAction action, long windowMillis, long bucketMillis,
+                          MeterRegistry meterRegistry, LongSupplier clock) {
+        if (windowMillis < 1 || bucketMillis < 1) {
+            throw new IllegalArgumentException("payment.near-duplicates.window-ms and bucket-ms must be at least 1");
+        }
+        this.enabled = enabled;
+        this.action = action;
+        this.windowMillis = windowMillis;
+        this.bucketMillis = bucketMillis;
+        this.clock = clock;
+        this.detected = Counter.builder("payment.near-duplicates")
+                .description("Payments matching another to the same recipient, amount and currency within the window")
+                .tag("action", action.name().toLowerCase())
+                .register(meterRegistry);
+        // One more bucket than the window spans, for the one the window's start falls in
+        int bucketCount = (int) Math.ceilDiv(windowMillis, bucketMillis) + 1;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.set(i, new Bucket(Long.MIN_VALUE, new ConcurrentHashMap<>()));
+        }
+    }
+
+    /**
+     * Looks for a payment recorded within the window that {@code payment} duplicates. {@code payment} itself is not
+     * recorded.
+     *
+     * @return the most recent earlier match and the configured action; empty if there is none.
+     */
+    public Optional<NearDuplicate> find(Payment payment) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Seen earlier = findSince(fingerprintOf(payment), clock.getAsLong() - windowMillis);
+        if (earlier == null || earlier.transactionId().equals(payment.getTransactionId())) {
+            return Optional.empty();
+        }
+        detected.increment();
+        return Optional.of(new NearDuplicate(earlier.transactionId(), action));
+    }
+
+    /**
+     * Records {@code payment}, which is going out, for later payments to be matched against. Inside a transaction it
+     * is forgotten again if the transaction rolls back.
+     */
+    public void record(Payment payment) {
+        if (!enabled) {
+            return;
+        }
+        Fingerprint fingerprint = fingerprintOf(payment);
+        Seen seen = new Seen(payment.getTransactionId(), clock.getAsLong());
+        Bucket bucket = bucket(seen.atMillis());
+        if (bucket == null) {
+            return;
+        }
+        bucket.seen().put(fingerprint, seen);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        bucket.seen().remove(fingerprint, seen);
+                    }
+                }
+            });
+        }
+    }
+
+    private Seen findSince(Fingerprint fingerprint, long sinceMillis) {
+        long oldest = Math.floorDiv(sinceMillis, bucketMillis);
+        Seen latest = null;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.period() < oldest) {
+                continue;
+            }
+            Seen seen = bucket.seen().get(fingerprint);
+            if (seen != null && seen.atMillis() > sinceMillis
+                    && (latest == null || seen.atMillis() > latest.atMillis())) {
+                latest = seen;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return the bucket for {@code atMillis}, replacing the one from an earlier turn of the ring; {@code null} if a
+     * later turn has already taken its place.
+     */
+    private Bucket bucket(long atMillis) {
+        long period = Math.floorDiv(atMillis, bucketMillis);
+        int index = (int) Math.floorMod(period, (long) buckets.length());
+        while (true) {
+            Bucket current = buckets.get(index);
+            if (current.period() == period) {
+                return current;
+            }
+            if (current.period() > period) {
+                return null;
+            }
+            Bucket next = new Bucket(period, new ConcurrentHashMap<>());
+            if (buckets.compareAndSet(index, current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static Fingerprint fingerprintOf(Payment payment) {
+        return new Fingerprint(
+                payment.getRecipientPhoneNumber(), payment.getAmount().stripTrailingZeros(), payment.getCurrency());
+    }
+
+    private record Bucket(long period, Map<Fingerprint, Seen> seen) {
+    }
+
+    /**
+     * Amounts are compared by value, so {@code 100} and {@code 100.00} match.
+     */
+    private record Fingerprint(String recipientPhoneNumber, BigDecimal amount, String currency) {
+    }
+
+    private record Seen(String transactionId, long atMillis) {
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.InputCoercionException;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Hand-written streaming (de)serialisation of the payment API's hot payloads. Fields are read and written token by
+ * token, with no reflection, introspected bean metadata or intermediate tree.
+ * <p>
+ * The JSON matches what the application's {@code ObjectMapper} produces and accepts: record component names, ISO-8601
+ * date-times, nulls included, unknown properties ignored and scalars coerced to strings.
+ */
+public final class PaymentJsonCodec {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private PaymentJsonCodec() {
+    }
+
+    public static void writeResponse(JsonGenerator generator, PaymentResponse response) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("paymentId");
+        writeString(generator, response.paymentId() == null ? null : response.paymentId().toString());
+        generator.writeFieldName("transactionId");
+        writeString(generator, response.transactionId());
+        generator.writeFieldName("recipientPhoneNumber");
+        writeString(generator, response.recipientPhoneNumber());
+        generator.writeFieldName("amount");
+        generator.writeNumber(response.amount());
+        generator.writeFieldName("currency");
+        writeString(generator, response.currency());
+        generator.writeFieldName("status");
+        writeString(generator, response.status() == null ? null : response.status().name());
+        generator.writeFieldName("mnoReference");
+        writeString(generator, response.mnoReference());
+        generator.writeFieldName("failureReason");
+        writeString(generator, response.failureReason());
+        generator.writeFieldName("createdAt");
+        writeDateTime(generator, response.createdAt());
+        generator.writeFieldName("updatedAt");
+        writeDateTime(generator, response.updatedAt());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads one {@link PaymentRequest} object from the parser's current (or next) token.
+     */
+    public static PaymentRequest readRequest(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new InputCoercionException(parser, "Expected a JSON object for PaymentRequest but found " + token,
+                    token, PaymentRequest.class);
+        }
+
+        String transactionId = null;
+        String recipientPhoneNumber = null;
+        BigDecimal amount = null;
+        String currency = null;
+        String priority = null;
+        String executeAt = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "transactionId" -> transactionId = readString(parser);
+                case "recipientPhoneNumber" -> recipientPhoneNumber = readString(parser);
+                case "amount" -> amount = readDecimal(parser);
+                case "currency" -> currency = readString(parser);
+                case "priority" -> priority = readString(parser);
+                case "executeAt" -> executeAt = readString(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return new PaymentRequest(transactionId, recipientPhoneNumber, amount, currency, priority, executeAt);
+    }
+
+    private static void writeString(JsonGenerator generator, String value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    /**
+     * Writes {@code value} as {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME} would, without going through the formatter's
+     * general-purpose printer chain. Years outside 0000-9999 (which ISO prints with a sign) fall back to the formatter.
+     */
+    private static void writeDateTime(JsonGenerator generator, LocalDateTime value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+            return;
+        }
+        int year = value.getYear();
+        if (year < 0 || year > 9999) {
+            generator.writeString(DATE_TIME.format(value));
+            return;
+        }
+        char[] buffer = new char[29];
+        digits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        digits(buffer, 5, value.getMonthValue(), 2);
+        buffer[7] = '-';
+        digits(buffer, 8, value.getDayOfMonth(), 2);
+        buffer[10] = 'T';
+        digits(buffer, 11, value.getHour(), 2);
+        buffer[13] = ':';
+        digits(buffer, 14, value.getMinute(), 2);
+        buffer[16] = ':';
+        digits(buffer, 17, value.getSecond(), 2);
+        int length = 19;
+        int nano = value.getNano();
+        if (nano > 0) {
+            // Fraction with trailing zeros dropped, as ISO_LOCAL_TIME prints it
+            buffer[19] = '.';
+            digits(buffer, 20, nano, 9);
+            length = 29;
+            while (buffer[length - 1] == '0') {
+                length--;
+            }
+        }
+        generator.writeString(buffer, 0, length);
+    }
+
+    private static void digits(char[] buffer, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new InputCoercionException(parser, "Expected a string for '" + parser.currentName() + "' but found " + token,
+                    token, String.class);
+        }
+        return parser.getText();
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isNumeric()) {
+            return parser.getDecimalValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            if (text.isEmpty()) {
+                return null;
+            }
+            try {
+                return new BigDecimal(text);
+            } catch (NumberFormatException e) {
+                throw new InputCoercionException(parser, "'" + text + "' is not a valid amount", token, BigDecimal.class);
+            }
+        }
+        throw new InputCoercionException(parser, "Expected a number for '" + parser.currentName() + "' but found " + token,
+                token, BigDecimal.class);
+    }
+}
@@ -0,0 +1,365 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.limit;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-transaction, daily-count and daily-amount limits for each recipient (E.164 phone number) and each client,
+ * checked before a payment is dispatched so that payments the MNO would refuse are rejected without a round trip.
+ * Amounts are in the payment's currency and usage is tracked per currency; a limit of {@code 0} is no limit.
+ * <p>
+ * Usage is kept in memory in sliding 24-hour windows of hourly slots, rebuilt from the {@code payments} table at
+ * startup. Every payment that is not {@code REJECTED} counts, whatever its outcome. A payment reserves its usage when
+ * it is checked, so concurrent payments to one recipient cannot both slip under a limit, and gives it back if its
+ * transaction rolls back or it is {@link #release released} when rejected later.
+ * <p>
+ * Each dimension tracks at most {@code payment.limits.max-tracked} keys. When full, windows with no usage left are
+ * purged (at most once a minute); if every tracked key is still active, new keys share one overflow window, so an
+ * untracked recipient can never bypass its limits. Limits are per node.
+ */
+@Component
+@Slf4j
+public class PaymentLimits {
+    static final int WINDOW_SLOTS = 24;
+    static final long SLOT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long WINDOW_MILLIS = WINDOW_SLOTS * SLOT_MILLIS;
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int AMOUNT_SCALE = 2;
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentShards paymentShards;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int loadBatchSize;
+    private final LongSupplier clock;
+    private final Dimension recipients;
+    private final Dimension clients;
+
+    @Autowired
+    public PaymentLimits(
+            PaymentRepository paymentRepository,
+            PaymentShards paymentShards,
+            MeterRegistry meterRegistry,
+            @Value("${payment.limits.enabled:true}") boolean enabled,
+            @Value("${payment.limits.recipient.max-amount:250000}") BigDecimal recipientMaxAmount,
+            @Value("${payment.limits.recipient.daily-count:0}") long recipientDailyCount,
+            @Value("${payment.limits.recipient.daily-amount:500000}") BigDecimal recipientDailyAmount,
+            @Value("${payment.limits.client.max-amount:0}") BigDecimal clientMaxAmount,
+            @Value("${payment.limits.client.daily-count:0}") long clientDailyCount,
+            @Value("${payment.limits.client.daily-amount:0}") BigDecimal clientDailyAmount,
+            @Value("${payment.limits.max-tracked:1000000}") int maxTracked,
+            @Value("${payment.limits.load-batch-size:5000}") int loadBatchSize) {
+        this(paymentRepository, paymentShards, meterRegistry, enabled,
+                new Limits(recipientMaxAmount, recipientDailyCount, recipientDailyAmount),
+                new Limits(clientMaxAmount, clientDailyCount, clientDailyAmount),
+                maxTracked, loadBatchSize, System::currentTimeMillis);
+    }
+
+    PaymentLimits(PaymentRepository paymentRepository, PaymentShards paymentShards, MeterRegistry meterRegistry,
+                  boolean enabled, Limits recipientLimits, Limits clientLimits, int maxTracked, int loadBatchSize,
+                  LongSupplier clock) {
+        if (maxTracked < 1 || loadBatchSize < 1) {
+            throw new IllegalArgumentException("payment.limits.max-tracked and load-batch-size must be at least 1");
+        }
+        this.paymentRepository = paymentRepository;
+        this.paymentShards = paymentShards;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.loadBatchSize = loadBatchSize;
+        this.clock = clock;
+        this.recipients = new Dimension("recipient", recipientLimits, maxTracked, clock.getAsLong());
+        this.clients = new Dimension("client", clientLimits, maxTracked, clock.getAsLong());
+    }
+
+    @PostConstruct
+    void load() {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.getAsLong();
+        LocalDateTime since = toLocalDateTime(now - WINDOW_MILLIS);
+        List<List<PaymentUsage>> usage = paymentShards.readEach(shard -> loadSince(since));
+        int loaded = 0;
+        for (List<PaymentUsage> shardUsage : usage) {
+            for (PaymentUsage payment : shardUsage) {
+                long at = toMillis(payment.createdAt());
+                long amount = toMinorUnits(payment.amount());
+                recipients.record(key(payment.recipientPhoneNumber(), payment.currency()), at, 1, amount, now);
+                if (payment.clientId() != null) {
+                    clients.record(key(payment.clientId(), payment.currency()), at, 1, amount, now);
+                }
+            }
+            loaded += shardUsage.size();
+        }
+        log.info("Loaded payment limit usage from {} payments created since {}", loaded, since);
+    }
+
+    /**
+     * Checks {@code payment} against its recipient's and client's limits and, if it is within them, records its usage.
+     * Inside a transaction the usage is given back if the transaction rolls back.
+     *
+     * @return the limit {@code payment} would break, as a failure reason; empty if it may proceed.
+     */
+    public Optional<String> tryReserve(Payment payment) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long now = clock.getAsLong();
+        long amount = toMinorUnits(payment.getAmount());
+        String currency = payment.getCurrency();
+        String recipientKey = key(payment.getRecipientPhoneNumber(), currency);
+        String clientKey = payment.getClientId() == null ? null : key(payment.getClientId(), currency);
+
+        Violation violation = recipients.perTransactionViolation(amount, currency);
+        if (violation == null && clientKey != null) {
+            violation = clients.perTransactionViolation(amount, currency);
+        }
+        if (violation == null) {
+            violation = reserve(recipientKey, clientKey, now, amount, currency);
+        }
+        if (violation != null) {
+            Counter.builder("payment.limits.rejected")
+                    .description("Payments rejected before dispatch for breaking a recipient or client limit")
+                    .tag("subject", violation.subject())
+                    .tag("limit", violation.limit())
+                    .register(meterRegistry)
+                    .increment();
+            return Optional.of(violation.reason());
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        giveBack(recipientKey, clientKey, now, amount);
+                    }
+                }
+            });
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Gives back the usage {@link #tryReserve} recorded for {@code payment}, which no longer counts: a held payment
+     * rejected on review. Inside a transaction this happens once it commits.
+     */
+    public void release(Payment payment) {
+        if (!enabled) {
+            return;
+        }
+        long at = toMillis(payment.getCreatedAt());
+        long amount = toMinorUnits(payment.getAmount());
+        String currency = payment.getCurrency();
+        String recipientKey = key(payment.getRecipientPhoneNumber(), currency);
+        String clientKey = payment.getClientId() == null ? null : key(payment.getClientId(), currency);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            giveBack(recipientKey, clientKey, at, amount);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    giveBack(recipientKey, clientKey, at, amount);
+                }
+            }
+        });
+    }
+
+    private void giveBack(String recipientKey, String clientKey, long at, long amount) {
+        long now = clock.getAsLong();
+        recipients.record(recipientKey, at, -1, -amount, now);
+        if (clientKey != null) {
+            clients.record(clientKey, at, -1, -amount, now);
+        }
+    }
+
+    /**
+     * Recipient windows are always locked before client windows, so two reservations cannot deadlock.
+     */
+    private Violation reserve(String recipientKey, String clientKey, long now, long amount, String currency) {
+        UsageWindow recipientWindow = recipients.window(recipientKey, now);
+        synchronized (recipientWindow) {
+            Violation violation = recipients.dailyViolation(recipientWindow, now, amount, currency);
+            if (violation != null) {
+                return violation;
+            }
+            if (clientKey == null) {
+                recipientWindow.add(now, 1, amount);
+                return null;
+            }
+            UsageWindow clientWindow = clients.window(clientKey, now);
+            synchronized (clientWindow) {
+                violation = clients.dailyViolation(clientWindow, now, amount, currency);
+                if (violation != null) {
+                    return violation;
+                }
+                recipientWindow.add(now, 1, amount);
+                clientWindow.add(now, 1, amount);
+                return null;
+            }
+        }
+    }
+
+    private List<PaymentUsage> loadSince(LocalDateTime since) {
+        List<PaymentUsage> usage = new ArrayList<>();
+        LocalDateTime afterCreatedAt = since;
+        UUID afterId = MIN_ID;
+        while (true) {
+            List<PaymentUsage> batch = paymentRepository.findUsageSince(
+                    since, PaymentStatus.REJECTED, afterCreatedAt, afterId, Limit.of(loadBatchSize));
+            usage.addAll(batch);
+            if (batch.size() < loadBatchSize) {
+                return usage;
+            }
+            afterCreatedAt = batch.getLast().createdAt();
+            afterId = batch.getLast().paymentId();
+        }
+    }
+
+    private static String key(String subject, String currency) {
+        return subject + '/' + currency;
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(AMOUNT_SCALE).longValue();
+    }
+
+    private static String fromMinorUnits(long amount) {
+        return BigDecimal.valueOf(amount, AMOUNT_SCALE).toPlainString();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * @param maxAmount   largest single payment.
+     * @param dailyCount  most payments in any 24 hours.
+     * @param dailyAmount largest total in any 24 hours.
+     */
+    record Limits(BigDecimal maxAmount, long dailyCount, BigDecimal dailyAmount) {
+    }
+
+    /**
+     * @param subject {@code recipient} or {@code client}.
+     * @param limit   {@code max-amount}, {@code daily-count} or {@code daily-amount}.
+     * @param reason  stored as the payment's {@code failureReason}.
+     */
+    private record Violation(String subject, String limit, String reason) {
+    }
+
+    private static final class Dimension {
+        private final String name;
+        private final long maxAmount;
+        private final long dailyCount;
+        private final long dailyAmount;
+        private final int maxTracked;
+        private final ConcurrentMap<String, UsageWindow> windows = new ConcurrentHashMap<>();
+        private final UsageWindow overflow = new UsageWindow(WINDOW_SLOTS, SLOT_MILLIS);
+        private final AtomicLong nextPurgeMillis;
+
+        private Dimension(String name, Limits limits, int maxTracked, long now) {
+            this.name = name;
+            this.maxAmount = toMinorUnits(limits.maxAmount());
+            this.dailyCount = limits.dailyCount();
+            this.dailyAmount = toMinorUnits(limits.dailyAmount());
+            this.maxTracked = maxTracked;
+            this.nextPurgeMillis = new AtomicLong(now);
+        }
+
+        private Violation perTransactionViolation(long amount, String currency) {
+            if (maxAmount > 0 && amount > maxAmount) {
+                return new Violation(name, "max-amount", capitalized() + " per-transaction limit of "
+                        + fromMinorUnits(maxAmount) + " " + currency + " exceeded");
+            }
+            return null;
+        }
+
+        private Violation dailyViolation(UsageWindow window, long now, long amount, String currency) {
+            if (dailyCount > 0 && window.count(now) >= dailyCount) {
+                return new Violation(name, "daily-count",
+                        capitalized() + " daily limit of " + dailyCount + " payments reached");
+            }
+            if (dailyAmount > 0 && window.amount(now) + amount > dailyAmount) {
+                return new Violation(name, "daily-amount", capitalized() + " daily limit of "
+                        + fromMinorUnits(dailyAmount) + " " + currency + " exceeded");
+            }
+            return null;
+        }
+
+        private String capitalized() {
+            return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        private void record(String key, long at, long count, long amount, long now) {
+            UsageWindow window = window(key, now);
+            synchronized (window) {
+                window.add(at, count, amount);
+            }
+        }
+
+        private UsageWindow window(String key, long now) {
+            UsageWindow window = windows.get(key);
+            if (window != null) {
+                return window;
+            }
+            if (windows.size() >= maxTracked && !purgeEmpty(now)) {
+                log.debug("{} limits are tracking {} keys; {} shares the overflow window", name, maxTracked, key);
+                return overflow;
+            }
+            return windows.computeIfAbsent(key, k -> new UsageWindow(WINDOW_SLOTS, SLOT_MILLIS));
+        }
+
+        /**
+         * @return {@code true} if there is room for another key.
+         */
+        private boolean purgeEmpty(long now) {
+            long nextPurge = nextPurgeMillis.get();
+            if (now >= nextPurge && nextPurgeMillis.compareAndSet(nextPurge, now + PURGE_INTERVAL_MILLIS)) {
+                for (Map.Entry<String, UsageWindow> entry : windows.entrySet()) {
+                    UsageWindow window = entry.getValue();
+                    synchronized (window) {
+                        if (window.isEmpty(now)) {
+                            windows.remove(entry.getKey(), window);
+                        }
+                    }
+                }
+            }
+            return windows.size() < maxTracked;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record PaymentUsage(UUID paymentId, String recipientPhoneNumber, String clientId, String currency,
+                           BigDecimal amount, LocalDateTime createdAt) {
+}
@@ -0,0 +1,75 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.limit;
+
+import java.util.Arrays;
+
+/**
+ * Payment count and amount (in minor units) over a sliding window, kept as a ring of fixed-length slots; a slot is
+ * recycled when its period comes round again. Not thread-safe: callers lock the window.
+ */
+final class UsageWindow {
+    private final long slotMillis;
+    private final long[] slotPeriods;
+    private final long[] counts;
+    private final long[] amounts;
+
+    UsageWindow(int slots, long slotMillis) {
+        this.slotMillis = slotMillis;
+        this.slotPeriods = new long[slots];
+        this.counts = new long[slots];
+        this.amounts = new long[slots];
+        Arrays.fill(slotPeriods, Long.MIN_VALUE);
+    }
+
+    /**
+     * Adds to the slot covering {@code atMillis}. Negative values undo an earlier add; they are dropped once that slot
+     * has been recycled.
+     */
+    void add(long atMillis, long count, long amount) {
+        long period = Math.floorDiv(atMillis, slotMillis);
+        int index = (int) Math.floorMod(period, (long) slotPeriods.length);
+        if (slotPeriods[index] != period) {
+            if (slotPeriods[index] > period) {
+                return;
+            }
+            slotPeriods[index] = period;
+            counts[index] = 0;
+            amounts[index] = 0;
+        }
+        counts[index] += count;
+        amounts[index] += amount;
+    }
+
+    long count(long nowMillis) {
+        long total = 0;
+        long oldest = oldestPeriod(nowMillis);
+        for (int i = 0; i < slotPeriods.length; i++) {
+            if (slotPeriods[i] >= oldest) {
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+
+    long amount(long nowMillis) {
+        long total = 0;
+        long oldest = oldestPeriod(nowMillis);
+        for (int i = 0; i < slotPeriods.length; i++) {
+            if (slotPeriods[i] >= oldest) {
+                total += amounts[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return {@code true} if nothing in the window is recent enough to count, i.e. it is indistinguishable from a new
+     * one.
+     */
+    boolean isEmpty(long nowMillis) {
+        return count(nowMillis) == 0;
+    }
+
+    private long oldestPeriod(long nowMillis) {
+        return Math.floorDiv(nowMillis, slotMillis) - slotPeriods.length + 1;
+    }
+}
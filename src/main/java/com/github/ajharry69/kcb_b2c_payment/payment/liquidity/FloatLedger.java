@@ -0,0 +1,302 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.liquidity;
+
+import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Local view of the B2C float (the disbursement account payouts are paid from), per currency, so that a float the
+ * MNO would refuse with "Insufficient funds" is noticed before the call rather than after a round trip per payment.
+ * <p>
+ * Each payment reserves its amount just before it is sent, with a compare-and-set on the account's
+ * {@code (balance, reserved)} pair, and the reservation is settled on the MNO outcome: debited from the balance if
+ * the money moved, handed back otherwise. A timed-out payment keeps its reservation until the outcome is known. Every
+ * {@code payment.float.reconcile-interval-ms} the balance is replaced by the MNO's own figure. In-flight reservations
+ * are kept on top of it whether or not the MNO has already debited them, so until the next reconciliation the ledger
+ * errs towards holding payments rather than sending doomed ones. A reservation older than
+ * {@code payment.float.reservation-ttl-ms}, the longest the MNO takes to report an outcome, is dropped at
+ * reconciliation: the MNO's balance already says whether that payment was debited.
+ * <p>
+ * A payment held {@code payment.float.max-holds} times in a row is given up on. Hold counts are kept in memory, so a
+ * restart starts them again.
+ * <p>
+ * A currency is only gated once its balance has been read. The ledger is per node, so several nodes can together
+ * reserve more than the float; the MNO remains the final check.
+ */
+@Component
+@Slf4j
+public class FloatLedger {
+    private static final int AMOUNT_SCALE = 2;
+
+    private final MobileMoneyService mobileMoneyService;
+    private final boolean enabled;
+    private final Set<String> currencies;
+    private final Set<String> insufficientFundsReasons;
+    private final Duration holdFor;
+    private final Duration balanceTimeout;
+    private final int maxHolds;
+    private final long reservationTtlMillis;
+    private final LongSupplier clock;
+    private final Map<String, AtomicReference<Account>> accounts = new ConcurrentHashMap<>();
+    private final Map<UUID, Reservation> reservations = new ConcurrentHashMap<>();
+    /**
+     * Consecutive holds per payment still waiting for the float.
+     */
+    private final Map<UUID, Integer> holds = new ConcurrentHashMap<>();
+    /**
+     * Currencies whose balance is being re-read outside the scheduled reconciliation.
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Counter held;
+    private final Counter abandoned;
+
+    @Autowired
+    public FloatLedger(
+            MobileMoneyService mobileMoneyService,
+            MeterRegistry meterRegistry,
+            @Value("${payment.float.enabled:true}") boolean enabled,
+            @Value("${payment.float.currencies:KES}") String[] currencies,
+            @Value("${payment.float.insufficient-funds-reasons:Insufficient funds}") String[] insufficientFundsReasons,
+            @Value("${payment.float.hold-ms:30000}") long holdMillis,
+            @Value("${payment.float.balance-timeout-ms:5000}") long balanceTimeoutMillis,
+            @Value("${payment.float.max-holds:20}") int maxHolds,
+            @Value("${payment.float.reservation-ttl-ms:600000}") long reservationTtlMillis) {
+        this(mobileMoneyService, meterRegistry, enabled, currencies, insufficientFundsReasons, holdMillis,
+                balanceTimeoutMillis, maxHolds, reservationTtlMillis, System::currentTimeMillis);
+    }
+
+    FloatLedger(MobileMoneyService mobileMoneyService, MeterRegistry meterRegistry, boolean enabled,
+                String[] currencies, String[] insufficientFundsReasons, long holdMillis, long balanceTimeoutMillis,
+                int maxHolds, long reservationTtlMillis, LongSupplier clock) {
+        this.mobileMoneyService = mobileMoneyService;
+        this.enabled = enabled;
+        this.currencies = Arrays.stream(currencies)
+                .map(String::trim)
+                .filter(currency -> !currency.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.insufficientFundsReasons = Arrays.stream(insufficientFundsReasons)
+                .map(reason -> reason.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.holdFor = Duration.ofMillis(holdMillis);
+        this.balanceTimeout = Duration.ofMillis(balanceTimeoutMillis);
+        this.maxHolds = maxHolds;
+        this.reservationTtlMillis = reservationTtlMillis;
+        this.clock = clock;
+        for (String currency : this.currencies) {
+            Gauge.builder("payment.float.available", this, ledger -> ledger.available(currency))
+                    .description("Float not yet reserved by in-flight payments (NaN until the balance is known)")
+                    .tag("currency", currency)
+                    .register(meterRegistry);
+            Gauge.builder("payment.float.reserved", this, ledger -> ledger.reserved(currency))
+                    .description("Float reserved by payments sent to the MNO and not yet settled")
+                    .tag("currency", currency)
+                    .register(meterRegistry);
+        }
+        this.held = Counter.builder("payment.float.held")
+                .description("Payments held back because the float could not cover them")
+                .register(meterRegistry);
+        this.abandoned = Counter.builder("payment.float.abandoned")
+                .description("Payments failed after being held payment.float.max-holds times")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserves {@code payment}'s amount from its currency's float. Reserving again for a payment that already holds a
+     * reservation (a retry) keeps the existing one.
+     *
+     * @return {@code false} if the float cannot cover the payment, which should then be held rather than sent.
+     */
+    public boolean tryReserve(Payment payment) {
+        if (!enabled || reservations.containsKey(payment.getId())) {
+            return true;
+        }
+        AtomicReference<Account> account = accounts.get(payment.getCurrency());
+        if (account == null) {
+            return true;
+        }
+        long amount = toMinorUnits(payment.getAmount());
+        while (true) {
+            Account current = account.get();
+            if (current.available() < amount) {
+                held.increment();
+                holds.merge(payment.getId(), 1, Integer::sum);
+                log.info("{} float of {} cannot cover payment ID: {} for {}", payment.getCurrency(),
+                        fromMinorUnits(current.available()), payment.getId(), payment.getAmount());
+                return false;
+            }
+            if (account.compareAndSet(current, new Account(current.balance(), current.reserved() + amount))) {
+                reservations.put(payment.getId(), new Reservation(payment.getCurrency(), amount, clock.getAsLong()));
+                holds.remove(payment.getId());
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Whether a payment {@link #tryReserve} has just held should be given up on rather than held again. Its hold count
+     * is forgotten once this returns {@code true}.
+     */
+    public boolean holdsExhausted(UUID paymentId) {
+        if (maxHolds < 1 || holds.getOrDefault(paymentId, 0) < maxHolds) {
+            return false;
+        }
+        holds.remove(paymentId);
+        abandoned.increment();
+        return true;
+    }
+
+    /**
+     * Settles {@code paymentId}'s reservation, if it holds one: the amount leaves the float if {@code debited},
+     * otherwise it is available again.
+     */
+    public void settle(UUID paymentId, boolean debited) {
+        Reservation reservation = reservations.remove(paymentId);
+        if (reservation == null) {
+            return;
+        }
+        release(reservation, debited);
+    }
+
+    private void release(Reservation reservation, boolean debited) {
+        AtomicReference<Account> account = accounts.get(reservation.currency());
+        if (account != null) {
+            account.updateAndGet(current -> new Account(
+                    debited ? current.balance() - reservation.amount() : current.balance(),
+                    Math.max(0, current.reserved() - reservation.amount())));
+        }
+    }
+
+    /**
+     * Settles a failed payment. A failure the MNO gave because the float ran out also marks the float as spent, so
+     * that payments still queued are held instead of failing the same way, and re-reads the balance from the MNO
+     * straight away rather than waiting for the next reconciliation.
+     */
+    public void settleFailed(UUID paymentId, String currency, String failureReason) {
+        settle(paymentId, false);
+        if (failureReason == null
+                || !insufficientFundsReasons.contains(failureReason.trim().toLowerCase(Locale.ROOT))) {
+            return;
+        }
+        AtomicReference<Account> account = accounts.get(currency);
+        if (account != null) {
+            account.updateAndGet(current -> new Account(current.reserved(), current.reserved()));
+        }
+        log.warn("MNO reported insufficient {} float; holding payments until its balance is read again", currency);
+        if (currencies.contains(currency) && refreshing.add(currency)) {
+            refresh(currency)
+                    .orTimeout(balanceTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((ignored, e) -> {
+                        refreshing.remove(currency);
+                        if (e != null) {
+                            log.warn("Could not re-read the {} float balance from the MNO; holding payments until "
+                                    + "the next reconciliation", currency, e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * How long a payment the float cannot cover waits before it is tried again.
+     */
+    public Duration holdFor() {
+        return holdFor;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.float.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        expireReservations();
+        for (String currency : currencies) {
+            try {
+                refresh(currency).get(balanceTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Could not read the {} float balance from the MNO; keeping the local one", currency, e);
+            }
+        }
+    }
+
+    /**
+     * Drops reservations of payments whose outcome never arrived (a timed-out payment with no callback), so that they
+     * do not keep float reserved until a restart.
+     */
+    private void expireReservations() {
+        long expiredBefore = clock.getAsLong() - reservationTtlMillis;
+        reservations.forEach((paymentId, reservation) -> {
+            if (reservation.reservedAtMillis() < expiredBefore && reservations.remove(paymentId, reservation)) {
+                release(reservation, false);
+                log.warn("Dropped the {} {} float reservation of payment ID: {}, unsettled after {} ms",
+                        fromMinorUnits(reservation.amount()), reservation.currency(), paymentId, reservationTtlMillis);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> refresh(String currency) {
+        return mobileMoneyService.queryFloatBalance(currency).thenAccept(reported -> {
+            long balance = toMinorUnits(reported);
+            AtomicReference<Account> account = accounts.computeIfAbsent(
+                    currency, c -> new AtomicReference<>(new Account(balance, 0)));
+            Account previous = account.getAndUpdate(current -> new Account(balance, current.reserved()));
+            if (previous.balance() != balance) {
+                log.info("Reconciled {} float: local balance {} -> MNO balance {} ({} reserved in flight)", currency,
+                        fromMinorUnits(previous.balance()), reported, fromMinorUnits(previous.reserved()));
+            }
+        });
+    }
+
+    double available(String currency) {
+        AtomicReference<Account> account = accounts.get(currency);
+        return account == null ? Double.NaN : fromMinorUnits(account.get().available()).doubleValue();
+    }
+
+    double reserved(String currency) {
+        AtomicReference<Account> account = accounts.get(currency);
+        return account == null ? 0 : fromMinorUnits(account.get().reserved()).doubleValue();
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(AMOUNT_SCALE).longValue();
+    }
+
+    private static BigDecimal fromMinorUnits(long amount) {
+        return BigDecimal.valueOf(amount, AMOUNT_SCALE);
+    }
+
+    /**
+     * @param balance  the float as last reported by the MNO, less payouts settled since, in minor units.
+     * @param reserved amounts of payments sent and not yet settled.
+     */
+    private record Account(long balance, long reserved) {
+        long available() {
+            return balance - reserved;
+        }
+    }
+
+    private record Reservation(String currency, long amount, long reservedAtMillis) {
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.ajharry69.kcb_b2c_payment.payment.model;
 
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.ShardedId;
 import jakarta.persistence.*;
-import jakarta.validation.constraints.*;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -13,7 +13,12 @@ import java.util.UUID;
 
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_next_attempt_at", columnList = "next_attempt_at"),
+        @Index(name = "idx_payments_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_payments_execute_at", columnList = "execute_at"),
+        @Index(name = "idx_payments_created_at", columnList = "created_at")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -22,30 +27,38 @@ import java.util.UUID;
 @Builder
 public class Payment {
 
+    /**
+     * Carries the shard the payment is stored on; see
+     * {@link com.github.ajharry69.kcb_b2c_payment.payment.shard.ShardedIds}.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @ShardedId
     private UUID id;
 
-    @NotNull(message = "Transaction ID cannot be null")
     @Column(nullable = false, unique = true)
     private String transactionId;
 
-    @NotBlank(message = "Recipient phone number cannot be blank")
-    @Pattern(regexp = "^\\+?[0-9. ()-]{7,25}$", message = "Invalid phone number format")
+    /**
+     * E.164, e.g. {@code +254712345678}.
+     */
     @Column(nullable = false)
     private String recipientPhoneNumber;
 
-    @NotNull(message = "Amount cannot be null")
-    @DecimalMin(value = "0.01", message = "Amount must be positive")
-    @Digits(integer = 10, fraction = 2, message = "Invalid amount format")
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal amount;
 
-    @NotBlank(message = "Currency cannot be blank")
-    @Size(min = 3, max = 3, message = "Currency must be a 3-letter code")
     @Column(nullable = false, length = 3)
     private String currency;
 
+    /**
+     * Subject of the access token the payment was initiated with. MNO work is scheduled fairly between clients.
+     */
+    private String clientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private PaymentPriority priority;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
     private PaymentStatus status;
@@ -55,6 +68,24 @@ public class Payment {
     @Column(length = 100)
     private String mnoReference;
 
+    /**
+     * Number of times the payment has been submitted to the MNO.
+     */
+    @Column(nullable = false)
+    private int attemptCount;
+
+    /**
+     * When set, the payment is waiting for a retry that should be dispatched at (or shortly after) this instant.
+     */
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * When set, the payment was submitted ahead of time and is not dispatched before this instant.
+     */
+    @Column(name = "execute_at")
+    private LocalDateTime executeAt;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
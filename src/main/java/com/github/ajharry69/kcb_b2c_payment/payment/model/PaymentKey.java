@@ -0,0 +1,33 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Where a payment lives: one small row per payment, in an unpartitioned table.
+ * <p>
+ * {@code payments} may be range-partitioned by {@code created_at}, which rules out a unique index on
+ * {@code transaction_id} across partitions. The primary key here enforces {@code transactionId} idempotency instead,
+ * and the stored {@code createdAt} lets lookups by {@code transactionId} or id reach a single partition. Rows are kept
+ * after their payment is archived, so re-used {@code transactionId}s are still recognised.
+ */
+@Entity
+@Table(name = "payment_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_keys_payment_id", columnNames = "payment_id"))
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentKey {
+
+    @Id
+    private String transactionId;
+
+    @Column(nullable = false)
+    private UUID paymentId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,13 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.model;
+
+
+/**
+ * Which MNO dispatch lane a payment goes through (see {@link com.github.ajharry69.kcb_b2c_payment.concurrent.Lane}).
+ */
+public enum PaymentPriority {
+    /**
+     * Time-critical payouts such as emergency loans. Served ahead of {@link #NORMAL} payments, with workers reserved.
+     */
+    HIGH,
+    NORMAL
+}
@@ -2,9 +2,24 @@ package com.github.ajharry69.kcb_b2c_payment.payment.model;
 
 
 public enum PaymentStatus {
+    /**
+     * Accepted with a future {@code executeAt}; released to the MNO by
+     * {@link com.github.ajharry69.kcb_b2c_payment.payment.schedule.ScheduledPaymentTrigger} once that time comes.
+     */
+    SCHEDULED,
+    /**
+     * Looks like a payment accepted moments earlier; waits for an operator to release or reject it. See
+     * {@link com.github.ajharry69.kcb_b2c_payment.payment.duplicate.NearDuplicateDetector}.
+     */
+    ON_HOLD,
     PENDING,
     PROCESSING,
     SUCCESSFUL,
     FAILED,
-    REJECTED
-}
\ No newline at end of file
+    REJECTED,
+    /**
+     * The MNO did not answer before the call's deadline. The money may or may not have moved, so the payment must be
+     * resolved through a status inquiry rather than retried or reported as failed.
+     */
+    TIMED_OUT
+}
@@ -0,0 +1,172 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.partition;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of a range-partitioned {@code payments} table (PostgreSQL, see
+ * {@code db/vendor/postgresql}) in step with the calendar.
+ * <p>
+ * Each run creates the partitions for the current month and the next {@code payment.partitions.premake-months}, so
+ * inserts never fall through to {@code payments_default}. With {@code payment.partitions.retention-months} set,
+ * partitions for months before that many whole months ago are retired: dropped when empty, which is the normal case
+ * once {@link com.github.ajharry69.kcb_b2c_payment.payment.archive.PaymentArchiver} has moved their payments out, or
+ * otherwise detached, keeping their rows in a standalone table for an operator to deal with. On any other database, or
+ * an unpartitioned table, runs do nothing. Every payment shard is maintained in turn.
+ */
+@Component
+@Slf4j
+public class PaymentPartitionMaintainer {
+    private static final Pattern PARTITION_NAME = Pattern.compile("payments_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String PARTITIONED_SQL = """
+            select count(*)
+            from pg_partitioned_table t
+                join pg_class c on c.oid = t.partrelid
+            where c.relname = 'payments' and c.relnamespace = current_schema()::regnamespace
+            """;
+    private static final String PARTITIONS_SQL = """
+            select c.relname
+            from pg_inherits i
+                join pg_class c on c.oid = i.inhrelid
+                join pg_class p on p.oid = i.inhparent
+            where p.relname = 'payments' and p.relnamespace = current_schema()::regnamespace
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PaymentShards paymentShards;
+    private final boolean enabled;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final Clock clock;
+    private final Map<Integer, Boolean> partitioned = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PaymentPartitionMaintainer(
+            JdbcTemplate jdbcTemplate,
+            PaymentShards paymentShards,
+            @Value("${payment.partitions.enabled:true}") boolean enabled,
+            @Value("${payment.partitions.premake-months:3}") int premakeMonths,
+            @Value("${payment.partitions.retention-months:0}") int retentionMonths) {
+        this(jdbcTemplate, paymentShards, enabled, premakeMonths, retentionMonths, Clock.systemDefaultZone());
+    }
+
+    PaymentPartitionMaintainer(JdbcTemplate jdbcTemplate, PaymentShards paymentShards, boolean enabled,
+                               int premakeMonths, int retentionMonths, Clock clock) {
+        if (premakeMonths < 0 || retentionMonths < 0) {
+            throw new IllegalArgumentException(
+                    "payment.partitions.premake-months and retention-months must not be negative");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.paymentShards = paymentShards;
+        this.enabled = enabled;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the number of partitions created, dropped or detached.
+     */
+    @Scheduled(fixedDelayString = "${payment.partitions.interval-ms:86400000}",
+            initialDelayString = "${payment.partitions.initial-delay-ms:60000}")
+    public int maintain() {
+        if (!enabled) {
+            return 0;
+        }
+        int changed = 0;
+        for (int shard = 0; shard < paymentShards.count(); shard++) {
+            int current = shard;
+            changed += paymentShards.onShard(shard, () -> isPartitioned(current) ? maintainShard() : 0);
+        }
+        return changed;
+    }
+
+    private int maintainShard() {
+        YearMonth current = YearMonth.now(clock);
+        List<String> partitions = jdbcTemplate.queryForList(PARTITIONS_SQL, String.class);
+        int changed = 0;
+        for (int i = 0; i <= premakeMonths; i++) {
+            String name = partitionName(current.plusMonths(i));
+            if (!partitions.contains(name)) {
+                changed += create(name, current.plusMonths(i));
+            }
+        }
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            for (String name : partitions) {
+                Matcher matcher = PARTITION_NAME.matcher(name);
+                if (matcher.matches()
+                        && YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)))
+                        .isBefore(oldestKept)) {
+                    changed += retire(name);
+                }
+            }
+        }
+        return changed;
+    }
+
+    static String partitionName(YearMonth month) {
+        return "payments_" + month.format(PARTITION_SUFFIX);
+    }
+
+    private int create(String name, YearMonth month) {
+        try {
+            jdbcTemplate.execute("create table %s partition of payments for values from ('%s') to ('%s')"
+                    .formatted(name, month.atDay(1), month.plusMonths(1).atDay(1)));
+            log.info("Created payment partition {}", name);
+            return 1;
+        } catch (DataAccessException e) {
+            // Typically rows for the month already landed in payments_default; they must be moved out by hand first
+            log.warn("Failed to create payment partition {}", name, e);
+            return 0;
+        }
+    }
+
+    private int retire(String name) {
+        try {
+            Boolean hasRows = jdbcTemplate.queryForObject(
+                    "select exists (select 1 from %s)".formatted(name), Boolean.class);
+            if (Boolean.TRUE.equals(hasRows)) {
+                jdbcTemplate.execute("alter table payments detach partition " + name);
+                log.warn("Detached expired payment partition {}; it still holds payments and was kept as a table",
+                        name);
+            } else {
+                jdbcTemplate.execute("drop table " + name);
+                log.info("Dropped expired payment partition {}", name);
+            }
+            return 1;
+        } catch (DataAccessException e) {
+            log.warn("Failed to retire payment partition {}", name, e);
+            return 0;
+        }
+    }
+
+    private boolean isPartitioned(int shard) {
+        return partitioned.computeIfAbsent(shard, key -> {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            Long count = "PostgreSQL".equals(product) ? jdbcTemplate.queryForObject(PARTITIONED_SQL, Long.class) : null;
+            boolean result = count != null && count > 0;
+            log.info("payments table on shard {} is {}range-partitioned; partition maintenance is {}",
+                    shard, result ? "" : "not ", result ? "active" : "off");
+            return result;
+        });
+    }
+}
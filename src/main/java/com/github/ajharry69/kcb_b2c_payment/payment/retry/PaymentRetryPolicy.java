@@ -0,0 +1,76 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.retry;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Decides whether an MNO-reported failure is worth another attempt and how long to wait before making it.
+ * <p>
+ * Only failures the MNO explicitly reports as transient are retried. Exceptions raised while talking to the MNO are
+ * treated as final because the MNO may already have moved the money.
+ */
+@Component
+public class PaymentRetryPolicy {
+    private final Set<String> retryableReasons;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double multiplier;
+    private final double jitter;
+
+    public PaymentRetryPolicy(
+            @Value("${payment.retry.retryable-reasons:Temporary network error,System unavailable}") String[] retryableReasons,
+            @Value("${payment.retry.max-attempts:5}") int maxAttempts,
+            @Value("${payment.retry.initial-backoff-ms:2000}") long initialBackoffMillis,
+            @Value("${payment.retry.max-backoff-ms:300000}") long maxBackoffMillis,
+            @Value("${payment.retry.multiplier:2.0}") double multiplier,
+            @Value("${payment.retry.jitter:0.5}") double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("payment.retry.jitter must be within [0, 1]: " + jitter);
+        }
+        this.retryableReasons = Arrays.stream(retryableReasons)
+                .map(PaymentRetryPolicy::normalize)
+                .collect(Collectors.toUnmodifiableSet());
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    public boolean isRetryable(String failureReason) {
+        return failureReason != null && retryableReasons.contains(normalize(failureReason));
+    }
+
+    /**
+     * @param attemptsMade number of MNO attempts already made for the payment, including the one that just failed.
+     */
+    public boolean canRetry(int attemptsMade) {
+        return attemptsMade < maxAttempts;
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": the delay is drawn uniformly from
+     * {@code [backoff * (1 - jitter), backoff]} so that payments which failed together during an MNO outage do not
+     * all come back at the same instant.
+     *
+     * @param attemptsMade number of MNO attempts already made for the payment, including the one that just failed.
+     */
+    public Duration backoff(int attemptsMade) {
+        double exponential = initialBackoffMillis * Math.pow(multiplier, Math.max(0, attemptsMade - 1));
+        double capped = Math.min(exponential, maxBackoffMillis);
+        double jittered = capped * (1 - jitter * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(Math.max(1, Math.round(jittered)));
+    }
+
+    private static String normalize(String reason) {
+        return reason.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.retry;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentDispatcher;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import com.github.ajharry69.kcb_b2c_payment.scheduling.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Re-dispatches payments that are waiting for a retry.
+ * <p>
+ * The {@code next_attempt_at} column is the source of truth. A periodic sweep walks that index forward and loads only
+ * the retries that fall due within {@code payment.retry.lookahead-ms} into the shared {@link HashedTimingWheel}, so
+ * memory and threads stay constant no matter how many retries are pending. {@code loadedUntil} is the high-water mark
+ * of what has already been handed to the wheel; retries scheduled behind it are armed directly when their
+ * transaction commits. After a restart the mark starts from scratch, which recovers every overdue retry.
+ * <p>
+ * Each sweep reads every shard's window in keyset pages of {@code payment.retry.sweep-batch-size}, ordered by
+ * {@code (nextAttemptAt, id)}, so any number of retries due at the same instant are loaded in one sweep.
+ * <p>
+ * Every node sweeps the same index, so a retry is usually armed on all of them.
+ * {@link com.github.ajharry69.kcb_b2c_payment.payment.PaymentService#processRetry} claims it before calling the MNO,
+ * so only the first node to fire sends it.
+ */
+@Component
+@Slf4j
+public class PaymentRetryScheduler {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final Duration REJECTED_DISPATCH_BACKOFF = Duration.ofSeconds(1);
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentShards paymentShards;
+    private final PaymentDispatcher paymentDispatcher;
+    private final HashedTimingWheel timingWheel;
+    private final Duration lookahead;
+    private final int batchSize;
+    private final Set<UUID> armed = ConcurrentHashMap.newKeySet();
+    private final Object sweepLock = new Object();
+    private LocalDateTime loadedUntil = EPOCH;
+
+    public PaymentRetryScheduler(
+            PaymentRepository paymentRepository,
+            PaymentShards paymentShards,
+            PaymentDispatcher paymentDispatcher,
+            HashedTimingWheel timingWheel,
+            @Value("${payment.retry.lookahead-ms:60000}") long lookaheadMillis,
+            @Value("${payment.retry.sweep-batch-size:1000}") int batchSize) {
+        this.paymentRepository = paymentRepository;
+        this.paymentShards = paymentShards;
+        this.paymentDispatcher = paymentDispatcher;
+        this.timingWheel = timingWheel;
+        this.lookahead = Duration.ofMillis(lookaheadMillis);
+        this.batchSize = batchSize;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRetryScheduled(PaymentRetryScheduledEvent event) {
+        synchronized (sweepLock) {
+            if (event.nextAttemptAt().isAfter(loadedUntil)) {
+                // The sweep has not reached this instant yet and will pick the retry up from the index.
+                return;
+            }
+        }
+        arm(event.paymentId(), event.clientId(), event.priority(), event.nextAttemptAt());
+    }
+
+    @Scheduled(fixedDelayString = "${payment.retry.sweep-interval-ms:1000}")
+    public void sweep() {
+        synchronized (sweepLock) {
+            LocalDateTime after = loadedUntil;
+            LocalDateTime until = LocalDateTime.now().plus(lookahead);
+            List<PendingRetry> due = paymentShards.readEach(shard -> load(after, until))
+                    .stream()
+                    .flatMap(List::stream)
+                    .toList();
+            due.forEach(retry -> arm(retry.paymentId(), retry.clientId(), retry.priority(), retry.nextAttemptAt()));
+            loadedUntil = until;
+            if (!due.isEmpty()) {
+                log.debug("Armed {} payment retries due up to {}", due.size(), until);
+            }
+        }
+    }
+
+    /**
+     * @return every retry on the current shard due after {@code after} and by {@code until}.
+     */
+    private List<PendingRetry> load(LocalDateTime after, LocalDateTime until) {
+        List<PendingRetry> due = new ArrayList<>();
+        LocalDateTime afterAttemptAt = after;
+        UUID afterId = null;
+        while (true) {
+            List<PendingRetry> page = paymentRepository.findPendingRetries(
+                    PaymentStatus.PROCESSING, afterAttemptAt, afterId, until, Limit.of(batchSize));
+            due.addAll(page);
+            if (page.size() < batchSize) {
+                return due;
+            }
+            afterAttemptAt = page.getLast().nextAttemptAt();
+            afterId = page.getLast().paymentId();
+        }
+    }
+
+    private void arm(UUID paymentId, String clientId, PaymentPriority priority, LocalDateTime nextAttemptAt) {
+        if (!armed.add(paymentId)) {
+            return;
+        }
+        Duration delay = Duration.between(LocalDateTime.now(), nextAttemptAt);
+        timingWheel.schedule(() -> dispatch(paymentId, clientId, priority), delay);
+    }
+
+    private void dispatch(UUID paymentId, String clientId, PaymentPriority priority) {
+        armed.remove(paymentId);
+        try {
+            paymentDispatcher.retry(paymentId, clientId, priority);
+            log.debug("Dispatched retry for payment ID: {}", paymentId);
+        } catch (TaskRejectedException e) {
+            log.warn("MNO executor rejected the retry; postponing it for payment ID: {}", paymentId);
+            arm(paymentId, clientId, priority, LocalDateTime.now().plus(REJECTED_DISPATCH_BACKOFF));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.retry;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record PendingRetry(UUID paymentId, String clientId, PaymentPriority priority, LocalDateTime nextAttemptAt) {
+}
@@ -0,0 +1,132 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.rollup;
+
+import com.github.ajharry69.kcb_b2c_payment.exceptions.InvalidPaymentRequestException;
+import com.github.ajharry69.kcb_b2c_payment.payment.archive.PaymentArchive;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentReport;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRollupRebuild;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Payment reports read from {@code payment_rollups} only, so their cost depends on the number of hours asked for and
+ * not on the number of payments in them.
+ */
+@Component
+public class PaymentReports {
+    private static final Comparator<PaymentAggregate> ORDER = Comparator
+            .comparing(PaymentAggregate::status)
+            .thenComparing(PaymentAggregate::currency);
+
+    private final PaymentRollupRepository rollupRepository;
+    private final PaymentRollupWriter rollupWriter;
+    private final PaymentArchive paymentArchive;
+    private final Duration maxRange;
+
+    public PaymentReports(PaymentRollupRepository rollupRepository,
+                          PaymentRollupWriter rollupWriter,
+                          PaymentArchive paymentArchive,
+                          @Value("${payment.rollup.report.max-days:366}") int maxDays) {
+        this.rollupRepository = rollupRepository;
+        this.rollupWriter = rollupWriter;
+        this.paymentArchive = paymentArchive;
+        this.maxRange = Duration.ofDays(maxDays);
+    }
+
+    /**
+     * @param from start of the range, rounded down to the hour.
+     * @param to   end of the range (exclusive), rounded up to the hour.
+     * @throws InvalidPaymentRequestException if the range is empty or longer than
+     *                                         {@code payment.rollup.report.max-days}.
+     */
+    @Transactional(readOnly = true)
+    public PaymentReport report(LocalDateTime from, LocalDateTime to, ReportPeriod period) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = ceilingHour(to);
+        checkRange(start, end);
+
+        Map<Key, Totals> totals = new LinkedHashMap<>();
+        Map<LocalDateTime, Map<Key, Totals>> periods = new TreeMap<>();
+        for (PaymentRollup rollup : rollupRepository.findByHourStartBetween(start, end)) {
+            PaymentRollup.Key id = rollup.getId();
+            Key key = new Key(id.getStatus(), id.getCurrency());
+            totals.computeIfAbsent(key, k -> new Totals()).add(rollup);
+            periods.computeIfAbsent(period.startOf(id.getHourStart()), p -> new LinkedHashMap<>())
+                    .computeIfAbsent(key, k -> new Totals())
+                    .add(rollup);
+        }
+
+        List<PaymentReport.Period> perPeriod = new ArrayList<>(periods.size());
+        periods.forEach((periodStart, periodTotals) ->
+                perPeriod.add(new PaymentReport.Period(periodStart, aggregates(periodTotals))));
+        return new PaymentReport(start, end, period, aggregates(totals), perPeriod);
+    }
+
+    /**
+     * Recomputes the rollups of {@code [from, to)}, rounded out to whole hours, from the {@code payments} table.
+     *
+     * @throws InvalidPaymentRequestException if the range is invalid or reaches back into hours whose payments have
+     *                                        been archived, which the rebuild would no longer count.
+     */
+    public PaymentRollupRebuild rebuild(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = ceilingHour(to);
+        checkRange(start, end);
+        paymentArchive.archivedThrough()
+                .filter(archived -> !archived.isBefore(start))
+                .ifPresent(archived -> {
+                    throw new InvalidPaymentRequestException(List.of(
+                            "'from': Payments up to " + archived + " have been archived; rebuild later hours only"));
+                });
+        return new PaymentRollupRebuild(start, end, rollupWriter.rebuild(start, end));
+    }
+
+    private void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (!end.isAfter(start)) {
+            throw new InvalidPaymentRequestException(List.of("'to': Must be after 'from'"));
+        }
+        if (Duration.between(start, end).compareTo(maxRange) > 0) {
+            throw new InvalidPaymentRequestException(
+                    List.of("'to': Range must not exceed " + maxRange.toDays() + " days"));
+        }
+    }
+
+    static LocalDateTime ceilingHour(LocalDateTime time) {
+        LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+        return hour.isBefore(time) ? hour.plusHours(1) : hour;
+    }
+
+    private static List<PaymentAggregate> aggregates(Map<Key, Totals> totals) {
+        List<PaymentAggregate> aggregates = new ArrayList<>(totals.size());
+        totals.forEach((key, total) ->
+                aggregates.add(new PaymentAggregate(key.status(), key.currency(), total.count, total.amount)));
+        aggregates.sort(ORDER);
+        return aggregates;
+    }
+
+    private record Key(PaymentStatus status, String currency) {
+    }
+
+    private static final class Totals {
+        private long count;
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        private void add(PaymentRollup rollup) {
+            count += rollup.getPaymentCount();
+            amount = amount.add(rollup.getAmountTotal());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.rollup;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Terminal payments of one hour, currency and status. Rows are only ever written by {@link PaymentRollupWriter}.
+ */
+@Entity
+@Table(name = "payment_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentRollup {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private long paymentCount;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amountTotal;
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @ToString
+    public static class Key implements Serializable {
+        /**
+         * Start of the hour, in the same local time as {@code payments.updated_at}.
+         */
+        @Column(nullable = false)
+        private LocalDateTime hourStart;
+
+        @Column(nullable = false, length = 3)
+        private String currency;
+
+        @Enumerated(EnumType.STRING)
+        @Column(nullable = false, length = 20)
+        private PaymentStatus status;
+    }
+}
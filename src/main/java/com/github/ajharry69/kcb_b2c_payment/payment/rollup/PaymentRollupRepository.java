@@ -0,0 +1,19 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.rollup;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentRollupRepository extends JpaRepository<PaymentRollup, PaymentRollup.Key> {
+    @Query("""
+            select r
+            from PaymentRollup r
+            where r.id.hourStart >= :from and r.id.hourStart < :to
+            order by r.id.hourStart
+            """)
+    List<PaymentRollup> findByHourStartBetween(LocalDateTime from, LocalDateTime to);
+}
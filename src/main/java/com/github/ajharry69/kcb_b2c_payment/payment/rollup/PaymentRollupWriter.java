@@ -0,0 +1,205 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.rollup;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentStatusChangedEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps {@code payment_rollups} up to date as payments reach a terminal status.
+ * <p>
+ * Transitions are summed in memory per (hour, currency, status) once their transaction has committed and written out
+ * every {@code payment.rollup.flush-interval-ms} as one batch of {@code MERGE}s, so the table sees one upsert per
+ * bucket and interval rather than one per payment. A batch that fails is put back and retried by the next flush.
+ * Pending sums are lost if the process dies before a flush; {@link #rebuild(LocalDateTime, LocalDateTime)} recomputes
+ * any hour range from the {@code payments} table.
+ * <p>
+ * Live transitions are bucketed by the hour they are recorded in and a rebuild by {@code payments.updated_at}, so a
+ * payment that completes on the hour boundary may move to the neighbouring hour after a rebuild.
+ * <p>
+ * Rollups are stored on {@link PaymentShards#HOME_SHARD}; a rebuild sums the payments of every shard.
+ */
+@Component
+@Slf4j
+public class PaymentRollupWriter {
+    static final Set<PaymentStatus> TERMINAL_STATUSES =
+            EnumSet.of(PaymentStatus.SUCCESSFUL, PaymentStatus.FAILED, PaymentStatus.REJECTED);
+
+    // Standard MERGE, understood by both H2 and PostgreSQL 15+
+    private static final String MERGE_SQL = """
+            merge into payment_rollups r
+            using (select cast(? as timestamp) as hour_start, cast(? as varchar(3)) as currency,
+                          cast(? as varchar(20)) as status, cast(? as bigint) as payment_count,
+                          cast(? as numeric(19, 2)) as amount_total) d
+            on r.hour_start = d.hour_start and r.currency = d.currency and r.status = d.status
+            when matched then update set payment_count = r.payment_count + d.payment_count,
+                                         amount_total = r.amount_total + d.amount_total
+            when not matched then insert (hour_start, currency, status, payment_count, amount_total)
+                                  values (d.hour_start, d.currency, d.status, d.payment_count, d.amount_total)
+            """;
+    private static final String DELETE_SQL = "delete from payment_rollups where hour_start >= ? and hour_start < ?";
+    private static final String INSERT_SQL = """
+            insert into payment_rollups (hour_start, currency, status, payment_count, amount_total)
+            values (?, ?, ?, ?, ?)
+            """;
+    // The created_at bound is implied by the updated_at one; it lets a partitioned payments table skip newer partitions
+    private static final String AGGREGATE_SQL = """
+            select date_trunc('hour', updated_at), currency, status, count(*), sum(amount)
+            from payments
+            where status in ('SUCCESSFUL', 'FAILED', 'REJECTED') and updated_at >= ? and updated_at < ?
+              and created_at < ?
+            group by date_trunc('hour', updated_at), currency, status
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactions;
+    private final PaymentShards paymentShards;
+    private final Clock clock;
+    private final Map<PaymentRollup.Key, Delta> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    @Autowired
+    public PaymentRollupWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               PaymentShards paymentShards) {
+        this(jdbcTemplate, new TransactionTemplate(transactionManager), paymentShards, Clock.systemDefaultZone());
+    }
+
+    PaymentRollupWriter(JdbcTemplate jdbcTemplate, TransactionOperations transactions, PaymentShards paymentShards,
+                        Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactions = transactions;
+        this.paymentShards = paymentShards;
+        this.clock = clock;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        if (!TERMINAL_STATUSES.contains(event.to())) {
+            return;
+        }
+        LocalDateTime hour = LocalDateTime.now(clock).truncatedTo(ChronoUnit.HOURS);
+        BigDecimal amount = event.amount() == null ? BigDecimal.ZERO : event.amount();
+        add(new PaymentRollup.Key(hour, event.currency(), event.to()), 1, amount);
+    }
+
+    /**
+     * Writes the pending sums to {@code payment_rollups}.
+     *
+     * @return the number of rollup rows upserted.
+     */
+    @Scheduled(fixedDelayString = "${payment.rollup.flush-interval-ms:5000}")
+    public int flush() {
+        synchronized (flushLock) {
+            List<PaymentRollup.Key> keys = new ArrayList<>(pending.keySet());
+            if (keys.isEmpty()) {
+                return 0;
+            }
+            List<Object[]> rows = new ArrayList<>(keys.size());
+            Map<PaymentRollup.Key, Delta> drained = new HashMap<>(keys.size());
+            for (PaymentRollup.Key key : keys) {
+                // remove() and add()'s compute() lock the same bin, so a delta is never updated after it is drained
+                Delta delta = pending.remove(key);
+                if (delta != null) {
+                    drained.put(key, delta);
+                    rows.add(new Object[]{Timestamp.valueOf(key.getHourStart()), key.getCurrency(),
+                            key.getStatus().name(), delta.count, delta.amount});
+                }
+            }
+            try {
+                paymentShards.onShard(PaymentShards.HOME_SHARD, () -> jdbcTemplate.batchUpdate(MERGE_SQL, rows));
+            } catch (DataAccessException e) {
+                log.warn("Failed to flush {} payment rollups; they will be retried", rows.size(), e);
+                drained.forEach((key, delta) -> add(key, delta.count, delta.amount));
+                return 0;
+            }
+            log.debug("Flushed {} payment rollups", rows.size());
+            return rows.size();
+        }
+    }
+
+    /**
+     * Recomputes every rollup in the hours {@code [from, to)} from the terminal payments last updated in them.
+     * {@code from} is rounded down and {@code to} up to whole hours.
+     * <p>
+     * Pending sums are flushed first so that they are not added on top of the recomputed rows. A payment that completes
+     * while the current hour is being rebuilt may still be counted twice, so rebuild closed hours where possible.
+     *
+     * @return the number of rollup rows written.
+     */
+    public int rebuild(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = PaymentReports.ceilingHour(to);
+        Timestamp startTimestamp = Timestamp.valueOf(start);
+        Timestamp endTimestamp = Timestamp.valueOf(end);
+        synchronized (flushLock) {
+            flush();
+            Map<PaymentRollup.Key, Delta> totals = new HashMap<>();
+            paymentShards.readEach(shard -> jdbcTemplate.query(AGGREGATE_SQL, (rs, rowNum) -> Map.entry(
+                            new PaymentRollup.Key(rs.getTimestamp(1).toLocalDateTime(), rs.getString(2),
+                                    PaymentStatus.valueOf(rs.getString(3))),
+                            new Delta().add(rs.getLong(4), rs.getBigDecimal(5))),
+                    startTimestamp, endTimestamp, endTimestamp))
+                    .forEach(shardTotals -> shardTotals.forEach(total -> totals
+                            .computeIfAbsent(total.getKey(), key -> new Delta())
+                            .add(total.getValue().count, total.getValue().amount)));
+            List<Object[]> rows = new ArrayList<>(totals.size());
+            totals.forEach((key, delta) -> rows.add(new Object[]{Timestamp.valueOf(key.getHourStart()),
+                    key.getCurrency(), key.getStatus().name(), delta.count, delta.amount}));
+            Integer written = paymentShards.onShard(PaymentShards.HOME_SHARD, () -> transactions.execute(status -> {
+                int deleted = jdbcTemplate.update(DELETE_SQL, startTimestamp, endTimestamp);
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                log.info("Rebuilt payment rollups from {} to {}: replaced {} rows with {}",
+                        start, end, deleted, rows.size());
+                return rows.size();
+            }));
+            return written == null ? 0 : written;
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        flush();
+    }
+
+    private void add(PaymentRollup.Key key, long count, BigDecimal amount) {
+        pending.compute(key, (k, delta) -> (delta == null ? new Delta() : delta).add(count, amount));
+    }
+
+    /**
+     * Only read or updated while its map bin is locked, by {@link #add} or {@link #flush}'s {@code remove}, or by the
+     * single thread gathering a {@link #rebuild}.
+     */
+    private static final class Delta {
+        private long count;
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        private Delta add(long count, BigDecimal amount) {
+            this.count += count;
+            this.amount = this.amount.add(amount);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.rollup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * How report rows are grouped. Weeks start on Monday.
+ */
+public enum ReportPeriod {
+    HOUR,
+    DAY,
+    WEEK,
+    MONTH;
+
+    /**
+     * @return the start of the period {@code hourStart} falls in.
+     */
+    public LocalDateTime startOf(LocalDateTime hourStart) {
+        return switch (this) {
+            case HOUR -> hourStart.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> hourStart.truncatedTo(ChronoUnit.DAYS);
+            case WEEK -> hourStart.truncatedTo(ChronoUnit.DAYS)
+                    .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> hourStart.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+}
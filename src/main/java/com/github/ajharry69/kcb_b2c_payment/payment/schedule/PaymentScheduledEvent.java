@@ -0,0 +1,10 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.schedule;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record PaymentScheduledEvent(UUID paymentId, String clientId, PaymentPriority priority,
+                                    LocalDateTime executeAt) {
+}
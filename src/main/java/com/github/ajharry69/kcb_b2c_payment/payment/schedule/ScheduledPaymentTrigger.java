@@ -0,0 +1,236 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.schedule;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentDispatcher;
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Releases {@link PaymentStatus#SCHEDULED} payments to the MNO once their {@code executeAt} comes.
+ * <p>
+ * The indexed {@code execute_at} column is the source of truth. Time is cut into buckets of
+ * {@code payment.schedule.bucket-ms}, and every bucket that starts within {@code payment.schedule.preload-ms} is read
+ * into memory ahead of time, one keyset-paged query per shard, so that even a bucket holding a whole payroll is
+ * loaded before its first payment falls due. Payments scheduled into a bucket that is already loaded are added when
+ * their transaction commits. After a restart loading starts from scratch, and every overdue payment is recovered.
+ * <p>
+ * Due payments are handed to the {@link PaymentDispatcher} at no more than
+ * {@code payment.schedule.release-per-second}, earliest first, rather than all at once when a busy minute starts.
+ * {@code PaymentService} claims each one with a conditional update, so a payment released by two nodes is still
+ * processed once. Memory grows with the number of payments due within the preload window.
+ */
+@Component
+@Slf4j
+public class ScheduledPaymentTrigger {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID MIN_ID = new UUID(0, 0);
+    private static final Comparator<ScheduledPayment> ORDER = Comparator
+            .comparing(ScheduledPayment::executeAt)
+            .thenComparing(ScheduledPayment::paymentId);
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentShards paymentShards;
+    private final PaymentDispatcher paymentDispatcher;
+    private final long bucketMillis;
+    private final Duration preload;
+    private final int releasePerSecond;
+    private final int batchSize;
+    private final LongSupplier clock;
+    private final Object lock = new Object();
+    private final NavigableMap<LocalDateTime, PriorityQueue<ScheduledPayment>> buckets = new TreeMap<>();
+    private final Set<UUID> loaded = new HashSet<>();
+    private LocalDateTime loadedUntil = EPOCH;
+    private LocalDateTime loadingUntil = EPOCH;
+    private double releasePermits;
+    private long lastReleaseMillis;
+
+    @Autowired
+    public ScheduledPaymentTrigger(
+            PaymentRepository paymentRepository,
+            PaymentShards paymentShards,
+            PaymentDispatcher paymentDispatcher,
+            @Value("${payment.schedule.bucket-ms:60000}") long bucketMillis,
+            @Value("${payment.schedule.preload-ms:120000}") long preloadMillis,
+            @Value("${payment.schedule.release-per-second:200}") int releasePerSecond,
+            @Value("${payment.schedule.load-batch-size:5000}") int batchSize) {
+        this(paymentRepository, paymentShards, paymentDispatcher, Duration.ofMillis(bucketMillis),
+                Duration.ofMillis(preloadMillis), releasePerSecond, batchSize, System::currentTimeMillis);
+    }
+
+    ScheduledPaymentTrigger(PaymentRepository paymentRepository, PaymentShards paymentShards,
+                            PaymentDispatcher paymentDispatcher, Duration bucket, Duration preload,
+                            int releasePerSecond, int batchSize, LongSupplier clock) {
+        if (bucket.toMillis() < 1 || releasePerSecond < 1 || batchSize < 1) {
+            throw new IllegalArgumentException(
+                    "payment.schedule.bucket-ms, release-per-second and load-batch-size must be at least 1");
+        }
+        this.paymentRepository = paymentRepository;
+        this.paymentShards = paymentShards;
+        this.paymentDispatcher = paymentDispatcher;
+        this.bucketMillis = bucket.toMillis();
+        this.preload = preload;
+        this.releasePerSecond = releasePerSecond;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        this.lastReleaseMillis = clock.getAsLong();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentScheduled(PaymentScheduledEvent event) {
+        synchronized (lock) {
+            if (!event.executeAt().isBefore(loadingUntil)) {
+                // Its bucket has not been loaded yet and will pick the payment up from the index.
+                return;
+            }
+            add(new ScheduledPayment(event.paymentId(), event.clientId(), event.priority(), event.executeAt()));
+        }
+    }
+
+    /**
+     * Loads every bucket that starts within the preload window and has not been loaded yet.
+     *
+     * @return the number of payments loaded.
+     */
+    @Scheduled(fixedDelayString = "${payment.schedule.preload-interval-ms:1000}")
+    public int preload() {
+        int total = 0;
+        while (true) {
+            LocalDateTime from;
+            LocalDateTime to;
+            synchronized (lock) {
+                LocalDateTime now = now();
+                if (!loadedUntil.isBefore(now.plus(preload))) {
+                    return total;
+                }
+                from = loadedUntil;
+                LocalDateTime current = bucketStart(now);
+                // Everything already overdue (after a restart) is loaded in one range
+                to = from.isBefore(current) ? current : bucketStart(from).plus(Duration.ofMillis(bucketMillis));
+                loadingUntil = to;
+            }
+
+            List<ScheduledPayment> due = paymentShards.readEach(shard -> load(from, to)).stream()
+                    .flatMap(List::stream)
+                    .toList();
+            synchronized (lock) {
+                due.forEach(this::add);
+                loadedUntil = to;
+            }
+            if (!due.isEmpty()) {
+                log.info("Loaded {} scheduled payments due in [{}, {})", due.size(), from, to);
+            }
+            total += due.size();
+        }
+    }
+
+    /**
+     * Dispatches due payments, earliest first, as far as the release rate allows.
+     *
+     * @return the number of payments dispatched.
+     */
+    @Scheduled(fixedDelayString = "${payment.schedule.release-interval-ms:100}")
+    public int release() {
+        List<ScheduledPayment> due = new ArrayList<>();
+        synchronized (lock) {
+            long nowMillis = clock.getAsLong();
+            // Unused permits carry over for at most a second, which bounds the burst after an idle spell
+            releasePermits = Math.min(releasePerSecond,
+                    releasePermits + (nowMillis - lastReleaseMillis) * releasePerSecond / 1000.0);
+            lastReleaseMillis = nowMillis;
+            LocalDateTime now = now();
+            while (releasePermits >= 1 && !buckets.isEmpty()) {
+                Map.Entry<LocalDateTime, PriorityQueue<ScheduledPayment>> earliest = buckets.firstEntry();
+                ScheduledPayment next = earliest.getValue().peek();
+                if (next.executeAt().isAfter(now)) {
+                    break;
+                }
+                earliest.getValue().poll();
+                if (earliest.getValue().isEmpty()) {
+                    buckets.pollFirstEntry();
+                }
+                due.add(next);
+                releasePermits--;
+            }
+        }
+
+        for (int i = 0; i < due.size(); i++) {
+            ScheduledPayment payment = due.get(i);
+            try {
+                paymentDispatcher.release(payment.paymentId(), payment.clientId(), payment.priority());
+            } catch (TaskRejectedException e) {
+                log.warn("MNO executor rejected scheduled payment ID: {}; retrying on the next release",
+                        payment.paymentId());
+                synchronized (lock) {
+                    due.subList(i, due.size()).forEach(this::requeue);
+                }
+                return i;
+            }
+            synchronized (lock) {
+                loaded.remove(payment.paymentId());
+            }
+        }
+        if (!due.isEmpty()) {
+            log.debug("Released {} scheduled payments", due.size());
+        }
+        return due.size();
+    }
+
+    private List<ScheduledPayment> load(LocalDateTime from, LocalDateTime to) {
+        List<ScheduledPayment> found = new ArrayList<>();
+        LocalDateTime afterExecuteAt = from;
+        UUID afterId = MIN_ID;
+        while (true) {
+            List<ScheduledPayment> batch = paymentRepository.findScheduled(
+                    PaymentStatus.SCHEDULED, from, to, afterExecuteAt, afterId, Limit.of(batchSize));
+            found.addAll(batch);
+            if (batch.size() < batchSize) {
+                return found;
+            }
+            afterExecuteAt = batch.getLast().executeAt();
+            afterId = batch.getLast().paymentId();
+        }
+    }
+
+    private void add(ScheduledPayment payment) {
+        if (loaded.add(payment.paymentId())) {
+            requeue(payment);
+        }
+    }
+
+    private void requeue(ScheduledPayment payment) {
+        buckets.computeIfAbsent(bucketStart(payment.executeAt()), bucket -> new PriorityQueue<>(ORDER)).add(payment);
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(clock.getAsLong()), ZoneId.systemDefault());
+    }
+
+    private LocalDateTime bucketStart(LocalDateTime time) {
+        long millis = Duration.between(EPOCH, time).toMillis();
+        return EPOCH.plus(Duration.ofMillis(Math.floorDiv(millis, bucketMillis) * bucketMillis));
+    }
+}
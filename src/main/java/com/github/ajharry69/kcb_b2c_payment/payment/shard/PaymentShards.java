@@ -0,0 +1,168 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.shard;
+
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Decides which shard a payment lives on and runs database work there.
+ * <p>
+ * A payment is stored on the shard its {@code transactionId} hashes to, and its generated id carries that shard (see
+ * {@link ShardedIds}), so single-payment reads and writes touch one shard. Work that spans payments either runs once
+ * per shard ({@link #onShard}) or is scattered over the shards in parallel and gathered by the caller
+ * ({@link #read}). Data that is not per payment, such as {@code payment_rollups}, stays on {@link #HOME_SHARD}, which
+ * is where connections go when no shard is bound.
+ * <p>
+ * With a single shard every method runs its work in place and {@link #bind(int)} does nothing.
+ */
+public class PaymentShards implements AutoCloseable {
+    public static final int HOME_SHARD = 0;
+
+    private final int count;
+    private final TransactionOperations readTransactions;
+    private final ExecutorService scatterExecutor;
+
+    /**
+     * @param readTransactions read-only transactions that always start afresh (never join the caller's), since a
+     *                         transaction stays on the shard it first connected to.
+     */
+    public PaymentShards(int count, TransactionOperations readTransactions) {
+        if (count < 1 || count > ShardedIds.MAX_SHARDS) {
+            throw new IllegalArgumentException(
+                    "Shard count must be between 1 and " + ShardedIds.MAX_SHARDS + ": " + count);
+        }
+        this.count = count;
+        this.readTransactions = readTransactions;
+        this.scatterExecutor = count == 1 ? null
+                : Executors.newFixedThreadPool(count, Thread.ofPlatform().name("PaymentShard-", 1).daemon().factory());
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * String hash codes are fixed by the language specification, so the mapping is the same on every node and JVM.
+     */
+    public int shardFor(String transactionId) {
+        return Math.floorMod(transactionId.hashCode() * 0x9E3779B9, count);
+    }
+
+    /**
+     * @return the shard in {@code paymentId}, or {@link #HOME_SHARD} for ids generated before sharding.
+     */
+    public int shardOf(UUID paymentId) {
+        int shard = ShardedIds.shardOf(paymentId).orElse(HOME_SHARD);
+        return shard < count ? shard : HOME_SHARD;
+    }
+
+    /**
+     * Routes the current transaction to {@code shard}. Must be called before the transaction's first statement;
+     * the binding is released when the transaction completes.
+     *
+     * @throws IllegalStateException if there is no transaction, or it is already bound to another shard.
+     */
+    public void bind(int shard) {
+        if (count == 1) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Binding to payment shard " + shard + " requires a transaction");
+        }
+        Integer bound = ShardContext.current();
+        if (bound != null) {
+            if (bound != shard) {
+                throw new IllegalStateException(
+                        "Transaction is bound to payment shard " + bound + " and cannot move to " + shard);
+            }
+            return;
+        }
+        ShardContext.set(shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                ShardContext.set(null);
+            }
+        });
+    }
+
+    /**
+     * Runs {@code work} with {@code shard} bound, outside any transaction of the caller's. Every transaction or
+     * connection {@code work} opens goes to that shard.
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (count == 1) {
+            return work.get();
+        }
+        Integer previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    /**
+     * Runs {@code work} on every shard in parallel, each in its own read-only transaction.
+     *
+     * @return the results in shard order.
+     */
+    public <T> List<T> readEach(IntFunction<T> work) {
+        return read(IntStream.range(0, count).boxed().toList(), work);
+    }
+
+    /**
+     * Runs {@code work} on each of {@code shards} in parallel, each in its own read-only transaction.
+     *
+     * @return the results in the order of {@code shards}.
+     */
+    public <T> List<T> read(Collection<Integer> shards, IntFunction<T> work) {
+        if (count == 1 || shards.size() <= 1) {
+            List<T> results = new ArrayList<>(shards.size());
+            for (int shard : shards) {
+                results.add(readOn(shard, work));
+            }
+            return results;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (int shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> readOn(shard, work), scatterExecutor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    private <T> T readOn(int shard, IntFunction<T> work) {
+        return onShard(shard, () -> readTransactions.execute(status -> work.apply(shard)));
+    }
+
+    @Override
+    public void close() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.shard;
+
+/**
+ * The shard the current thread's next database connection is taken from. Read by {@link ShardRoutingDataSource} when
+ * a connection is actually opened, and by {@link ShardedIdGenerator} when a payment is inserted.
+ */
+final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return the bound shard, or {@code null} for {@link PaymentShards#HOME_SHARD}.
+     */
+    static Integer current() {
+        return CURRENT.get();
+    }
+
+    static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.shard;
+
+import java.util.OptionalInt;
+import java.util.UUID;
+
+/**
+ * Payment ids that carry the shard their payment is stored on, so a lookup by id goes straight to that shard.
+ * <p>
+ * The ids are RFC 9562 version 8 (custom) UUIDs: the top 16 bits hold the shard number and the rest, apart from the
+ * version and variant bits, are random. Ids of any other version predate sharding and carry no shard.
+ */
+public final class ShardedIds {
+    static final int MAX_SHARDS = 1 << 16;
+    private static final int VERSION = 8;
+
+    private ShardedIds() {
+    }
+
+    public static UUID newId(int shard) {
+        if (shard < 0 || shard >= MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard must be between 0 and " + (MAX_SHARDS - 1) + ": " + shard);
+        }
+        UUID random = UUID.randomUUID();
+        long mostSignificantBits = ((long) shard << 48)
+                | (random.getMostSignificantBits() & 0x0000_FFFF_FFFF_0FFFL)
+                | ((long) VERSION << 12);
+        long leastSignificantBits = (random.getLeastSignificantBits() & 0x3FFF_FFFF_FFFF_FFFFL) | Long.MIN_VALUE;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    public static OptionalInt shardOf(UUID id) {
+        if (id.version() != VERSION || id.variant() != 2) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of((int) (id.getMostSignificantBits() >>> 48));
+    }
+}
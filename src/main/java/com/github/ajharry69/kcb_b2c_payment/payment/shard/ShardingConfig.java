@@ -0,0 +1,100 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Configuration
+@Slf4j
+public class ShardingConfig {
+
+    /**
+     * One pool per JDBC URL in {@code payment.sharding.urls}, sharing the {@code spring.datasource} driver and
+     * credentials. Spring Boot's Flyway integration would only migrate {@link PaymentShards#HOME_SHARD}, so each shard
+     * is migrated here (from {@code spring.flyway.locations}) before JPA starts; run with
+     * {@code spring.flyway.enabled=false} and a {@code spring.jpa.hibernate.ddl-auto} of {@code none} or
+     * {@code validate}. Each pool publishes its own {@code hikaricp.connections} metrics, tagged with its pool name.
+     */
+    @Bean
+    @ConditionalOnProperty("payment.sharding.urls")
+    public ShardRoutingDataSource shardRoutingDataSource(
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${payment.sharding.urls}") String[] urls,
+            @Value("${spring.flyway.locations:classpath:db/migration}") String[] migrationLocations) {
+        List<DataSource> shards = new ArrayList<>(urls.length);
+        for (int shard = 0; shard < urls.length; shard++) {
+            String url = urls[shard].trim();
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .build();
+            dataSource.setPoolName("payments-shard-" + shard);
+            dataSource.setMetricRegistry(meterRegistry);
+            String vendor = DatabaseDriver.fromJdbcUrl(url).getId();
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .locations(Arrays.stream(migrationLocations)
+                            .map(location -> location.trim().replace("{vendor}", vendor))
+                            .toArray(String[]::new))
+                    .load()
+                    .migrate();
+            shards.add(dataSource);
+        }
+        log.info("Sharding payments over {} data sources", shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Connections are only taken from the routing data source on a transaction's first statement, by which time
+     * {@link PaymentShards#bind(int)} has picked the shard.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty("payment.sharding.urls")
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * The shard count is taken from the routing data source actually in the context, not from
+     * {@code payment.sharding.urls}: on AOT-processed bean definitions ({@code -Dspring.aot.enabled=true}) the
+     * conditions above were evaluated at build time, so the URLs can be set while every connection still goes to one
+     * database. Scatter-gather reads would then count that database's rows once per configured shard, so start-up
+     * fails instead.
+     */
+    @Bean(destroyMethod = "close")
+    public PaymentShards paymentShards(
+            ObjectProvider<ShardRoutingDataSource> shardRoutingDataSource,
+            @Value("${payment.sharding.urls:}") String[] urls,
+            PlatformTransactionManager transactionManager) {
+        ShardRoutingDataSource routing = shardRoutingDataSource.getIfAvailable();
+        if (routing == null && urls.length > 0) {
+            throw new IllegalStateException("payment.sharding.urls is set but no shard routing data source was "
+                    + "created; AOT-processed bean definitions fix it at build time, so process them with the same "
+                    + "payment.sharding.urls");
+        }
+        TransactionTemplate readTransactions = new TransactionTemplate(transactionManager);
+        readTransactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readTransactions.setReadOnly(true);
+        return new PaymentShards(routing == null ? 1 : routing.shards().size(), readTransactions);
+    }
+}
@@ -0,0 +1,198 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.stats;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentStatusChangedEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.archive.PaymentsArchivedEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentStats;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live payment counts and amounts, kept in memory so dashboards never have to aggregate the {@code payments} table.
+ * <p>
+ * {@code current} tracks how many payments are in each status, per currency. It is loaded with one grouped query at
+ * startup and then moved along by the {@link PaymentStatusChangedEvent}s {@code PaymentService} publishes, once their
+ * transaction has committed. Payments the archiver deletes from the table are subtracted again
+ * ({@link PaymentsArchivedEvent}), so {@code current} always covers the payments still in the table and a restart
+ * reloads the same totals. Transitions are also counted into a ring of per-minute slots covering the last
+ * {@code payment.stats.window-minutes}; a slot is recycled when its minute comes round again.
+ * <p>
+ * Every cell is a pair of {@link LongAdder}s (count and amount in minor units), so concurrent transitions do not
+ * contend on a shared counter. Reads sum the adders and are not a consistent snapshot across cells; a transition
+ * recorded while its minute slot is being recycled may be lost.
+ */
+@Component
+@Slf4j
+public class PaymentStatistics {
+    private static final int AMOUNT_SCALE = 2;
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final Comparator<PaymentAggregate> ORDER = Comparator
+            .comparing(PaymentAggregate::status)
+            .thenComparing(PaymentAggregate::currency);
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentShards paymentShards;
+    private final LongSupplier clock;
+    private final Map<Key, Cell> current = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<MinuteSlot> minutes;
+
+    @Autowired
+    public PaymentStatistics(PaymentRepository paymentRepository,
+                             PaymentShards paymentShards,
+                             @Value("${payment.stats.window-minutes:60}") int windowMinutes) {
+        this(paymentRepository, paymentShards, windowMinutes, System::currentTimeMillis);
+    }
+
+    PaymentStatistics(PaymentRepository paymentRepository, PaymentShards paymentShards, int windowMinutes,
+                      LongSupplier clock) {
+        if (windowMinutes < 1) {
+            throw new IllegalArgumentException("payment.stats.window-minutes must be at least 1: " + windowMinutes);
+        }
+        this.paymentRepository = paymentRepository;
+        this.paymentShards = paymentShards;
+        this.clock = clock;
+        this.minutes = new AtomicReferenceArray<>(windowMinutes);
+    }
+
+    @PostConstruct
+    void load() {
+        List<PaymentAggregate> totals = paymentShards
+                .readEach(shard -> paymentRepository.aggregateByStatusAndCurrency())
+                .stream()
+                .flatMap(List::stream)
+                .toList();
+        for (PaymentAggregate total : totals) {
+            Cell cell = cell(current, total.status(), total.currency());
+            cell.count.add(total.count());
+            cell.amount.add(toMinorUnits(total.amount()));
+        }
+        log.info("Loaded payment statistics for {} status/currency pairs", current.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        long amount = toMinorUnits(event.amount());
+        if (event.from() != null) {
+            cell(current, event.from(), event.currency()).add(-1, -amount);
+        }
+        cell(current, event.to(), event.currency()).add(1, amount);
+        cell(slotFor(clock.getAsLong() / MINUTE_MILLIS).cells, event.to(), event.currency()).add(1, amount);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentsArchived(PaymentsArchivedEvent event) {
+        for (PaymentAggregate removed : event.removed()) {
+            cell(current, removed.status(), removed.currency()).add(-removed.count(), -toMinorUnits(removed.amount()));
+        }
+    }
+
+    /**
+     * @param windowMinutes how many minutes of transitions to report, clamped to the ring's size.
+     */
+    public PaymentStats snapshot(int windowMinutes) {
+        long now = clock.getAsLong();
+        long currentMinute = now / MINUTE_MILLIS;
+        int window = Math.clamp(windowMinutes, 1, minutes.length());
+
+        Map<Key, long[]> windowTotals = new HashMap<>();
+        List<PaymentStats.Minute> perMinute = new ArrayList<>(window);
+        for (long minute = currentMinute - window + 1; minute <= currentMinute; minute++) {
+            MinuteSlot slot = minutes.get(index(minute));
+            if (slot == null || slot.epochMinute != minute || slot.cells.isEmpty()) {
+                continue;
+            }
+            slot.cells.forEach((key, cell) -> {
+                long[] total = windowTotals.computeIfAbsent(key, k -> new long[2]);
+                total[0] += cell.count.sum();
+                total[1] += cell.amount.sum();
+            });
+            perMinute.add(new PaymentStats.Minute(Instant.ofEpochMilli(minute * MINUTE_MILLIS), aggregates(slot.cells)));
+        }
+
+        List<PaymentAggregate> windowAggregates = new ArrayList<>(windowTotals.size());
+        windowTotals.forEach((key, total) -> windowAggregates.add(aggregate(key, total[0], total[1])));
+        windowAggregates.sort(ORDER);
+        return new PaymentStats(Instant.ofEpochMilli(now), aggregates(current), window, windowAggregates, perMinute);
+    }
+
+    private MinuteSlot slotFor(long epochMinute) {
+        int index = index(epochMinute);
+        while (true) {
+            MinuteSlot slot = minutes.get(index);
+            if (slot != null && slot.epochMinute >= epochMinute) {
+                // A clock that stepped back keeps counting into the newer slot
+                return slot;
+            }
+            MinuteSlot fresh = new MinuteSlot(epochMinute);
+            if (minutes.compareAndSet(index, slot, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private int index(long epochMinute) {
+        return (int) Math.floorMod(epochMinute, minutes.length());
+    }
+
+    private static Cell cell(Map<Key, Cell> cells, PaymentStatus status, String currency) {
+        return cells.computeIfAbsent(new Key(status, currency), key -> new Cell());
+    }
+
+    private static List<PaymentAggregate> aggregates(Map<Key, Cell> cells) {
+        List<PaymentAggregate> aggregates = new ArrayList<>(cells.size());
+        cells.forEach((key, cell) -> aggregates.add(aggregate(key, cell.count.sum(), cell.amount.sum())));
+        aggregates.sort(ORDER);
+        return aggregates;
+    }
+
+    private static PaymentAggregate aggregate(Key key, long count, long amount) {
+        return new PaymentAggregate(key.status(), key.currency(), count, BigDecimal.valueOf(amount, AMOUNT_SCALE));
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private record Key(PaymentStatus status, String currency) {
+    }
+
+    private static final class Cell {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder amount = new LongAdder();
+
+        private void add(long count, long amount) {
+            this.count.add(count);
+            this.amount.add(amount);
+        }
+    }
+
+    private static final class MinuteSlot {
+        private final long epochMinute;
+        private final Map<Key, Cell> cells = new ConcurrentHashMap<>();
+
+        private MinuteSlot(long epochMinute) {
+            this.epochMinute = epochMinute;
+        }
+    }
+}
@@ -16,6 +16,7 @@ import org.mapstruct.ReportingPolicy;
 public interface PaymentMapper {
     @Mapping(target = "id", ignore = true) // Let JPA generate ID
     @Mapping(target = "status", expression = "java(com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus.PENDING)")
+    @Mapping(target = "priority", defaultValue = "NORMAL")
     @Mapping(target = "failureReason", ignore = true)
     @Mapping(target = "mnoReference", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
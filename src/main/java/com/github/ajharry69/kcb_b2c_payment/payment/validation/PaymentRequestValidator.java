@@ -0,0 +1,248 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.validation;
+
+import com.github.ajharry69.kcb_b2c_payment.exceptions.InvalidPaymentRequestException;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks a {@link PaymentRequest} in one pass over its fields and returns it in canonical form: the recipient as an
+ * E.164 number ({@code +254712345678}), the amount with a scale of 2 and the currency and priority upper-cased. Every
+ * violated rule is reported together in an {@link InvalidPaymentRequestException}.
+ * <p>
+ * Phone numbers may contain spaces, dots, dashes and parentheses. Numbers starting with {@code +} or {@code 00} are
+ * international. Any other number is national to {@code payment.validation.default-country-code}, and once a single
+ * trunk {@code 0} or a leading country code is set aside, what is left must be a national significant number of one
+ * of the {@code payment.validation.national-number-lengths}. The country code only counts as present when that leaves
+ * such a number, so {@code 2547123} is rejected rather than read as the national number {@code 2547123}.
+ * <p>
+ * {@code executeAt} may carry an offset or zone, in which case it is converted to the server's zone; without one it is
+ * taken as server-local time. It may be at most {@code payment.schedule.max-days-ahead} days ahead. Times that have
+ * already passed are accepted, and such payments are dispatched straight away.
+ */
+@Component
+public class PaymentRequestValidator {
+    static final int MAX_TRANSACTION_ID_LENGTH = 50;
+    private static final int MAX_INTEGER_DIGITS = 10;
+    private static final int MAX_FRACTION_DIGITS = 2;
+    private static final BigDecimal MIN_AMOUNT = new BigDecimal("0.01");
+    // E.164: country code and subscriber number, at most 15 digits; 8 is the shortest in use
+    private static final int MIN_E164_DIGITS = 8;
+    private static final int MAX_E164_DIGITS = 15;
+
+    private final String defaultCountryCode;
+    private final int[] nationalNumberLengths;
+    private final Duration maxScheduleAhead;
+    private final Clock clock;
+
+    @Autowired
+    public PaymentRequestValidator(
+            @Value("${payment.validation.default-country-code:254}") String defaultCountryCode,
+            @Value("${payment.validation.national-number-lengths:9}") int[] nationalNumberLengths,
+            @Value("${payment.schedule.max-days-ahead:90}") int maxScheduleDaysAhead) {
+        this(defaultCountryCode, nationalNumberLengths, maxScheduleDaysAhead, Clock.systemDefaultZone());
+    }
+
+    PaymentRequestValidator(String defaultCountryCode, int[] nationalNumberLengths, int maxScheduleDaysAhead,
+                            Clock clock) {
+        if (!defaultCountryCode.matches("[1-9][0-9]{0,2}")) {
+            throw new IllegalArgumentException("payment.validation.default-country-code must be 1-3 digits: " + defaultCountryCode);
+        }
+        if (nationalNumberLengths.length == 0) {
+            throw new IllegalArgumentException("payment.validation.national-number-lengths must not be empty");
+        }
+        for (int length : nationalNumberLengths) {
+            if (length < 1 || defaultCountryCode.length() + length > MAX_E164_DIGITS) {
+                throw new IllegalArgumentException("payment.validation.national-number-lengths must be between 1 and "
+                        + (MAX_E164_DIGITS - defaultCountryCode.length()) + ": " + length);
+            }
+        }
+        this.defaultCountryCode = defaultCountryCode;
+        this.nationalNumberLengths = nationalNumberLengths.clone();
+        this.maxScheduleAhead = Duration.ofDays(maxScheduleDaysAhead);
+        this.clock = clock;
+    }
+
+    /**
+     * @return the canonical form of {@code request}.
+     * @throws InvalidPaymentRequestException if any field is invalid.
+     */
+    public PaymentRequest validate(PaymentRequest request) {
+        List<String> errors = new ArrayList<>(0);
+
+        String transactionId = request.transactionId();
+        if (transactionId == null || transactionId.isBlank()) {
+            errors.add("'transactionId': Transaction ID cannot be blank");
+        } else if (transactionId.length() > MAX_TRANSACTION_ID_LENGTH) {
+            errors.add("'transactionId': Transaction ID length must be between 1 and " + MAX_TRANSACTION_ID_LENGTH);
+        }
+
+        String phoneNumber = null;
+        if (request.recipientPhoneNumber() == null || request.recipientPhoneNumber().isBlank()) {
+            errors.add("'recipientPhoneNumber': Recipient phone number cannot be blank");
+        } else {
+            phoneNumber = toE164(request.recipientPhoneNumber());
+            if (phoneNumber == null) {
+                errors.add("'recipientPhoneNumber': Invalid phone number format");
+            }
+        }
+
+        BigDecimal amount = request.amount();
+        if (amount == null) {
+            errors.add("'amount': Amount cannot be null");
+        } else {
+            BigDecimal stripped = amount.stripTrailingZeros();
+            int fractionDigits = Math.max(stripped.scale(), 0);
+            int integerDigits = stripped.precision() - stripped.scale();
+            if (integerDigits > MAX_INTEGER_DIGITS || fractionDigits > MAX_FRACTION_DIGITS) {
+                errors.add("'amount': Invalid amount format (max 10 integer, 2 fraction digits)");
+            } else if (amount.compareTo(MIN_AMOUNT) < 0) {
+                errors.add("'amount': Amount must be positive");
+            } else {
+                amount = amount.setScale(MAX_FRACTION_DIGITS, RoundingMode.UNNECESSARY);
+            }
+        }
+
+        String currency = request.currency();
+        if (currency == null || currency.isBlank()) {
+            errors.add("'currency': Currency cannot be blank");
+        } else if (!isThreeLetters(currency)) {
+            errors.add("'currency': Currency must be a 3-letter code (e.g., KES)");
+        } else {
+            currency = currency.toUpperCase(Locale.ROOT);
+        }
+
+        String priority = request.priority();
+        if (priority != null) {
+            priority = priority.trim().toUpperCase(Locale.ROOT);
+            if (!isPriority(priority)) {
+                errors.add("'priority': Priority must be one of " + Arrays.toString(PaymentPriority.values()));
+            }
+        }
+
+        String executeAt = request.executeAt();
+        if (executeAt != null && executeAt.isBlank()) {
+            executeAt = null;
+        } else if (executeAt != null) {
+            LocalDateTime time = toLocalDateTime(executeAt.trim());
+            if (time == null) {
+                errors.add("'executeAt': Must be an ISO-8601 date-time (e.g., 2025-06-30T00:01:00+03:00)");
+            } else if (time.isAfter(LocalDateTime.now(clock).plus(maxScheduleAhead))) {
+                errors.add("'executeAt': Must be at most " + maxScheduleAhead.toDays() + " days ahead");
+            } else {
+                executeAt = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(time);
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new InvalidPaymentRequestException(errors);
+        }
+        return new PaymentRequest(transactionId, phoneNumber, amount, currency, priority, executeAt);
+    }
+
+    /**
+     * @return {@code raw} as an E.164 number, or {@code null} if it cannot be one.
+     */
+    String toE164(String raw) {
+        StringBuilder digits = new StringBuilder(MAX_E164_DIGITS + 1);
+        boolean international = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits.length() > MAX_E164_DIGITS + 2) {
+                    return null;
+                }
+                digits.append(c);
+            } else if (c == '+' && digits.isEmpty() && !international) {
+                international = true;
+            } else if (c != ' ' && c != '.' && c != '-' && c != '(' && c != ')') {
+                return null;
+            }
+        }
+
+        if (!international && digits.length() > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0') {
+            international = true;
+            digits.delete(0, 2);
+        }
+        if (!international) {
+            if (digits.length() > 1 && digits.charAt(0) == '0') {
+                digits.deleteCharAt(0);
+            } else if (digits.indexOf(defaultCountryCode) == 0
+                    && isNationalNumberLength(digits.length() - defaultCountryCode.length())) {
+                digits.delete(0, defaultCountryCode.length());
+            }
+            if (!isNationalNumberLength(digits.length()) || digits.charAt(0) == '0') {
+                return null;
+            }
+            digits.insert(0, defaultCountryCode);
+        }
+
+        if (digits.length() < MIN_E164_DIGITS || digits.length() > MAX_E164_DIGITS || digits.charAt(0) == '0') {
+            return null;
+        }
+        return digits.insert(0, '+').toString();
+    }
+
+    private boolean isNationalNumberLength(int length) {
+        for (int nationalNumberLength : nationalNumberLengths) {
+            if (length == nationalNumberLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code raw} in the server's zone, or {@code null} if it is not an ISO-8601 date-time.
+     */
+    private LocalDateTime toLocalDateTime(String raw) {
+        try {
+            TemporalAccessor parsed =
+                    DateTimeFormatter.ISO_DATE_TIME.parseBest(raw, ZonedDateTime::from, LocalDateTime::from);
+            if (parsed instanceof ZonedDateTime zoned) {
+                return zoned.withZoneSameInstant(clock.getZone()).toLocalDateTime();
+            }
+            return (LocalDateTime) parsed;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static boolean isPriority(String priority) {
+        for (PaymentPriority value : PaymentPriority.values()) {
+            if (value.name().equals(priority)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isThreeLetters(String currency) {
+        if (currency.length() != 3) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            char c = currency.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= 'a' && c <= 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client token buckets, one per {@link RateLimitScope}, keyed on the authenticated principal's name (the JWT
+ * subject). A request does one map lookup and one CAS on its bucket and never blocks; what that costs under load is
+ * left to {@code ClientRateLimiterBenchmark} ({@code ./gradlew jmh}).
+ * <p>
+ * The map is bounded by {@code payment.rate-limit.max-clients}. When it is full, buckets that have refilled completely
+ * are purged (a full bucket is indistinguishable from a new one, so nothing is forgotten); the sweep runs at most once
+ * per second. If every tracked client is still active, new clients share one overflow bucket per scope until space
+ * frees up, so an untracked client can never bypass the limit.
+ */
+@Component
+@Slf4j
+public class ClientRateLimiter {
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<RateLimitScope, RateLimit> limits;
+    private final ConcurrentMap<String, TokenBucket[]> clients = new ConcurrentHashMap<>();
+    private final int maxClients;
+    private final LongSupplier nanoTime;
+    private final TokenBucket[] overflow;
+    private final AtomicLong nextPurgeNanos;
+
+    @Autowired
+    public ClientRateLimiter(
+            @Value("${payment.rate-limit.initiate.requests-per-second:50}") double initiateRequestsPerSecond,
+            @Value("${payment.rate-limit.initiate.burst:100}") int initiateBurst,
+            @Value("${payment.rate-limit.read.requests-per-second:200}") double readRequestsPerSecond,
+            @Value("${payment.rate-limit.read.burst:400}") int readBurst,
+            @Value("${payment.rate-limit.max-clients:100000}") int maxClients) {
+        this(Map.of(
+                RateLimitScope.INITIATE, new RateLimit(initiateRequestsPerSecond, initiateBurst),
+                RateLimitScope.READ, new RateLimit(readRequestsPerSecond, readBurst)
+        ), maxClients, System::nanoTime);
+    }
+
+    ClientRateLimiter(Map<RateLimitScope, RateLimit> limits, int maxClients, LongSupplier nanoTime) {
+        this.limits = new EnumMap<>(limits);
+        this.maxClients = maxClients;
+        this.nanoTime = nanoTime;
+        long now = nanoTime.getAsLong();
+        this.overflow = newBuckets(now);
+        this.nextPurgeNanos = new AtomicLong(now);
+    }
+
+    /**
+     * Takes one token from {@code principal}'s bucket for {@code scope}.
+     */
+    public RateLimitDecision tryAcquire(String principal, RateLimitScope scope) {
+        long now = nanoTime.getAsLong();
+        return buckets(principal, now)[scope.ordinal()].tryAcquire(now);
+    }
+
+    public int trackedClients() {
+        return clients.size();
+    }
+
+    private TokenBucket[] buckets(String principal, long now) {
+        TokenBucket[] buckets = clients.get(principal);
+        if (buckets != null) {
+            return buckets;
+        }
+        if (clients.size() >= maxClients && !purgeFull(now)) {
+            log.debug("Rate limiter is tracking {} clients; {} shares the overflow buckets", maxClients, principal);
+            return overflow;
+        }
+        return clients.computeIfAbsent(principal, key -> newBuckets(now));
+    }
+
+    /**
+     * @return {@code true} if there is room for another client afterwards.
+     */
+    private boolean purgeFull(long now) {
+        long due = nextPurgeNanos.get();
+        if (now - due >= 0 && nextPurgeNanos.compareAndSet(due, now + PURGE_INTERVAL_NANOS)) {
+            clients.values().removeIf(buckets -> Arrays.stream(buckets).allMatch(bucket -> bucket.isFull(now)));
+            log.debug("Purged idle rate-limit buckets; {} clients remain", clients.size());
+        }
+        return clients.size() < maxClients;
+    }
+
+    private TokenBucket[] newBuckets(long now) {
+        RateLimitScope[] scopes = RateLimitScope.values();
+        TokenBucket[] buckets = new TokenBucket[scopes.length];
+        for (RateLimitScope scope : scopes) {
+            RateLimit limit = limits.get(scope);
+            if (limit == null) {
+                throw new IllegalArgumentException("No rate limit configured for scope " + scope.scope());
+            }
+            buckets[scope.ordinal()] = new TokenBucket(limit, now);
+        }
+        return buckets;
+    }
+}
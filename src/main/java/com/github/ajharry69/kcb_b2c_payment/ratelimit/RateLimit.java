@@ -0,0 +1,19 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+/**
+ * Sustained rate and burst allowance of one client for one {@link RateLimitScope}.
+ */
+public record RateLimit(double requestsPerSecond, int burst) {
+    public RateLimit {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requestsPerSecond must be positive: " + requestsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1: " + burst);
+        }
+    }
+
+    long intervalNanos() {
+        return Math.max(1, Math.round(1_000_000_000L / requestsPerSecond));
+    }
+}
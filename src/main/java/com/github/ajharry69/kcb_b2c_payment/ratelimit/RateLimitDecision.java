@@ -0,0 +1,32 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of one token acquisition, with what the client needs to pace itself.
+ *
+ * @param remaining       tokens left in the bucket after this request.
+ * @param resetNanos      time until the bucket is full again.
+ * @param retryAfterNanos time until the next token is available; zero when the request was allowed.
+ */
+public record RateLimitDecision(boolean allowed, RateLimit limit, long remaining, long resetNanos, long retryAfterNanos) {
+    static RateLimitDecision allowed(RateLimit limit, long remaining, long resetNanos) {
+        return new RateLimitDecision(true, limit, remaining, resetNanos, 0);
+    }
+
+    static RateLimitDecision rejected(RateLimit limit, long resetNanos, long retryAfterNanos) {
+        return new RateLimitDecision(false, limit, 0, resetNanos, retryAfterNanos);
+    }
+
+    public long resetSeconds() {
+        return toSecondsRoundingUp(resetNanos);
+    }
+
+    public long retryAfterSeconds() {
+        return toSecondsRoundingUp(retryAfterNanos);
+    }
+
+    private static long toSecondsRoundingUp(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
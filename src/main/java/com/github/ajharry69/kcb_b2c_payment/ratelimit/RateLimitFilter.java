@@ -0,0 +1,98 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
+
+/**
+ * Applies the {@link ClientRateLimiter} to the payment endpoints once the bearer token has been authenticated. Every
+ * limited response carries the {@code RateLimit-Limit}, {@code RateLimit-Remaining} and {@code RateLimit-Reset}
+ * headers (IETF RateLimit header fields); rejected requests get {@code 429 Too Many Requests} with {@code Retry-After}.
+ * <p>
+ * Not a bean: it is only added to the security filter chain, not to the servlet container's filters.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+    static final String LIMIT_HEADER = "RateLimit-Limit";
+    static final String REMAINING_HEADER = "RateLimit-Remaining";
+    static final String RESET_HEADER = "RateLimit-Reset";
+
+    private static final RequestMatcher INITIATE = antMatcher(HttpMethod.POST, "/api/v1/payments");
+    private static final RequestMatcher LOOKUP = antMatcher(HttpMethod.POST, "/api/v1/payments/lookup");
+    private static final RequestMatcher READ = antMatcher(HttpMethod.GET, "/api/v1/payments/**");
+
+    private final ClientRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        RateLimitScope scope = scopeOf(request);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (scope == null || !(authentication instanceof JwtAuthenticationToken token)) {
+            // Unauthenticated requests are rejected by the authorization filter further down the chain
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RateLimitDecision decision = rateLimiter.tryAcquire(token.getName(), scope);
+        response.setHeader(LIMIT_HEADER, Integer.toString(decision.limit().burst()));
+        response.setHeader(REMAINING_HEADER, Long.toString(decision.remaining()));
+        response.setHeader(RESET_HEADER, Long.toString(decision.resetSeconds()));
+        if (decision.allowed()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        log.debug("Rate limit exceeded for client {} on {}", token.getName(), scope.scope());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.retryAfterSeconds()));
+        writeTooManyRequests(request, response, scope);
+    }
+
+    private static RateLimitScope scopeOf(HttpServletRequest request) {
+        if (INITIATE.matches(request)) {
+            return RateLimitScope.INITIATE;
+        }
+        if (LOOKUP.matches(request) || READ.matches(request)) {
+            return RateLimitScope.READ;
+        }
+        return null;
+    }
+
+    private void writeTooManyRequests(HttpServletRequest request, HttpServletResponse response, RateLimitScope scope) throws IOException {
+        // Same shape as the bodies written by GlobalExceptionHandler, which filters cannot reach
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        body.put("error", "Too Many Requests");
+        body.put("message", "Rate limit exceeded for scope " + scope.scope() + ". Retry after the time given in the Retry-After header.");
+        body.put("path", "uri=" + request.getRequestURI());
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
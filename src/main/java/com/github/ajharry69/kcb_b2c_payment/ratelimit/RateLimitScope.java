@@ -0,0 +1,20 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+/**
+ * The OAuth2 scopes guarding the payment endpoints. Each client gets a separate bucket per scope, so a burst of status
+ * polls cannot use up its allowance for initiating payments.
+ */
+public enum RateLimitScope {
+    INITIATE("payment.initiate"),
+    READ("payment.read");
+
+    private final String scope;
+
+    RateLimitScope(String scope) {
+        this.scope = scope;
+    }
+
+    public String scope() {
+        return scope;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket holding up to {@code burst} tokens and refilled at {@code requestsPerSecond}. Instead of a token count
+ * and a refill timestamp, the bucket keeps a single "full at" instant: the moment it would be full again if nothing
+ * else were taken (the generic cell rate algorithm). Taking a token pushes that instant one emission interval further,
+ * so an acquisition is one CAS on one long and never blocks.
+ */
+class TokenBucket {
+    private final RateLimit limit;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAtNanos;
+
+    TokenBucket(RateLimit limit, long nowNanos) {
+        this.limit = limit;
+        this.intervalNanos = limit.intervalNanos();
+        this.burstNanos = intervalNanos * limit.burst();
+        this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    RateLimitDecision tryAcquire(long nowNanos) {
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            long nextFullAt = Math.max(fullAt, nowNanos) + intervalNanos;
+            long emptyUntil = nextFullAt - burstNanos;
+            if (emptyUntil > nowNanos) {
+                return RateLimitDecision.rejected(limit, Math.max(0, fullAt - nowNanos), emptyUntil - nowNanos);
+            }
+            if (fullAtNanos.compareAndSet(fullAt, nextFullAt)) {
+                long remaining = (nowNanos - emptyUntil) / intervalNanos;
+                return RateLimitDecision.allowed(limit, remaining, nextFullAt - nowNanos);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the bucket has refilled completely, i.e. it is indistinguishable from a new one.
+     */
+    boolean isFull(long nowNanos) {
+        return fullAtNanos.get() - nowNanos <= 0;
+    }
+}
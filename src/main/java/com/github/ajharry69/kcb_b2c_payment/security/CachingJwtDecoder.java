@@ -0,0 +1,27 @@
+package com.github.ajharry69.kcb_b2c_payment.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * Verifies each distinct token once with the {@code delegate} and serves repeats from the {@link VerifiedTokenCache}
+ * until they expire. Tokens that fail verification are never cached.
+ */
+@RequiredArgsConstructor
+public class CachingJwtDecoder implements JwtDecoder {
+    private final JwtDecoder delegate;
+    private final VerifiedTokenCache tokenCache;
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Jwt cached = tokenCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        Jwt jwt = delegate.decode(token);
+        tokenCache.put(jwt);
+        return jwt;
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.ajharry69.kcb_b2c_payment.security;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
@@ -11,42 +12,41 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtGra
 import org.springframework.stereotype.Component;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.HashSet;
+import java.util.Set;
 
 @Component
+@RequiredArgsConstructor
 public class JWTAuthConverter implements Converter<Jwt, AbstractAuthenticationToken> {
     // Initialize the default converter which extracts scopes (like 'payment.read')
     // and prefixes them with "SCOPE_"
     private final JwtGrantedAuthoritiesConverter jwtGrantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
+    private final VerifiedTokenCache tokenCache;
 
     @Override
     public AbstractAuthenticationToken convert(@NonNull Jwt jwt) {
-        Collection<GrantedAuthority> scopeAuthorities = jwtGrantedAuthoritiesConverter.convert(jwt);
-
-        Collection<GrantedAuthority> roleAuthorities = extractRoles(jwt);
-
-        Collection<GrantedAuthority> authorities = Stream.concat(
-                scopeAuthorities.stream(),
-                roleAuthorities.stream()
-        ).collect(Collectors.toSet());
+        // Computed once per cached token and shared (immutable) by every request that reuses it
+        Set<GrantedAuthority> authorities = tokenCache.authorities(jwt, this::extractAuthorities);
 
         String principalName = jwt.getSubject();
 
         return new JwtAuthenticationToken(jwt, authorities, principalName);
     }
 
-    private Collection<GrantedAuthority> extractRoles(Jwt jwt) {
+    private Set<GrantedAuthority> extractAuthorities(Jwt jwt) {
+        Set<GrantedAuthority> authorities = new HashSet<>(jwtGrantedAuthoritiesConverter.convert(jwt));
+        addRoles(jwt, authorities);
+        return authorities;
+    }
+
+    private void addRoles(Jwt jwt, Set<GrantedAuthority> authorities) {
         var realmAccess = jwt.getClaimAsMap("realm_access");
         if (realmAccess != null && realmAccess.get("roles") instanceof Collection<?> roles) {
-            return roles.stream()
-                    .filter(String.class::isInstance)
-                    .map(String.class::cast)
-                    .map(role -> new SimpleGrantedAuthority("ROLE_" + role.toUpperCase()))
-                    .collect(Collectors.toSet());
+            for (Object role : roles) {
+                if (role instanceof String name) {
+                    authorities.add(new SimpleGrantedAuthority("ROLE_" + name.toUpperCase()));
+                }
+            }
         }
-
-        return Collections.emptySet();
     }
 }
@@ -0,0 +1,93 @@
+package com.github.ajharry69.kcb_b2c_payment.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.text.ParseException;
+
+/**
+ * Replaces the auto-configured decoder with one that keeps JWKS maintenance off the request path and caches verified
+ * tokens (see {@link VerifiedTokenCache}).
+ * <p>
+ * The key set is fetched in the background once the application is ready and refreshed ahead of expiry by a
+ * scheduled task, so signing-key rotation published through the JWKS endpoint never stalls a request. Nothing is
+ * fetched during start-up; deployments can also ship the key set as a file ({@code payment.security.jwks.location}).
+ */
+@Configuration
+@Slf4j
+public class JwtDecoderConfig {
+    private final JWKSource<SecurityContext> jwkSource;
+    private final boolean remoteJwks;
+
+    public JwtDecoderConfig(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${payment.security.jwks.location:}") Resource jwksLocation,
+            @Value("${payment.security.jwks.cache-ttl-ms:300000}") long cacheTtlMillis,
+            @Value("${payment.security.jwks.refresh-ahead-ms:60000}") long refreshAheadMillis,
+            @Value("${payment.security.jwks.refresh-timeout-ms:15000}") long refreshTimeoutMillis) throws IOException, ParseException {
+        this.remoteJwks = jwksLocation == null;
+        if (remoteJwks) {
+            this.jwkSource = JWKSourceBuilder.<SecurityContext>create(URI.create(jwkSetUri).toURL())
+                    .cache(cacheTtlMillis, refreshTimeoutMillis)
+                    .refreshAheadCache(refreshAheadMillis, true)
+                    .build();
+        } else {
+            try (InputStream in = jwksLocation.getInputStream()) {
+                this.jwkSource = new ImmutableJWKSet<>(JWKSet.load(in));
+            }
+            log.info("Verifying tokens against the local key set at {}", jwksLocation);
+        }
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+            VerifiedTokenCache tokenCache) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // Claims are validated by Spring's validators below
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        NimbusJwtDecoder verifyingDecoder = new NimbusJwtDecoder(jwtProcessor);
+        verifyingDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingJwtDecoder(verifyingDecoder, tokenCache);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prefetchJwks() {
+        if (!remoteJwks) {
+            return;
+        }
+        Thread.ofVirtual().name("jwks-prefetch").start(() -> {
+            try {
+                int keys = jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null).size();
+                log.info("Pre-fetched {} signing keys from the JWKS endpoint", keys);
+            } catch (KeySourceException e) {
+                log.warn("Could not pre-fetch JWKS; keys will be loaded on first use: {}", e.getMessage());
+            }
+        });
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.ajharry69.kcb_b2c_payment.security;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ajharry69.kcb_b2c_payment.ratelimit.ClientRateLimiter;
+import com.github.ajharry69.kcb_b2c_payment.ratelimit.RateLimitFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -9,6 +12,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.annotation.web.configurers.HeadersConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
 import org.springframework.security.web.SecurityFilterChain;
 
 import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
@@ -18,7 +22,10 @@ import static org.springframework.security.web.util.matcher.AntPathRequestMatche
 @EnableMethodSecurity
 public class SecurityConfig {
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http, JWTAuthConverter converter) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   JWTAuthConverter converter,
+                                                   ClientRateLimiter rateLimiter,
+                                                   ObjectMapper objectMapper) throws Exception {
         http
                 .authorizeHttpRequests(authorizeRequests ->
                         authorizeRequests
@@ -27,11 +34,17 @@ public class SecurityConfig {
                                         antMatcher("/swagger-ui/**"),
                                         antMatcher("/swagger-ui.html")).permitAll()
                                 .requestMatchers(antMatcher(HttpMethod.POST, "/api/v1/payments")).authenticated()
+                                .requestMatchers(antMatcher(HttpMethod.POST, "/api/v1/payments/lookup")).authenticated()
+                                .requestMatchers(antMatcher(HttpMethod.POST, "/api/v1/payments/rollups/rebuild")).authenticated()
+                                .requestMatchers(antMatcher(HttpMethod.POST, "/api/v1/payments/*/release"),
+                                        antMatcher(HttpMethod.POST, "/api/v1/payments/*/reject")).authenticated()
                                 .requestMatchers(antMatcher(HttpMethod.GET, "/api/v1/payments/**")).authenticated()
                                 .anyRequest()
                                 .denyAll()
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwtConfigurer -> jwtConfigurer.jwtAuthenticationConverter(converter)))
+                // Limits are per principal, so they can only be applied once the bearer token has been authenticated
+                .addFilterAfter(new RateLimitFilter(rateLimiter, objectMapper), BearerTokenAuthenticationFilter.class)
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .headers(headers -> headers.frameOptions(HeadersConfigurer.FrameOptionsConfig::sameOrigin));
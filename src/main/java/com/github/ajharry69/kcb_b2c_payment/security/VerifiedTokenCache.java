@@ -0,0 +1,120 @@
+package com.github.ajharry69.kcb_b2c_payment.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Remembers access tokens whose signature and claims have already been verified, together with the authorities
+ * derived from them. Bulk clients reuse one token for thousands of calls; a hit skips signature verification and
+ * authority extraction entirely.
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the token and are only served until the token's {@code exp}. The cache is
+ * bounded by {@code payment.security.token-cache.max-entries}: when full, expired entries are purged and, if that
+ * does not free space, new tokens are simply not cached.
+ */
+@Component
+@Slf4j
+public class VerifiedTokenCache {
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final Clock clock;
+
+    @Autowired
+    public VerifiedTokenCache(@Value("${payment.security.token-cache.max-entries:10000}") int maxEntries) {
+        this(maxEntries, Clock.systemUTC());
+    }
+
+    VerifiedTokenCache(int maxEntries, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the previously verified token, or {@code null} if it is unknown or has expired.
+     */
+    public Jwt get(String token) {
+        Entry entry = entries.get(key(token));
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.expiresAt().isAfter(clock.instant())) {
+            entries.remove(key(token), entry);
+            return null;
+        }
+        return entry.jwt();
+    }
+
+    public void put(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null || !expiresAt.isAfter(clock.instant())) {
+            return;
+        }
+        if (entries.size() >= maxEntries && !purgeExpired()) {
+            log.debug("Verified token cache is full ({} entries); not caching token for subject {}", maxEntries, jwt.getSubject());
+            return;
+        }
+        entries.put(key(jwt.getTokenValue()), new Entry(jwt, expiresAt, new AuthoritiesHolder()));
+    }
+
+    /**
+     * @return the authorities of {@code jwt}, computed by {@code extractor} at most once per cached token. The
+     * returned set is immutable.
+     */
+    public Set<GrantedAuthority> authorities(Jwt jwt, Function<Jwt, Set<GrantedAuthority>> extractor) {
+        Entry entry = entries.get(key(jwt.getTokenValue()));
+        if (entry == null || entry.jwt() != jwt) {
+            return Set.copyOf(extractor.apply(jwt));
+        }
+        Set<GrantedAuthority> authorities = entry.authorities().value;
+        if (authorities == null) {
+            authorities = Set.copyOf(extractor.apply(jwt));
+            entry.authorities().value = authorities;
+        }
+        return authorities;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean purgeExpired() {
+        Instant now = clock.instant();
+        entries.values().removeIf(entry -> !entry.expiresAt().isAfter(now));
+        return entries.size() < maxEntries;
+    }
+
+    private static String key(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every Java platform", e);
+        }
+    }
+
+    private record Entry(Jwt jwt, Instant expiresAt, AuthoritiesHolder authorities) {
+    }
+
+    /**
+     * Filled in lazily by the authentication converter; racing writers compute identical sets, so a plain volatile is
+     * enough.
+     */
+    private static final class AuthoritiesHolder {
+        private volatile Set<GrantedAuthority> value;
+    }
+}
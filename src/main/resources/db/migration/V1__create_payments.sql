@@ -0,0 +1,18 @@
+create table payments
+(
+    id                     uuid           not null primary key,
+    transaction_id         varchar(255)   not null,
+    recipient_phone_number varchar(255)   not null,
+    amount                 numeric(12, 2) not null,
+    currency               varchar(3)     not null,
+    status                 varchar(20)    not null,
+    failure_reason         varchar(255),
+    mno_reference          varchar(100),
+    attempt_count          integer        not null,
+    next_attempt_at        timestamp(6),
+    created_at             timestamp(6)   not null,
+    updated_at             timestamp(6)   not null,
+    constraint uk_payments_transaction_id unique (transaction_id)
+);
+
+create index idx_payments_next_attempt_at on payments (next_attempt_at);
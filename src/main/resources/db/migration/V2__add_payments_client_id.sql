@@ -0,0 +1 @@
+alter table payments add column client_id varchar(255);
@@ -0,0 +1 @@
+alter table payments add column priority varchar(10) default 'NORMAL' not null;
@@ -0,0 +1,9 @@
+create table payment_rollups
+(
+    hour_start    timestamp(6)   not null,
+    currency      varchar(3)     not null,
+    status        varchar(20)    not null,
+    payment_count bigint         not null,
+    amount_total  numeric(19, 2) not null,
+    constraint pk_payment_rollups primary key (hour_start, currency, status)
+);
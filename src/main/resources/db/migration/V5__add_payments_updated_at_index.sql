@@ -0,0 +1 @@
+create index idx_payments_updated_at on payments (updated_at);
@@ -0,0 +1,12 @@
+create table payment_keys
+(
+    transaction_id varchar(255) not null,
+    payment_id     uuid         not null,
+    created_at     timestamp(6) not null,
+    constraint pk_payment_keys primary key (transaction_id),
+    constraint uk_payment_keys_payment_id unique (payment_id)
+);
+
+insert into payment_keys (transaction_id, payment_id, created_at)
+select transaction_id, id, created_at
+from payments;
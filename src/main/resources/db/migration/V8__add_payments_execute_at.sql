@@ -0,0 +1,3 @@
+alter table payments add column execute_at timestamp(6);
+
+create index idx_payments_execute_at on payments (execute_at);
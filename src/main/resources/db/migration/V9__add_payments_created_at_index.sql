@@ -0,0 +1 @@
+create index idx_payments_created_at on payments (created_at);
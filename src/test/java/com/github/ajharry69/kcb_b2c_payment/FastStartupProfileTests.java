@@ -0,0 +1,24 @@
+package com.github.ajharry69.kcb_b2c_payment;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The fast-startup profile takes its schema from the Flyway migrations; Hibernate's validation fails the context if
+ * they drift from the entity mappings.
+ */
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fast-startup",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@ActiveProfiles({"test", "fast-startup"})
+class FastStartupProfileTests {
+
+    @Test
+    void contextLoadsOnMigratedSchema() {
+    }
+
+}
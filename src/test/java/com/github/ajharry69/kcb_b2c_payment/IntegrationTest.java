@@ -22,6 +22,10 @@ public abstract class IntegrationTest {
     }
 
     protected String getAccessToken(String username, String password) {
+        return getAccessToken(username, password, "openid payment.initiate payment.read");
+    }
+
+    protected String getAccessToken(String username, String password, String scope) {
         String tokenEndpoint = "http://localhost:8180/realms/test-realm/protocol/openid-connect/token";
         log.debug("Requesting access token for user '{}', client '{}' from endpoint: {}", username, TEST_CLIENT_ID, tokenEndpoint);
 
@@ -33,7 +37,7 @@ public abstract class IntegrationTest {
                     .formParam("client_secret", TEST_CLIENT_SECRET)
                     .formParam("username", username)
                     .formParam("password", password)
-                    .formParam("scope", "openid payment.initiate payment.read");
+                    .formParam("scope", scope);
             requestSpecification.log();
             Response response = requestSpecification
                     .when()
@@ -1,5 +1,6 @@
 package com.github.ajharry69.kcb_b2c_payment;
 
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentKeyRepository;
 import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
@@ -18,6 +19,7 @@ import org.springframework.http.HttpStatus;
 import java.math.BigDecimal;
 import java.util.UUID;
 
+import static com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequests.paymentRequest;
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -31,11 +33,14 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
     private int port;
     @Autowired
     private PaymentRepository paymentRepository;
+    @Autowired
+    private PaymentKeyRepository paymentKeyRepository;
 
     @BeforeEach
     void setUp() {
         RestAssured.port = port;
         paymentRepository.deleteAll();
+        paymentKeyRepository.deleteAll();
     }
 
     @AfterEach
@@ -47,7 +52,7 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
     @Order(1)
     @DisplayName("POST /payments - Success (202 Accepted) with valid token")
     void initiatePayment_Success() {
-        PaymentRequest request = new PaymentRequest(
+        PaymentRequest request = paymentRequest(
                 "ITEST-TXN-001",
                 "+254722000111",
                 new BigDecimal("250.50"),
@@ -69,13 +74,14 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
                 .statusCode(HttpStatus.ACCEPTED.value())
                 .contentType(ContentType.JSON)
                 .header("Location", matchesRegex(".*/api/v1/payments/[a-f0-9-]+$"))
-                .body("status", is(PaymentStatus.SUCCESSFUL.toString()))
+                // MNO processing is queued after the payment is committed
+                .body("status", is(PaymentStatus.PROCESSING.toString()))
                 .body("transactionId", is(request.transactionId()))
                 .body("paymentId", notNullValue())
                 .extract().as(PaymentResponse.class);
 
         assertThat(paymentResponse).isNotNull();
-        assertThat(paymentResponse.status()).isEqualTo(PaymentStatus.SUCCESSFUL);
+        assertThat(paymentResponse.status()).isEqualTo(PaymentStatus.PROCESSING);
     }
 
     @Test
@@ -83,7 +89,7 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
     @DisplayName("POST /payments - Forbidden (403) with token lacking scope")
     void initiatePayment_Forbidden_LackingScope() {
         // 'testuser' has 'payment.read' but not 'payment.initiate' scope by default in realm config
-        PaymentRequest request = new PaymentRequest(
+        PaymentRequest request = paymentRequest(
                 "ITEST-TXN-002",
                 "+254722000222",
                 new BigDecimal("100.00"),
@@ -105,7 +111,7 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
     @Order(3)
     @DisplayName("POST /payments - Unauthorized (401) with invalid/no token")
     void initiatePayment_Unauthorized_InvalidToken() {
-        PaymentRequest request = new PaymentRequest(
+        PaymentRequest request = paymentRequest(
                 "ITEST-TXN-003",
                 "+254722000333",
                 new BigDecimal("50.00"),
@@ -137,7 +143,8 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
     @Order(4)
     @DisplayName("GET /payments/{id} - Success (200 OK) with valid token")
     void getPaymentById_Success() {
-        PaymentRequest createRequest = new PaymentRequest("ITEST-TXN-GET-01", "+254733111000", new BigDecimal("99.99"), "KES");
+        PaymentRequest createRequest =
+                paymentRequest("ITEST-TXN-GET-01", "+254733111000", new BigDecimal("99.99"), "KES");
         RequestSpecification requestSpecification = given()
                 .auth().oauth2(getAdminAccessToken())
                 .contentType(ContentType.JSON)
@@ -197,7 +204,8 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
     @Order(6)
     @DisplayName("GET /payments?transactionId={txnId} - Success (200 OK)")
     void getPaymentByTransactionId_Success() {
-        PaymentRequest createRequest = new PaymentRequest("ITEST-TXN-GET-02", "+254733222111", new BigDecimal("150.00"), "KES");
+        PaymentRequest createRequest =
+                paymentRequest("ITEST-TXN-GET-02", "+254733222111", new BigDecimal("150.00"), "KES");
         given()
                 .auth().oauth2(getAdminAccessToken())
                 .contentType(ContentType.JSON)
@@ -245,4 +253,41 @@ public class PaymentControllerIntegrationTest extends IntegrationTest {
                 .log().ifError()
                 .statusCode(HttpStatus.NOT_FOUND.value());
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(8)
+    @DisplayName("POST /payments/{id}/release and /reject - reach the service with payment.admin scope")
+    void reviewHeldPayment_AdminScope() {
+        String adminToken = getAccessToken("adminuser", "adminpass", "openid payment.admin");
+        UUID nonExistentId = UUID.randomUUID();
+
+        // Past the filter chain, an unknown payment is a 404 rather than the 403 of a denied request
+        for (String action : new String[]{"release", "reject"}) {
+            given()
+                    .auth().oauth2(adminToken)
+                    .when()
+                    .post("/api/v1/payments/{id}/" + action, nonExistentId)
+                    .then()
+                    .log().ifError()
+                    .statusCode(HttpStatus.NOT_FOUND.value());
+        }
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("POST /payments/{id}/release and /reject - Forbidden (403) without payment.admin scope")
+    void reviewHeldPayment_Forbidden_LackingScope() {
+        String initiateToken = getAccessToken("adminuser", "adminpass", "openid payment.initiate");
+        UUID id = UUID.randomUUID();
+
+        for (String action : new String[]{"release", "reject"}) {
+            given()
+                    .auth().oauth2(initiateToken)
+                    .when()
+                    .post("/api/v1/payments/{id}/" + action, id)
+                    .then()
+                    .log().ifError()
+                    .statusCode(HttpStatus.FORBIDDEN.value());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.ajharry69.kcb_b2c_payment.concurrent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeficitRoundRobinQueueTest {
+
+    @Test
+    @DisplayName("Should serve a small backlog within one round of a large one")
+    void interleavesKeys() {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(key -> 1);
+        for (int i = 0; i < 1_000; i++) {
+            queue.add("bulk", "bulk-" + i);
+        }
+        queue.add("urgent", "urgent-0");
+
+        assertThat(List.of(queue.poll(), queue.poll())).containsExactly("bulk-0", "urgent-0");
+        assertThat(queue.size()).isEqualTo(999);
+        assertThat(queue.size("urgent")).isZero();
+    }
+
+    @Test
+    @DisplayName("Should give each key as many turns per round as its weight")
+    void honoursWeights() {
+        Map<String, Integer> weights = Map.of("a", 3, "b", 1);
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(weights::get);
+        for (int i = 0; i < 6; i++) {
+            queue.add("a", "a");
+        }
+        for (int i = 0; i < 3; i++) {
+            queue.add("b", "b");
+        }
+
+        List<String> order = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            order.add(queue.poll());
+        }
+
+        assertThat(String.join("", order)).isEqualTo("aaabaaabb");
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should keep FIFO order within a key")
+    void isFifoPerKey() {
+        DeficitRoundRobinQueue<Integer> queue = new DeficitRoundRobinQueue<>(key -> 2);
+        for (int i = 0; i < 5; i++) {
+            queue.add("a", i);
+        }
+
+        assertThat(List.of(queue.poll(), queue.poll(), queue.poll(), queue.poll(), queue.poll()))
+                .containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    @DisplayName("Should reject weights below one")
+    void rejectsInvalidWeight() {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(key -> 0);
+
+        assertThatThrownBy(() -> queue.add("a", "a")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
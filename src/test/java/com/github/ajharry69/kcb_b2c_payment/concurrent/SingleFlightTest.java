@@ -0,0 +1,102 @@
+package com.github.ajharry69.kcb_b2c_payment.concurrent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    @DisplayName("Should share one execution between concurrent callers with the same key")
+    void coalescesConcurrentCalls() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("TXN1", () -> {
+            executions.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return "RESULT";
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> singleFlight.execute("TXN1", () -> {
+            executions.incrementAndGet();
+            return "OTHER";
+        }));
+
+        awaitFollowers(1);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("RESULT");
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("RESULT");
+        assertThat(executions).hasValue(1);
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should refuse a concurrent caller whose request differs from the one in flight")
+    void rejectsDifferentRequest() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute(
+                "TXN1", "100.00 KES", () -> {
+                    leaderStarted.countDown();
+                    await(release);
+                    return "RESULT";
+                }, () -> new IllegalStateException("conflict")));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThatThrownBy(() -> singleFlight.execute(
+                    "TXN1", "999.00 KES", () -> "OTHER", () -> new IllegalStateException("conflict")))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("conflict");
+        } finally {
+            release.countDown();
+        }
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("RESULT");
+    }
+
+    @Test
+    @DisplayName("Should release the key after completion so later calls execute again")
+    void releasesKeyAfterCompletion() {
+        assertThat(singleFlight.execute("TXN1", () -> "FIRST")).isEqualTo("FIRST");
+        assertThat(singleFlight.execute("TXN1", () -> "SECOND")).isEqualTo("SECOND");
+    }
+
+    @Test
+    @DisplayName("Should propagate the leader's exception and release the key")
+    void propagatesFailure() {
+        assertThatThrownBy(() -> singleFlight.execute("TXN1", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    private void awaitFollowers(int followers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.waiting() < followers) {
+            assertThat(System.nanoTime()).as("followers joined in time").isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
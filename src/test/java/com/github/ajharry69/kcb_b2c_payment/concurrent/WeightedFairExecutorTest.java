@@ -0,0 +1,187 @@
+package com.github.ajharry69.kcb_b2c_payment.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WeightedFairExecutorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WeightedFairExecutor executor = new WeightedFairExecutor("TestFair", 1, client -> 1, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    @DisplayName("Should run a small client's task ahead of another client's queued batch")
+    void doesNotQueueSmallClientBehindBatch() throws Exception {
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("bulk", () -> {
+            blockerStarted.countDown();
+            await(release);
+        });
+        assertThat(blockerStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<String> completed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(51);
+        for (int i = 0; i < 50; i++) {
+            executor.execute("bulk", () -> {
+                completed.add("bulk");
+                done.countDown();
+            });
+        }
+        executor.execute("small", () -> {
+            completed.add("small");
+            done.countDown();
+        });
+        assertThat(executor.queuedTasks("bulk")).isEqualTo(50);
+        assertThat(meterRegistry.get("dispatch.queue.depth").tag("weight", "1").gauge().value()).isEqualTo(51);
+
+        release.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(completed.indexOf("small")).isLessThanOrEqualTo(1);
+        assertThat(executor.queuedTasks()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should queue tasks for the tenant bound to the submitting thread")
+    void usesBoundTenant() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch ran = new CountDownLatch(2);
+        executor.execute(() -> {
+            await(release);
+            ran.countDown();
+        });
+
+        executor.withTenant("merchant-a", () -> executor.execute(ran::countDown));
+
+        assertThat(executor.queuedTasks("merchant-a")).isEqualTo(1);
+        assertThat(meterRegistry.find("dispatch.queue.wait").tag("weight", "1").timer()).isNotNull();
+        release.countDown();
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should run high-lane tasks on a reserved worker while shared workers are busy")
+    void reservesWorkersForHighLane() throws Exception {
+        try (WeightedFairExecutor lanes = new WeightedFairExecutor(
+                "TestLanes", 1, 1, Duration.ofMinutes(1), client -> 1, meterRegistry)) {
+            CountDownLatch blockerStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch urgentRan = new CountDownLatch(1);
+            lanes.execute("bulk", Lane.NORMAL, () -> {
+                blockerStarted.countDown();
+                await(release);
+            });
+            assertThat(blockerStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            lanes.execute("bulk", Lane.NORMAL, () -> {
+            });
+
+            lanes.withTenant("lender", Lane.HIGH, () -> lanes.execute(urgentRan::countDown));
+
+            assertThat(urgentRan.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(lanes.queuedTasks(Lane.NORMAL)).isEqualTo(1);
+            release.countDown();
+            assertThat(meterRegistry.get("dispatch.lane.wait").tag("executor", "TestLanes").tag("lane", "high").timer().count())
+                    .isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should serve high-lane tasks first unless the normal lane has waited too long")
+    void agesNormalLane() throws Exception {
+        assertThat(completionOrder(Duration.ofMinutes(1))).containsExactly("high", "normal");
+        assertThat(completionOrder(Duration.ofMillis(50))).containsExactly("normal", "high");
+    }
+
+    @Test
+    @DisplayName("Should reject tasks beyond the total and per-tenant capacity, and publish one meter per weight")
+    void rejectsWhenFull() throws Exception {
+        try (WeightedFairExecutor bounded = new WeightedFairExecutor(
+                "TestBounded", 1, 0, Duration.ofMinutes(1), 3, 2, client -> client.startsWith("vip") ? 4 : 1,
+                meterRegistry)) {
+            CountDownLatch blockerStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            bounded.execute("bulk", () -> {
+                blockerStarted.countDown();
+                await(release);
+            });
+            assertThat(blockerStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            bounded.execute("bulk", () -> {
+            });
+            bounded.execute("bulk", () -> {
+            });
+
+            assertThatThrownBy(() -> bounded.execute("bulk", () -> {
+            })).isInstanceOf(RejectedExecutionException.class);
+            bounded.execute("small", () -> {
+            });
+            assertThatThrownBy(() -> bounded.execute("vip-1", () -> {
+            })).isInstanceOf(RejectedExecutionException.class);
+
+            assertThat(meterRegistry.find("dispatch.queue.depth").tag("executor", "TestBounded").gauges())
+                    .hasSize(2);
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject tasks once closed")
+    void rejectsAfterClose() {
+        executor.close();
+
+        assertThatThrownBy(() -> executor.execute("bulk", () -> {
+        })).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    private List<String> completionOrder(Duration normalLaneMaxWait) throws InterruptedException {
+        try (WeightedFairExecutor lanes = new WeightedFairExecutor(
+                "TestAging", 1, 0, normalLaneMaxWait, client -> 1, meterRegistry)) {
+            CountDownLatch blockerStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            lanes.execute("bulk", Lane.NORMAL, () -> {
+                blockerStarted.countDown();
+                await(release);
+            });
+            assertThat(blockerStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<String> completed = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(2);
+            lanes.execute("bulk", Lane.NORMAL, () -> {
+                completed.add("normal");
+                done.countDown();
+            });
+            Thread.sleep(100);
+            lanes.execute("lender", Lane.HIGH, () -> {
+                completed.add("high");
+                done.countDown();
+            });
+            release.countDown();
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            return completed;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
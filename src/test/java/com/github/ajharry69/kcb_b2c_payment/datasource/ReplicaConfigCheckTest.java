@@ -0,0 +1,49 @@
+package com.github.ajharry69.kcb_b2c_payment.datasource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class ReplicaConfigCheckTest {
+    private final MockEnvironment environment = new MockEnvironment();
+    private final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+    private final ReplicaConfigCheck check =
+            new ReplicaConfigCheck(environment, beanFactory.getBeanProvider(ReplicaRoutingDataSource.class));
+
+    @Test
+    @DisplayName("Should pass when replica routing matches payment.replicas.urls")
+    void passesWhenConsistent() {
+        assertThatCode(() -> check.onApplicationEvent(null)).doesNotThrowAnyException();
+
+        environment.setProperty("payment.replicas.urls", "jdbc:h2:mem:replica");
+        beanFactory.addBean("replicaRoutingDataSource", mock(ReplicaRoutingDataSource.class));
+        assertThatCode(() -> check.onApplicationEvent(null)).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("Should fail when replicas are set at run time but routing was left out at build time")
+    void failsWhenRoutingMissing() {
+        environment.setProperty("payment.replicas.urls", "jdbc:h2:mem:replica");
+
+        assertThatThrownBy(() -> check.onApplicationEvent(null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("payment.replicas.urls is set");
+    }
+
+    @Test
+    @DisplayName("Should fail when replicas are combined with sharding")
+    void failsWithSharding() {
+        environment.setProperty("payment.replicas.urls", "jdbc:h2:mem:replica");
+        environment.setProperty("payment.sharding.urls", "jdbc:h2:mem:shard-0,jdbc:h2:mem:shard-1");
+        beanFactory.addBean("replicaRoutingDataSource", mock(ReplicaRoutingDataSource.class));
+
+        assertThatThrownBy(() -> check.onApplicationEvent(null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("cannot be combined");
+    }
+}
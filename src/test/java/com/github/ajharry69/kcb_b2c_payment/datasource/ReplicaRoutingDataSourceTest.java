@@ -0,0 +1,126 @@
+package com.github.ajharry69.kcb_b2c_payment.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+    private final DataSource primary = database("primary");
+    private final DataSource replica = database("replica");
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ReadYourWritesTracker readYourWrites = new ReadYourWritesTracker(Duration.ofSeconds(5), now::get);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private String currentClient = "client-1";
+    private String lagQuery = "select 0";
+    private ReplicaRoutingDataSource routing;
+    private DataSource routed;
+    private TransactionTemplate transactions;
+
+    @BeforeEach
+    void setUp() {
+        for (DataSource database : List.of(primary, replica)) {
+            new JdbcTemplate(database).execute("create table payments (transaction_id varchar(255))");
+        }
+        new JdbcTemplate(replica).update("insert into payments values ('TXN-REPLICATED')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        routing.close();
+        for (DataSource database : List.of(primary, replica)) {
+            new JdbcTemplate(database).execute("drop table payments");
+        }
+    }
+
+    @Test
+    @DisplayName("Should send read-only transactions to a replica and writes to the primary")
+    void routesByReadOnlyFlag() {
+        start();
+
+        transactions.executeWithoutResult(status ->
+                new JdbcTemplate(routed).update("insert into payments values ('TXN-1')"));
+
+        assertThat(new JdbcTemplate(primary).queryForList("select transaction_id from payments", String.class))
+                .containsExactly("TXN-1");
+        assertThat(readOnly()).containsExactly("TXN-REPLICATED");
+        assertThat(routedCount("primary", "write")).isPositive();
+        assertThat(routedCount("replica-0", "replica")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep a client's reads on the primary shortly after it wrote")
+    void readsOwnWrites() {
+        start();
+        new JdbcTemplate(primary).update("insert into payments values ('TXN-1')");
+        readYourWrites.recordWrite("client-1");
+
+        assertThat(readOnly()).containsExactly("TXN-1");
+        currentClient = "client-2";
+        assertThat(readOnly()).containsExactly("TXN-REPLICATED");
+
+        currentClient = "client-1";
+        now.addAndGet(5_000);
+        assertThat(readOnly()).containsExactly("TXN-REPLICATED");
+        assertThat(routedCount("primary", "read-your-writes")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the primary while replicas lag and return once they catch up")
+    void fallsBackWhileLagging() {
+        lagQuery = "select max(millis) from replication_lag";
+        new JdbcTemplate(replica).execute("create table replication_lag (millis bigint)");
+        new JdbcTemplate(replica).update("insert into replication_lag values (5000)");
+        start();
+
+        routing.checkLag();
+        assertThat(readOnly()).isEmpty();
+        assertThat(routedCount("primary", "replicas-lagging")).isEqualTo(1);
+        assertThat(meterRegistry.get("payment.datasource.replica.lag").tag("replica", "replica-0").gauge().value())
+                .isEqualTo(5000);
+
+        new JdbcTemplate(replica).update("update replication_lag set millis = 10");
+        routing.checkLag();
+        assertThat(readOnly()).containsExactly("TXN-REPLICATED");
+
+        new JdbcTemplate(replica).execute("drop table replication_lag");
+        routing.checkLag();
+        assertThat(readOnly()).isEmpty();
+    }
+
+    private void start() {
+        routing = new ReplicaRoutingDataSource(primary, List.of(replica), lagQuery, Duration.ofSeconds(1),
+                readYourWrites, () -> currentClient, meterRegistry);
+        routed = new LazyConnectionDataSourceProxy(routing);
+        transactions = new TransactionTemplate(new DataSourceTransactionManager(routed));
+    }
+
+    private List<String> readOnly() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactions.getTransactionManager());
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> new JdbcTemplate(routed)
+                .queryForList("select transaction_id from payments", String.class));
+    }
+
+    private double routedCount(String target, String reason) {
+        return meterRegistry.get("payment.datasource.routed").tag("target", target).tag("reason", reason)
+                .counter().count();
+    }
+
+    private static DataSource database(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:replica-routing-test-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
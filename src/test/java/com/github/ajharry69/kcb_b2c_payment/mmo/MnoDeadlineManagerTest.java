@@ -0,0 +1,72 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo;
+
+import com.github.ajharry69.kcb_b2c_payment.exceptions.MnoTimeoutException;
+import com.github.ajharry69.kcb_b2c_payment.scheduling.HashedTimingWheel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MnoDeadlineManagerTest {
+    private HashedTimingWheel timingWheel;
+    private MnoDeadlineManager deadlineManager;
+
+    @BeforeEach
+    void setUp() {
+        timingWheel = new HashedTimingWheel("TestTimingWheel", Duration.ofMillis(10), 64);
+        deadlineManager = new MnoDeadlineManager(timingWheel, new SimpleMeterRegistry(),
+                100, 50, 1000, 2.0, 16, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.close();
+    }
+
+    @Test
+    @DisplayName("Should complete with the MNO result when the call beats the deadline")
+    void completesBeforeDeadline() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> guarded = deadlineManager.withDeadline(call);
+
+        call.complete("MNO_REF");
+
+        assertThat(guarded.join()).isEqualTo("MNO_REF");
+    }
+
+    @Test
+    @DisplayName("Should fail with MnoTimeoutException when the MNO never answers")
+    void timesOutHungCall() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> guarded = deadlineManager.withDeadline(call);
+
+        assertThatThrownBy(guarded::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(MnoTimeoutException.class)
+                .hasMessageContaining("100 ms");
+        // The hung call is released as well, and a late answer is ignored
+        assertThat(call).isCompletedExceptionally();
+        assertThat(call.complete("LATE")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should adapt the deadline to the observed p99 latency within bounds")
+    void adaptsToObservedLatency() {
+        assertThat(deadlineManager.currentDeadline()).isEqualTo(Duration.ofMillis(100));
+
+        for (int i = 0; i < 4; i++) {
+            deadlineManager.withDeadline(CompletableFuture.completedFuture(i)).join();
+        }
+
+        // Instant completions put the p99 near zero, so the lower bound applies
+        assertThat(deadlineManager.currentDeadline()).isEqualTo(Duration.ofMillis(50));
+    }
+}
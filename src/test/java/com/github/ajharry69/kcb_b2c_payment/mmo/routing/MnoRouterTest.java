@@ -0,0 +1,154 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.routing;
+
+import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MnoRouterTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private final StubOperator fastOperator = new StubOperator();
+    private final StubOperator slowOperator = new StubOperator();
+    private final StubOperator backupOperator = new StubOperator();
+    private final MnoRoute fast = route("fast", fastOperator, 2);
+    private final MnoRoute slow = route("slow", slowOperator, 1);
+    private final MnoRoute backup = route("backup", backupOperator, 1);
+    private final MnoRouter router = new MnoRouter(
+            PrefixTrie.compile(Map.of("+25470", fast, "+25473", slow)), fast, List.of(fast, slow, backup),
+            new String[]{"System unavailable"});
+
+    @AfterEach
+    void tearDown() {
+        router.close();
+    }
+
+    @Test
+    @DisplayName("Should route by the recipient's prefix and fall back to the default route")
+    void routesByPrefix() {
+        assertThat(router.routeFor("+254701234567")).isSameAs(fast);
+        assertThat(router.routeFor("+254731234567")).isSameAs(slow);
+        assertThat(router.routeFor("+256771234567")).isSameAs(fast);
+    }
+
+    @Test
+    @DisplayName("Should fail fast as unavailable once a route's in-flight limit is reached")
+    void shedsLoadAtConcurrencyLimit() throws Exception {
+        CompletableFuture<Payment> inFlight = router.processB2CPayment(payment("+254731234567"));
+        CompletableFuture<Payment> call = slowOperator.nextCall();
+
+        Payment shed = router.processB2CPayment(payment("+254731234567")).join();
+
+        assertThat(shed.getStatus()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(shed.getFailureReason()).isEqualTo(MnoRouter.ROUTE_UNAVAILABLE);
+        assertThat(meterRegistry.get("mno.route.rejected").tag("route", "slow").tag("reason", "saturated")
+                .counter().count()).isEqualTo(1);
+        // The slow route's limit does not touch the fast route
+        router.processB2CPayment(payment("+254701234567"));
+        assertThat(fastOperator.nextCall()).isNotNull();
+
+        call.complete(answered(PaymentStatus.SUCCESSFUL, null));
+        assertThat(inFlight.join().getStatus()).isEqualTo(PaymentStatus.SUCCESSFUL);
+        assertThat(slow.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should free the in-flight slot when the caller's deadline fails the call")
+    void releasesSlotOnDeadline() throws Exception {
+        CompletableFuture<Payment> routed = router.processB2CPayment(payment("+254731234567"));
+        slowOperator.nextCall();
+
+        routed.completeExceptionally(new IllegalStateException("deadline"));
+
+        assertThat(slow.inFlight()).isZero();
+        assertThat(meterRegistry.get("mno.route.calls").tag("route", "slow").tag("outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should fail over while a route is down and use it again once it has recovered")
+    void failsOverWhileDown() throws Exception {
+        slow.setFailover(backup);
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<Payment> routed = router.processB2CPayment(payment("+254731234567"));
+            slowOperator.nextCall().complete(answered(PaymentStatus.FAILED, "System unavailable"));
+            routed.join();
+        }
+        assertThat(slow.isUp()).isFalse();
+
+        router.processB2CPayment(payment("+254731234567"));
+        assertThat(backupOperator.nextCall()).isNotNull();
+        assertThat(slowOperator.calls).isEmpty();
+
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertThat(slow.isUp()).isTrue();
+        router.processB2CPayment(payment("+254731234567"));
+        assertThat(slowOperator.nextCall()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should report the float balances of the operators behind the routes together")
+    void sumsFloatBalances() {
+        fastOperator.floatBalance = new BigDecimal("100.00");
+        slowOperator.floatBalance = new BigDecimal("50.50");
+        backupOperator.floatBalance = new BigDecimal("25");
+
+        assertThat(router.queryFloatBalance("KES").join()).isEqualByComparingTo("175.50");
+    }
+
+    private MnoRoute route(String name, MobileMoneyService service, int maxConcurrency) {
+        return new MnoRoute(name, service, maxConcurrency, 1, 2, Duration.ofSeconds(30), meterRegistry, now::get);
+    }
+
+    private static Payment payment(String recipient) {
+        return Payment.builder()
+                .id(UUID.randomUUID())
+                .transactionId("TXN-" + UUID.randomUUID())
+                .recipientPhoneNumber(recipient)
+                .amount(BigDecimal.TEN)
+                .currency("KES")
+                .status(PaymentStatus.PROCESSING)
+                .build();
+    }
+
+    private static Payment answered(PaymentStatus status, String failureReason) {
+        return Payment.builder().status(status).failureReason(failureReason).build();
+    }
+
+    private static final class StubOperator implements MobileMoneyService {
+        private final BlockingQueue<CompletableFuture<Payment>> calls = new LinkedBlockingQueue<>();
+        private BigDecimal floatBalance = BigDecimal.ZERO;
+
+        @Override
+        public CompletableFuture<Payment> processB2CPayment(Payment payment) {
+            CompletableFuture<Payment> response = new CompletableFuture<>();
+            calls.add(response);
+            return response;
+        }
+
+        @Override
+        public CompletableFuture<BigDecimal> queryFloatBalance(String currency) {
+            return CompletableFuture.completedFuture(floatBalance);
+        }
+
+        CompletableFuture<Payment> nextCall() throws InterruptedException {
+            return calls.poll(5, TimeUnit.SECONDS);
+        }
+    }
+}
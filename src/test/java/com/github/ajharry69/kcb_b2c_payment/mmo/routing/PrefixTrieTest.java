@@ -0,0 +1,50 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.routing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrefixTrieTest {
+    private final PrefixTrie<String> trie = PrefixTrie.compile(Map.of(
+            "+25470", "safaricom",
+            "+25473", "airtel",
+            "+254733", "airtel-postpaid",
+            "1", "nanp"
+    ));
+
+    @ParameterizedTest
+    @CsvSource({
+            "+254701234567, safaricom",
+            "254701234567, safaricom",
+            "+254731234567, airtel",
+            "+254733123456, airtel-postpaid",
+            "+12025550123, nanp"
+    })
+    @DisplayName("Should return the value of the longest matching prefix")
+    void matchesLongestPrefix(String number, String route) {
+        assertThat(trie.longestMatch(number)).isEqualTo(route);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"+254791234567", "+2547", "", "+", "+25x70"})
+    @DisplayName("Should return null when no prefix matches")
+    void returnsNullWithoutMatch(String number) {
+        assertThat(trie.longestMatch(number)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject prefixes that are not digits")
+    void rejectsInvalidPrefixes() {
+        assertThatThrownBy(() -> PrefixTrie.compile(Map.of("+", "x")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PrefixTrie.compile(Map.of("07x", "x")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
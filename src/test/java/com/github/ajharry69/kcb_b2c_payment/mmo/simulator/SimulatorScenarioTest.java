@@ -0,0 +1,59 @@
+package com.github.ajharry69.kcb_b2c_payment.mmo.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimulatorScenarioTest {
+    private static final SimulatorPhase STEADY = new SimulatorPhase("steady", 1000, 0.99, null, null, null, null, null, null);
+    private static final SimulatorPhase OUTAGE = new SimulatorPhase("outage", 500, null, null, null, null, OutageMode.HANG, null, null);
+
+    @Test
+    @DisplayName("Should select the phase covering the elapsed time and stop after the last one")
+    void selectsPhaseByElapsedTime() {
+        SimulatorScenario scenario = new SimulatorScenario("once", false, List.of(STEADY, OUTAGE));
+
+        assertThat(scenario.phaseAt(0)).isEqualTo(STEADY);
+        assertThat(scenario.phaseAt(1200)).isEqualTo(OUTAGE);
+        assertThat(scenario.phaseAt(1500)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should restart the timeline when the scenario repeats")
+    void repeatsTimeline() {
+        SimulatorScenario scenario = new SimulatorScenario("loop", true, List.of(STEADY, OUTAGE));
+
+        assertThat(scenario.phaseAt(1600)).isEqualTo(STEADY);
+        assertThat(scenario.phaseAt(2700)).isEqualTo(OUTAGE);
+    }
+
+    @Test
+    @DisplayName("Should keep base settings for fields a phase leaves unset")
+    void phaseOverridesOnlySetFields() {
+        LatencyDistribution latency = new LatencyDistribution(LatencyDistribution.Kind.FIXED, 0, 0, 100, 0);
+        SimulatorPhase base = new SimulatorPhase("base", 0, 0.9, latency, 0d, ErrorBurst.NONE, OutageMode.NONE, 0d, 0d);
+
+        SimulatorPhase active = base.overriddenBy(OUTAGE);
+
+        assertThat(active.outage()).isEqualTo(OutageMode.HANG);
+        assertThat(active.successRate()).isEqualTo(0.9);
+        assertThat(active.latency()).isEqualTo(latency);
+    }
+
+    @Test
+    @DisplayName("Should load the bundled outage scenario")
+    void loadsBundledScenario() {
+        SimulatorScenario scenario = SimulatorScenario.load(
+                new ClassPathResource("mno-scenarios/outage.json"), new ObjectMapper());
+
+        assertThat(scenario.repeat()).isTrue();
+        assertThat(scenario.phases()).extracting(SimulatorPhase::name)
+                .containsExactly("steady", "degraded", "outage");
+        assertThat(scenario.phases().get(2).outage()).isEqualTo(OutageMode.HANG);
+    }
+}
@@ -4,25 +4,41 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.DuplicateTransactionException;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.PaymentNotFoundException;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.handlers.GlobalExceptionHandler;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupResult;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentReport;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentStats;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentVersion;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.rollup.PaymentReports;
+import com.github.ajharry69.kcb_b2c_payment.payment.rollup.ReportPeriod;
+import com.github.ajharry69.kcb_b2c_payment.payment.stats.PaymentStatistics;
+import com.github.ajharry69.kcb_b2c_payment.payment.validation.PaymentRequestValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
+import static com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequests.paymentRequest;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
@@ -43,6 +59,12 @@ class PaymentControllerTest {
     private MockMvc mockMvc;
     @Mock
     private PaymentService paymentService;
+    @Mock
+    private PaymentStatistics paymentStatistics;
+    @Mock
+    private PaymentReports paymentReports;
+    @Spy
+    private PaymentRequestValidator paymentRequestValidator = new PaymentRequestValidator("254", new int[]{9}, 90);
     @InjectMocks
     private PaymentController paymentController;
     private PaymentRequest validRequestDto;
@@ -63,7 +85,7 @@ class PaymentControllerTest {
         paymentId = UUID.randomUUID();
         transactionId = "TXN-CONTROLLER-123";
 
-        validRequestDto = new PaymentRequest(
+        validRequestDto = paymentRequest(
                 transactionId,
                 "+254711223344",
                 new BigDecimal("550.00"),
@@ -100,10 +122,11 @@ class PaymentControllerTest {
     @DisplayName("POST /payments - Success (202 Accepted)")
     void initiatePayment_shouldReturn202Accepted() throws Exception {
         // Arrange
-        given(paymentService.initiatePayment(any(PaymentRequest.class))).willReturn(processingResponseDto);
+        given(paymentService.initiatePayment(any(PaymentRequest.class), any())).willReturn(processingResponseDto);
 
         // Act
         ResultActions result = mockMvc.perform(post(BASE_URL)
+                .principal(() -> "merchant-a")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(validRequestDto)));
 
@@ -117,7 +140,7 @@ class PaymentControllerTest {
                 .andExpect(jsonPath("$.transactionId", is(transactionId)))
                 .andExpect(jsonPath("$.status", is(PaymentStatus.PROCESSING.toString()))); // Expect initial status
 
-        verify(paymentService).initiatePayment(any(PaymentRequest.class));
+        verify(paymentService).initiatePayment(any(PaymentRequest.class), eq("merchant-a"));
     }
 
     /* Removed Forbidden test as standalone setup doesn't easily mock security context/scopes
@@ -141,13 +164,13 @@ class PaymentControllerTest {
                 .andExpect(jsonPath("$.error", is("Bad Request")))
                 .andExpect(jsonPath("$.message", containsString("Malformed request body")));
 
-        verify(paymentService, never()).initiatePayment(any(PaymentRequest.class));
+        verify(paymentService, never()).initiatePayment(any(PaymentRequest.class), any());
     }
 
     @Test
     @DisplayName("POST /payments - Bad Request (400) - Validation Failure")
     void initiatePayment_shouldReturn400BadRequest_whenValidationFails() throws Exception {
-        PaymentRequest invalidRequest = new PaymentRequest(
+        PaymentRequest invalidRequest = paymentRequest(
                 "",
                 "invalid-phone",
                 new BigDecimal("-10.00"),
@@ -159,15 +182,57 @@ class PaymentControllerTest {
                 .content(objectMapper.writeValueAsString(invalidRequest)));
 
         result.andDo(print())
-                .andExpect(status().isBadRequest());
-        verify(paymentService, never()).initiatePayment(any(PaymentRequest.class));
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("Validation Failed")))
+                .andExpect(jsonPath("$.details.length()", is(3)))
+                .andExpect(jsonPath("$.details[1]", is("'recipientPhoneNumber': Invalid phone number format")));
+        verify(paymentService, never()).initiatePayment(any(PaymentRequest.class), any());
+    }
+
+    @Test
+    @DisplayName("POST /payments - Success (202 Accepted) - Request canonicalised before processing")
+    void initiatePayment_shouldCanonicaliseRequest() throws Exception {
+        PaymentRequest nationalFormat = paymentRequest(transactionId, "0711 223-344", new BigDecimal("550"), "kes");
+        given(paymentService.initiatePayment(any(PaymentRequest.class), any())).willReturn(processingResponseDto);
+
+        ResultActions result = mockMvc.perform(post(BASE_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(nationalFormat)));
+
+        result.andDo(print())
+                .andExpect(status().isAccepted());
+        verify(paymentService).initiatePayment(eq(validRequestDto), any());
     }
 
 
+    @Test
+    @DisplayName("POST /payments - Should honour HIGH priority only for clients with the payment.priority scope")
+    void initiatePayment_shouldDowngradeHighPriority_withoutPriorityScope() throws Exception {
+        PaymentRequest urgent = new PaymentRequest(transactionId, "+254711223344", new BigDecimal("550.00"), "KES",
+                "HIGH", null);
+        given(paymentService.initiatePayment(any(PaymentRequest.class), any())).willReturn(processingResponseDto);
+
+        mockMvc.perform(post(BASE_URL)
+                        .principal(new TestingAuthenticationToken("bulk-merchant", null, "SCOPE_payment.initiate"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(urgent)))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post(BASE_URL)
+                        .principal(new TestingAuthenticationToken("lender", null,
+                                "SCOPE_payment.initiate", PaymentController.PRIORITY_SCOPE))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(urgent)))
+                .andExpect(status().isAccepted());
+
+        verify(paymentService).initiatePayment(eq(new PaymentRequest(transactionId, "+254711223344",
+                new BigDecimal("550.00"), "KES", "NORMAL", null)), eq("bulk-merchant"));
+        verify(paymentService).initiatePayment(eq(urgent), eq("lender"));
+    }
+
     @Test
     @DisplayName("POST /payments - Conflict (409) - Duplicate Transaction")
     void initiatePayment_shouldReturn409Conflict_whenDuplicateTransaction() throws Exception {
-        given(paymentService.initiatePayment(any(PaymentRequest.class)))
+        given(paymentService.initiatePayment(any(PaymentRequest.class), any()))
                 .willThrow(new DuplicateTransactionException(transactionId));
 
         ResultActions result = mockMvc.perform(post(BASE_URL)
@@ -180,7 +245,45 @@ class PaymentControllerTest {
                 .andExpect(jsonPath("$.error", is("Conflict")))
                 .andExpect(jsonPath("$.message", is("Duplicate transaction ID: " + transactionId + ". Payment already exists or is being processed.")));
 
-        verify(paymentService).initiatePayment(any(PaymentRequest.class));
+        verify(paymentService).initiatePayment(any(PaymentRequest.class), any());
+    }
+
+    @Test
+    @DisplayName("POST /payments/lookup - Success (200 OK) - Results in request order")
+    void lookupPayments_shouldReturn200Ok() throws Exception {
+        PaymentLookupRequest lookupRequest = new PaymentLookupRequest(
+                PaymentLookupRequest.LookupBy.TRANSACTION_ID, List.of("TXN_NOT_THERE", transactionId));
+        given(paymentService.lookupPayments(eq(lookupRequest))).willReturn(List.of(
+                PaymentLookupResult.notFound("TXN_NOT_THERE"),
+                PaymentLookupResult.found(transactionId, successfulResponseDto)));
+
+        ResultActions result = mockMvc.perform(post(BASE_URL + "/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(lookupRequest)));
+
+        result.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].key", is("TXN_NOT_THERE")))
+                .andExpect(jsonPath("$[0].found", is(false)))
+                .andExpect(jsonPath("$[1].found", is(true)))
+                .andExpect(jsonPath("$[1].payment.paymentId", is(paymentId.toString())))
+                .andExpect(jsonPath("$[1].payment.status", is(PaymentStatus.SUCCESSFUL.toString())));
+
+        verify(paymentService).lookupPayments(lookupRequest);
+    }
+
+    @Test
+    @DisplayName("POST /payments/lookup - Bad Request (400) - No keys")
+    void lookupPayments_shouldReturn400BadRequest_whenNoKeys() throws Exception {
+        PaymentLookupRequest lookupRequest = new PaymentLookupRequest(PaymentLookupRequest.LookupBy.PAYMENT_ID, List.of());
+
+        ResultActions result = mockMvc.perform(post(BASE_URL + "/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(lookupRequest)));
+
+        result.andDo(print())
+                .andExpect(status().isBadRequest());
+        verify(paymentService, never()).lookupPayments(any());
     }
 
     @Test
@@ -197,9 +300,65 @@ class PaymentControllerTest {
                 .andExpect(jsonPath("$.paymentId", is(paymentId.toString())))
                 .andExpect(jsonPath("$.transactionId", is(transactionId)))
                 .andExpect(jsonPath("$.status", is(PaymentStatus.SUCCESSFUL.toString())))
-                .andExpect(jsonPath("$.mnoReference", is(successfulResponseDto.mnoReference())));
+                .andExpect(jsonPath("$.mnoReference", is(successfulResponseDto.mnoReference())))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED));
 
         verify(paymentService).getPaymentById(paymentId);
+        verify(paymentService, never()).getPaymentVersionById(any());
+    }
+
+    @Test
+    @DisplayName("GET /payments/{id} - Not Modified (304) - ETag matches")
+    void getPaymentById_shouldReturn304NotModified_whenETagMatches() throws Exception {
+        PaymentVersion version = PaymentVersion.of(successfulResponseDto);
+        given(paymentService.getPaymentVersionById(eq(paymentId))).willReturn(version);
+
+        ResultActions result = mockMvc.perform(get(BASE_URL + "/{id}", paymentId)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + version.eTag() + "\"")
+                .accept(MediaType.APPLICATION_JSON));
+
+        result.andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + version.eTag() + "\""))
+                .andExpect(content().string(""));
+
+        verify(paymentService, never()).getPaymentById(any());
+    }
+
+    @Test
+    @DisplayName("GET /payments/{id} - Success (200 OK) - Stale ETag")
+    void getPaymentById_shouldReturn200Ok_whenETagIsStale() throws Exception {
+        given(paymentService.getPaymentVersionById(eq(paymentId))).willReturn(PaymentVersion.of(successfulResponseDto));
+        given(paymentService.getPaymentById(eq(paymentId))).willReturn(successfulResponseDto);
+
+        ResultActions result = mockMvc.perform(get(BASE_URL + "/{id}", paymentId)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + PaymentVersion.of(processingResponseDto).eTag() + "\"")
+                .accept(MediaType.APPLICATION_JSON));
+
+        result.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + PaymentVersion.of(successfulResponseDto).eTag() + "\""))
+                .andExpect(jsonPath("$.status", is(PaymentStatus.SUCCESSFUL.toString())));
+    }
+
+    @Test
+    @DisplayName("GET /payments/{id} - Success (200 OK) - If-Modified-Since ignored while the payment can change")
+    void getPaymentById_shouldIgnoreIfModifiedSince_whenNotFinal() throws Exception {
+        given(paymentService.getPaymentVersionById(eq(paymentId))).willReturn(PaymentVersion.of(processingResponseDto));
+        given(paymentService.getPaymentById(eq(paymentId))).willReturn(processingResponseDto);
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfModifiedSince(PaymentVersion.of(processingResponseDto).lastModifiedMillis());
+
+        ResultActions result = mockMvc.perform(get(BASE_URL + "/{id}", paymentId)
+                .headers(conditional)
+                .accept(MediaType.APPLICATION_JSON));
+
+        result.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED))
+                .andExpect(jsonPath("$.status", is(PaymentStatus.PROCESSING.toString())));
     }
 
     @Test
@@ -221,6 +380,82 @@ class PaymentControllerTest {
         verify(paymentService).getPaymentById(nonExistentId);
     }
 
+    @Test
+    @DisplayName("GET /payments/stats - Success (200 OK) - Served from the in-memory statistics")
+    void getPaymentStats_shouldReturn200Ok() throws Exception {
+        PaymentAggregate successful = new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 3, new BigDecimal("1650.00"));
+        given(paymentStatistics.snapshot(15)).willReturn(new PaymentStats(
+                Instant.parse("2025-01-01T10:15:30Z"), List.of(successful), 15, List.of(successful),
+                List.of(new PaymentStats.Minute(Instant.parse("2025-01-01T10:15:00Z"), List.of(successful)))));
+
+        ResultActions result = mockMvc.perform(get(BASE_URL + "/stats")
+                .param("windowMinutes", "15")
+                .accept(MediaType.APPLICATION_JSON));
+
+        result.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.windowMinutes", is(15)))
+                .andExpect(jsonPath("$.current[0].status", is("SUCCESSFUL")))
+                .andExpect(jsonPath("$.current[0].count", is(3)))
+                .andExpect(jsonPath("$.minutes[0].transitions[0].currency", is("KES")));
+
+        verify(paymentService, never()).getPaymentById(any());
+    }
+
+    @Test
+    @DisplayName("GET /payments/reports - Success (200 OK) - Served from the hourly rollups")
+    void getPaymentReport_shouldReturn200Ok() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 8, 0, 0);
+        PaymentAggregate successful = new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 3, new BigDecimal("1650.00"));
+        given(paymentReports.report(from, to, ReportPeriod.WEEK)).willReturn(new PaymentReport(
+                from, to, ReportPeriod.WEEK, List.of(successful),
+                List.of(new PaymentReport.Period(LocalDateTime.of(2024, 12, 30, 0, 0), List.of(successful)))));
+
+        ResultActions result = mockMvc.perform(get(BASE_URL + "/reports")
+                .param("from", "2025-01-01T00:00:00")
+                .param("to", "2025-01-08T00:00:00")
+                .param("period", "WEEK")
+                .accept(MediaType.APPLICATION_JSON));
+
+        result.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.period", is("WEEK")))
+                .andExpect(jsonPath("$.totals[0].count", is(3)))
+                .andExpect(jsonPath("$.periods[0].totals[0].status", is("SUCCESSFUL")));
+
+        verify(paymentService, never()).getPaymentById(any());
+    }
+
+    @Test
+    @DisplayName("POST /payments/{id}/release - Success (200 OK)")
+    void releaseHeldPayment_shouldReturn200Ok() throws Exception {
+        given(paymentService.releaseHeldPayment(eq(paymentId))).willReturn(processingResponseDto);
+
+        ResultActions result = mockMvc.perform(post(BASE_URL + "/{id}/release", paymentId)
+                .accept(MediaType.APPLICATION_JSON));
+
+        result.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.paymentId", is(paymentId.toString())))
+                .andExpect(jsonPath("$.status", is(PaymentStatus.PROCESSING.toString())));
+
+        verify(paymentService).releaseHeldPayment(paymentId);
+    }
+
+    @Test
+    @DisplayName("POST /payments/{id}/reject - Not Found (404)")
+    void rejectHeldPayment_shouldReturn404NotFound() throws Exception {
+        given(paymentService.rejectHeldPayment(eq(paymentId))).willThrow(new PaymentNotFoundException(paymentId));
+
+        ResultActions result = mockMvc.perform(post(BASE_URL + "/{id}/reject", paymentId)
+                .accept(MediaType.APPLICATION_JSON));
+
+        result.andDo(print())
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status", is(404)));
+    }
+
     @Test
     @DisplayName("GET /payments?transactionId={txnId} - Success (200 OK)")
     void getPaymentByTransactionId_shouldReturn200Ok() throws Exception {
@@ -1,14 +1,30 @@
 package com.github.ajharry69.kcb_b2c_payment.payment; // Corrected package
 
 import com.github.ajharry69.kcb_b2c_payment.exceptions.DuplicateTransactionException;
-import com.github.ajharry69.kcb_b2c_payment.exceptions.MMOServiceException;
+import com.github.ajharry69.kcb_b2c_payment.exceptions.MnoTimeoutException;
 import com.github.ajharry69.kcb_b2c_payment.exceptions.PaymentNotFoundException;
+import com.github.ajharry69.kcb_b2c_payment.mmo.MnoCallbackEvent;
+import com.github.ajharry69.kcb_b2c_payment.mmo.MnoDeadlineManager;
 import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
 import com.github.ajharry69.kcb_b2c_payment.notification.SmsService;
+import com.github.ajharry69.kcb_b2c_payment.payment.archive.PaymentArchive;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentLookupResult;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentVersion;
+import com.github.ajharry69.kcb_b2c_payment.payment.duplicate.NearDuplicate;
+import com.github.ajharry69.kcb_b2c_payment.payment.duplicate.NearDuplicateAction;
+import com.github.ajharry69.kcb_b2c_payment.payment.duplicate.NearDuplicateDetector;
+import com.github.ajharry69.kcb_b2c_payment.payment.limit.PaymentLimits;
+import com.github.ajharry69.kcb_b2c_payment.payment.liquidity.FloatLedger;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.retry.PaymentRetryPolicy;
+import com.github.ajharry69.kcb_b2c_payment.payment.retry.PaymentRetryScheduledEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.schedule.PaymentScheduledEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
 import com.github.ajharry69.kcb_b2c_payment.payment.utils.PaymentMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -20,14 +36,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
+import static com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequests.paymentRequest;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
@@ -42,9 +66,27 @@ class PaymentServiceTest {
     @Mock
     private MobileMoneyService mobileMoneyService;
     @Mock
+    private MnoDeadlineManager mnoDeadlineManager;
+    @Mock
     private SmsService smsService;
     @Mock
     private PaymentMapper paymentMapper;
+    @Mock
+    private PaymentRetryPolicy retryPolicy;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PaymentArchive paymentArchive;
+    @Mock
+    private PaymentKeyRepository paymentKeyRepository;
+    @Mock
+    private PaymentLimits paymentLimits;
+    @Mock
+    private NearDuplicateDetector nearDuplicateDetector;
+    @Mock
+    private FloatLedger floatLedger;
+    @Spy
+    private PaymentShards paymentShards = new PaymentShards(1, TransactionOperations.withoutTransaction());
 
     // Use @Spy instead of @InjectMocks if we need to verify calls to the async method itself
     // Or keep @InjectMocks and test the async method separately. Let's try the latter first.
@@ -70,7 +112,7 @@ class PaymentServiceTest {
 
     @BeforeEach
     void setUp() {
-        validRequest = new PaymentRequest("TXN123", "+254712345678", new BigDecimal("100.00"), "KES");
+        validRequest = paymentRequest("TXN123", "+254712345678", new BigDecimal("100.00"), "KES");
 
         pendingPaymentEntity = Payment.builder()
                 .id(paymentId)
@@ -143,6 +185,9 @@ class PaymentServiceTest {
         });
 
         lenient().when(paymentRepository.findById(eq(paymentId))).thenReturn(Optional.of(processingPaymentEntity));
+        lenient().when(mnoDeadlineManager.withDeadline(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(floatLedger.tryReserve(any())).thenReturn(true);
+        lenient().when(floatLedger.holdFor()).thenReturn(Duration.ofSeconds(30));
 
         lenient().doNothing().when(paymentServiceSpy).processPaymentAsynchronously(any(UUID.class));
     }
@@ -154,6 +199,7 @@ class PaymentServiceTest {
         @Test
         @DisplayName("Should save PENDING then PROCESSING status and trigger async processing")
         void initiatePayment_TriggersAsync() {
+            processingPaymentEntity.setPriority(PaymentPriority.HIGH);
             when(paymentRepository.findByTransactionId(validRequest.transactionId()))
                     .thenReturn(Optional.empty());
             when(paymentRepository.saveAndFlush(any(Payment.class)))
@@ -163,7 +209,7 @@ class PaymentServiceTest {
             when(paymentMapper.toResponse(eq(processingPaymentEntity)))
                     .thenReturn(processingResponse);
 
-            PaymentResponse response = paymentServiceSpy.initiatePayment(validRequest);
+            PaymentResponse response = paymentServiceSpy.initiatePayment(validRequest, "merchant-a");
 
             assertThat(response).isNotNull();
             assertThat(response.status()).isEqualTo(PaymentStatus.PROCESSING);
@@ -174,14 +220,146 @@ class PaymentServiceTest {
             ArgumentCaptor<Payment> paymentCaptor = ArgumentCaptor.forClass(Payment.class);
             verify(paymentRepository).saveAndFlush(paymentCaptor.capture());
             verify(paymentRepository).save(paymentCaptor.capture());
+            verify(paymentKeyRepository).insert(
+                    validRequest.transactionId(), paymentId, pendingPaymentEntity.getCreatedAt());
             assertThat(paymentCaptor.getValue().getStatus())
                     .isEqualTo(PaymentStatus.PROCESSING);
-            verify(paymentServiceSpy).processPaymentAsynchronously(eq(paymentId));
+            assertThat(paymentCaptor.getValue().getClientId()).isEqualTo("merchant-a");
+            // Dispatched by PaymentDispatcher after commit, not inline
+            verify(eventPublisher).publishEvent(new PaymentInitiatedEvent(paymentId, "merchant-a", PaymentPriority.HIGH));
+            verify(eventPublisher).publishEvent(new PaymentStatusChangedEvent(
+                    null, PaymentStatus.PROCESSING, validRequest.currency(), validRequest.amount()));
+            verify(paymentServiceSpy, never()).processPaymentAsynchronously(any());
             verify(mobileMoneyService, never()).processB2CPayment(any());
             verify(smsService, never()).sendSuccessNotification(any());
             verify(smsService, never()).sendFailureNotification(any());
         }
 
+        @Test
+        @DisplayName("Should save a payment due in the future as SCHEDULED without dispatching it")
+        void initiatePayment_Scheduled() {
+            LocalDateTime executeAt = LocalDateTime.now().plusDays(1);
+            pendingPaymentEntity.setExecuteAt(executeAt);
+            pendingPaymentEntity.setPriority(PaymentPriority.NORMAL);
+            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
+                    .thenReturn(Optional.empty());
+
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.SCHEDULED);
+            verify(paymentRepository).saveAndFlush(argThat(p -> p.getStatus() == PaymentStatus.SCHEDULED));
+            verify(paymentRepository, never()).save(any());
+            verify(eventPublisher).publishEvent(
+                    new PaymentScheduledEvent(paymentId, "merchant-a", PaymentPriority.NORMAL, executeAt));
+            verify(eventPublisher).publishEvent(new PaymentStatusChangedEvent(
+                    null, PaymentStatus.SCHEDULED, validRequest.currency(), validRequest.amount()));
+            verify(eventPublisher, never()).publishEvent(any(PaymentInitiatedEvent.class));
+        }
+
+        @Test
+        @DisplayName("Should dispatch a payment whose executeAt has already passed straight away")
+        void initiatePayment_ScheduledInThePast() {
+            pendingPaymentEntity.setExecuteAt(LocalDateTime.now().minusMinutes(1));
+            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
+                    .thenReturn(Optional.empty());
+
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.PROCESSING);
+            assertThat(pendingPaymentEntity.getExecuteAt()).isNull();
+            verify(eventPublisher).publishEvent(any(PaymentInitiatedEvent.class));
+        }
+
+        @Test
+        @DisplayName("Should save a payment over a recipient limit as REJECTED without dispatching it")
+        void initiatePayment_RejectedByLimit() {
+            pendingPaymentEntity.setExecuteAt(LocalDateTime.now().plusDays(1));
+            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
+                    .thenReturn(Optional.empty());
+            when(paymentLimits.tryReserve(pendingPaymentEntity))
+                    .thenReturn(Optional.of("Recipient daily limit of 3 payments reached"));
+
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.REJECTED);
+            assertThat(response.failureReason()).isEqualTo("Recipient daily limit of 3 payments reached");
+            verify(paymentRepository).saveAndFlush(argThat(p -> p.getStatus() == PaymentStatus.REJECTED));
+            verify(paymentKeyRepository).insert(
+                    validRequest.transactionId(), paymentId, pendingPaymentEntity.getCreatedAt());
+            verify(paymentRepository, never()).save(any());
+            verify(eventPublisher).publishEvent(new PaymentStatusChangedEvent(
+                    null, PaymentStatus.REJECTED, validRequest.currency(), validRequest.amount()));
+            verify(eventPublisher, never()).publishEvent(any(PaymentInitiatedEvent.class));
+            verify(eventPublisher, never()).publishEvent(any(PaymentScheduledEvent.class));
+            verify(mobileMoneyService, never()).processB2CPayment(any());
+            // A corrected resend within the window must not be flagged as a near-duplicate of this one
+            verify(nearDuplicateDetector, never()).record(any());
+        }
+
+        @Test
+        @DisplayName("Should hold a near-duplicate payment for review without dispatching it")
+        void initiatePayment_NearDuplicateHeld() {
+            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
+                    .thenReturn(Optional.empty());
+            when(nearDuplicateDetector.find(pendingPaymentEntity))
+                    .thenReturn(Optional.of(new NearDuplicate("TXN122", NearDuplicateAction.HOLD)));
+
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.ON_HOLD);
+            assertThat(response.failureReason()).isEqualTo("Near-duplicate of transactionId TXN122");
+            verify(paymentLimits).tryReserve(pendingPaymentEntity);
+            verify(paymentRepository, never()).save(any());
+            verify(eventPublisher).publishEvent(new PaymentStatusChangedEvent(
+                    null, PaymentStatus.ON_HOLD, validRequest.currency(), validRequest.amount()));
+            verify(eventPublisher, never()).publishEvent(any(PaymentInitiatedEvent.class));
+            verify(nearDuplicateDetector, never()).record(any());
+        }
+
+        @Test
+        @DisplayName("Should reject a near-duplicate payment without counting it against limits")
+        void initiatePayment_NearDuplicateRejected() {
+            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
+                    .thenReturn(Optional.empty());
+            when(nearDuplicateDetector.find(pendingPaymentEntity))
+                    .thenReturn(Optional.of(new NearDuplicate("TXN122", NearDuplicateAction.REJECT)));
+
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.REJECTED);
+            verify(paymentLimits, never()).tryReserve(any());
+            verify(eventPublisher, never()).publishEvent(any(PaymentInitiatedEvent.class));
+            verify(nearDuplicateDetector, never()).record(any());
+        }
+
+        @Test
+        @DisplayName("Should dispatch a near-duplicate payment as usual when only warning")
+        void initiatePayment_NearDuplicateWarned() {
+            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
+                    .thenReturn(Optional.empty());
+            when(nearDuplicateDetector.find(pendingPaymentEntity))
+                    .thenReturn(Optional.of(new NearDuplicate("TXN122", NearDuplicateAction.WARN)));
+
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.PROCESSING);
+            verify(eventPublisher).publishEvent(any(PaymentInitiatedEvent.class));
+            verify(nearDuplicateDetector).record(pendingPaymentEntity);
+        }
+
+        @Test
+        @DisplayName("Should throw DuplicateTransactionException for existing SCHEDULED transaction")
+        void initiatePayment_DuplicateScheduled() {
+            pendingPaymentEntity.setStatus(PaymentStatus.SCHEDULED);
+            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
+                    .thenReturn(Optional.of(pendingPaymentEntity));
+
+            assertThatThrownBy(() -> paymentService.initiatePayment(validRequest, "merchant-a"))
+                    .isInstanceOf(DuplicateTransactionException.class);
+
+            verify(paymentRepository, never()).saveAndFlush(any());
+        }
+
         @Test
         @DisplayName("Should throw DuplicateTransactionException for existing PENDING transaction")
         void initiatePayment_DuplicatePending() {
@@ -189,7 +367,7 @@ class PaymentServiceTest {
             when(paymentRepository.findByTransactionId(validRequest.transactionId()))
                     .thenReturn(Optional.of(pendingPaymentEntity));
 
-            assertThatThrownBy(() -> paymentService.initiatePayment(validRequest))
+            assertThatThrownBy(() -> paymentService.initiatePayment(validRequest, "merchant-a"))
                     .isInstanceOf(DuplicateTransactionException.class)
                     .hasMessageContaining(validRequest.transactionId());
 
@@ -204,7 +382,7 @@ class PaymentServiceTest {
             processingPaymentEntity.setStatus(PaymentStatus.PROCESSING);
             when(paymentRepository.findByTransactionId(validRequest.transactionId())).thenReturn(Optional.of(processingPaymentEntity));
 
-            assertThatThrownBy(() -> paymentService.initiatePayment(validRequest))
+            assertThatThrownBy(() -> paymentService.initiatePayment(validRequest, "merchant-a"))
                     .isInstanceOf(DuplicateTransactionException.class)
                     .hasMessageContaining(validRequest.transactionId());
 
@@ -213,13 +391,41 @@ class PaymentServiceTest {
             verify(paymentRepository, never()).save(any());
         }
 
+        @Test
+        @DisplayName("Should throw DuplicateTransactionException when another node wins the insert race")
+        void initiatePayment_LostInsertRace() {
+            when(paymentRepository.findByTransactionId(validRequest.transactionId())).thenReturn(Optional.empty());
+            when(paymentRepository.saveAndFlush(any(Payment.class))).thenThrow(new DataIntegrityViolationException("unique"));
+
+            assertThatThrownBy(() -> paymentService.initiatePayment(validRequest, "merchant-a"))
+                    .isInstanceOf(DuplicateTransactionException.class)
+                    .hasMessageContaining(validRequest.transactionId());
+
+            verify(paymentRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should throw DuplicateTransactionException when the transactionId is already claimed in payment_keys")
+        void initiatePayment_TransactionIdAlreadyClaimed() {
+            when(paymentRepository.findByTransactionId(validRequest.transactionId())).thenReturn(Optional.empty());
+            when(paymentRepository.saveAndFlush(any(Payment.class))).thenReturn(pendingPaymentEntity);
+            doThrow(new DataIntegrityViolationException("pk_payment_keys")).when(paymentKeyRepository)
+                    .insert(validRequest.transactionId(), paymentId, pendingPaymentEntity.getCreatedAt());
+
+            assertThatThrownBy(() -> paymentService.initiatePayment(validRequest, "merchant-a"))
+                    .isInstanceOf(DuplicateTransactionException.class)
+                    .hasMessageContaining(validRequest.transactionId());
+
+            verify(paymentRepository, never()).save(any());
+        }
+
         @Test
         @DisplayName("Should return existing SUCCESSFUL status for completed transaction")
         void initiatePayment_AlreadySuccessful() {
             when(paymentRepository.findByTransactionId(validRequest.transactionId())).thenReturn(Optional.of(successfulPaymentEntity));
             when(paymentMapper.toResponse(successfulPaymentEntity)).thenReturn(successfulResponse);
 
-            PaymentResponse response = paymentService.initiatePayment(validRequest);
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
 
             assertThat(response).isEqualTo(successfulResponse);
             verify(paymentServiceSpy, never()).processPaymentAsynchronously(any());
@@ -233,44 +439,91 @@ class PaymentServiceTest {
             when(paymentRepository.findByTransactionId(validRequest.transactionId())).thenReturn(Optional.of(failedPaymentEntity));
             when(paymentMapper.toResponse(failedPaymentEntity)).thenReturn(failedResponse);
 
-            PaymentResponse response = paymentService.initiatePayment(validRequest);
+            PaymentResponse response = paymentService.initiatePayment(validRequest, "merchant-a");
 
             assertThat(response).isEqualTo(failedResponse);
             verify(paymentServiceSpy, never()).processPaymentAsynchronously(any());
             verify(paymentRepository, never()).saveAndFlush(any());
             verify(paymentRepository, never()).save(any());
         }
+    }
+
+    @Nested
+    @DisplayName("Held Payment Review Tests")
+    class HeldPaymentReview {
+
+        @BeforeEach
+        void setUp() {
+            pendingPaymentEntity.setStatus(PaymentStatus.ON_HOLD);
+            pendingPaymentEntity.setClientId("merchant-a");
+            pendingPaymentEntity.setPriority(PaymentPriority.NORMAL);
+            pendingPaymentEntity.setFailureReason("Near-duplicate of transactionId TXN122");
+            when(paymentRepository.findById(paymentId)).thenReturn(Optional.of(pendingPaymentEntity));
+        }
 
         @Test
-        @DisplayName("Should handle exception during async task submission")
-        void initiatePayment_AsyncSubmissionError() {
-            when(paymentRepository.findByTransactionId(validRequest.transactionId()))
-                    .thenReturn(Optional.empty());
-            when(paymentRepository.saveAndFlush(any(Payment.class)))
-                    .thenReturn(pendingPaymentEntity);
-            when(paymentRepository.save(any(Payment.class)))
-                    .thenReturn(processingPaymentEntity);
-            RuntimeException submissionException = new RuntimeException("Task rejected");
-            doThrow(submissionException).when(paymentServiceSpy)
-                    .processPaymentAsynchronously(eq(paymentId));
-            when(paymentRepository.save(argThat(p -> p.getStatus() == PaymentStatus.FAILED)))
-                    .thenReturn(failedPaymentEntity);
+        @DisplayName("Should release a held payment to the MNO once the transaction commits")
+        void releaseHeldPayment_Dispatches() {
+            when(paymentRepository.updateStatus(
+                    eq(paymentId), eq(PaymentStatus.ON_HOLD), eq(PaymentStatus.PROCESSING), any()))
+                    .thenReturn(1);
 
+            PaymentResponse response = paymentService.releaseHeldPayment(paymentId);
 
-            assertThatThrownBy(() -> paymentServiceSpy.initiatePayment(validRequest))
-                    .isInstanceOf(MMOServiceException.class)
-                    .hasMessageContaining("Failed to submit payment processing task")
-                    .hasCause(submissionException);
+            assertThat(response.status()).isEqualTo(PaymentStatus.PROCESSING);
+            assertThat(response.failureReason()).isNull();
+            verify(eventPublisher).publishEvent(
+                    new PaymentInitiatedEvent(paymentId, "merchant-a", PaymentPriority.NORMAL));
+            verify(eventPublisher).publishEvent(new PaymentStatusChangedEvent(
+                    PaymentStatus.ON_HOLD, PaymentStatus.PROCESSING, validRequest.currency(), validRequest.amount()));
+            verify(nearDuplicateDetector).record(pendingPaymentEntity);
+        }
 
-            ArgumentCaptor<Payment> failedSaveCaptor = ArgumentCaptor.forClass(Payment.class);
-            verify(paymentRepository, times(2))
-                    .save(failedSaveCaptor.capture());
-            assertThat(failedSaveCaptor.getAllValues().get(1).getStatus())
-                    .isEqualTo(PaymentStatus.FAILED);
-            assertThat(failedSaveCaptor.getAllValues().get(1).getFailureReason())
-                    .contains("Task rejected");
-            verify(smsService, never()).sendSuccessNotification(any());
-            verify(smsService, never()).sendFailureNotification(any());
+        @Test
+        @DisplayName("Should release a held payment that is not yet due back to SCHEDULED")
+        void releaseHeldPayment_Reschedules() {
+            LocalDateTime executeAt = LocalDateTime.now().plusHours(1);
+            pendingPaymentEntity.setExecuteAt(executeAt);
+            when(paymentRepository.updateStatus(
+                    eq(paymentId), eq(PaymentStatus.ON_HOLD), eq(PaymentStatus.SCHEDULED), any()))
+                    .thenReturn(1);
+
+            PaymentResponse response = paymentService.releaseHeldPayment(paymentId);
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.SCHEDULED);
+            verify(eventPublisher).publishEvent(
+                    new PaymentScheduledEvent(paymentId, "merchant-a", PaymentPriority.NORMAL, executeAt));
+            verify(eventPublisher, never()).publishEvent(any(PaymentInitiatedEvent.class));
+        }
+
+        @Test
+        @DisplayName("Should reject a held payment without dispatching it")
+        void rejectHeldPayment_Rejects() {
+            when(paymentRepository.updateStatus(
+                    eq(paymentId), eq(PaymentStatus.ON_HOLD), eq(PaymentStatus.REJECTED), any()))
+                    .thenReturn(1);
+
+            PaymentResponse response = paymentService.rejectHeldPayment(paymentId);
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.REJECTED);
+            assertThat(response.failureReason())
+                    .isEqualTo("Near-duplicate of transactionId TXN122; rejected on review");
+            verify(paymentLimits).release(any(Payment.class));
+            verify(eventPublisher, never()).publishEvent(any(PaymentInitiatedEvent.class));
+        }
+
+        @Test
+        @DisplayName("Should leave a payment that was already reviewed as it is")
+        void releaseHeldPayment_AlreadyReviewed() {
+            when(paymentRepository.updateStatus(
+                    eq(paymentId), eq(PaymentStatus.ON_HOLD), eq(PaymentStatus.PROCESSING), any()))
+                    .thenReturn(0);
+
+            PaymentResponse response = paymentService.releaseHeldPayment(paymentId);
+
+            assertThat(response.status()).isEqualTo(PaymentStatus.ON_HOLD);
+            verify(paymentRepository, never()).save(any());
+            verify(eventPublisher, never()).publishEvent(any());
         }
     }
 
@@ -303,6 +556,102 @@ class PaymentServiceTest {
             verify(smsService, never()).sendFailureNotification(any());
         }
 
+        @Test
+        @DisplayName("Should debit the float reservation once the MNO reports success")
+        void processAsync_SettlesFloat() {
+            when(mobileMoneyService.processB2CPayment(eq(processingPaymentEntity)))
+                    .thenReturn(CompletableFuture.completedFuture(successfulPaymentEntity));
+
+            paymentService.processPaymentAsynchronously(paymentId);
+
+            verify(floatLedger).tryReserve(processingPaymentEntity);
+            verify(floatLedger).settle(paymentId, true);
+        }
+
+        @Test
+        @DisplayName("Should hold a payment the float cannot cover without calling the MNO or counting an attempt")
+        void processAsync_HeldForFloat() {
+            when(floatLedger.tryReserve(processingPaymentEntity)).thenReturn(false);
+
+            LocalDateTime before = LocalDateTime.now();
+            paymentService.processPaymentAsynchronously(paymentId);
+
+            verify(mobileMoneyService, never()).processB2CPayment(any());
+            ArgumentCaptor<Payment> savedPaymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository).save(savedPaymentCaptor.capture());
+            Payment saved = savedPaymentCaptor.getValue();
+            assertThat(saved.getStatus()).isEqualTo(PaymentStatus.PROCESSING);
+            assertThat(saved.getAttemptCount()).isZero();
+            assertThat(saved.getFailureReason()).isEqualTo("Awaiting float");
+            assertThat(saved.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(30));
+            verify(eventPublisher).publishEvent(new PaymentRetryScheduledEvent(
+                    paymentId, saved.getClientId(), saved.getPriority(), saved.getNextAttemptAt()));
+        }
+
+        @Test
+        @DisplayName("Should send a retry armed on two nodes to the MNO once")
+        void processRetry_ClaimedOnce() {
+            // Behaves like the conditional update: only the first claim finds next_attempt_at still due
+            AtomicBoolean due = new AtomicBoolean(true);
+            when(paymentRepository.claimRetry(eq(paymentId), eq(PaymentStatus.PROCESSING), any()))
+                    .thenAnswer(invocation -> due.getAndSet(false) ? 1 : 0);
+            when(mobileMoneyService.processB2CPayment(eq(processingPaymentEntity)))
+                    .thenReturn(CompletableFuture.completedFuture(successfulPaymentEntity));
+
+            paymentService.processRetry(paymentId);
+            paymentService.processRetry(paymentId);
+
+            verify(paymentRepository, times(2)).claimRetry(eq(paymentId), eq(PaymentStatus.PROCESSING), any());
+            verify(mobileMoneyService, times(1)).processB2CPayment(any());
+        }
+
+        @Test
+        @DisplayName("Should hand a payment the MNO executor had no room for to the retry scheduler")
+        void deferDispatch_SchedulesRetry() {
+            LocalDateTime before = LocalDateTime.now();
+            paymentService.deferDispatch(paymentId, Duration.ofSeconds(1));
+
+            verify(mobileMoneyService, never()).processB2CPayment(any());
+            ArgumentCaptor<Payment> savedPaymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository).save(savedPaymentCaptor.capture());
+            Payment saved = savedPaymentCaptor.getValue();
+            assertThat(saved.getStatus()).isEqualTo(PaymentStatus.PROCESSING);
+            assertThat(saved.getAttemptCount()).isZero();
+            assertThat(saved.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(1));
+            verify(eventPublisher).publishEvent(new PaymentRetryScheduledEvent(
+                    paymentId, saved.getClientId(), saved.getPriority(), saved.getNextAttemptAt()));
+        }
+
+        @Test
+        @DisplayName("Should fail a payment the float has held too many times instead of holding it again")
+        void processAsync_FailsAfterMaxFloatHolds() {
+            when(floatLedger.tryReserve(processingPaymentEntity)).thenReturn(false);
+            when(floatLedger.holdsExhausted(paymentId)).thenReturn(true);
+            processingPaymentEntity.setNextAttemptAt(LocalDateTime.now());
+
+            paymentService.processPaymentAsynchronously(paymentId);
+
+            verify(mobileMoneyService, never()).processB2CPayment(any());
+            ArgumentCaptor<Payment> savedPaymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository).save(savedPaymentCaptor.capture());
+            Payment saved = savedPaymentCaptor.getValue();
+            assertThat(saved.getStatus()).isEqualTo(PaymentStatus.FAILED);
+            assertThat(saved.getFailureReason()).isEqualTo("Insufficient float");
+            assertThat(saved.getNextAttemptAt()).isNull();
+            verify(eventPublisher, never()).publishEvent(any(PaymentRetryScheduledEvent.class));
+        }
+
+        @Test
+        @DisplayName("Should hand the float reservation back when the MNO reports a failure")
+        void processAsync_ReleasesFloatOnFailure() {
+            when(mobileMoneyService.processB2CPayment(eq(processingPaymentEntity)))
+                    .thenReturn(CompletableFuture.completedFuture(failedPaymentEntity));
+
+            paymentService.processPaymentAsynchronously(paymentId);
+
+            verify(floatLedger).settleFailed(paymentId, validRequest.currency(), "Insufficient Funds");
+        }
+
         @Test
         @DisplayName("Should handle MNO reported failure, update status, and send failure SMS")
         void processAsync_MnoReportedFailure() {
@@ -327,6 +676,53 @@ class PaymentServiceTest {
             verify(smsService).sendFailureNotification(eq(failedPaymentEntity));
         }
 
+        @Test
+        @DisplayName("Should keep PROCESSING and schedule a retry for a transient MNO failure")
+        void processAsync_TransientFailureSchedulesRetry() {
+            failedPaymentEntity.setFailureReason("Temporary network error");
+            when(paymentRepository.findById(eq(paymentId))).thenReturn(Optional.of(processingPaymentEntity));
+            when(mobileMoneyService.processB2CPayment(eq(processingPaymentEntity)))
+                    .thenReturn(CompletableFuture.completedFuture(failedPaymentEntity));
+            when(retryPolicy.isRetryable("Temporary network error")).thenReturn(true);
+            when(retryPolicy.canRetry(1)).thenReturn(true);
+            when(retryPolicy.backoff(1)).thenReturn(Duration.ofSeconds(2));
+
+            LocalDateTime before = LocalDateTime.now();
+            paymentService.processPaymentAsynchronously(paymentId);
+
+            ArgumentCaptor<Payment> savedPaymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository).save(savedPaymentCaptor.capture());
+            Payment saved = savedPaymentCaptor.getValue();
+            assertThat(saved.getStatus()).isEqualTo(PaymentStatus.PROCESSING);
+            assertThat(saved.getAttemptCount()).isEqualTo(1);
+            assertThat(saved.getFailureReason()).isEqualTo("Temporary network error");
+            assertThat(saved.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(2));
+            verify(eventPublisher).publishEvent(new PaymentRetryScheduledEvent(
+                    paymentId, saved.getClientId(), saved.getPriority(), saved.getNextAttemptAt()));
+            verify(smsService, never()).sendSuccessNotification(any());
+            verify(smsService, never()).sendFailureNotification(any());
+        }
+
+        @Test
+        @DisplayName("Should fail permanently once retries for a transient MNO failure are exhausted")
+        void processAsync_TransientFailureRetriesExhausted() {
+            failedPaymentEntity.setFailureReason("System unavailable");
+            processingPaymentEntity.setAttemptCount(4);
+            when(paymentRepository.findById(eq(paymentId))).thenReturn(Optional.of(processingPaymentEntity));
+            when(mobileMoneyService.processB2CPayment(eq(processingPaymentEntity)))
+                    .thenReturn(CompletableFuture.completedFuture(failedPaymentEntity));
+            when(retryPolicy.isRetryable("System unavailable")).thenReturn(true);
+            when(retryPolicy.canRetry(5)).thenReturn(false);
+
+            paymentService.processPaymentAsynchronously(paymentId);
+
+            ArgumentCaptor<Payment> savedPaymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository).save(savedPaymentCaptor.capture());
+            assertThat(savedPaymentCaptor.getValue().getStatus()).isEqualTo(PaymentStatus.FAILED);
+            verify(eventPublisher, never()).publishEvent(any(PaymentRetryScheduledEvent.class));
+            verify(smsService).sendFailureNotification(any());
+        }
+
         @Test
         @DisplayName("Should handle MNO future exception, update status, and send failure SMS")
         void processAsync_MnoFutureException() {
@@ -363,6 +759,56 @@ class PaymentServiceTest {
                     .contains("Insufficient Funds");
         }
 
+        @Test
+        @DisplayName("Should mark payment TIMED_OUT without SMS when the MNO misses its deadline")
+        void processAsync_MnoDeadlineExceeded() {
+            when(paymentRepository.findById(eq(paymentId))).thenReturn(Optional.of(processingPaymentEntity));
+            CompletableFuture<Payment> hungCall = new CompletableFuture<>();
+            when(mobileMoneyService.processB2CPayment(eq(processingPaymentEntity))).thenReturn(hungCall);
+            when(mnoDeadlineManager.withDeadline(hungCall))
+                    .thenReturn(CompletableFuture.failedFuture(new MnoTimeoutException(Duration.ofSeconds(5))));
+
+            paymentService.processPaymentAsynchronously(paymentId);
+
+            ArgumentCaptor<Payment> savedPaymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository).save(savedPaymentCaptor.capture());
+            assertThat(savedPaymentCaptor.getValue().getStatus()).isEqualTo(PaymentStatus.TIMED_OUT);
+            assertThat(savedPaymentCaptor.getValue().getFailureReason()).contains("5000 ms", "outcome unknown");
+            verify(smsService, never()).sendSuccessNotification(any());
+            verify(smsService, never()).sendFailureNotification(any());
+        }
+
+        @Test
+        @DisplayName("Should claim a due SCHEDULED payment before sending it to the MNO")
+        void processScheduled_ClaimsThenProcesses() {
+            when(paymentRepository.updateStatus(
+                    eq(paymentId), eq(PaymentStatus.SCHEDULED), eq(PaymentStatus.PROCESSING), any()))
+                    .thenReturn(1);
+            when(mobileMoneyService.processB2CPayment(eq(processingPaymentEntity)))
+                    .thenReturn(CompletableFuture.completedFuture(successfulPaymentEntity));
+
+            paymentService.processScheduledPayment(paymentId);
+
+            verify(eventPublisher).publishEvent(new PaymentStatusChangedEvent(
+                    PaymentStatus.SCHEDULED, PaymentStatus.PROCESSING, validRequest.currency(), validRequest.amount()));
+            verify(mobileMoneyService).processB2CPayment(eq(processingPaymentEntity));
+            verify(smsService).sendSuccessNotification(any());
+        }
+
+        @Test
+        @DisplayName("Should not process a scheduled payment that was already released")
+        void processScheduled_SkipsIfAlreadyReleased() {
+            when(paymentRepository.updateStatus(
+                    eq(paymentId), eq(PaymentStatus.SCHEDULED), eq(PaymentStatus.PROCESSING), any()))
+                    .thenReturn(0);
+
+            paymentService.processScheduledPayment(paymentId);
+
+            verify(paymentRepository, never()).findById(any());
+            verify(mobileMoneyService, never()).processB2CPayment(any());
+            verify(eventPublisher, never()).publishEvent(any());
+        }
+
         @Test
         @DisplayName("Should skip processing if payment status is not PROCESSING")
         void processAsync_SkipsIfNotProcessing() {
@@ -393,6 +839,38 @@ class PaymentServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("MNO Callback Tests")
+    class MnoCallbacks {
+
+        @Test
+        @DisplayName("Should resolve a TIMED_OUT payment from a late callback and notify")
+        void handleMnoCallback_ResolvesTimedOut() {
+            processingPaymentEntity.setStatus(PaymentStatus.TIMED_OUT);
+            when(paymentRepository.findById(eq(paymentId))).thenReturn(Optional.of(processingPaymentEntity));
+
+            paymentService.handleMnoCallback(new MnoCallbackEvent(successfulPaymentEntity));
+
+            ArgumentCaptor<Payment> savedPaymentCaptor = ArgumentCaptor.forClass(Payment.class);
+            verify(paymentRepository).save(savedPaymentCaptor.capture());
+            assertThat(savedPaymentCaptor.getValue().getStatus()).isEqualTo(PaymentStatus.SUCCESSFUL);
+            assertThat(savedPaymentCaptor.getValue().getMnoReference()).isEqualTo("MNO_SUCCESS_REF");
+            verify(smsService).sendSuccessNotification(savedPaymentCaptor.getValue());
+        }
+
+        @Test
+        @DisplayName("Should ignore a duplicate callback for an already settled payment")
+        void handleMnoCallback_IgnoresDuplicate() {
+            when(paymentRepository.findById(eq(paymentId))).thenReturn(Optional.of(successfulPaymentEntity));
+
+            paymentService.handleMnoCallback(new MnoCallbackEvent(failedPaymentEntity));
+
+            verify(paymentRepository, never()).save(any());
+            verify(smsService, never()).sendSuccessNotification(any());
+            verify(smsService, never()).sendFailureNotification(any());
+        }
+    }
+
     @Nested
     @DisplayName("Get Payment Tests")
     class GetPayment {
@@ -400,58 +878,120 @@ class PaymentServiceTest {
         @Test
         @DisplayName("Should return payment by ID successfully")
         void getPaymentById_Success() {
-            when(paymentRepository.findById(paymentId)).thenReturn(Optional.of(successfulPaymentEntity));
-            when(paymentMapper.toResponse(successfulPaymentEntity)).thenReturn(successfulResponse);
+            when(paymentRepository.findResponseById(paymentId)).thenReturn(Optional.of(successfulResponse));
 
             PaymentResponse response = paymentService.getPaymentById(paymentId);
 
             assertThat(response).isNotNull();
             assertThat(response).isEqualTo(successfulResponse);
-            verify(paymentRepository).findById(paymentId);
-            verify(paymentMapper).toResponse(successfulPaymentEntity);
+            verify(paymentRepository).findResponseById(paymentId);
+            verify(paymentRepository, never()).findById(any());
+            verify(paymentMapper, never()).toResponse(any());
         }
 
         @Test
         @DisplayName("Should throw PaymentNotFoundException for non-existent ID")
         void getPaymentById_NotFound() {
             UUID nonExistentId = UUID.randomUUID();
-            when(paymentRepository.findById(nonExistentId)).thenReturn(Optional.empty());
+            when(paymentRepository.findResponseById(nonExistentId)).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> paymentService.getPaymentById(nonExistentId))
                     .isInstanceOf(PaymentNotFoundException.class)
                     .hasMessageContaining(nonExistentId.toString());
 
-            verify(paymentRepository).findById(nonExistentId);
+            verify(paymentRepository).findResponseById(nonExistentId);
             verify(paymentMapper, never()).toResponse(any());
         }
 
+        @Test
+        @DisplayName("Should fall back to the archive for payments moved out of the table")
+        void getPaymentById_Archived() {
+            when(paymentRepository.findResponseById(paymentId)).thenReturn(Optional.empty());
+            when(paymentArchive.findById(paymentId)).thenReturn(Optional.of(successfulPaymentEntity));
+
+            PaymentResponse response = paymentService.getPaymentById(paymentId);
+
+            assertThat(response).isEqualTo(successfulResponse);
+            assertThat(paymentService.getPaymentVersionById(paymentId))
+                    .isEqualTo(PaymentVersion.of(successfulResponse));
+        }
+
         @Test
         @DisplayName("Should return payment by Transaction ID successfully")
         void getPaymentByTransactionId_Success() {
             String txnId = successfulPaymentEntity.getTransactionId();
-            when(paymentRepository.findByTransactionId(txnId)).thenReturn(Optional.of(successfulPaymentEntity));
-            when(paymentMapper.toResponse(successfulPaymentEntity)).thenReturn(successfulResponse);
+            when(paymentRepository.findResponseByTransactionId(txnId)).thenReturn(Optional.of(successfulResponse));
 
             PaymentResponse response = paymentService.getPaymentByTransactionId(txnId);
 
             assertThat(response).isNotNull();
             assertThat(response).isEqualTo(successfulResponse);
-            verify(paymentRepository).findByTransactionId(txnId);
-            verify(paymentMapper).toResponse(successfulPaymentEntity);
+            verify(paymentRepository).findResponseByTransactionId(txnId);
+            verify(paymentRepository, never()).findByTransactionId(any());
+            verify(paymentMapper, never()).toResponse(any());
         }
 
         @Test
         @DisplayName("Should throw PaymentNotFoundException for non-existent Transaction ID")
         void getPaymentByTransactionId_NotFound() {
             String nonExistentTxnId = "TXN_NOT_FOUND";
-            when(paymentRepository.findByTransactionId(nonExistentTxnId)).thenReturn(Optional.empty());
+            when(paymentRepository.findResponseByTransactionId(nonExistentTxnId)).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> paymentService.getPaymentByTransactionId(nonExistentTxnId))
                     .isInstanceOf(PaymentNotFoundException.class)
                     .hasMessageContaining(nonExistentTxnId);
 
-            verify(paymentRepository).findByTransactionId(nonExistentTxnId);
+            verify(paymentRepository).findResponseByTransactionId(nonExistentTxnId);
             verify(paymentMapper, never()).toResponse(any());
         }
+
+        @Test
+        @DisplayName("Should look up payments in request order with not-found markers")
+        void lookupPayments_PreservesOrder() {
+            UUID unknownId = UUID.randomUUID();
+            PaymentLookupRequest lookupRequest = new PaymentLookupRequest(
+                    PaymentLookupRequest.LookupBy.PAYMENT_ID,
+                    List.of(unknownId.toString(), "not-a-uuid", paymentId.toString()));
+            when(paymentRepository.findResponsesByIdIn(List.of(unknownId, paymentId))).thenReturn(List.of(successfulResponse));
+
+            List<PaymentLookupResult> results = paymentService.lookupPayments(lookupRequest);
+
+            assertThat(results).containsExactly(
+                    PaymentLookupResult.notFound(unknownId.toString()),
+                    PaymentLookupResult.notFound("not-a-uuid"),
+                    PaymentLookupResult.found(paymentId.toString(), successfulResponse));
+            verify(paymentRepository, never()).findById(any());
+        }
+
+        @Test
+        @DisplayName("Should resolve lookups missing from the table from the archive")
+        void lookupPayments_FallsBackToArchive() {
+            String txnId = successfulPaymentEntity.getTransactionId();
+            when(paymentRepository.findResponsesByTransactionIdIn(List.of(txnId, "TXN_NOT_FOUND"))).thenReturn(List.of());
+            when(paymentArchive.findByTransactionId(txnId)).thenReturn(Optional.of(successfulPaymentEntity));
+            when(paymentArchive.findByTransactionId("TXN_NOT_FOUND")).thenReturn(Optional.empty());
+
+            List<PaymentLookupResult> results = paymentService.lookupPayments(new PaymentLookupRequest(
+                    PaymentLookupRequest.LookupBy.TRANSACTION_ID, List.of(txnId, "TXN_NOT_FOUND")));
+
+            assertThat(results).containsExactly(
+                    PaymentLookupResult.found(txnId, successfulResponse),
+                    PaymentLookupResult.notFound("TXN_NOT_FOUND"));
+        }
+
+        @Test
+        @DisplayName("Should split large lookups into chunked IN queries")
+        void lookupPayments_ChunksTransactionIds() {
+            List<String> transactionIds = IntStream.range(0, PaymentService.LOOKUP_CHUNK_SIZE + 1)
+                    .mapToObj(i -> "TXN" + i)
+                    .toList();
+            when(paymentRepository.findResponsesByTransactionIdIn(any())).thenReturn(List.of());
+
+            List<PaymentLookupResult> results = paymentService.lookupPayments(
+                    new PaymentLookupRequest(PaymentLookupRequest.LookupBy.TRANSACTION_ID, transactionIds));
+
+            assertThat(results).hasSize(transactionIds.size()).noneMatch(PaymentLookupResult::found);
+            verify(paymentRepository, times(2)).findResponsesByTransactionIdIn(any());
+        }
     }
 }
@@ -0,0 +1,166 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.archive;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentArchiveTest {
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 1, 10, 0, 0, 123_456_000);
+
+    @TempDir
+    Path directory;
+    private PaymentArchive archive;
+
+    @AfterEach
+    void tearDown() {
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should find every archived payment by id and transactionId and nothing else")
+    void findsArchivedPayments() throws IOException {
+        archive = new PaymentArchive(directory.toString());
+        archive.load();
+        List<Payment> payments = payments(0, 1000);
+
+        archive.append(payments);
+
+        for (Payment payment : payments) {
+            assertThat(archive.findById(payment.getId())).get()
+                    .usingRecursiveComparison().isEqualTo(payment);
+            assertThat(archive.findByTransactionId(payment.getTransactionId())).get()
+                    .extracting(Payment::getId).isEqualTo(payment.getId());
+        }
+        assertThat(archive.findById(UUID.randomUUID())).isEmpty();
+        assertThat(archive.findByTransactionId("TXN-UNKNOWN")).isEmpty();
+        assertThat(archive.archivedThrough()).contains(CREATED_AT.plusMinutes(999).withNano(123_000_000));
+    }
+
+    @Test
+    @DisplayName("Should reopen existing segments and keep numbering them after a restart")
+    void reopensSegments() throws IOException {
+        archive = new PaymentArchive(directory.toString());
+        archive.load();
+        archive.append(payments(0, 10));
+        archive.close();
+
+        archive = new PaymentArchive(directory.toString());
+        archive.load();
+        archive.append(payments(10, 10));
+
+        assertThat(archive.findByTransactionId("TXN-3")).isPresent();
+        assertThat(archive.findByTransactionId("TXN-13")).isPresent();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()).sorted()).containsExactly(
+                    "payments-00000000000000000001.seg",
+                    "payments-00000000000000000002.seg");
+        }
+    }
+
+    @Test
+    @DisplayName("Should merge fan-in adjacent segments of the same level and keep every payment findable")
+    void compactsSegments() throws IOException {
+        archive = new PaymentArchive(directory.toString(), 3, 0);
+        archive.load();
+        for (int run = 0; run < 9; run++) {
+            archive.append(payments(run * 5, 5));
+        }
+
+        assertThat(archive.compact()).isEqualTo(8);
+        archive.close();
+        archive = new PaymentArchive(directory.toString(), 3, 0);
+        archive.load();
+        archive.append(payments(45, 5));
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(archive.findByTransactionId("TXN-" + i)).isPresent();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()).sorted()).containsExactly(
+                    "payments-00000000000000000001-00000000000000000009.seg",
+                    "payments-00000000000000000010.seg");
+        }
+    }
+
+    @Test
+    @DisplayName("Should delete segments left behind by an interrupted compaction on load")
+    void cleansUpInterruptedCompaction() throws IOException {
+        Path inputs = Files.createDirectory(directory.resolve("inputs"));
+        archive = new PaymentArchive(directory.resolve("archive").toString(), 2, 0);
+        archive.load();
+        archive.append(payments(0, 5));
+        archive.append(payments(5, 5));
+        try (Stream<Path> files = Files.list(directory.resolve("archive"))) {
+            for (Path file : files.toList()) {
+                Files.copy(file, inputs.resolve(file.getFileName()));
+            }
+        }
+        archive.compact();
+        archive.close();
+        try (Stream<Path> files = Files.list(inputs)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, directory.resolve("archive").resolve(file.getFileName()));
+            }
+        }
+
+        archive = new PaymentArchive(directory.resolve("archive").toString(), 2, 0);
+        archive.load();
+
+        assertThat(archive.findByTransactionId("TXN-7")).isPresent();
+        try (Stream<Path> files = Files.list(directory.resolve("archive"))) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactly(
+                    "payments-00000000000000000001-00000000000000000002.seg");
+        }
+    }
+
+    @Test
+    @DisplayName("Should not merge segments holding more than max-payments between them")
+    void capsCompaction() throws IOException {
+        archive = new PaymentArchive(directory.toString(), 2, 5);
+        archive.load();
+        archive.append(payments(0, 3));
+        archive.append(payments(3, 3));
+
+        assertThat(archive.compact()).isZero();
+        assertThat(archive.findByTransactionId("TXN-4")).isPresent();
+    }
+
+    private static List<Payment> payments(int from, int count) {
+        return IntStream.range(from, from + count)
+                .mapToObj(i -> Payment.builder()
+                        .id(UUID.randomUUID())
+                        .transactionId("TXN-" + i)
+                        .recipientPhoneNumber("+2547123" + String.format("%05d", i))
+                        .amount(new BigDecimal(i + ".50"))
+                        .currency("KES")
+                        .clientId(i % 2 == 0 ? "merchant-" + i : null)
+                        .priority(PaymentPriority.NORMAL)
+                        .status(i % 3 == 0 ? PaymentStatus.FAILED : PaymentStatus.SUCCESSFUL)
+                        .failureReason(i % 3 == 0 ? "Insufficient Funds" : null)
+                        .mnoReference(i % 3 == 0 ? null : "MNO-" + i)
+                        .attemptCount(1)
+                        .createdAt(CREATED_AT)
+                        .updatedAt(CREATED_AT.plusMinutes(i))
+                        .executeAt(i % 4 == 0 ? CREATED_AT.plusHours(1) : null)
+                        .build())
+                .toList();
+    }
+}
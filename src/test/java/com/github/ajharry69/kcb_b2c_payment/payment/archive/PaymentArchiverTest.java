@@ -0,0 +1,100 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.archive;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PaymentArchiverTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 4, 1, 12, 0);
+    private static final LocalDateTime BEFORE = NOW.minusDays(90);
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final PaymentArchive paymentArchive = mock(PaymentArchive.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @Test
+    @DisplayName("Should page old terminal payments, archive them, then delete them in batches and publish each batch")
+    void archivesThenDeletes() {
+        List<Payment> first = payments(0, 2);
+        List<Payment> second = payments(2, 1);
+        when(paymentRepository.findArchivable(eq(PaymentArchiver.ARCHIVABLE_STATUSES), eq(BEFORE),
+                eq(LocalDateTime.of(1970, 1, 1, 0, 0)), eq(new UUID(0, 0)), eq(Limit.of(2))))
+                .thenReturn(first);
+        when(paymentRepository.findArchivable(eq(PaymentArchiver.ARCHIVABLE_STATUSES), eq(BEFORE),
+                eq(first.getLast().getUpdatedAt()), eq(first.getLast().getId()), eq(Limit.of(2))))
+                .thenReturn(second);
+
+        int archived = archiver(true, 10).archive();
+
+        assertThat(archived).isEqualTo(3);
+        InOrder order = inOrder(paymentArchive, paymentRepository, eventPublisher);
+        order.verify(paymentArchive).append(List.of(first.get(0), first.get(1), second.get(0)));
+        order.verify(paymentRepository).deleteAllByIdInBatch(List.of(first.get(0).getId(), first.get(1).getId()));
+        order.verify(eventPublisher).publishEvent(new PaymentsArchivedEvent(
+                List.of(new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 2, new BigDecimal("4.00")))));
+        order.verify(paymentRepository).deleteAllByIdInBatch(List.of(second.get(0).getId()));
+        order.verify(eventPublisher).publishEvent(new PaymentsArchivedEvent(
+                List.of(new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 1, new BigDecimal("3.50")))));
+        order.verify(paymentArchive).compact();
+    }
+
+    @Test
+    @DisplayName("Should stop reading at the per-run cap")
+    void capsPaymentsPerRun() {
+        List<Payment> page = payments(0, 2);
+        when(paymentRepository.findArchivable(any(), any(), any(), any(), eq(Limit.of(2)))).thenReturn(page);
+
+        assertThat(archiver(true, 2).archive()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should do nothing when disabled")
+    void disabled() {
+        assertThat(archiver(false, 10).archive()).isZero();
+        verifyNoInteractions(paymentRepository, paymentArchive, eventPublisher);
+    }
+
+    private PaymentArchiver archiver(boolean enabled, int maxPaymentsPerRun) {
+        return new PaymentArchiver(paymentRepository, paymentArchive,
+                new PaymentShards(1, TransactionOperations.withoutTransaction()), eventPublisher, enabled,
+                Duration.ofDays(90), 2, maxPaymentsPerRun, Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    private static List<Payment> payments(int from, int count) {
+        return IntStream.range(from, from + count)
+                .mapToObj(i -> Payment.builder()
+                        .id(UUID.randomUUID())
+                        .transactionId("TXN-" + i)
+                        .amount(new BigDecimal(i + 1 + ".50"))
+                        .currency("KES")
+                        .status(PaymentStatus.SUCCESSFUL)
+                        .updatedAt(BEFORE.minusDays(10).plusMinutes(i))
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds {@link PaymentRequest}s for tests.
+ */
+public final class PaymentRequests {
+    private PaymentRequests() {
+    }
+
+    /**
+     * @return a request without a priority or {@code executeAt}, i.e. a {@code NORMAL} payment sent straight away.
+     */
+    public static PaymentRequest paymentRequest(String transactionId, String recipientPhoneNumber, BigDecimal amount,
+                                                String currency) {
+        return new PaymentRequest(transactionId, recipientPhoneNumber, amount, currency, null, null);
+    }
+}
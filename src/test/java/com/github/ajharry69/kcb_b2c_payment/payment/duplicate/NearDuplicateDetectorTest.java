@@ -0,0 +1,94 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.duplicate;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NearDuplicateDetectorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final NearDuplicateDetector detector = new NearDuplicateDetector(
+            true, NearDuplicateAction.HOLD, 60_000, 10_000, meterRegistry, clock::get);
+
+    @Test
+    @DisplayName("Should match a payment to the same recipient, amount and currency under another transactionId")
+    void matchesWithinWindow() {
+        assertThat(detector.find(payment("TXN-1", "+254712345678", "100", "KES"))).isEmpty();
+        detector.record(payment("TXN-1", "+254712345678", "100", "KES"));
+        advance(Duration.ofSeconds(5));
+
+        assertThat(detector.find(payment("TXN-2", "+254712345678", "100.00", "KES")))
+                .contains(new NearDuplicate("TXN-1", NearDuplicateAction.HOLD));
+        assertThat(detector.find(payment("TXN-1", "+254712345678", "100", "KES"))).isEmpty();
+        assertThat(detector.find(payment("TXN-3", "+254712345678", "100.01", "KES"))).isEmpty();
+        assertThat(detector.find(payment("TXN-4", "+254712345679", "100", "KES"))).isEmpty();
+        assertThat(detector.find(payment("TXN-5", "+254712345678", "100", "UGX"))).isEmpty();
+        assertThat(meterRegistry.get("payment.near-duplicates").tag("action", "hold").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should only match against recorded payments, so a looked-up duplicate does not replace the original")
+    void matchesRecordedOnly() {
+        detector.record(payment("TXN-1", "+254712345678", "100", "KES"));
+        advance(Duration.ofSeconds(1));
+
+        assertThat(detector.find(payment("TXN-2", "+254712345678", "100", "KES"))).isPresent();
+        assertThat(detector.find(payment("TXN-3", "+254712345678", "100", "KES")))
+                .map(NearDuplicate::transactionId)
+                .contains("TXN-1");
+    }
+
+    @Test
+    @DisplayName("Should report the most recent match and forget payments older than the window")
+    void expiresAfterWindow() {
+        detector.record(payment("TXN-1", "+254712345678", "100", "KES"));
+        advance(Duration.ofSeconds(30));
+        detector.record(payment("TXN-2", "+254712345678", "100", "KES"));
+        advance(Duration.ofSeconds(20));
+
+        assertThat(detector.find(payment("TXN-3", "+254712345678", "100", "KES")))
+                .map(NearDuplicate::transactionId)
+                .contains("TXN-2");
+
+        advance(Duration.ofSeconds(61));
+        assertThat(detector.find(payment("TXN-4", "+254712345678", "100", "KES"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should forget a payment whose transaction rolls back")
+    void forgetsOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            detector.record(payment("TXN-1", "+254712345678", "100", "KES"));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(detector.find(payment("TXN-2", "+254712345678", "100", "KES"))).isEmpty();
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toMillis());
+    }
+
+    private static Payment payment(String transactionId, String recipient, String amount, String currency) {
+        return Payment.builder()
+                .transactionId(transactionId)
+                .recipientPhoneNumber(recipient)
+                .amount(new BigDecimal(amount))
+                .currency(currency)
+                .build();
+    }
+}
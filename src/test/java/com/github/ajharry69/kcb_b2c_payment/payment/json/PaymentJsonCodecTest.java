@@ -0,0 +1,164 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The codec must be indistinguishable from the Jackson converter it replaces, configured as Spring Boot configures it.
+ */
+class PaymentJsonCodecTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final PaymentJsonHttpMessageConverter converter = new PaymentJsonHttpMessageConverter();
+
+    @Nested
+    @DisplayName("Writing PaymentResponse")
+    class WriteResponse {
+
+        @Test
+        @DisplayName("Should produce the same JSON as Jackson for a complete response")
+        void completeResponse() throws IOException {
+            PaymentResponse response = new PaymentResponse(
+                    UUID.randomUUID(), "TXN-1", "+254711223344", new BigDecimal("550.00"), "KES",
+                    PaymentStatus.SUCCESSFUL, "MOCK_MNO_abc \"quoted\"", null,
+                    LocalDateTime.of(2025, 5, 1, 10, 0, 0),
+                    LocalDateTime.of(2025, 5, 1, 10, 0, 3, 120_450_000));
+
+            assertThat(write(response)).isEqualTo(objectMapper.writeValueAsString(response));
+        }
+
+        @Test
+        @DisplayName("Should produce the same JSON as Jackson when every field is null")
+        void emptyResponse() throws IOException {
+            PaymentResponse response = PaymentResponse.builder().build();
+
+            assertThat(write(response)).isEqualTo(objectMapper.writeValueAsString(response));
+        }
+
+        @Test
+        @DisplayName("Should write amounts and non-ASCII text like Jackson")
+        void numbersAndText() throws IOException {
+            PaymentResponse response = PaymentResponse.builder()
+                    .amount(new BigDecimal("1E+3"))
+                    .failureReason("Muamala umekataliwa – jaribu tena ✓")
+                    .createdAt(LocalDateTime.of(2025, 12, 31, 23, 59, 59, 1))
+                    .build();
+
+            assertThat(write(response)).isEqualTo(objectMapper.writeValueAsString(response));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "2025-01-01T00:00:00",
+                "2025-06-15T08:05:09.000000001",
+                "2025-06-15T08:05:09.1",
+                "2025-06-15T08:05:09.123456789",
+                "0001-02-03T04:05:06.0007",
+                "+10000-01-01T00:00:00",
+                "-0001-12-31T23:59:59.5"
+        })
+        @DisplayName("Should write date-times like Jackson")
+        void dateTimes(String dateTime) throws IOException {
+            LocalDateTime value = LocalDateTime.parse(dateTime);
+            PaymentResponse response = PaymentResponse.builder().createdAt(value).updatedAt(value).build();
+
+            assertThat(write(response)).isEqualTo(objectMapper.writeValueAsString(response));
+        }
+
+        @Test
+        @DisplayName("Should only write PaymentResponse as application/json")
+        void writableTypes() throws IOException {
+            MockHttpOutputMessage output = new MockHttpOutputMessage();
+            converter.write(PaymentResponse.builder().transactionId("TXN-1").build(), null, output);
+
+            assertThat(output.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+            assertThat(converter.canWrite(PaymentResponse.class, MediaType.APPLICATION_JSON)).isTrue();
+            assertThat(converter.canWrite(PaymentRequest.class, MediaType.APPLICATION_JSON)).isFalse();
+            assertThat(converter.canWrite(PaymentResponse.class, MediaType.APPLICATION_XML)).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Reading PaymentRequest")
+    class ReadRequest {
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "{\"transactionId\":\"TXN-1\",\"recipientPhoneNumber\":\"+254711223344\",\"amount\":550.00,\"currency\":\"KES\"}",
+                "{\"currency\":\"KES\",\"amount\":1e3,\"transactionId\":\"TXN-1\",\"recipientPhoneNumber\":\"0711 223 344\"}",
+                "{\"transactionId\":\"TXN-1\",\"amount\":\" 12.5 \",\"extra\":{\"nested\":[1,{\"a\":null}]},\"tags\":[\"x\"]}",
+                "{\"transactionId\":12345,\"recipientPhoneNumber\":254711223344,\"currency\":true,\"amount\":\"\"}",
+                "{\"transactionId\":null,\"recipientPhoneNumber\":null,\"amount\":null,\"currency\":null}",
+                "{\"transactionId\":\"first\",\"transactionId\":\"last\"}",
+                "{\"transactionId\":\"TXN-1\",\"priority\":\"HIGH\"}",
+                "{\"priority\":null}",
+                "{\"transactionId\":\"TXN-1\",\"executeAt\":\"2025-06-30T00:01:00+03:00\"}",
+                "{}"
+        })
+        @DisplayName("Should read the same request as Jackson")
+        void sameAsJackson(String json) throws IOException {
+            assertThat(read(json)).isEqualTo(objectMapper.readValue(json, PaymentRequest.class));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "[]",
+                "\"TXN-1\"",
+                "{\"transactionId\":{\"id\":\"TXN-1\"}}",
+                "{\"currency\":[\"KES\"]}",
+                "{\"amount\":\"ten\"}",
+                "{\"amount\":{}}",
+                "{\"priority\":[\"HIGH\"]}",
+                "{\"transactionId\":\"TXN-1\"",
+                "{transactionId:\"TXN-1\"}"
+        })
+        @DisplayName("Should reject what Jackson rejects")
+        void rejectsLikeJackson(String json) {
+            assertThatThrownBy(() -> objectMapper.readValue(json, PaymentRequest.class))
+                    .isInstanceOf(IOException.class);
+            assertThatThrownBy(() -> read(json))
+                    .isInstanceOf(HttpMessageNotReadableException.class);
+        }
+
+        @Test
+        @DisplayName("Should only read PaymentRequest from application/json")
+        void readableTypes() {
+            assertThat(converter.canRead(PaymentRequest.class, MediaType.APPLICATION_JSON)).isTrue();
+            assertThat(converter.canRead(PaymentResponse.class, MediaType.APPLICATION_JSON)).isFalse();
+            assertThat(converter.canRead(PaymentRequest.class, MediaType.TEXT_PLAIN)).isFalse();
+        }
+    }
+
+    private String write(PaymentResponse response) throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(response, MediaType.APPLICATION_JSON, output);
+        return output.getBodyAsString(StandardCharsets.UTF_8);
+    }
+
+    private Object read(String json) throws IOException {
+        return converter.read(PaymentRequest.class, new MockHttpInputMessage(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.limit;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PaymentLimitsTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 30, 12, 30);
+    private static final BigDecimal NONE = BigDecimal.ZERO;
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong(millis(NOW));
+
+    @Test
+    @DisplayName("Should reject a payment above the per-transaction maximum without recording it")
+    void rejectsAboveMaxAmount() {
+        PaymentLimits limits = limits(new PaymentLimits.Limits(new BigDecimal("1000"), 0, NONE), unlimited(), 10);
+
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "1000.01")))
+                .contains("Recipient per-transaction limit of 1000.00 KES exceeded");
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "1000.00"))).isEmpty();
+        assertThat(rejected("recipient", "max-amount")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should count a recipient's payments over a sliding day, separately from other recipients")
+    void limitsDailyCountPerRecipient() {
+        PaymentLimits limits = limits(new PaymentLimits.Limits(NONE, 2, NONE), unlimited(), 10);
+
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+        advance(Duration.ofHours(12));
+        assertThat(limits.tryReserve(payment("+254712345678", "client-2", "10"))).isEmpty();
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10")))
+                .contains("Recipient daily limit of 2 payments reached");
+        assertThat(limits.tryReserve(payment("+254722000000", "client-1", "10"))).isEmpty();
+
+        advance(Duration.ofHours(12));
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+        assertThat(rejected("recipient", "daily-count")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should hold a client's payments to its daily amount without counting rejected ones")
+    void limitsDailyAmountPerClient() {
+        PaymentLimits limits = limits(new PaymentLimits.Limits(NONE, 2, NONE),
+                new PaymentLimits.Limits(NONE, 0, new BigDecimal("100")), 10);
+
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "60"))).isEmpty();
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "50")))
+                .contains("Client daily limit of 100.00 KES exceeded");
+        assertThat(limits.tryReserve(payment("+254712345678", "client-2", "50"))).isEmpty();
+        assertThat(limits.tryReserve(payment("+254712345678", "client-2", "10")))
+                .contains("Recipient daily limit of 2 payments reached");
+    }
+
+    @Test
+    @DisplayName("Should give back the usage of a payment whose transaction rolls back")
+    void releasesOnRollback() {
+        PaymentLimits limits = limits(new PaymentLimits.Limits(NONE, 1, NONE), unlimited(), 10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isPresent();
+    }
+
+    @Test
+    @DisplayName("Should give back the usage of a payment rejected later, once its transaction commits")
+    void releasesRejectedPayment() {
+        PaymentLimits limits = limits(new PaymentLimits.Limits(NONE, 1, NONE),
+                new PaymentLimits.Limits(NONE, 0, new BigDecimal("10")), 10);
+        Payment held = payment("+254712345678", "client-1", "10");
+        held.setCreatedAt(NOW);
+        assertThat(limits.tryReserve(held)).isEmpty();
+        advance(Duration.ofHours(2));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            limits.release(held);
+            assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isPresent();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should rebuild usage from payments created within the last day")
+    void loadsUsage() {
+        when(paymentRepository.findUsageSince(eq(NOW.minusDays(1)), eq(PaymentStatus.REJECTED), any(), any(),
+                any(Limit.class)))
+                .thenReturn(List.of(
+                        usage("+254712345678", NOW.minusHours(23)),
+                        usage("+254712345678", NOW.minusHours(1))));
+        PaymentLimits limits = limits(new PaymentLimits.Limits(NONE, 3, NONE), unlimited(), 10);
+
+        limits.load();
+
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isPresent();
+        advance(Duration.ofHours(1));
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should share one window between new recipients once the tracked ones are all active")
+    void sharesOverflowWhenFull() {
+        PaymentLimits limits = limits(new PaymentLimits.Limits(NONE, 1, NONE), unlimited(), 1);
+
+        assertThat(limits.tryReserve(payment("+254712345678", "client-1", "10"))).isEmpty();
+        assertThat(limits.tryReserve(payment("+254722000001", "client-1", "10"))).isEmpty();
+        assertThat(limits.tryReserve(payment("+254722000002", "client-1", "10"))).isPresent();
+
+        advance(Duration.ofDays(1));
+        assertThat(limits.tryReserve(payment("+254722000002", "client-1", "10"))).isEmpty();
+    }
+
+    private PaymentLimits limits(PaymentLimits.Limits recipient, PaymentLimits.Limits client, int maxTracked) {
+        return new PaymentLimits(paymentRepository, new PaymentShards(1, TransactionOperations.withoutTransaction()),
+                meterRegistry, true, recipient, client, maxTracked, 100, clock::get);
+    }
+
+    private static PaymentLimits.Limits unlimited() {
+        return new PaymentLimits.Limits(NONE, 0, NONE);
+    }
+
+    private static Payment payment(String recipient, String clientId, String amount) {
+        return Payment.builder()
+                .recipientPhoneNumber(recipient)
+                .clientId(clientId)
+                .amount(new BigDecimal(amount))
+                .currency("KES")
+                .build();
+    }
+
+    private static PaymentUsage usage(String recipient, LocalDateTime createdAt) {
+        return new PaymentUsage(UUID.randomUUID(), recipient, "client-1", "KES", BigDecimal.TEN, createdAt);
+    }
+
+    private double rejected(String subject, String limit) {
+        return meterRegistry.get("payment.limits.rejected").tag("subject", subject).tag("limit", limit)
+                .counter().count();
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toMillis());
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
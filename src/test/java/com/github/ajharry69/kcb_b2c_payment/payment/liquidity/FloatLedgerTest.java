@@ -0,0 +1,184 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.liquidity;
+
+import com.github.ajharry69.kcb_b2c_payment.mmo.MobileMoneyService;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FloatLedgerTest {
+    private final MobileMoneyService mobileMoneyService = mock(MobileMoneyService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final FloatLedger ledger = new FloatLedger(mobileMoneyService, meterRegistry, true,
+            new String[]{"KES"}, new String[]{"Insufficient funds"}, 30_000, 1_000, 3, 600_000, clock::get);
+
+    @Test
+    @DisplayName("Should not hold payments before the float balance is known")
+    void passesThroughUntilReconciled() {
+        assertThat(ledger.tryReserve(payment("1000000"))).isTrue();
+        assertThat(meterRegistry.get("payment.float.available").tag("currency", "KES").gauge().value()).isNaN();
+    }
+
+    @Test
+    @DisplayName("Should reserve against the reconciled balance and hold payments it cannot cover")
+    void reservesAgainstBalance() {
+        reconcile("100.00");
+        Payment first = payment("60");
+        Payment second = payment("50");
+
+        assertThat(ledger.tryReserve(first)).isTrue();
+        assertThat(ledger.tryReserve(first)).isTrue();
+        assertThat(ledger.tryReserve(second)).isFalse();
+        assertThat(ledger.reserved("KES")).isEqualTo(60);
+
+        ledger.settle(first.getId(), false);
+        assertThat(ledger.tryReserve(second)).isTrue();
+        ledger.settle(second.getId(), true);
+        ledger.settle(second.getId(), true);
+
+        assertThat(ledger.available("KES")).isEqualTo(50);
+        assertThat(ledger.reserved("KES")).isZero();
+        assertThat(meterRegistry.get("payment.float.held").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep in-flight reservations on top of the balance the MNO reports")
+    void reconcilesBalance() {
+        reconcile("100.00");
+        ledger.tryReserve(payment("30"));
+
+        reconcile("80.00");
+
+        assertThat(ledger.available("KES")).isEqualTo(50);
+        assertThat(ledger.reserved("KES")).isEqualTo(30);
+    }
+
+    @Test
+    @DisplayName("Should treat the float as spent after the MNO reports insufficient funds until it is read again")
+    void exhaustsOnInsufficientFunds() {
+        reconcile("100.00");
+        Payment failed = payment("10");
+        ledger.tryReserve(failed);
+        CompletableFuture<BigDecimal> balance = new CompletableFuture<>();
+        when(mobileMoneyService.queryFloatBalance("KES")).thenReturn(balance);
+
+        ledger.settleFailed(failed.getId(), "KES", "Insufficient funds");
+        ledger.settleFailed(UUID.randomUUID(), "KES", "Insufficient funds");
+
+        assertThat(ledger.tryReserve(payment("1"))).isFalse();
+        balance.complete(new BigDecimal("40.00"));
+        assertThat(ledger.available("KES")).isEqualTo(40);
+        assertThat(ledger.tryReserve(payment("1"))).isTrue();
+        verify(mobileMoneyService, times(2)).queryFloatBalance("KES");
+    }
+
+    @Test
+    @DisplayName("Should not re-read the balance for a failure other than insufficient funds")
+    void keepsBalanceOnOtherFailures() {
+        reconcile("100.00");
+        Payment failed = payment("10");
+        ledger.tryReserve(failed);
+
+        ledger.settleFailed(failed.getId(), "KES", "Recipient account invalid");
+
+        assertThat(ledger.available("KES")).isEqualTo(100);
+        verify(mobileMoneyService, times(1)).queryFloatBalance("KES");
+    }
+
+    @Test
+    @DisplayName("Should drop reservations left unsettled beyond the reservation TTL when reconciling")
+    void expiresUnsettledReservations() {
+        reconcile("100.00");
+        Payment timedOut = payment("30");
+        ledger.tryReserve(timedOut);
+        clock.addAndGet(300_000);
+        Payment recent = payment("20");
+        ledger.tryReserve(recent);
+
+        clock.addAndGet(300_001);
+        reconcile("70.00");
+
+        assertThat(ledger.reserved("KES")).isEqualTo(20);
+        assertThat(ledger.available("KES")).isEqualTo(50);
+        ledger.settle(timedOut.getId(), true);
+        assertThat(ledger.available("KES")).isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("Should give up on a payment held max-holds times in a row")
+    void givesUpAfterMaxHolds() {
+        reconcile("100.00");
+        Payment tooLarge = payment("150");
+
+        for (int i = 1; i < 3; i++) {
+            assertThat(ledger.tryReserve(tooLarge)).isFalse();
+            assertThat(ledger.holdsExhausted(tooLarge.getId())).isFalse();
+        }
+        assertThat(ledger.tryReserve(tooLarge)).isFalse();
+        assertThat(ledger.holdsExhausted(tooLarge.getId())).isTrue();
+        assertThat(meterRegistry.get("payment.float.abandoned").counter().count()).isEqualTo(1);
+
+        Payment inFlight = payment("50");
+        Payment covered = payment("60");
+        ledger.tryReserve(inFlight);
+        assertThat(ledger.tryReserve(covered)).isFalse();
+        ledger.settle(inFlight.getId(), false);
+        assertThat(ledger.tryReserve(covered)).isTrue();
+        assertThat(ledger.holdsExhausted(covered.getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should never reserve more than the balance under concurrent reservations")
+    void reservesAtomically() throws Exception {
+        reconcile("1000.00");
+        AtomicInteger reserved = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 400; i++) {
+                futures.add(executor.submit(() -> {
+                    if (ledger.tryReserve(payment("10"))) {
+                        reserved.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(reserved.get()).isEqualTo(100);
+        assertThat(ledger.available("KES")).isZero();
+    }
+
+    private void reconcile(String balance) {
+        when(mobileMoneyService.queryFloatBalance("KES"))
+                .thenReturn(CompletableFuture.completedFuture(new BigDecimal(balance)));
+        ledger.reconcile();
+    }
+
+    private static Payment payment(String amount) {
+        return Payment.builder()
+                .id(UUID.randomUUID())
+                .amount(new BigDecimal(amount))
+                .currency("KES")
+                .build();
+    }
+}
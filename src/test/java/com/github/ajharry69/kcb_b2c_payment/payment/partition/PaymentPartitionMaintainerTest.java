@@ -0,0 +1,85 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.partition;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentPartitionMaintainerTest {
+    private static final Clock CLOCK = Clock.fixed(
+            LocalDateTime.of(2025, 11, 15, 12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    private static final PaymentShards SHARDS = new PaymentShards(1, TransactionOperations.withoutTransaction());
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    @DisplayName("Should create the missing partitions for the current and upcoming months")
+    void createsUpcomingPartitions() {
+        partitioned(List.of("payments_default", "payments_2025_11", "payments_2025_12"));
+
+        int changed = new PaymentPartitionMaintainer(jdbcTemplate, SHARDS, true, 2, 0, CLOCK).maintain();
+
+        assertThat(changed).isEqualTo(1);
+        verify(jdbcTemplate).execute(
+                "create table payments_2026_01 partition of payments for values from ('2026-01-01') to ('2026-02-01')");
+        verify(jdbcTemplate, never()).execute(startsWith("create table payments_2025_"));
+    }
+
+    @Test
+    @DisplayName("Should drop empty expired partitions and detach ones that still hold payments")
+    void retiresExpiredPartitions() {
+        partitioned(List.of("payments_default", "payments_2025_06", "payments_2025_07", "payments_2025_08",
+                "payments_2025_11"));
+        when(jdbcTemplate.queryForObject("select exists (select 1 from payments_2025_06)", Boolean.class))
+                .thenReturn(false);
+        when(jdbcTemplate.queryForObject("select exists (select 1 from payments_2025_07)", Boolean.class))
+                .thenReturn(true);
+
+        int changed = new PaymentPartitionMaintainer(jdbcTemplate, SHARDS, true, 0, 3, CLOCK).maintain();
+
+        assertThat(changed).isEqualTo(2);
+        verify(jdbcTemplate).execute("drop table payments_2025_06");
+        verify(jdbcTemplate).execute("alter table payments detach partition payments_2025_07");
+        verify(jdbcTemplate, never()).execute(eq("drop table payments_2025_08"));
+        verify(jdbcTemplate, never()).execute(eq("drop table payments_default"));
+    }
+
+    @Test
+    @DisplayName("Should do nothing when the database is not PostgreSQL")
+    @SuppressWarnings("unchecked")
+    void skipsOtherDatabases() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("H2");
+
+        PaymentPartitionMaintainer maintainer = new PaymentPartitionMaintainer(jdbcTemplate, SHARDS, true, 3, 3, CLOCK);
+
+        assertThat(maintainer.maintain()).isZero();
+        assertThat(maintainer.maintain()).isZero();
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class));
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void partitioned(List<String> partitions) {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject(startsWith("select count(*)"), eq(Long.class))).thenReturn(1L);
+        when(jdbcTemplate.queryForList(startsWith("select c.relname"), eq(String.class))).thenReturn(partitions);
+    }
+}
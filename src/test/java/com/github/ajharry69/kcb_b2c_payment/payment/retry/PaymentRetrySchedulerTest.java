@@ -0,0 +1,58 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.retry;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentDispatcher;
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import com.github.ajharry69.kcb_b2c_payment.scheduling.HashedTimingWheel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentRetrySchedulerTest {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final HashedTimingWheel timingWheel = mock(HashedTimingWheel.class);
+    private final PaymentRetryScheduler scheduler = new PaymentRetryScheduler(paymentRepository,
+            new PaymentShards(1, TransactionOperations.withoutTransaction()), mock(PaymentDispatcher.class),
+            timingWheel, 60_000, 2);
+
+    @Test
+    @DisplayName("Should page through more retries due at one instant than fit in a batch within a single sweep")
+    void pagesByAttemptTimeAndId() {
+        LocalDateTime dueAt = LocalDateTime.now().plusSeconds(10);
+        PendingRetry first = retry(dueAt);
+        PendingRetry second = retry(dueAt);
+        PendingRetry third = retry(dueAt);
+        when(paymentRepository.findPendingRetries(
+                eq(PaymentStatus.PROCESSING), eq(EPOCH), isNull(), any(), eq(Limit.of(2))))
+                .thenReturn(List.of(first, second));
+        when(paymentRepository.findPendingRetries(
+                eq(PaymentStatus.PROCESSING), eq(dueAt), eq(second.paymentId()), any(), eq(Limit.of(2))))
+                .thenReturn(List.of(third));
+
+        scheduler.sweep();
+
+        verify(timingWheel, times(3)).schedule(any(Runnable.class), any(Duration.class));
+    }
+
+    private static PendingRetry retry(LocalDateTime nextAttemptAt) {
+        return new PendingRetry(UUID.randomUUID(), "merchant", PaymentPriority.NORMAL, nextAttemptAt);
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.rollup;
+
+import com.github.ajharry69.kcb_b2c_payment.exceptions.InvalidPaymentRequestException;
+import com.github.ajharry69.kcb_b2c_payment.payment.archive.PaymentArchive;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentReport;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PaymentReportsTest {
+    private final PaymentRollupRepository rollupRepository = mock(PaymentRollupRepository.class);
+    private final PaymentRollupWriter rollupWriter = mock(PaymentRollupWriter.class);
+    private final PaymentArchive paymentArchive = mock(PaymentArchive.class);
+    private final PaymentReports reports = new PaymentReports(rollupRepository, rollupWriter, paymentArchive, 31);
+
+    @Test
+    @DisplayName("Should sum hourly rollups per period and over the whole range")
+    void groupsRollupsByPeriod() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 3, 0, 0);
+        when(rollupRepository.findByHourStartBetween(from, to)).thenReturn(List.of(
+                rollup(LocalDateTime.of(2025, 1, 1, 9, 0), PaymentStatus.SUCCESSFUL, 2, "100.00"),
+                rollup(LocalDateTime.of(2025, 1, 1, 17, 0), PaymentStatus.SUCCESSFUL, 3, "50.50"),
+                rollup(LocalDateTime.of(2025, 1, 1, 17, 0), PaymentStatus.FAILED, 1, "5.00"),
+                rollup(LocalDateTime.of(2025, 1, 2, 8, 0), PaymentStatus.SUCCESSFUL, 1, "10.00")));
+
+        PaymentReport report = reports.report(from.plusMinutes(30), to.minusMinutes(30), ReportPeriod.DAY);
+
+        assertThat(report.from()).isEqualTo(from);
+        assertThat(report.to()).isEqualTo(to);
+        assertThat(report.totals()).containsExactly(
+                new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 6, new BigDecimal("160.50")),
+                new PaymentAggregate(PaymentStatus.FAILED, "KES", 1, new BigDecimal("5.00")));
+        assertThat(report.periods()).containsExactly(
+                new PaymentReport.Period(from, List.of(
+                        new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 5, new BigDecimal("150.50")),
+                        new PaymentAggregate(PaymentStatus.FAILED, "KES", 1, new BigDecimal("5.00")))),
+                new PaymentReport.Period(from.plusDays(1), List.of(
+                        new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 1, new BigDecimal("10.00")))));
+    }
+
+    @Test
+    @DisplayName("Should start weeks on Monday and months on the first")
+    void alignsPeriods() {
+        LocalDateTime wednesday = LocalDateTime.of(2025, 1, 15, 13, 0);
+
+        assertThat(ReportPeriod.HOUR.startOf(wednesday)).isEqualTo(wednesday);
+        assertThat(ReportPeriod.DAY.startOf(wednesday)).isEqualTo(LocalDateTime.of(2025, 1, 15, 0, 0));
+        assertThat(ReportPeriod.WEEK.startOf(wednesday)).isEqualTo(LocalDateTime.of(2025, 1, 13, 0, 0));
+        assertThat(ReportPeriod.MONTH.startOf(wednesday)).isEqualTo(LocalDateTime.of(2025, 1, 1, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Should reject empty and overlong ranges without reading rollups")
+    void rejectsInvalidRanges() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        assertThatThrownBy(() -> reports.report(from, from, ReportPeriod.DAY))
+                .isInstanceOf(InvalidPaymentRequestException.class);
+        assertThatThrownBy(() -> reports.rebuild(from, from.plusDays(32)))
+                .isInstanceOf(InvalidPaymentRequestException.class);
+        verifyNoInteractions(rollupRepository, rollupWriter);
+    }
+
+    @Test
+    @DisplayName("Should refuse to rebuild hours whose payments have been archived")
+    void rejectsRebuildOfArchivedHours() {
+        LocalDateTime archivedThrough = LocalDateTime.of(2025, 1, 1, 10, 15);
+        when(paymentArchive.archivedThrough()).thenReturn(Optional.of(archivedThrough));
+        when(rollupWriter.rebuild(LocalDateTime.of(2025, 1, 1, 11, 0), LocalDateTime.of(2025, 1, 1, 12, 0)))
+                .thenReturn(2);
+
+        assertThatThrownBy(() -> reports.rebuild(
+                LocalDateTime.of(2025, 1, 1, 10, 30), LocalDateTime.of(2025, 1, 1, 12, 0)))
+                .isInstanceOf(InvalidPaymentRequestException.class);
+        assertThat(reports.rebuild(LocalDateTime.of(2025, 1, 1, 11, 0), LocalDateTime.of(2025, 1, 1, 12, 0)).rollups())
+                .isEqualTo(2);
+    }
+
+    private static PaymentRollup rollup(LocalDateTime hour, PaymentStatus status, long count, String amount) {
+        return new PaymentRollup(new PaymentRollup.Key(hour, "KES", status), count, new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.rollup;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentStatusChangedEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentRollupWriterTest {
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PaymentRollupWriter writer = new PaymentRollupWriter(
+            jdbcTemplate,
+            TransactionOperations.withoutTransaction(),
+            new PaymentShards(1, TransactionOperations.withoutTransaction()),
+            Clock.fixed(Instant.parse("2025-01-01T10:42:00Z"), ZoneOffset.UTC));
+
+    @Test
+    @DisplayName("Should upsert one row per hour, currency and terminal status in a single batch")
+    @SuppressWarnings("unchecked")
+    void flushesSummedTerminalTransitions() {
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.SUCCESSFUL, "KES", new BigDecimal("100.50")));
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.SUCCESSFUL, "KES", new BigDecimal("20.00")));
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.FAILED, "KES", BigDecimal.ONE));
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                null, PaymentStatus.PROCESSING, "KES", BigDecimal.TEN));
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.TIMED_OUT, "KES", BigDecimal.TEN));
+
+        assertThat(writer.flush()).isEqualTo(2);
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("merge into payment_rollups"), rows.capture());
+        assertThat(rows.getValue()).containsExactlyInAnyOrder(
+                new Object[]{Timestamp.valueOf(HOUR), "KES", "SUCCESSFUL", 2L, new BigDecimal("120.50")},
+                new Object[]{Timestamp.valueOf(HOUR), "KES", "FAILED", 1L, BigDecimal.ONE});
+
+        assertThat(writer.flush()).isZero();
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should keep the pending sums when a flush fails and write them with the next one")
+    @SuppressWarnings("unchecked")
+    void requeuesFailedFlush() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(new int[]{1});
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.SUCCESSFUL, "KES", BigDecimal.TEN));
+
+        assertThat(writer.flush()).isZero();
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.SUCCESSFUL, "KES", BigDecimal.ONE));
+        assertThat(writer.flush()).isEqualTo(1);
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), rows.capture());
+        assertThat(rows.getValue()).containsExactly(
+                new Object[]{Timestamp.valueOf(HOUR), "KES", "SUCCESSFUL", 2L, new BigDecimal("11")});
+    }
+
+    @Test
+    @DisplayName("Should flush pending sums before replacing the rollups of whole hours")
+    @SuppressWarnings("unchecked")
+    void rebuildsWholeHours() {
+        writer.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.REJECTED, "KES", BigDecimal.TEN));
+        Timestamp from = Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 8, 0));
+        Timestamp to = Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 11, 0));
+        when(jdbcTemplate.query(startsWith("select"), any(RowMapper.class), eq(from), eq(to), eq(to)))
+                .thenAnswer(invocation -> List.of(
+                        mapRow(invocation.getArgument(1), HOUR.minusHours(2), "SUCCESSFUL", 3, "30.00"),
+                        mapRow(invocation.getArgument(1), HOUR, "FAILED", 1, "5.00")));
+
+        int written = writer.rebuild(LocalDateTime.of(2025, 1, 1, 8, 30), LocalDateTime.of(2025, 1, 1, 10, 5));
+
+        assertThat(written).isEqualTo(2);
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).batchUpdate(startsWith("merge into payment_rollups"), anyList());
+        order.verify(jdbcTemplate).update(startsWith("delete from payment_rollups"), eq(from), eq(to));
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        order.verify(jdbcTemplate).batchUpdate(startsWith("insert into payment_rollups"), rows.capture());
+        assertThat(rows.getValue()).containsExactlyInAnyOrder(
+                new Object[]{Timestamp.valueOf(HOUR.minusHours(2)), "KES", "SUCCESSFUL", 3L, new BigDecimal("30.00")},
+                new Object[]{Timestamp.valueOf(HOUR), "KES", "FAILED", 1L, new BigDecimal("5.00")});
+    }
+
+    private static Object mapRow(RowMapper<?> mapper, LocalDateTime hour, String status, long count, String amount)
+            throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getTimestamp(1)).thenReturn(Timestamp.valueOf(hour));
+        when(rs.getString(2)).thenReturn("KES");
+        when(rs.getString(3)).thenReturn(status);
+        when(rs.getLong(4)).thenReturn(count);
+        when(rs.getBigDecimal(5)).thenReturn(new BigDecimal(amount));
+        return mapper.mapRow(rs, 0);
+    }
+}
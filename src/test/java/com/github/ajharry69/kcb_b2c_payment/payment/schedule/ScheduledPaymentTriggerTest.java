@@ -0,0 +1,163 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.schedule;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentDispatcher;
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScheduledPaymentTriggerTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 30, 0, 0, 30);
+    private static final Comparator<ScheduledPayment> ORDER = Comparator
+            .comparing(ScheduledPayment::executeAt)
+            .thenComparing(ScheduledPayment::paymentId);
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final PaymentDispatcher paymentDispatcher = mock(PaymentDispatcher.class);
+    private final List<ScheduledPayment> stored = new ArrayList<>();
+    private final AtomicLong clock = new AtomicLong(millis(NOW));
+    private final ScheduledPaymentTrigger trigger = new ScheduledPaymentTrigger(paymentRepository,
+            new PaymentShards(1, TransactionOperations.withoutTransaction()), paymentDispatcher,
+            Duration.ofMinutes(1), Duration.ofMinutes(2), 2, 2, clock::get);
+
+    @BeforeEach
+    void setUp() {
+        when(paymentRepository.findScheduled(eq(PaymentStatus.SCHEDULED), any(), any(), any(), any(), any()))
+                .thenAnswer(this::findScheduled);
+    }
+
+    @Test
+    @DisplayName("Should load overdue payments and buckets within the preload window, and release them when due")
+    void preloadsAndReleasesWhenDue() {
+        ScheduledPayment overdue = store(1, NOW.minusHours(1));
+        ScheduledPayment first = store(2, NOW.plusSeconds(40));
+        ScheduledPayment second = store(3, NOW.plusSeconds(40));
+        ScheduledPayment later = store(4, NOW.plusMinutes(5));
+
+        assertThat(trigger.preload()).isEqualTo(3);
+        assertThat(trigger.preload()).isZero();
+
+        advance(Duration.ofSeconds(1));
+        assertThat(trigger.release()).isEqualTo(1);
+        verify(paymentDispatcher).release(overdue.paymentId(), "client-1", PaymentPriority.NORMAL);
+
+        advance(Duration.ofSeconds(39));
+        assertThat(trigger.release()).isEqualTo(2);
+        InOrder order = inOrder(paymentDispatcher);
+        order.verify(paymentDispatcher).release(first.paymentId(), "client-2", PaymentPriority.NORMAL);
+        order.verify(paymentDispatcher).release(second.paymentId(), "client-3", PaymentPriority.NORMAL);
+        verify(paymentDispatcher, never()).release(eq(later.paymentId()), any(), any());
+
+        advance(Duration.ofMinutes(3));
+        assertThat(trigger.preload()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should release a backlog of due payments no faster than the release rate")
+    void limitsReleaseRate() {
+        for (int i = 1; i <= 5; i++) {
+            store(i, NOW.minusMinutes(1));
+        }
+        trigger.preload();
+
+        advance(Duration.ofSeconds(1));
+        assertThat(trigger.release()).isEqualTo(2);
+        advance(Duration.ofMillis(500));
+        assertThat(trigger.release()).isEqualTo(1);
+        assertThat(trigger.release()).isZero();
+        advance(Duration.ofSeconds(10));
+        assertThat(trigger.release()).isEqualTo(2);
+        verify(paymentDispatcher, times(5)).release(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should add payments scheduled into a loaded bucket and leave later ones to the index")
+    void addsScheduledIntoLoadedBuckets() {
+        trigger.preload();
+        UUID soon = new UUID(0, 1);
+        UUID later = new UUID(0, 2);
+
+        trigger.onPaymentScheduled(
+                new PaymentScheduledEvent(soon, "client-1", PaymentPriority.HIGH, NOW.plusMinutes(2)));
+        trigger.onPaymentScheduled(
+                new PaymentScheduledEvent(later, "client-1", PaymentPriority.HIGH, NOW.plusMinutes(10)));
+
+        advance(Duration.ofMinutes(11));
+        trigger.preload();
+        trigger.release();
+        verify(paymentDispatcher).release(soon, "client-1", PaymentPriority.HIGH);
+        verify(paymentDispatcher, never()).release(eq(later), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should keep a payment the MNO executor rejected for the next release")
+    void requeuesRejected() {
+        ScheduledPayment due = store(1, NOW);
+        trigger.preload();
+        doThrow(new TaskRejectedException("stopped")).doNothing()
+                .when(paymentDispatcher).release(due.paymentId(), "client-1", PaymentPriority.NORMAL);
+
+        advance(Duration.ofSeconds(1));
+        assertThat(trigger.release()).isZero();
+        advance(Duration.ofSeconds(1));
+        assertThat(trigger.release()).isEqualTo(1);
+        verify(paymentDispatcher, times(2)).release(due.paymentId(), "client-1", PaymentPriority.NORMAL);
+    }
+
+    private ScheduledPayment store(int id, LocalDateTime executeAt) {
+        ScheduledPayment payment = new ScheduledPayment(
+                new UUID(0, id), "client-" + id, PaymentPriority.NORMAL, executeAt);
+        stored.add(payment);
+        return payment;
+    }
+
+    private List<ScheduledPayment> findScheduled(InvocationOnMock invocation) {
+        LocalDateTime from = invocation.getArgument(1);
+        LocalDateTime to = invocation.getArgument(2);
+        ScheduledPayment after = new ScheduledPayment(invocation.getArgument(4), null, null, invocation.getArgument(3));
+        Limit limit = invocation.getArgument(5);
+        return stored.stream()
+                .filter(payment -> !payment.executeAt().isBefore(from) && payment.executeAt().isBefore(to))
+                .filter(payment -> ORDER.compare(payment, after) > 0)
+                .sorted(ORDER)
+                .limit(limit.max())
+                .toList();
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toMillis());
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentShardsTest {
+    private final List<DataSource> databases = IntStream.range(0, 2)
+            .mapToObj(shard -> (DataSource) new DriverManagerDataSource(
+                    "jdbc:h2:mem:payment-shards-test-" + shard + ";DB_CLOSE_DELAY=-1", "sa", ""))
+            .toList();
+    private final DataSource dataSource = new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(databases));
+    private final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    private PaymentShards shards;
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate readTransactions = new TransactionTemplate(transactionManager);
+        readTransactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readTransactions.setReadOnly(true);
+        shards = new PaymentShards(2, readTransactions);
+        for (DataSource database : databases) {
+            new JdbcTemplate(database).execute("create table payments (transaction_id varchar(255))");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.close();
+        for (DataSource database : databases) {
+            new JdbcTemplate(database).execute("drop table payments");
+        }
+    }
+
+    @Test
+    @DisplayName("Should send a transaction to the shard bound after it began")
+    void bindsOpenTransaction() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            shards.bind(1);
+            jdbcTemplate.update("insert into payments values ('TXN-1')");
+        });
+
+        assertThat(count(0)).isZero();
+        assertThat(count(1)).isEqualTo(1);
+        jdbcTemplate.update("insert into payments values ('TXN-2')");
+        assertThat(count(PaymentShards.HOME_SHARD)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not move a transaction to a second shard")
+    void rejectsSecondShard() {
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            shards.bind(0);
+            shards.bind(1);
+        })).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> shards.bind(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should gather a read from every shard in shard order")
+    void readsEachShard() {
+        new JdbcTemplate(databases.get(1)).update("insert into payments values ('TXN-1'), ('TXN-2')");
+
+        List<Integer> counts = shards.readEach(
+                shard -> jdbcTemplate.queryForObject("select count(*) from payments", Integer.class));
+
+        assertThat(counts).containsExactly(0, 2);
+    }
+
+    @Test
+    @DisplayName("Should route ids by their embedded shard and transaction ids by hash")
+    void resolvesShards() {
+        UUID id = ShardedIds.newId(1);
+
+        assertThat(id.version()).isEqualTo(8);
+        assertThat(shards.shardOf(id)).isEqualTo(1);
+        assertThat(shards.shardOf(UUID.randomUUID())).isEqualTo(PaymentShards.HOME_SHARD);
+        assertThat(shards.shardOf(ShardedIds.newId(7))).isEqualTo(PaymentShards.HOME_SHARD);
+        assertThat(IntStream.range(0, 1000).map(i -> shards.shardFor("TXN-" + i)).distinct().sorted().toArray())
+                .containsExactly(0, 1);
+        assertThat(shards.shardFor("TXN-42")).isEqualTo(shards.shardFor("TXN-42"));
+    }
+
+    private int count(int shard) {
+        return new JdbcTemplate(databases.get(shard)).queryForObject("select count(*) from payments", Integer.class);
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.shard;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardingConfigTest {
+    private final ShardingConfig config = new ShardingConfig();
+    private final DataSourceTransactionManager transactionManager =
+            new DataSourceTransactionManager(new DriverManagerDataSource("jdbc:h2:mem:sharding-config-test"));
+
+    @Test
+    @DisplayName("Should take the shard count from the routing data source in the context")
+    void countsRoutedShards() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        List<DataSource> databases = IntStream.range(0, 3)
+                .mapToObj(shard -> (DataSource) new DriverManagerDataSource("jdbc:h2:mem:sharding-config-" + shard))
+                .toList();
+        beanFactory.addBean("shardRoutingDataSource", new ShardRoutingDataSource(databases));
+
+        try (PaymentShards shards = config.paymentShards(beanFactory.getBeanProvider(ShardRoutingDataSource.class),
+                new String[]{"jdbc:h2:mem:a", "jdbc:h2:mem:b", "jdbc:h2:mem:c"}, transactionManager)) {
+            assertThat(shards.count()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    @DisplayName("Should use one shard when sharding is not configured")
+    void singleShardWithoutUrls() {
+        try (PaymentShards shards = config.paymentShards(
+                new StaticListableBeanFactory().getBeanProvider(ShardRoutingDataSource.class),
+                new String[0], transactionManager)) {
+            assertThat(shards.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail when shard URLs are set but no routing data source exists (stale AOT definitions)")
+    void failsWithoutRoutingDataSource() {
+        assertThatThrownBy(() -> config.paymentShards(
+                new StaticListableBeanFactory().getBeanProvider(ShardRoutingDataSource.class),
+                new String[]{"jdbc:h2:mem:a", "jdbc:h2:mem:b"}, transactionManager))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("payment.sharding.urls");
+    }
+}
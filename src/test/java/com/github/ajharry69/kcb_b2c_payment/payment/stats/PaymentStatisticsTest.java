@@ -0,0 +1,112 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.stats;
+
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentRepository;
+import com.github.ajharry69.kcb_b2c_payment.payment.PaymentStatusChangedEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.archive.PaymentsArchivedEvent;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentAggregate;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentStats;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
+import com.github.ajharry69.kcb_b2c_payment.payment.shard.PaymentShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PaymentStatisticsTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final AtomicLong now = new AtomicLong(Instant.parse("2025-01-01T10:00:30Z").toEpochMilli());
+    private final PaymentStatistics statistics = new PaymentStatistics(
+            paymentRepository, new PaymentShards(1, TransactionOperations.withoutTransaction()), 5, now::get);
+
+    @BeforeEach
+    void setUp() {
+        when(paymentRepository.aggregateByStatusAndCurrency()).thenReturn(List.of(
+                new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 10, new BigDecimal("1000.00")),
+                new PaymentAggregate(PaymentStatus.PROCESSING, "KES", 2, new BigDecimal("50.50"))));
+        statistics.load();
+    }
+
+    @Test
+    @DisplayName("Should move counts and amounts between statuses from the loaded totals")
+    void tracksCurrentTotals() {
+        statistics.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.SUCCESSFUL, "KES", new BigDecimal("20.25")));
+        statistics.onStatusChanged(new PaymentStatusChangedEvent(
+                null, PaymentStatus.PROCESSING, "USD", new BigDecimal("5.00")));
+
+        assertThat(statistics.snapshot(5).current()).containsExactly(
+                new PaymentAggregate(PaymentStatus.PROCESSING, "KES", 1, new BigDecimal("30.25")),
+                new PaymentAggregate(PaymentStatus.PROCESSING, "USD", 1, new BigDecimal("5.00")),
+                new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 11, new BigDecimal("1020.25")));
+    }
+
+    @Test
+    @DisplayName("Should stop counting archived payments, as the startup query would")
+    void subtractsArchivedPayments() {
+        statistics.onPaymentsArchived(new PaymentsArchivedEvent(List.of(
+                new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 4, new BigDecimal("400.00")))));
+
+        assertThat(statistics.snapshot(5).current()).containsExactly(
+                new PaymentAggregate(PaymentStatus.PROCESSING, "KES", 2, new BigDecimal("50.50")),
+                new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 6, new BigDecimal("600.00")));
+        assertThat(statistics.snapshot(5).window()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should count transitions per minute and drop minutes that left the window")
+    void windowsTransitionsByMinute() {
+        statistics.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.FAILED, "KES", BigDecimal.ONE));
+        now.addAndGet(MINUTE);
+        statistics.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.FAILED, "KES", BigDecimal.TEN));
+
+        PaymentStats twoMinutes = statistics.snapshot(2);
+        assertThat(twoMinutes.window()).containsExactly(
+                new PaymentAggregate(PaymentStatus.FAILED, "KES", 2, new BigDecimal("11.00")));
+        assertThat(twoMinutes.minutes()).extracting(PaymentStats.Minute::start).containsExactly(
+                Instant.parse("2025-01-01T10:00:00Z"), Instant.parse("2025-01-01T10:01:00Z"));
+        assertThat(statistics.snapshot(1).window()).containsExactly(
+                new PaymentAggregate(PaymentStatus.FAILED, "KES", 1, new BigDecimal("10.00")));
+
+        // Five minutes later the ring slot of 10:00 is reused for 10:05
+        now.addAndGet(4 * MINUTE);
+        statistics.onStatusChanged(new PaymentStatusChangedEvent(
+                PaymentStatus.PROCESSING, PaymentStatus.SUCCESSFUL, "KES", BigDecimal.ONE));
+        assertThat(statistics.snapshot(60).windowMinutes()).isEqualTo(5);
+        assertThat(statistics.snapshot(60).window()).containsExactly(
+                new PaymentAggregate(PaymentStatus.SUCCESSFUL, "KES", 1, new BigDecimal("1.00")),
+                new PaymentAggregate(PaymentStatus.FAILED, "KES", 1, new BigDecimal("10.00")));
+    }
+
+    @Test
+    @DisplayName("Should not lose concurrent transitions")
+    void countsConcurrentTransitions() {
+        CompletableFuture<?>[] writers = IntStream.range(0, 8)
+                .mapToObj(writer -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        statistics.onStatusChanged(new PaymentStatusChangedEvent(
+                                null, PaymentStatus.PROCESSING, "UGX", new BigDecimal("0.01")));
+                    }
+                }))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(writers).join();
+
+        assertThat(statistics.snapshot(1).window()).containsExactly(
+                new PaymentAggregate(PaymentStatus.PROCESSING, "UGX", 8_000, new BigDecimal("80.00")));
+    }
+}
@@ -3,6 +3,7 @@ package com.github.ajharry69.kcb_b2c_payment.payment.utils;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
 import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentResponse;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.Payment;
+import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentPriority;
 import com.github.ajharry69.kcb_b2c_payment.payment.model.PaymentStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +13,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+import static com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequests.paymentRequest;
 import static org.assertj.core.api.Assertions.assertThat;
 
 class PaymentMapperTest {
@@ -25,7 +27,7 @@ class PaymentMapperTest {
 
     @Test
     void shouldMapPaymentRequestToEntity() {
-        PaymentRequest request = new PaymentRequest(
+        PaymentRequest request = paymentRequest(
                 "TXN12345",
                 "+254712345678",
                 new BigDecimal("150.75"),
@@ -41,12 +43,29 @@ class PaymentMapperTest {
         assertThat(entity.getAmount()).isEqualTo(request.amount());
         assertThat(entity.getCurrency()).isEqualTo(request.currency());
         assertThat(entity.getStatus()).isEqualTo(PaymentStatus.PENDING);
+        assertThat(entity.getPriority()).isEqualTo(PaymentPriority.NORMAL);
         assertThat(entity.getFailureReason()).isNull();
         assertThat(entity.getMnoReference()).isNull();
         assertThat(entity.getCreatedAt()).isNull();
         assertThat(entity.getUpdatedAt()).isNull();
     }
 
+    @Test
+    void shouldMapPaymentRequestPriorityToEntity() {
+        PaymentRequest request =
+                new PaymentRequest("TXN12345", "+254712345678", new BigDecimal("150.75"), "KES", "HIGH", null);
+
+        assertThat(paymentMapper.toEntity(request).getPriority()).isEqualTo(PaymentPriority.HIGH);
+    }
+
+    @Test
+    void shouldMapPaymentRequestExecuteAtToEntity() {
+        PaymentRequest request = new PaymentRequest(
+                "TXN12345", "+254712345678", new BigDecimal("150.75"), "KES", null, "2025-06-30T00:01:00");
+
+        assertThat(paymentMapper.toEntity(request).getExecuteAt()).isEqualTo(LocalDateTime.of(2025, 6, 30, 0, 1));
+    }
+
     @Test
     void shouldMapPaymentEntityToResponse() {
         UUID paymentId = UUID.randomUUID();
@@ -0,0 +1,157 @@
+package com.github.ajharry69.kcb_b2c_payment.payment.validation;
+
+import com.github.ajharry69.kcb_b2c_payment.exceptions.InvalidPaymentRequestException;
+import com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static com.github.ajharry69.kcb_b2c_payment.payment.dto.PaymentRequests.paymentRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentRequestValidatorTest {
+    private final PaymentRequestValidator validator = new PaymentRequestValidator(
+            "254", new int[]{9}, 90, Clock.fixed(Instant.parse("2025-06-01T12:00:00Z"), ZoneOffset.ofHours(3)));
+
+    @Nested
+    @DisplayName("Phone number normalisation")
+    class PhoneNumbers {
+
+        @ParameterizedTest
+        @CsvSource({
+                "+254712345678, +254712345678",
+                "+254 712 345 678, +254712345678",
+                "(+254) 712-345.678, +254712345678",
+                "00254712345678, +254712345678",
+                "0712345678, +254712345678",
+                "0712 345 678, +254712345678",
+                "712345678, +254712345678",
+                "254712345678, +254712345678",
+                "254123456, +254254123456",
+                "+44 20 7946 0958, +442079460958",
+                "+1 (415) 555-2671, +14155552671"
+        })
+        @DisplayName("Should produce the E.164 form")
+        void normalises(String raw, String e164) {
+            assertThat(validator.toE164(raw)).isEqualTo(e164);
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "invalid-phone",
+                "+",
+                "0",
+                "+0712345678",
+                "+2547",
+                "+2547123456789012",
+                "254+712345678",
+                "++254712345678",
+                "0712/345678",
+                "07123456789012345678901234567890",
+                "2547123",
+                "2547123456",
+                "07123456",
+                "0254712345678"
+        })
+        @DisplayName("Should reject numbers that cannot be E.164 or are not national numbers of the configured lengths")
+        void rejects(String raw) {
+            assertThat(validator.toE164(raw)).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("Should canonicalise phone, amount scale and currency")
+    void canonicalises() {
+        PaymentRequest canonical = validator.validate(
+                paymentRequest("TXN-1", "0712 345 678", new BigDecimal("100.500"), "kes"));
+
+        assertThat(canonical).isEqualTo(
+                paymentRequest("TXN-1", "+254712345678", new BigDecimal("100.50"), "KES"));
+    }
+
+    @Test
+    @DisplayName("Should upper-case a known priority and reject unknown ones")
+    void checksPriority() {
+        PaymentRequest urgent = new PaymentRequest("TXN-1", "+254712345678", BigDecimal.TEN, "KES", " high", null);
+        PaymentRequest unknown = new PaymentRequest("TXN-1", "+254712345678", BigDecimal.TEN, "KES", "URGENT", null);
+
+        assertThat(validator.validate(urgent).priority()).isEqualTo("HIGH");
+        assertThatThrownBy(() -> validator.validate(unknown))
+                .isInstanceOfSatisfying(InvalidPaymentRequestException.class, e -> assertThat(e.getErrors()).containsExactly(
+                        "'priority': Priority must be one of [HIGH, NORMAL]"));
+    }
+
+    @Test
+    @DisplayName("Should convert executeAt to server-local time and reject it beyond the scheduling horizon")
+    void checksExecuteAt() {
+        PaymentRequest offset = new PaymentRequest(
+                "TXN-1", "+254712345678", BigDecimal.TEN, "KES", null, "2025-06-30T00:01:00Z");
+        PaymentRequest local = new PaymentRequest("TXN-1", "+254712345678", BigDecimal.TEN, "KES", null, "2025-06-30T00:01");
+        PaymentRequest tooFar = new PaymentRequest(
+                "TXN-1", "+254712345678", BigDecimal.TEN, "KES", null, "2025-09-01T00:00:00");
+        PaymentRequest malformed = new PaymentRequest("TXN-1", "+254712345678", BigDecimal.TEN, "KES", null, "payday");
+
+        assertThat(validator.validate(offset).executeAt()).isEqualTo("2025-06-30T03:01:00");
+        assertThat(validator.validate(local).executeAt()).isEqualTo("2025-06-30T00:01:00");
+        assertThatThrownBy(() -> validator.validate(tooFar))
+                .isInstanceOfSatisfying(InvalidPaymentRequestException.class, e -> assertThat(e.getErrors()).containsExactly(
+                        "'executeAt': Must be at most 90 days ahead"));
+        assertThatThrownBy(() -> validator.validate(malformed))
+                .isInstanceOfSatisfying(InvalidPaymentRequestException.class, e -> assertThat(e.getErrors()).containsExactly(
+                        "'executeAt': Must be an ISO-8601 date-time (e.g., 2025-06-30T00:01:00+03:00)"));
+    }
+
+    @Test
+    @DisplayName("Should report every invalid field at once")
+    void reportsAllErrors() {
+        PaymentRequest invalid = paymentRequest(" ", "invalid-phone", new BigDecimal("-10.00"), "US");
+
+        assertThatThrownBy(() -> validator.validate(invalid))
+                .isInstanceOfSatisfying(InvalidPaymentRequestException.class, e -> assertThat(e.getErrors()).containsExactly(
+                        "'transactionId': Transaction ID cannot be blank",
+                        "'recipientPhoneNumber': Invalid phone number format",
+                        "'amount': Amount must be positive",
+                        "'currency': Currency must be a 3-letter code (e.g., KES)"));
+    }
+
+    @Test
+    @DisplayName("Should report missing fields")
+    void reportsMissingFields() {
+        assertThatThrownBy(() -> validator.validate(paymentRequest(null, null, null, null)))
+                .isInstanceOfSatisfying(InvalidPaymentRequestException.class, e -> assertThat(e.getErrors()).containsExactly(
+                        "'transactionId': Transaction ID cannot be blank",
+                        "'recipientPhoneNumber': Recipient phone number cannot be blank",
+                        "'amount': Amount cannot be null",
+                        "'currency': Currency cannot be blank"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0.001", "12345678901", "0.00", "0"})
+    @DisplayName("Should reject amounts outside the allowed precision or range")
+    void rejectsAmounts(String amount) {
+        PaymentRequest request = paymentRequest("TXN-1", "+254712345678", new BigDecimal(amount), "KES");
+
+        assertThatThrownBy(() -> validator.validate(request))
+                .isInstanceOf(InvalidPaymentRequestException.class)
+                .hasMessageContaining("'amount'");
+    }
+
+    @Test
+    @DisplayName("Should reject transaction IDs longer than 50 characters")
+    void rejectsLongTransactionId() {
+        PaymentRequest request = paymentRequest("T".repeat(51), "+254712345678", BigDecimal.TEN, "KES");
+
+        assertThatThrownBy(() -> validator.validate(request))
+                .isInstanceOf(InvalidPaymentRequestException.class)
+                .hasMessageContaining("Transaction ID length must be between 1 and 50");
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.ajharry69.kcb_b2c_payment.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(42 * SECOND);
+    private final ClientRateLimiter rateLimiter = new ClientRateLimiter(Map.of(
+            RateLimitScope.INITIATE, new RateLimit(2, 3),
+            RateLimitScope.READ, new RateLimit(10, 10)
+    ), 2, now::get);
+
+    @Test
+    @DisplayName("Should allow a full burst and then reject until tokens are refilled")
+    void allowsBurstThenRejects() {
+        for (int remaining = 2; remaining >= 0; remaining--) {
+            RateLimitDecision decision = rateLimiter.tryAcquire("merchant-a", RateLimitScope.INITIATE);
+            assertThat(decision.allowed()).isTrue();
+            assertThat(decision.remaining()).isEqualTo(remaining);
+        }
+
+        RateLimitDecision rejected = rateLimiter.tryAcquire("merchant-a", RateLimitScope.INITIATE);
+
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.remaining()).isZero();
+        assertThat(rejected.retryAfterNanos()).isEqualTo(SECOND / 2);
+        assertThat(rejected.retryAfterSeconds()).isEqualTo(1);
+        assertThat(rejected.resetSeconds()).isEqualTo(2);
+
+        now.addAndGet(SECOND / 2);
+        assertThat(rateLimiter.tryAcquire("merchant-a", RateLimitScope.INITIATE).allowed()).isTrue();
+        assertThat(rateLimiter.tryAcquire("merchant-a", RateLimitScope.INITIATE).allowed()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should keep separate buckets per client and per scope")
+    void isolatesClientsAndScopes() {
+        IntStream.range(0, 3).forEach(i -> rateLimiter.tryAcquire("merchant-a", RateLimitScope.INITIATE));
+
+        assertThat(rateLimiter.tryAcquire("merchant-a", RateLimitScope.INITIATE).allowed()).isFalse();
+        assertThat(rateLimiter.tryAcquire("merchant-a", RateLimitScope.READ).allowed()).isTrue();
+        assertThat(rateLimiter.tryAcquire("merchant-b", RateLimitScope.INITIATE).allowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should purge refilled buckets when full and make untracked clients share the overflow bucket")
+    void staysBounded() {
+        rateLimiter.tryAcquire("merchant-a", RateLimitScope.INITIATE);
+        rateLimiter.tryAcquire("merchant-b", RateLimitScope.INITIATE);
+
+        // Both tracked clients are still refilling, so the newcomers share one bucket
+        IntStream.range(0, 3).forEach(i -> rateLimiter.tryAcquire("merchant-c", RateLimitScope.INITIATE));
+        assertThat(rateLimiter.tryAcquire("merchant-d", RateLimitScope.INITIATE).allowed()).isFalse();
+        assertThat(rateLimiter.trackedClients()).isEqualTo(2);
+
+        now.addAndGet(2 * SECOND);
+        assertThat(rateLimiter.tryAcquire("merchant-d", RateLimitScope.INITIATE).allowed()).isTrue();
+        assertThat(rateLimiter.trackedClients()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should never hand out more tokens than the burst under contention")
+    void isExactUnderContention() {
+        ClientRateLimiter frozen = new ClientRateLimiter(Map.of(
+                RateLimitScope.INITIATE, new RateLimit(1, 100),
+                RateLimitScope.READ, new RateLimit(1, 1)
+        ), 10, () -> 0L);
+        AtomicInteger allowed = new AtomicInteger();
+
+        CompletableFuture<?>[] workers = IntStream.range(0, 8)
+                .mapToObj(worker -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        if (frozen.tryAcquire("merchant-a", RateLimitScope.INITIATE).allowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(workers).join();
+
+        assertThat(allowed).hasValue(100);
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.ajharry69.kcb_b2c_payment.scheduling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimingWheelTest {
+    private HashedTimingWheel timingWheel;
+
+    @BeforeEach
+    void setUp() {
+        timingWheel = new HashedTimingWheel("TestTimingWheel", Duration.ofMillis(10), 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.close();
+    }
+
+    @Test
+    @DisplayName("Should fire a timeout no earlier than its delay")
+    void firesAfterDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAfterNanos = new AtomicLong();
+        long start = System.nanoTime();
+
+        timingWheel.schedule(() -> {
+            firedAfterNanos.set(System.nanoTime() - start);
+            fired.countDown();
+        }, Duration.ofMillis(50));
+
+        assertThat(fired.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAfterNanos.get()).isGreaterThanOrEqualTo(Duration.ofMillis(50).toNanos());
+    }
+
+    @Test
+    @DisplayName("Should fire timeouts whose delay spans several wheel rotations")
+    void firesAcrossRotations() throws InterruptedException {
+        // 8 buckets of 10 ms make one 80 ms rotation
+        CountDownLatch fired = new CountDownLatch(3);
+        timingWheel.schedule(fired::countDown, Duration.ofMillis(5));
+        timingWheel.schedule(fired::countDown, Duration.ofMillis(85));
+        timingWheel.schedule(fired::countDown, Duration.ofMillis(250));
+
+        assertThat(fired.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(timingWheel.pendingTimeouts()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not fire a cancelled timeout")
+    void cancelledTimeoutDoesNotFire() throws InterruptedException {
+        AtomicBoolean cancelledFired = new AtomicBoolean();
+        CountDownLatch sentinel = new CountDownLatch(1);
+
+        HashedTimingWheel.Timeout timeout = timingWheel.schedule(() -> cancelledFired.set(true), Duration.ofMillis(30));
+        timingWheel.schedule(sentinel::countDown, Duration.ofMillis(100));
+
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(sentinel.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelledFired).isFalse();
+        assertThat(timeout.isCancelled()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should keep ticking when a task throws")
+    void survivesFailingTask() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        timingWheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, Duration.ZERO);
+        timingWheel.schedule(fired::countDown, Duration.ofMillis(20));
+
+        assertThat(fired.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+}
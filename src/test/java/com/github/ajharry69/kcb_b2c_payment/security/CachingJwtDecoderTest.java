@@ -0,0 +1,124 @@
+package com.github.ajharry69.kcb_b2c_payment.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+    private static final Instant NOW = Instant.parse("2025-05-01T10:00:00Z");
+
+    @Mock
+    private JwtDecoder delegate;
+    private VerifiedTokenCache tokenCache;
+    private CachingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        tokenCache = new VerifiedTokenCache(2, Clock.fixed(NOW, ZoneOffset.UTC));
+        decoder = new CachingJwtDecoder(delegate, tokenCache);
+    }
+
+    @Test
+    @DisplayName("Should verify a token once and serve repeats from the cache")
+    void cachesVerifiedToken() {
+        Jwt jwt = jwt("token-1", NOW.plusSeconds(300));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+
+        assertThat(decoder.decode("token-1")).isSameAs(jwt);
+        assertThat(decoder.decode("token-1")).isSameAs(jwt);
+
+        verify(delegate, times(1)).decode("token-1");
+    }
+
+    @Test
+    @DisplayName("Should not serve a cached token past its expiry")
+    void respectsExpiry() {
+        Jwt expired = jwt("token-1", NOW.minusSeconds(1));
+        when(delegate.decode("token-1")).thenReturn(expired);
+
+        decoder.decode("token-1");
+        decoder.decode("token-1");
+
+        verify(delegate, times(2)).decode("token-1");
+        assertThat(tokenCache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not cache tokens that fail verification")
+    void doesNotCacheRejectedTokens() {
+        when(delegate.decode("forged")).thenThrow(new BadJwtException("bad signature"));
+
+        assertThatThrownBy(() -> decoder.decode("forged")).isInstanceOf(BadJwtException.class);
+        assertThat(tokenCache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should stop caching new tokens once the bound is reached")
+    void staysBounded() {
+        for (int i = 0; i < 3; i++) {
+            String token = "token-" + i;
+            when(delegate.decode(token)).thenReturn(jwt(token, NOW.plus(Duration.ofMinutes(5))));
+            decoder.decode(token);
+        }
+
+        assertThat(tokenCache.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should compute authorities once per cached token and return an immutable set")
+    void precomputesAuthorities() {
+        Jwt jwt = jwt("token-1", NOW.plusSeconds(300));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+        AtomicInteger extractions = new AtomicInteger();
+        decoder.decode("token-1");
+
+        Set<GrantedAuthority> first = tokenCache.authorities(jwt, token -> {
+            extractions.incrementAndGet();
+            return Set.of(new SimpleGrantedAuthority("SCOPE_payment.read"));
+        });
+        Set<GrantedAuthority> second = tokenCache.authorities(jwt, token -> {
+            extractions.incrementAndGet();
+            return Set.of();
+        });
+
+        assertThat(second).isSameAs(first).containsExactly(new SimpleGrantedAuthority("SCOPE_payment.read"));
+        assertThat(extractions).hasValue(1);
+        assertThatThrownBy(() -> first.add(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("testuser")
+                .claim("scope", "payment.read")
+                .claim("realm_access", Map.of("roles", List.of("user")))
+                .issuedAt(expiresAt.minusSeconds(600))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}